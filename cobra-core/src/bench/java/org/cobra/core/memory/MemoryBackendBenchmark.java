@@ -0,0 +1,67 @@
+package org.cobra.core.memory;
+
+import java.util.Arrays;
+
+/**
+ * Throughput of get+put of longs and of copies (native to native, native to array and back) of every memory
+ * backend, over 1MiB allocations.
+ * <p>
+ * Usage: {@code MemoryBackendBenchmark [rounds]}; the median of rounds is reported after as many warm-up rounds.
+ * Backend {@value OSMemory#FOREIGN_BACKEND} checks bounds of every access, so it is expected to be slower; it needs
+ * {@code --enable-preview}.
+ */
+public final class MemoryBackendBenchmark {
+
+    private static final int SIZE = 1 << 20;
+    private static final int ARRAY_SIZE = 4096;
+
+    public static void main(String[] args) {
+        final int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+
+        for (String name : new String[]{OSMemory.UNSAFE_BACKEND, OSMemory.FOREIGN_BACKEND}) {
+            final OSMemory backend = OSMemory.backend(name);
+            final long src = backend.allocate(SIZE);
+            final long dest = backend.allocate(SIZE);
+            final byte[] arr = new byte[ARRAY_SIZE];
+            backend.setMemory(src, SIZE, (byte) 1);
+
+            long sum = 0;
+            final long[] getPutNs = new long[rounds];
+            final long[] copyNs = new long[rounds];
+            for (int round = -rounds; round < rounds; round++) {
+                long start = System.nanoTime();
+                for (long offset = 0; offset < SIZE; offset += Long.BYTES) {
+                    backend.writeLong(dest + offset, backend.readLong(src + offset) + offset);
+                }
+                final long getPut = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                backend.copyMemory(src, dest, SIZE);
+                for (long offset = 0; offset < SIZE; offset += ARRAY_SIZE) {
+                    backend.copyMemory(null, dest + offset, arr, OSMemory.ARRAY_BYTE_BASE_OFFSET, ARRAY_SIZE);
+                    backend.copyMemory(dest + offset, arr, 0, ARRAY_SIZE);
+                }
+                final long copy = System.nanoTime() - start;
+                sum += backend.readLong(dest + (round & 63) * Long.BYTES);
+
+                if (round >= 0) {
+                    getPutNs[round] = getPut;
+                    copyNs[round] = copy;
+                }
+            }
+
+            System.out.printf("memory backend %s; get+put long: %.0f Mops/s, copy: %.1f GiB/s (%d)%n", name,
+                    (double) (SIZE / Long.BYTES) * 1_000 / median(getPutNs),
+                    3.0 * SIZE / median(copyNs) * 1e9 / (1 << 30), sum);
+
+            backend.freeMemory(src, SIZE);
+            backend.freeMemory(dest, SIZE);
+        }
+    }
+
+    private static long median(long[] values) {
+        final long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,82 @@
+package org.cobra.core.memory.slab;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Throughput of allocate+free of a {@link SlabArena} shared by 1, 2, 4.. threads up to number of cores, each
+ * keeping a window of 64 live chunks. Small chunks mostly hit thread magazines; large ones are cached 2 per
+ * magazine, so every other operation takes from or gives to a freelist stripe.
+ * <p>
+ * Usage: {@code SlabContentionBenchmark [opsPerThread] [rounds]}; the median of rounds is reported, after a
+ * warm-up round, with speedup over 1 thread. Scaling is only meaningful on a host with as many idle cores.
+ */
+public final class SlabContentionBenchmark {
+
+    private static final int WINDOW = 64;
+
+    public static void main(String[] args) throws InterruptedException {
+        final int opsPerThread = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        final int cores = Runtime.getRuntime().availableProcessors();
+
+        System.out.printf("cores: %d, ops per thread: %d, rounds: %d%n", cores, opsPerThread, rounds);
+        run("small chunks", new byte[16], opsPerThread, rounds, cores);
+        run("large chunks", new byte[12 * 1024], opsPerThread / 8, rounds, cores);
+    }
+
+    private static void run(String name, byte[] data, int opsPerThread, int rounds, int cores)
+            throws InterruptedException {
+        double baseline = 0;
+        for (int threadsNum = 1; threadsNum <= cores; threadsNum *= 2) {
+            measure(threadsNum, data, opsPerThread); // warm-up
+
+            final double[] mops = new double[rounds];
+            for (int r = 0; r < rounds; r++)
+                mops[r] = measure(threadsNum, data, opsPerThread);
+
+            Arrays.sort(mops);
+            final double median = mops[rounds / 2];
+            if (threadsNum == 1)
+                baseline = median;
+
+            System.out.printf("%s; threads: %d, allocate+free: %.1f Mops/s, speedup: %.2fx%n",
+                    name, threadsNum, median, median / baseline);
+        }
+    }
+
+    private static double measure(int threadsNum, byte[] data, int opsPerThread) throws InterruptedException {
+        final SlabArena arena = SlabArena.initialize();
+        final CountDownLatch startGate = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadsNum; t++) {
+            final Thread thread = new Thread(() -> {
+                try {
+                    startGate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                final long[] window = new long[WINDOW];
+                for (int i = 0; i < opsPerThread; i++) {
+                    final int slot = i & (WINDOW - 1);
+                    if (window[slot] != 0)
+                        arena.free(window[slot]);
+                    window[slot] = arena.allocate(i, data, data);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        final long start = System.nanoTime();
+        startGate.countDown();
+        for (Thread thread : threads)
+            thread.join();
+
+        return (double) threadsNum * opsPerThread * 1_000 / (System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,301 @@
+package org.cobra.core.memory;
+
+import org.cobra.commons.errors.CobraException;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Backend of native memory on {@code java.lang.foreign}, instead of {@code sun.misc.Unsafe}, that checks every
+ * access.
+ * <p>
+ * Each allocation (e.g. a page of a slab-class) is allocated by an {@link Arena} of its own, and freed by closing
+ * it, so memory is released deterministically. Freeing an address that is not allocated (or already freed) fails
+ * instead of corrupting the native heap.
+ * <p>
+ * An access by raw address is resolved to the segment of an allocation, or of a buffer whose address was taken by
+ * {@link #addressOf(ByteBuffer)}, which bounds checks it: an access out of all of them, or of one already freed,
+ * throws {@link IndexOutOfBoundsException}; one that races with freeing its allocation throws
+ * {@link IllegalStateException}, rather than touching foreign memory either way. An allocation resolved once is
+ * found again in a table indexed by 64KiB blocks of address, so an access only looks up regions the first time it
+ * touches a block.
+ * <p>
+ * Heap accesses of {@code (object, offset)} stay on Unsafe, as they have no raw address.
+ */
+final class ForeignMemory extends OSMemory {
+
+    private static final ValueLayout.OfByte I8 = ValueLayout.JAVA_BYTE;
+    private static final ValueLayout.OfShort I16 = ValueLayout.JAVA_SHORT_UNALIGNED;
+    private static final ValueLayout.OfInt I32 = ValueLayout.JAVA_INT_UNALIGNED;
+    private static final ValueLayout.OfLong I64 = ValueLayout.JAVA_LONG_UNALIGNED;
+
+    /* as malloc of unsafe backend */
+    private static final long ALIGNMENT = 16;
+
+    private static final int BLOCK_BASE2 = 16;
+    private static final int RESOLVED_SIZE = 1 << 12;
+
+    /* allocations and buffers by base address, ordered to find the owner of an address */
+    private final ConcurrentSkipListMap<Long, Region> regions = new ConcurrentSkipListMap<>();
+    /* allocation last resolved in each block of address; racy on purpose, a region is immutable but released */
+    private final Region[] resolved = new Region[RESOLVED_SIZE];
+
+    private ForeignMemory() {
+    }
+
+    static OSMemory create() {
+        return new ForeignMemory();
+    }
+
+    @Override
+    public String backendName() {
+        return FOREIGN_BACKEND;
+    }
+
+    @Override
+    public long allocate(long size) {
+        if (size <= 0)
+            throw new IllegalArgumentException("Illegal required size: " + size);
+
+        final Arena arena = Arena.ofShared();
+        final MemorySegment segment;
+        try {
+            segment = arena.allocate(size, ALIGNMENT);
+        } catch (RuntimeException | OutOfMemoryError e) {
+            arena.close();
+            throw e;
+        }
+
+        this.regions.put(segment.address(), new Region(segment.address(), size, segment, arena, null));
+        trackNativeMemory(size);
+
+        return segment.address();
+    }
+
+    @Override
+    public void freeMemory(long address, long size) {
+        if (size < 0)
+            throw new IllegalArgumentException("Negative size: " + size);
+
+        if (address != 0) {
+            final Region region = this.regions.get(address);
+            if (region == null || region.arena == null)
+                throw new CobraException("Could not free memory at %d; it is not allocated".formatted(address));
+            if (region.size != size)
+                throw new CobraException("Could not free memory at %d; allocated size %d, freed size %d"
+                        .formatted(address, region.size, size));
+            if (!this.regions.remove(address, region))
+                throw new CobraException("Could not free memory at %d; it is freed concurrently".formatted(address));
+
+            region.released = true;
+            region.arena.close();
+        }
+
+        trackNativeMemory(-size);
+    }
+
+    @Override
+    public void setMemory(long address, long size, byte b) {
+        final MemorySegment segment = resolve(address);
+        segment.asSlice(address - segment.address(), size).fill(b);
+    }
+
+    /**
+     * @return base address of buffer, as unsafe backend; buffer is accessible by it until it is unmapped or
+     * collected
+     */
+    @Override
+    public long addressOf(final ByteBuffer bb) {
+        Objects.requireNonNull(bb);
+        final MemorySegment segment = MemorySegment.ofBuffer(bb.duplicate().clear());
+        final long address = segment.address();
+        final Region region = this.regions.get(address);
+        if (region == null || region.buffer == null || region.buffer.get() != bb) {
+            if (region != null && region.buffer == null)
+                throw new CobraException("Buffer at %d overlaps an allocation".formatted(address));
+
+            // the region only keeps its bounds, not the segment, which would keep buffer reachable
+            this.regions.put(address, new Region(address, segment.byteSize(), null, null, new WeakReference<>(bb)));
+        }
+
+        return address;
+    }
+
+    @Override
+    public void unmap(final MappedByteBuffer bb) {
+        Objects.requireNonNull(bb);
+        final long address = MemorySegment.ofBuffer(bb.duplicate().clear()).address();
+        final Region region = this.regions.get(address);
+        if (region != null && region.buffer != null && this.regions.remove(address, region))
+            region.released = true;
+
+        super.unmap(bb);
+    }
+
+    @Override
+    public void writeByte(long address, byte i8) {
+        final MemorySegment segment = resolve(address);
+        segment.set(I8, address - segment.address(), i8);
+    }
+
+    @Override
+    public byte readByte(long address) {
+        final MemorySegment segment = resolve(address);
+        return segment.get(I8, address - segment.address());
+    }
+
+    @Override
+    public void writeShort(long address, short i2) {
+        final MemorySegment segment = resolve(address);
+        segment.set(I16, address - segment.address(), i2);
+    }
+
+    @Override
+    public short readShort(long address) {
+        final MemorySegment segment = resolve(address);
+        return segment.get(I16, address - segment.address());
+    }
+
+    @Override
+    public void writeInt(long address, int i32) {
+        final MemorySegment segment = resolve(address);
+        segment.set(I32, address - segment.address(), i32);
+    }
+
+    @Override
+    public int readInt(long address) {
+        final MemorySegment segment = resolve(address);
+        return segment.get(I32, address - segment.address());
+    }
+
+    @Override
+    public void writeLong(long address, long i64) {
+        final MemorySegment segment = resolve(address);
+        segment.set(I64, address - segment.address(), i64);
+    }
+
+    @Override
+    public long readLong(long address) {
+        final MemorySegment segment = resolve(address);
+        return segment.get(I64, address - segment.address());
+    }
+
+    @Override
+    public void copyMemory(long toAddr, byte[] arr, int arrOffset, int len) {
+        if (arrOffset < 0 || len < 0 || arrOffset + len > arr.length)
+            throw new IllegalArgumentException("Invalid offset/len; array's length: " + arr.length);
+
+        if (len == 0)
+            return;
+
+        final MemorySegment segment = resolve(toAddr);
+        MemorySegment.copy(arr, arrOffset, segment, I8, toAddr - segment.address(), len);
+    }
+
+    @Override
+    public void copyMemory(@Nullable Object src, long srcOffset, @Nullable Object dest, long destOffset, int len) {
+        if (len < 0)
+            throw new IllegalArgumentException("Negative length: " + len);
+        if (len == 0)
+            return;
+
+        if (src == null && dest instanceof byte[] arr) {
+            final MemorySegment segment = resolve(srcOffset);
+            MemorySegment.copy(segment, I8, srcOffset - segment.address(), arr,
+                    Math.toIntExact(destOffset - ARRAY_BYTE_BASE_OFFSET), len);
+            return;
+        }
+
+        if (src instanceof byte[] arr && dest == null) {
+            final MemorySegment segment = resolve(destOffset);
+            MemorySegment.copy(arr, Math.toIntExact(srcOffset), segment, I8, destOffset - segment.address(), len);
+            return;
+        }
+
+        if (src == null && dest == null) {
+            copyMemory(srcOffset, destOffset, len);
+            return;
+        }
+
+        if (src == null || dest == null)
+            throw new IllegalArgumentException("Could not copy between native memory and " +
+                    (src == null ? dest : src).getClass().getName());
+
+        super.copyMemory(src, srcOffset, dest, destOffset, len);
+    }
+
+    @Override
+    public void copyMemory(long srcAddress, long destAddress, int len) {
+        final MemorySegment src = resolve(srcAddress);
+        final MemorySegment dest = resolve(destAddress);
+        MemorySegment.copy(src, srcAddress - src.address(), dest, destAddress - dest.address(), len);
+    }
+
+    private MemorySegment resolve(long address) {
+        final Region region = this.resolved[block(address)];
+        if (region != null && region.contains(address))
+            return region.segment;
+
+        return lookup(address);
+    }
+
+    private MemorySegment lookup(long address) {
+        final Map.Entry<Long, Region> owner = this.regions.floorEntry(address);
+        if (owner != null && owner.getValue().contains(address)) {
+            final Region region = owner.getValue();
+            if (region.buffer == null) {
+                this.resolved[block(address)] = region;
+                return region.segment;
+            }
+
+            // a buffer is resolved each time, as its segment keeps it reachable
+            final ByteBuffer buffer = region.buffer.get();
+            if (buffer != null)
+                return MemorySegment.ofBuffer(buffer.duplicate().clear());
+
+            if (this.regions.remove(owner.getKey(), region))
+                region.released = true;
+        }
+
+        throw new IndexOutOfBoundsException("Address %d is neither of an allocation nor of a buffer".formatted(address));
+    }
+
+    private static int block(long address) {
+        return (int) (address >>> BLOCK_BASE2) & (RESOLVED_SIZE - 1);
+    }
+
+    /**
+     * Either an allocation, with its segment and the arena that owns it, or a buffer whose address was taken, of
+     * which only bounds are kept
+     */
+    private static final class Region {
+
+        private final long base;
+        private final long size;
+        private final MemorySegment segment;
+        private final @Nullable Arena arena;
+        private final @Nullable WeakReference<ByteBuffer> buffer;
+        private volatile boolean released;
+
+        private Region(long base, long size, MemorySegment segment, @Nullable Arena arena,
+                       @Nullable WeakReference<ByteBuffer> buffer) {
+            this.base = base;
+            this.size = size;
+            this.segment = segment;
+            this.arena = arena;
+            this.buffer = buffer;
+        }
+
+        private boolean contains(long address) {
+            return address - this.base >= 0 && address - this.base < this.size && !this.released;
+        }
+    }
+}
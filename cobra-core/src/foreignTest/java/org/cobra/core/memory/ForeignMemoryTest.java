@@ -0,0 +1,146 @@
+package org.cobra.core.memory;
+
+import org.cobra.commons.errors.CobraException;
+import org.cobra.utils.TestUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ForeignMemoryTest {
+
+    OSMemory memory;
+
+    @BeforeEach
+    void setUp() {
+        memory = OSMemory.backend(OSMemory.FOREIGN_BACKEND);
+    }
+
+    @Test
+    void backend_selectedByName() {
+        assertEquals(OSMemory.FOREIGN_BACKEND, memory.backendName());
+        assertEquals(OSMemory.UNSAFE_BACKEND, OSMemory.backend(OSMemory.UNSAFE_BACKEND).backendName());
+        assertThrows(CobraException.class, () -> OSMemory.backend("jni"));
+    }
+
+    @Test
+    void write_read_primitives() {
+        long address = memory.allocate(32);
+
+        memory.writeByte(address, (byte) 'a');
+        memory.writeShort(address + 1, (short) 999);
+        memory.writeInt(address + 3, 99_999);
+        memory.writeLong(address + 7, 9_999_999_999L);
+
+        assertEquals((byte) 'a', memory.readByte(address));
+        assertEquals((short) 999, memory.readShort(address + 1));
+        assertEquals(99_999, memory.readInt(address + 3));
+        assertEquals(9_999_999_999L, memory.readLong(address + 7));
+
+        // same native byte order as unsafe backend
+        OSMemory unsafe = OSMemory.backend(OSMemory.UNSAFE_BACKEND);
+        assertEquals(99_999, unsafe.readInt(address + 3));
+        assertEquals(9_999_999_999L, unsafe.readLong(address + 7));
+
+        memory.setMemory(address, 32, (byte) 0);
+        assertEquals(0, memory.readLong(address + 7));
+
+        memory.freeMemory(address, 32);
+        assertEquals(0, memory.nativeMemoryUsed());
+    }
+
+    @Test
+    void copy_nativeAndArrays() {
+        byte[] arr = TestUtils.randString(100).getBytes();
+        long src = memory.allocate(128);
+        long dest = memory.allocate(128);
+
+        memory.copyMemory(src, arr, 0, arr.length);
+        memory.copyMemory(src, dest + 8, arr.length);
+
+        byte[] read = new byte[arr.length];
+        memory.copyMemory(null, dest + 8, read, OSMemory.ARRAY_BYTE_BASE_OFFSET, arr.length);
+        assertArrayEquals(arr, read);
+
+        memory.copyMemory(arr, 10, null, dest, 20);
+        memory.copyMemory(null, dest, read, OSMemory.ARRAY_BYTE_BASE_OFFSET, 20);
+        assertArrayEquals(Arrays.copyOfRange(arr, 10, 30), Arrays.copyOf(read, 20));
+
+        memory.freeMemory(src, 128);
+        memory.freeMemory(dest, 128);
+    }
+
+    @Test
+    void freeMemory_notAllocated() {
+        long address = memory.allocate(64);
+        assertThrows(CobraException.class, () -> memory.freeMemory(address + 8, 56));
+        assertThrows(CobraException.class, () -> memory.freeMemory(address, 32));
+
+        memory.freeMemory(address, 64);
+        assertThrows(CobraException.class, () -> memory.freeMemory(address, 64)); // double free
+        assertEquals(0, memory.nativeMemoryUsed());
+    }
+
+    @Test
+    void access_outOfAllocation() {
+        long address = memory.allocate(16);
+        memory.writeLong(address + 8, 1L);
+
+        assertThrows(IndexOutOfBoundsException.class, () -> memory.writeLong(address + 12, 1L));
+        assertThrows(IndexOutOfBoundsException.class, () -> memory.readByte(address + 16));
+        assertThrows(IndexOutOfBoundsException.class, () -> memory.copyMemory(address, new byte[32], 0, 32));
+        assertThrows(IndexOutOfBoundsException.class, () -> memory.setMemory(address + 8, 16, (byte) 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> memory.readLong(8));
+
+        memory.freeMemory(address, 16);
+    }
+
+    @Test
+    void access_afterFree() {
+        long address = memory.allocate(16);
+        memory.writeLong(address, 1L);
+        assertEquals(1L, memory.readLong(address));
+
+        memory.freeMemory(address, 16);
+        assertThrows(IndexOutOfBoundsException.class, () -> memory.readLong(address));
+    }
+
+    @Test
+    void freeMemory_releasesOnlyItsAllocation() {
+        long first = memory.allocate(64);
+        long second = memory.allocate(64);
+
+        memory.writeLong(first, 1L);
+        memory.writeLong(second, 2L);
+        memory.freeMemory(first, 64);
+
+        assertThrows(IndexOutOfBoundsException.class, () -> memory.readLong(first));
+        assertEquals(2L, memory.readLong(second));
+
+        // an allocation that reuses the address (or its block) is resolved again
+        long third = memory.allocate(64);
+        memory.writeLong(third, 3L);
+        assertEquals(3L, memory.readLong(third));
+        assertEquals(2L, memory.readLong(second));
+
+        memory.freeMemory(second, 64);
+        memory.freeMemory(third, 64);
+        assertEquals(0, memory.nativeMemoryUsed());
+    }
+
+    @Test
+    void buffer_accessibleByItsAddress() {
+        ByteBuffer directBuffer = ByteBuffer.allocateDirect(16).order(ByteOrder.nativeOrder());
+        long address = memory.addressOf(directBuffer);
+
+        memory.writeLong(address + 8, 42L);
+        assertEquals(42L, directBuffer.getLong(8));
+        assertThrows(IndexOutOfBoundsException.class, () -> memory.writeLong(address + 12, 1L));
+    }
+}
@@ -1,8 +1,31 @@
 package org.cobra;
 
+import java.nio.ByteBuffer;
+
 public interface RecordApi {
 
     byte[] getRaw(String key);
 
+    /**
+     * Copies raw record of a key into a caller-supplied buffer (at its position), without allocating a byte array
+     *
+     * @param key  record key
+     * @param sink destination buffer, either heap or direct
+     * @return number of copied bytes, or -1 if key does not exist
+     */
+    int getRaw(String key, ByteBuffer sink);
+
+    /**
+     * Queries a record without knowing its type, by looking up keyspace of every schema
+     */
     <T> T query(String key);
+
+    /**
+     * Queries a record in keyspace of its type
+     *
+     * @param clazz record type
+     * @param key   record key
+     * @return record if exists, otherwise null
+     */
+    <T> T query(Class<T> clazz, String key);
 }
@@ -2,7 +2,9 @@ package org.cobra.api;
 
 import org.cobra.RecordApi;
 import org.cobra.consumer.CobraConsumer;
-import org.cobra.core.memory.datalocal.RecordRepository;
+import org.cobra.consumer.read.SchemaStateReader;
+
+import java.nio.ByteBuffer;
 
 public class CobraRecordApi implements RecordApi {
 
@@ -14,19 +16,33 @@ public class CobraRecordApi implements RecordApi {
 
     @Override
     public byte[] getRaw(String key) {
-        return records().getData(key);
+        for (SchemaStateReader schemaRead : consumer.context().schemaReads()) {
+            final byte[] raw = schemaRead.localData().getData(key);
+            if (raw != null)
+                return raw;
+        }
+
+        return null;
     }
 
     @Override
-    public <T> T query(String key) {
-        byte[] raw = records().getData(key);
-        if (raw == null) {
-            return null;
+    public int getRaw(String key, ByteBuffer sink) {
+        for (SchemaStateReader schemaRead : consumer.context().schemaReads()) {
+            final int len = schemaRead.localData().getData(key, sink);
+            if (len >= 0)
+                return len;
         }
-        return consumer.context().serde().deserialize(getRaw(key));
+
+        return -1;
     }
 
-    private RecordRepository records() {
-        return consumer.context().localData();
+    @Override
+    public <T> T query(String key) {
+        return consumer.context().readObject(key);
+    }
+
+    @Override
+    public <T> T query(Class<T> clazz, String key) {
+        return consumer.context().readObject(clazz, key);
     }
 }
@@ -6,6 +6,7 @@ import org.slf4j.LoggerFactory;
 
 import java.net.ContentHandler;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -21,7 +22,7 @@ public class CobraThreadExecutor extends ThreadPoolExecutor {
     private static final Logger log = LoggerFactory.getLogger(CobraThreadExecutor.class);
     private static final String DEFAULT_THREAD_NAMESPACE_DESCRIPTION = "cobra-executor";
 
-    private static final List<Future<?>> futures = new ArrayList<>();
+    private final List<Future<?>> futures = Collections.synchronizedList(new ArrayList<>());
 
     public CobraThreadExecutor(int threads, ThreadFactory threadFactory) {
         super(threads, threads, 300, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
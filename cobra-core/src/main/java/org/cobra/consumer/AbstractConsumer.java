@@ -1,21 +1,27 @@
 package org.cobra.consumer;
 
 import org.cobra.commons.Clock;
+import org.cobra.commons.CobraConstants;
 import org.cobra.commons.errors.CobraException;
 import org.cobra.commons.pools.BytesPool;
+import org.cobra.commons.threads.CobraThread;
 import org.cobra.consumer.internal.AnnouncementWatcherImpl;
 import org.cobra.consumer.internal.BlobRetrieverFacade;
 import org.cobra.consumer.internal.ConsumerDataPlane;
 import org.cobra.consumer.internal.FallbackRemoteBlobRetriever;
+import org.cobra.consumer.internal.StateCheckpoint;
 import org.cobra.consumer.internal.TransitionUpdater;
 import org.cobra.consumer.read.ConsumerStateContext;
 import org.cobra.consumer.read.StateReadEngine;
 import org.cobra.core.memory.MemoryMode;
+import org.cobra.core.memory.datalocal.SlabMover;
 import org.cobra.networks.CobraClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.file.Path;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -26,6 +32,9 @@ public abstract class AbstractConsumer implements CobraConsumer {
 
     private static final Logger log = LoggerFactory.getLogger(AbstractConsumer.class);
 
+    /* versions are pushed by producer as they are announced, polling only catches up on pushes lost */
+    private static final long POLL_HEARTBEAT_MS = 10_000;
+
     protected final ReentrantLock stateLock = new ReentrantLock();
     protected final ExecutorService executor;
     protected final AnnouncementWatcher announcementWatcher;
@@ -35,6 +44,16 @@ public abstract class AbstractConsumer implements CobraConsumer {
     protected final ConsumerStateContext consumerStateContext;
 
     protected final CobraClient client;
+    protected final StateCheckpoint checkpoint;
+
+    private final SlabMover slabMover;
+    private final FallbackRemoteBlobRetriever fallbackRemoteBlobRetriever;
+    private volatile ScheduledExecutorService checkpointScheduler;
+    private volatile ScheduledExecutorService pollScheduler;
+
+    private volatile long checkpointedVersion = CobraConstants.VERSION_NULL;
+    private volatile long announcedVersion = CobraConstants.VERSION_NULL;
+    private volatile long lastAnnouncedMs = 0;
 
     protected AbstractConsumer(Builder builder) {
         this(
@@ -43,7 +62,13 @@ public abstract class AbstractConsumer implements CobraConsumer {
                 builder.bytesPool,
                 builder.refreshExecutor,
                 builder.clock,
-                builder.producerAddress);
+                builder.producerAddress,
+                builder.objectCacheCapacity,
+                builder.slabMoverIntervalMs,
+                builder.adaptiveSlabClasses,
+                builder.checkpointDirectory,
+                builder.checkpointIntervalMs,
+                builder.downloadConnections);
     }
 
     private AbstractConsumer(
@@ -52,11 +77,19 @@ public abstract class AbstractConsumer implements CobraConsumer {
             BytesPool bytesPool,
             ExecutorService executor,
             Clock clock,
-            InetSocketAddress producerAddress) {
-        consumerStateContext = new ConsumerStateContext();
+            InetSocketAddress producerAddress,
+            int objectCacheCapacity,
+            long slabMoverIntervalMs,
+            boolean adaptiveSlabClasses,
+            Path checkpointDirectory,
+            long checkpointIntervalMs,
+            int downloadConnections) {
+        this.slabMover = createSlabMover(slabMoverIntervalMs);
+        consumerStateContext = new ConsumerStateContext(objectCacheCapacity, slabMover, adaptiveSlabClasses);
         this.client = new CobraClient(producerAddress);
 
-        final FallbackRemoteBlobRetriever fallbackRemoteBlobRetriever = new FallbackRemoteBlobRetriever(client, blobRetriever);
+        this.fallbackRemoteBlobRetriever = new FallbackRemoteBlobRetriever(client, blobRetriever,
+                downloadConnections);
         final BlobRetrieverFacade blobRetrieverFacade = new BlobRetrieverFacade(blobRetriever, fallbackRemoteBlobRetriever);
         this.consumerPlane = new ConsumerDataPlane(new TransitionUpdater(blobRetrieverFacade),
                 memoryMode, new StateReadEngine(consumerStateContext, bytesPool));
@@ -65,9 +98,82 @@ public abstract class AbstractConsumer implements CobraConsumer {
         this.clock = clock;
         this.announcementWatcher = new AnnouncementWatcherImpl(client);
 
+        this.checkpoint = checkpointDirectory == null ? null : new StateCheckpoint(checkpointDirectory);
+        if (this.checkpoint != null) {
+            restoreCheckpoint();
+            scheduleCheckpoints(checkpointIntervalMs);
+        }
+
+        client.subscribeVersions(this::onVersionAnnounced);
         executor.execute(client::bootstrap);
     }
 
+    /* called on the thread reading responses, so refresh runs on executor; of pushes queued, the latest wins */
+    private void onVersionAnnounced(long version) {
+        announcedVersion = version;
+        lastAnnouncedMs = clock.milliseconds();
+        announcementWatcher.setLatestVersion(version);
+        executor.execute(this::refreshToAnnounced);
+    }
+
+    private void refreshToAnnounced() {
+        stateLock.lock();
+        try {
+            final long version = announcedVersion;
+            if (version != CobraConstants.VERSION_NULL && version != consumerPlane.currentVersion())
+                triggerRefreshTo(new VersionInformation(version));
+        } catch (Throwable cause) {
+            log.warn("refresh to announced version failed", cause);
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    /* a checkpoint that could not be restored is only logged, the consumer starts from blobs as without one */
+    private void restoreCheckpoint() {
+        try {
+            if (consumerPlane.restore(checkpoint))
+                checkpointedVersion = consumerPlane.currentVersion();
+        } catch (IOException | RuntimeException e) {
+            log.warn("could not restore checkpoint {}, start from blobs", checkpoint.path(), e);
+        }
+    }
+
+    private void scheduleCheckpoints(long intervalMs) {
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+                r -> CobraThread.daemon(r, AbstractConsumer.class, "checkpoint", CobraThread.LOW_PRIORITY));
+        checkpointScheduler = scheduler;
+        scheduler.scheduleWithFixedDelay(this::writeCheckpoint, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes a checkpoint if version has changed since the last one
+     */
+    public void writeCheckpoint() {
+        if (checkpoint == null)
+            throw new IllegalStateException("Checkpoint is not enabled");
+
+        final long version = consumerPlane.currentVersion();
+        if (version == checkpointedVersion)
+            return;
+
+        try {
+            if (consumerPlane.checkpoint(checkpoint))
+                checkpointedVersion = version;
+        } catch (IOException | RuntimeException e) {
+            log.warn("could not write checkpoint {}", checkpoint.path(), e);
+        }
+    }
+
+    private static SlabMover createSlabMover(long intervalMs) {
+        if (intervalMs == 0)
+            return null;
+
+        final SlabMover slabMover = new SlabMover(intervalMs);
+        slabMover.start();
+        return slabMover;
+    }
+
     @Override
     public void poll() {
         poll(5_000);
@@ -76,6 +182,7 @@ public abstract class AbstractConsumer implements CobraConsumer {
     @Override
     public void poll(int timeoutMs) {
         ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().factory());
+        pollScheduler = scheduler;
 
         scheduler.scheduleAtFixedRate(() -> {
             try {
@@ -83,16 +190,25 @@ public abstract class AbstractConsumer implements CobraConsumer {
                     log.warn("timeout for poll operation");
                     return;
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
 
+            try {
                 if (!client.isReady()) {
                     client.tryConnect();
                     return;
                 }
 
+                if (clock.milliseconds() - lastAnnouncedMs < POLL_HEARTBEAT_MS)
+                    return;
+
                 if (announcementWatcher == null)
                     throw new CobraException("announcement-watcher is null, must have implementation of AnnouncementWatcher");
 
                 final VersionInformation latestVersion = announcementWatcher.getLatestVersionInformation();
+                lastAnnouncedMs = clock.milliseconds();
                 triggerRefreshTo(latestVersion);
 
             } catch (Throwable cause) {
@@ -104,6 +220,20 @@ public abstract class AbstractConsumer implements CobraConsumer {
         }, 1000, 500, TimeUnit.MILLISECONDS);
     }
 
+    /* refresh executor is supplied by caller, so it is left running */
+    @Override
+    public void shutdown() {
+        if (pollScheduler != null)
+            pollScheduler.shutdownNow();
+        if (checkpointScheduler != null)
+            checkpointScheduler.shutdownNow();
+        if (slabMover != null)
+            slabMover.close();
+
+        fallbackRemoteBlobRetriever.shutdown();
+        client.shutdown();
+    }
+
     @Override
     public ConsumerStateContext context() {
         return consumerStateContext;
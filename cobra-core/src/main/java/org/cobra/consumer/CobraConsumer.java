@@ -5,12 +5,16 @@ import org.cobra.commons.pools.BytesPool;
 import org.cobra.commons.threads.CobraThread;
 import org.cobra.consumer.read.ConsumerStateContext;
 import org.cobra.core.memory.MemoryMode;
+import org.cobra.core.objects.BlobDescriptor;
+import org.cobra.core.objects.BlobType;
 import org.cobra.core.objects.StreamingBlob;
 import org.cobra.core.objects.VersioningBlob;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -24,6 +28,11 @@ public interface CobraConsumer {
 
     void poll(int timeoutMs);
 
+    /**
+     * Stops background work of consumer: polling, checkpoints, slab-mover and connections to producer
+     */
+    void shutdown();
+
     interface AnnouncementWatcher {
         void setLatestVersion(long latestVersion);
 
@@ -41,7 +50,42 @@ public interface CobraConsumer {
 
         Blob retrieveReversedDelta(long desiredVersion);
 
+        /**
+         * @return snapshot blob holding the whole state of version, or null if not exists
+         */
+        Blob retrieveSnapshot(long version);
+
+        /**
+         * @return skip-delta compacted from deltas of (fromVersion, toVersion], or null if not exists
+         */
+        Blob retrieveSkipDelta(long fromVersion, long toVersion);
+
+        /**
+         * @return descriptors of all blobs this retriever holds
+         */
+        List<BlobDescriptor> listBlobs();
+
         void saveBlob(ByteBuffer buffer, String filename) throws IOException;
+
+        /**
+         * @return path a blob is downloaded to before {@link #saveBlob(Path, String)}, it is not retrieved as a blob
+         */
+        Path downloadPath(String filename);
+
+        /**
+         * Saves a downloaded blob under filename, the download is moved rather than copied
+         */
+        void saveBlob(Path downloaded, String filename) throws IOException;
+
+        /**
+         * @return header blob of a version just saved, opened without looking it up
+         */
+        HeaderBlob openHeader(long version);
+
+        /**
+         * @return blob just saved, opened by its name without looking it up
+         */
+        Blob openBlob(BlobType blobType, long fromVersion, long toVersion);
     }
 
     abstract class HeaderBlob implements StreamingBlob {
@@ -69,6 +113,10 @@ public interface CobraConsumer {
             super(fromVersion, toVersion);
         }
 
+        protected Blob(long fromVersion, long toVersion, BlobType blobType) {
+            super(fromVersion, toVersion, blobType);
+        }
+
         @Override
         public String toString() {
             return super.toString();
@@ -92,12 +140,22 @@ public interface CobraConsumer {
     }
 
     class Builder {
+        static final long DEFAULT_SLAB_MOVER_INTERVAL_MS = 30_000;
+        static final long DEFAULT_CHECKPOINT_INTERVAL_MS = 60_000;
+        static final int DEFAULT_DOWNLOAD_CONNECTIONS = 4;
+
         BlobRetriever blobRetriever;
         MemoryMode memoryMode;
         BytesPool bytesPool;
         ExecutorService refreshExecutor;
         Clock clock;
         InetSocketAddress producerAddress;
+        int objectCacheCapacity;
+        long slabMoverIntervalMs = DEFAULT_SLAB_MOVER_INTERVAL_MS;
+        boolean adaptiveSlabClasses;
+        Path checkpointDirectory;
+        long checkpointIntervalMs = DEFAULT_CHECKPOINT_INTERVAL_MS;
+        int downloadConnections = DEFAULT_DOWNLOAD_CONNECTIONS;
 
         public Builder withBlobRetriever(BlobRetriever blobRetriever) {
             this.blobRetriever = blobRetriever;
@@ -124,6 +182,74 @@ public interface CobraConsumer {
             return this;
         }
 
+        /**
+         * Enables a bounded cache of deserialized objects per schema in front of query
+         *
+         * @param objectCacheCapacity maximum number of cached objects per schema, 0 to disable
+         */
+        public Builder withObjectCacheCapacity(int objectCacheCapacity) {
+            this.objectCacheCapacity = objectCacheCapacity;
+            return this;
+        }
+
+        /**
+         * Sets how often under-utilized slab pages of local data are drained and released to OS
+         *
+         * @param slabMoverIntervalMs milliseconds between runs, 0 to disable
+         */
+        public Builder withSlabMoverInterval(long slabMoverIntervalMs) {
+            if (slabMoverIntervalMs < 0)
+                throw new IllegalArgumentException("Negative slab mover interval: " + slabMoverIntervalMs);
+
+            this.slabMoverIntervalMs = slabMoverIntervalMs;
+            return this;
+        }
+
+        /**
+         * Fits slab-classes of each schema to record sizes sampled from its first applied snapshot or delta, instead
+         * of the geometric classes of memory config
+         */
+        public Builder withAdaptiveSlabClasses(boolean adaptiveSlabClasses) {
+            this.adaptiveSlabClasses = adaptiveSlabClasses;
+            return this;
+        }
+
+        /**
+         * Enables warm restart: state is periodically checkpointed into a local directory, and a restarted consumer
+         * restores it then only applies blobs after the checkpointed version
+         *
+         * @param checkpointDirectory local directory of checkpoint file
+         */
+        public Builder withCheckpoint(Path checkpointDirectory) {
+            this.checkpointDirectory = checkpointDirectory;
+            return this;
+        }
+
+        /**
+         * @param checkpointIntervalMs milliseconds between checkpoints, a checkpoint is only written if version has
+         *                             changed since the last one
+         */
+        public Builder withCheckpointInterval(long checkpointIntervalMs) {
+            if (checkpointIntervalMs <= 0)
+                throw new IllegalArgumentException("Illegal checkpoint interval: " + checkpointIntervalMs);
+
+            this.checkpointIntervalMs = checkpointIntervalMs;
+            return this;
+        }
+
+        /**
+         * Sets how many connections to producer a large blob is downloaded over, as ranges fetched at once
+         *
+         * @param downloadConnections number of connections, 1 to download every blob on one connection
+         */
+        public Builder withDownloadConnections(int downloadConnections) {
+            if (downloadConnections < 1)
+                throw new IllegalArgumentException("Illegal number of download connections: " + downloadConnections);
+
+            this.downloadConnections = downloadConnections;
+            return this;
+        }
+
         public CobraConsumer build() {
             if (clock == null)
                 clock = Clock.system();
@@ -1,9 +1,13 @@
 package org.cobra.consumer.fs;
 
 import org.cobra.commons.errors.CobraException;
+import org.cobra.commons.utils.Elapsed;
 import org.cobra.commons.utils.IOx;
 import org.cobra.consumer.CobraConsumer;
+import org.cobra.core.compress.BlobCompression;
+import org.cobra.core.objects.BlobDescriptor;
 import org.cobra.core.objects.BlobType;
+import org.cobra.core.objects.VersioningBlob;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -17,15 +21,33 @@ import java.nio.channels.FileChannel;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 public class FilesystemBlobRetriever implements CobraConsumer.BlobRetriever {
 
     private static final Logger log = LoggerFactory.getLogger(FilesystemBlobRetriever.class);
 
+    private static final String INFLATED_DIR = "inflated";
+    private static final String DOWNLOAD_SUFFIX = ".download";
+
     private final Path blobStorePath;
+    private final Path inflatedPath;
+    private final Map<Integer, byte[]> dictionaries;
 
     public FilesystemBlobRetriever(Path blobStorePath) {
+        this(blobStorePath, new byte[0][]);
+    }
+
+    /**
+     * @param dictionaries preset dictionaries that compressed blobs might have been written with
+     */
+    public FilesystemBlobRetriever(Path blobStorePath, byte[]... dictionaries) {
         this.blobStorePath = blobStorePath;
+        this.inflatedPath = blobStorePath.resolve(INFLATED_DIR);
+        this.dictionaries = BlobCompression.dictionaries(dictionaries);
 
         ensurePathExists(blobStorePath);
     }
@@ -34,7 +56,7 @@ public class FilesystemBlobRetriever implements CobraConsumer.BlobRetriever {
     public CobraConsumer.HeaderBlob retrieveHeader(long desiredVersion) {
         Path execPath = blobStorePath.resolve("header-%d".formatted(desiredVersion));
         if (Files.exists(execPath)) {
-            return new FilesystemHeader(execPath, desiredVersion);
+            return new FilesystemHeader(blobFile(execPath), desiredVersion);
         }
 
         return null;
@@ -96,6 +118,40 @@ public class FilesystemBlobRetriever implements CobraConsumer.BlobRetriever {
         return null;
     }
 
+    @Override
+    public CobraConsumer.Blob retrieveSnapshot(long version) {
+        if (Files.exists(blobStorePath.resolve(BlobType.SNAPSHOT.filename(VersioningBlob.VERSION_UNDEFINED, version))))
+            return fsBlob(BlobType.SNAPSHOT, VersioningBlob.VERSION_UNDEFINED, version);
+
+        return null;
+    }
+
+    @Override
+    public CobraConsumer.Blob retrieveSkipDelta(long fromVersion, long toVersion) {
+        if (Files.exists(blobStorePath.resolve(BlobType.SKIP_DELTA.filename(fromVersion, toVersion))))
+            return fsBlob(BlobType.SKIP_DELTA, fromVersion, toVersion);
+
+        return null;
+    }
+
+    @Override
+    public List<BlobDescriptor> listBlobs() {
+        final List<BlobDescriptor> result = new ArrayList<>();
+        try (
+                DirectoryStream<Path> dirStream = Files.newDirectoryStream(blobStorePath)
+        ) {
+            for (Path path : dirStream) {
+                BlobDescriptor descriptor = BlobDescriptor.parse(path.getFileName().toString(), Files.size(path));
+                if (descriptor != null)
+                    result.add(descriptor);
+            }
+        } catch (IOException e) {
+            throw new CobraException(e);
+        }
+
+        return result;
+    }
+
     @Override
     public void saveBlob(ByteBuffer buffer, String filename) throws IOException {
         final Path filepath = blobStorePath.resolve(filename);
@@ -112,71 +168,173 @@ public class FilesystemBlobRetriever implements CobraConsumer.BlobRetriever {
         log.debug("saved blob {}", filepath.toAbsolutePath());
     }
 
+    @Override
+    public Path downloadPath(String filename) {
+        return blobStorePath.resolve(filename + DOWNLOAD_SUFFIX);
+    }
+
+    @Override
+    public void saveBlob(Path downloaded, String filename) throws IOException {
+        final Path filepath = blobStorePath.resolve(filename);
+        Files.move(downloaded, filepath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        log.debug("saved blob {}", filepath.toAbsolutePath());
+    }
+
+    @Override
+    public CobraConsumer.HeaderBlob openHeader(long version) {
+        return new FilesystemHeader(blobFile(blobStorePath.resolve("header-%d".formatted(version))), version);
+    }
+
+    @Override
+    public CobraConsumer.Blob openBlob(BlobType blobType, long fromVersion, long toVersion) {
+        return fsBlob(blobType, fromVersion, toVersion);
+    }
+
     private void ensurePathExists(Path path) {
         IOx.mkdirs(path);
     }
 
     private CobraConsumer.Blob fsBlob(BlobType blobType, long fromVersion, long toVersion) {
-        Path path;
-        return switch (blobType) {
-            case DELTA_BLOB, REVERSED_DELTA_BLOB -> {
-                path = blobStorePath.resolve("%s-%d-%d".formatted(blobType.prefix(), fromVersion, toVersion));
-                yield new FilesystemBlob(path, fromVersion, toVersion);
+        final Path path = blobStorePath.resolve(blobType.filename(fromVersion, toVersion));
+        return new FilesystemBlob(blobFile(path), fromVersion, toVersion, blobType);
+    }
+
+    private BlobFile blobFile(Path path) {
+        return new BlobFile(path, inflatedPath, dictionaries);
+    }
+
+    /**
+     * A compressed blob is inflated block by block into a raw copy of its own once it is first read, which is then
+     * mapped for random access. The copy is deleted once the blob is released, so a blob is never kept on disk both
+     * compressed and inflated after it has been applied
+     */
+    static final class BlobFile {
+
+        private final Path path;
+        private final Path inflatedPath;
+        private final Map<Integer, byte[]> dictionaries;
+
+        private Path inflated;
+
+        BlobFile(Path path, Path inflatedPath, Map<Integer, byte[]> dictionaries) {
+            this.path = path;
+            this.inflatedPath = inflatedPath;
+            this.dictionaries = dictionaries;
+        }
+
+        static BlobFile raw(Path path) {
+            return new BlobFile(path, null, null);
+        }
+
+        synchronized Path readable() throws IOException {
+            if (inflated != null)
+                return inflated;
+            if (inflatedPath == null || !BlobCompression.isCompressed(path))
+                return path;
+
+            final long start = System.nanoTime();
+            IOx.mkdirs(inflatedPath);
+            final Path copy = Files.createTempFile(inflatedPath, path.getFileName() + "-", "");
+            try {
+                BlobCompression.inflate(path, copy, dictionaries);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(copy);
+                throw e;
             }
-        };
+
+            log.debug("inflated blob {}; {} -> {} bytes; took: {}", path.getFileName(), Files.size(path),
+                    Files.size(copy), Elapsed.toStr(System.nanoTime() - start));
+            return inflated = copy;
+        }
+
+        synchronized void release() throws IOException {
+            if (inflated == null)
+                return;
+
+            Files.deleteIfExists(inflated);
+            inflated = null;
+        }
+
+        String filename() {
+            return path.getFileName().toString();
+        }
     }
 
     public static class FilesystemHeader extends CobraConsumer.HeaderBlob {
 
-        private final Path path;
+        private final BlobFile blobFile;
 
         public FilesystemHeader(Path path, long version) {
+            this(BlobFile.raw(path), version);
+        }
+
+        FilesystemHeader(BlobFile blobFile, long version) {
             super(version);
-            this.path = path;
+            this.blobFile = blobFile;
         }
 
         @Override
         public InputStream input() throws IOException {
-            return new BufferedInputStream(Files.newInputStream(path));
+            return new BufferedInputStream(Files.newInputStream(blobFile.readable()));
         }
 
         @Override
         public File file() throws IOException {
-            return path.toFile();
+            return blobFile.readable().toFile();
+        }
+
+        @Override
+        public void release() throws IOException {
+            blobFile.release();
         }
 
         @Override
         public String toString() {
             return "FilesystemHeader(" +
                     "version=" + getVersion() + ", " +
-                    "path=" + path.getFileName().toString() +
+                    "path=" + blobFile.filename() +
                     ')';
         }
     }
 
     public static class FilesystemBlob extends CobraConsumer.Blob {
 
-        private final Path path;
+        private final BlobFile blobFile;
 
         public FilesystemBlob(Path path, long fromVersion, long toVersion) {
             super(fromVersion, toVersion);
-            this.path = path;
+            this.blobFile = BlobFile.raw(path);
+        }
+
+        public FilesystemBlob(Path path, long fromVersion, long toVersion, BlobType blobType) {
+            this(BlobFile.raw(path), fromVersion, toVersion, blobType);
+        }
+
+        FilesystemBlob(BlobFile blobFile, long fromVersion, long toVersion, BlobType blobType) {
+            super(fromVersion, toVersion, blobType);
+            this.blobFile = blobFile;
         }
 
         @Override
         public InputStream input() throws IOException {
-            return new BufferedInputStream(Files.newInputStream(path));
+            return new BufferedInputStream(Files.newInputStream(blobFile.readable()));
         }
 
         @Override
         public File file() throws IOException {
-            return path.toFile();
+            return blobFile.readable().toFile();
+        }
+
+        @Override
+        public void release() throws IOException {
+            blobFile.release();
         }
 
         @Override
         public String toString() {
             return "FilesystemBlob(" +
-                    "path=" + path.getFileName().toString() +
+                    "path=" + blobFile.filename() +
                     ", fromVersion=" + fromVersion +
                     ", toVersion=" + toVersion +
                     ", blobType=" + blobType +
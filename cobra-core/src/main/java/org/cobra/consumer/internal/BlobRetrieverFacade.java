@@ -1,10 +1,19 @@
 package org.cobra.consumer.internal;
 
+import org.cobra.commons.errors.CobraException;
 import org.cobra.commons.utils.Elapsed;
 import org.cobra.consumer.CobraConsumer;
+import org.cobra.core.objects.BlobDescriptor;
+import org.cobra.core.objects.BlobType;
+import org.cobra.networks.PlanEntry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 public class BlobRetrieverFacade {
 
     private static final Logger log = LoggerFactory.getLogger(BlobRetrieverFacade.class);
@@ -65,4 +74,94 @@ public class BlobRetrieverFacade {
 
         return reverseDeltaBlob;
     }
+
+    public CobraConsumer.Blob getSnapshotBlob(long version) {
+        final long start = System.nanoTime();
+        CobraConsumer.Blob snapshotBlob = blobRetriever.retrieveSnapshot(version);
+
+        if (snapshotBlob == null) {
+            fallbackRetriever.retrieveRemoteSnapshot(version);
+            snapshotBlob = blobRetriever.retrieveSnapshot(version);
+        }
+
+        log.debug("get snapshot-blob {}; took: {}", version, Elapsed.toStr(System.nanoTime() - start));
+
+        return snapshotBlob;
+    }
+
+    public CobraConsumer.Blob getSkipDeltaBlob(long fromVersion, long toVersion) {
+        final long start = System.nanoTime();
+        CobraConsumer.Blob skipDeltaBlob = blobRetriever.retrieveSkipDelta(fromVersion, toVersion);
+
+        if (skipDeltaBlob == null) {
+            fallbackRetriever.retrieveRemoteSkipDelta(fromVersion, toVersion);
+            skipDeltaBlob = blobRetriever.retrieveSkipDelta(fromVersion, toVersion);
+        }
+
+        log.debug("get skip-delta-blob ({}, {}]; took: {}", fromVersion, toVersion,
+                Elapsed.toStr(System.nanoTime() - start));
+
+        return skipDeltaBlob;
+    }
+
+    /**
+     * @return whether a plan of many versions is worth fetching from producer
+     */
+    public boolean canFetchPlan(long fromVersion, long toVersion) {
+        return toVersion - fromVersion > 1 && fallbackRetriever.isAvailable();
+    }
+
+    /**
+     * @return versions of delta blobs held locally, listed at once
+     */
+    public Set<Long> localDeltaVersions() {
+        final Set<Long> versions = new HashSet<>();
+        for (BlobDescriptor descriptor : blobRetriever.listBlobs()) {
+            if (descriptor.blobType() == BlobType.DELTA_BLOB)
+                versions.add(descriptor.toVersion());
+        }
+
+        return versions;
+    }
+
+    /**
+     * Fetches header blobs and delta blobs after fromVersion up to toVersion as a plan from producer; transitions are
+     * built from the manifest of plan, opening the blobs saved without looking each up
+     *
+     * @return transitions of consecutive versions from fromVersion + 1, or empty if deltas are to be walked one by one
+     */
+    public List<VersionTransition> getDeltaPlan(long fromVersion, long toVersion) {
+        final long start = System.nanoTime();
+        final List<VersionTransition> transitions = new ArrayList<>();
+        try {
+            for (PlanEntry entry : fallbackRetriever.retrieveRemotePlan(fromVersion, toVersion)) {
+                transitions.add(new VersionTransition(entry.version(), blobRetriever.openHeader(entry.version()),
+                        blobRetriever.openBlob(BlobType.DELTA_BLOB, entry.version() - 1, entry.version())));
+            }
+        } catch (CobraException e) {
+            log.warn("could not retrieve plan ({}, {}], walk deltas one by one", fromVersion, toVersion, e);
+        }
+
+        log.debug("get delta plan ({}, {}] of {} versions; took: {}", fromVersion, toVersion, transitions.size(),
+                Elapsed.toStr(System.nanoTime() - start));
+
+        return transitions;
+    }
+
+    /**
+     * @return descriptors of blobs known locally and by producer; local ones only if producer is unreachable
+     */
+    public Set<BlobDescriptor> blobIndex() {
+        final Set<BlobDescriptor> index = new HashSet<>(blobRetriever.listBlobs());
+        if (!fallbackRetriever.isAvailable())
+            return index;
+
+        try {
+            index.addAll(fallbackRetriever.retrieveRemoteIndex());
+        } catch (CobraException e) {
+            log.warn("could not retrieve remote blob index, plan with local blobs only", e);
+        }
+
+        return index;
+    }
 }
@@ -24,8 +24,7 @@ public class ConsumerDataPlane {
         this.memoryMode = memoryMode;
         this.stateReadEngine = stateReadEngine;
 
-        this.dataUpdater = new DataUpdater(new TransitionStats(), memoryMode,
-                new BlobReaderImpl(memoryMode, stateReadEngine));
+        this.dataUpdater = newDataUpdater();
     }
 
     public long currentVersion() {
@@ -37,8 +36,7 @@ public class ConsumerDataPlane {
         if (requestVersion == currentVersion()) {
             log.debug("no version to update");
             if (requestVersion == CobraConstants.VERSION_NULL && dataUpdater == null) {
-                dataUpdater = new DataUpdater(new TransitionStats(), memoryMode,
-                        new BlobReaderImpl(memoryMode, stateReadEngine));
+                dataUpdater = newDataUpdater();
             }
 
             return true;
@@ -55,4 +53,41 @@ public class ConsumerDataPlane {
         dataUpdater.update(updatePlan);
         return currentVersion() == requestVersion;
     }
+
+    /**
+     * Writes a checkpoint of current state, in between applying blobs
+     *
+     * @return true if written, false if there is no state yet
+     */
+    public synchronized boolean checkpoint(StateCheckpoint checkpoint) throws IOException {
+        final long version = currentVersion();
+        if (version == CobraConstants.VERSION_NULL)
+            return false;
+
+        checkpoint.write(version, stateReadEngine);
+        return true;
+    }
+
+    /**
+     * Restores state of a checkpoint, so updates only apply blobs after its version
+     *
+     * @return true if restored, false if there is no checkpoint
+     */
+    public synchronized boolean restore(StateCheckpoint checkpoint) throws IOException {
+        if (currentVersion() != CobraConstants.VERSION_NULL)
+            throw new IllegalStateException("Could not restore checkpoint at version %d".formatted(currentVersion()));
+
+        final long version = checkpoint.restore(stateReadEngine);
+        if (version == CobraConstants.VERSION_NULL)
+            return false;
+
+        dataUpdater.currentVersion(version);
+        return true;
+    }
+
+    private DataUpdater newDataUpdater() {
+        final TransitionStats transitionStats = new TransitionStats();
+        return new DataUpdater(transitionStats, memoryMode,
+                new BlobReaderImpl(memoryMode, stateReadEngine, transitionStats::recordSchemaApply));
+    }
 }
@@ -27,6 +27,10 @@ public class DataUpdater {
         this.blobReader = blobReader;
     }
 
+    public TransitionStats transitionStats() {
+        return this.transitionStats;
+    }
+
     public long currentVersion() {
         return this.currentVersion;
     }
@@ -49,15 +53,23 @@ public class DataUpdater {
         log.debug("Applying delta-transition {}", transition);
 
         final long start = System.nanoTime();
-        applyHeader(transition.getHeader());
-        applyStateEngineTransition(transition.getDeltaBlob());
+        if (transition.getDeltaBlob().hasEmbeddedHeader()) {
+            applyEmbeddedHeaderTransition(transition.getDeltaBlob());
+        } else {
+            applyHeader(transition.getHeader());
+            applyStateEngineTransition(transition.getDeltaBlob());
+        }
 
         final long elapsed = System.nanoTime() - start;
         log.debug("Applied delta-transition version {}; took: {}", transition.getVersion(), Elapsed.toStr(elapsed));
     }
 
     private void applyHeader(CobraConsumer.HeaderBlob headerBlob) throws IOException {
-        blobReader.applyHeader(BlobInput.randomAccessFile(headerBlob.file()));
+        try (BlobInput input = BlobInput.randomAccessFile(headerBlob.file())) {
+            blobReader.applyHeader(input);
+        } finally {
+            headerBlob.release();
+        }
     }
 
     private void applyStateEngineTransition(CobraConsumer.Blob deltaBlob) throws IOException {
@@ -67,6 +79,8 @@ public class DataUpdater {
         } catch (Throwable cause) {
             this.transitionStats.markFailTransition(deltaBlob);
             throw cause;
+        } finally {
+            deltaBlob.release();
         }
 
 
@@ -75,8 +89,26 @@ public class DataUpdater {
         logDeltaDone(deltaBlob);
     }
 
+    /* snapshot and skip-delta share the layout: full or merged header, then sections */
+    private void applyEmbeddedHeaderTransition(CobraConsumer.Blob blob) throws IOException {
+        try (BlobInput input = BlobInput.randomAccessFile(blob.file())) {
+            this.blobReader.applySnapshot(input);
+        } catch (Throwable cause) {
+            this.transitionStats.markFailTransition(blob);
+            throw cause;
+        } finally {
+            blob.release();
+        }
+
+        currentVersion(blob.toVersion());
+
+        logDeltaDone(blob);
+    }
+
     private void logDeltaDone(CobraConsumer.Blob blob) {
-        String prefix = blob.isDeltaBlob() ? "[DELTA-TRANSITION]" : "[REVERSED-DELTA-TRANSITION]";
+        String prefix = blob.isSnapshotBlob() ? "[SNAPSHOT-TRANSITION]"
+                : blob.isSkipDeltaBlob() ? "[SKIP-DELTA-TRANSITION]"
+                : blob.isDeltaBlob() ? "[DELTA-TRANSITION]" : "[REVERSED-DELTA-TRANSITION]";
         log.info("{} complete; from_v: {}; to_v: {}", prefix, blob.fromVersion(), blob.toVersion());
     }
 }
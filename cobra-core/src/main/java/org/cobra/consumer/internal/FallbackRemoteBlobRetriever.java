@@ -3,23 +3,43 @@ package org.cobra.consumer.internal;
 import org.cobra.commons.errors.CobraException;
 import org.cobra.commons.utils.Elapsed;
 import org.cobra.consumer.CobraConsumer;
+import org.cobra.core.objects.BlobDescriptor;
 import org.cobra.core.objects.BlobType;
+import org.cobra.core.objects.VersioningBlob;
 import org.cobra.networks.CobraClient;
+import org.cobra.networks.PlanEntry;
+import org.cobra.networks.RangedDownloader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 public class FallbackRemoteBlobRetriever {
 
     private static final Logger log = LoggerFactory.getLogger(FallbackRemoteBlobRetriever.class);
 
     private final CobraClient client;
+    private final RangedDownloader downloader;
     private final CobraConsumer.BlobRetriever blobRetriever;
 
     public FallbackRemoteBlobRetriever(CobraClient client, CobraConsumer.BlobRetriever blobRetriever) {
+        this(client, blobRetriever, 1);
+    }
+
+    /**
+     * @param downloadConnections number of connections a large blob is downloaded over
+     */
+    public FallbackRemoteBlobRetriever(
+            CobraClient client,
+            CobraConsumer.BlobRetriever blobRetriever,
+            int downloadConnections) {
         this.client = client;
+        this.downloader = new RangedDownloader(client, downloadConnections);
         this.blobRetriever = blobRetriever;
     }
 
@@ -29,6 +49,9 @@ public class FallbackRemoteBlobRetriever {
         String filename = null;
         try {
             final ByteBuffer headerBuffer = client.fetchHeaderBuffer(desiredVersion);
+            if (headerBuffer == null)
+                return;
+
             filename = "header-%d".formatted(desiredVersion);
             blobRetriever.saveBlob(headerBuffer, filename);
         } catch (IOException e) {
@@ -69,16 +92,111 @@ public class FallbackRemoteBlobRetriever {
                     Elapsed.toStr(System.nanoTime() - start));
         }
     }
+    public void retrieveRemoteSnapshot(long version) {
+        log.debug("retrieving remote snapshot-blob version {}", version);
+        final long start = System.nanoTime();
+        String filename = null;
+        try {
+            filename = downloadBlob(BlobType.SNAPSHOT, VersioningBlob.VERSION_UNDEFINED, version);
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+            throw new CobraException(e);
+        } finally {
+            log.debug("retrieved remote snapshot-blob {}; elapsed: {}", filename,
+                    Elapsed.toStr(System.nanoTime() - start));
+        }
+    }
 
+    public void retrieveRemoteSkipDelta(long fromVersion, long toVersion) {
+        log.debug("retrieving remote skip-delta-blob ({}, {}]", fromVersion, toVersion);
+        final long start = System.nanoTime();
+        String filename = null;
+        try {
+            filename = downloadBlob(BlobType.SKIP_DELTA, fromVersion, toVersion);
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+            throw new CobraException(e);
+        } finally {
+            log.debug("retrieved remote skip-delta-blob {}; elapsed: {}", filename,
+                    Elapsed.toStr(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Fetches header blobs and delta blobs of consecutive versions after fromVersion up to toVersion, a plan of many
+     * versions per request rather than a round trip per blob, saving each
+     *
+     * @return manifest of versions fetched in order, ending before the first version producer misses a blob of
+     */
+    public List<PlanEntry> retrieveRemotePlan(long fromVersion, long toVersion) {
+        log.debug("retrieving remote plan ({}, {}]", fromVersion, toVersion);
+        final long start = System.nanoTime();
+        final List<PlanEntry> versions = new ArrayList<>();
+        try {
+            long version = fromVersion;
+            while (version < toVersion) {
+                final List<PlanEntry> manifest = CobraClient.await(client.requestPlan(version, toVersion,
+                        blobRetriever::downloadPath));
+                if (manifest.isEmpty())
+                    break;
+
+                for (PlanEntry entry : manifest) {
+                    blobRetriever.saveBlob(blobRetriever.downloadPath(entry.headerFilename()), entry.headerFilename());
+                    blobRetriever.saveBlob(blobRetriever.downloadPath(entry.deltaFilename()), entry.deltaFilename());
+                    versions.add(entry);
+                }
+                version = manifest.getLast().version();
+            }
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+            throw new CobraException(e);
+        } finally {
+            log.debug("retrieved remote plan ({}, {}] of {} versions; elapsed: {}", fromVersion, toVersion,
+                    versions.size(), Elapsed.toStr(System.nanoTime() - start));
+        }
+
+        return versions;
+    }
+
+    public List<BlobDescriptor> retrieveRemoteIndex() {
+        try {
+            return client.fetchBlobIndex();
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+            throw new CobraException(e);
+        }
+    }
+
+    public boolean isAvailable() {
+        return client != null && client.isReady();
+    }
 
     private String doRetrieveRemoteBlob(long fromVersion, long toVersion) throws IOException {
-        final ByteBuffer blobBuffer = client.fetchBlobBuffer(fromVersion, toVersion);
+        return downloadBlob(fromVersion < toVersion ? BlobType.DELTA_BLOB : BlobType.REVERSED_DELTA_BLOB,
+                fromVersion, toVersion);
+    }
 
-        final String prefix = fromVersion < toVersion ? BlobType.DELTA_BLOB.prefix() :
-                BlobType.REVERSED_DELTA_BLOB.prefix();
-        final String filename = "%s-%d-%d".formatted(prefix, fromVersion, toVersion);
-        blobRetriever.saveBlob(blobBuffer, filename);
+    /**
+     * Streams a blob to its download path and saves it once complete, never holding it on heap
+     *
+     * @return filename of blob saved, or null if producer does not have it
+     */
+    private String downloadBlob(BlobType blobType, long fromVersion, long toVersion) throws IOException {
+        final String filename = blobType.filename(fromVersion, toVersion);
+        final Path downloaded = blobRetriever.downloadPath(filename);
+        if (!downloader.download(blobType, fromVersion, toVersion, downloaded)) {
+            Files.deleteIfExists(downloaded);
+            return null;
+        }
 
+        blobRetriever.saveBlob(downloaded, filename);
         return filename;
     }
+
+    /**
+     * Closes connections a blob was downloaded over beside the main one
+     */
+    public void shutdown() {
+        downloader.shutdown();
+    }
 }
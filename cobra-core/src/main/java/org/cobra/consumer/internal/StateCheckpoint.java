@@ -0,0 +1,283 @@
+package org.cobra.consumer.internal;
+
+import org.cobra.commons.CobraConstants;
+import org.cobra.commons.Jvm;
+import org.cobra.commons.errors.CobraException;
+import org.cobra.commons.utils.Elapsed;
+import org.cobra.commons.utils.Utils;
+import org.cobra.consumer.read.ConsumerStateContext;
+import org.cobra.consumer.read.SchemaStateReader;
+import org.cobra.consumer.read.SchemaStateReaderImpl;
+import org.cobra.consumer.read.StateReadEngine;
+import org.cobra.core.ModelSchema;
+import org.cobra.core.memory.OSMemory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checkpoint of consumer state in a local file, so a restarted consumer maps it back and only applies blobs after
+ * its version, instead of rebuilding every repository from a snapshot.
+ * <p>
+ * Layout: [header | padding to OS page] [slab pages, each aligned to OS page] [meta: randomized tags, class
+ * registrations, then slab layout and live bitmaps of every schema]. Pages are copied through mapped windows of the
+ * file. A checkpoint is written aside then atomically moved into place, so a crash never leaves a torn one.
+ */
+public class StateCheckpoint {
+
+    private static final Logger log = LoggerFactory.getLogger(StateCheckpoint.class);
+
+    private static final OSMemory memory = Jvm.osMemory();
+
+    static final String FILENAME = "consumer.checkpoint";
+    private static final int MAGIC = 0x43424b50;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = Integer.BYTES + Integer.BYTES + Long.BYTES + Long.BYTES + Integer.BYTES;
+    private static final long MAP_WINDOW_BYTES = 256L * CobraConstants.MB;
+
+    private final Path path;
+
+    /**
+     * @param directory local directory of checkpoint file
+     */
+    public StateCheckpoint(Path directory) {
+        this.path = directory.resolve(FILENAME);
+    }
+
+    public Path path() {
+        return this.path;
+    }
+
+    public boolean exists() {
+        return Files.exists(this.path);
+    }
+
+    /**
+     * Writes state of every schema at version; must not run concurrently with applying blobs
+     */
+    public void write(long version, StateReadEngine stateReadEngine) throws IOException {
+        final long start = System.nanoTime();
+        final ConsumerStateContext context = stateReadEngine.consumerContext();
+        final Path writingPath = this.path.resolveSibling(FILENAME + ".tmp");
+
+        final ByteArrayOutputStream metaBytes = new ByteArrayOutputStream();
+        final DataOutputStream meta = new DataOutputStream(metaBytes);
+        meta.writeLong(stateReadEngine.getOriginRandomizedTag());
+        meta.writeLong(stateReadEngine.getNextRandomizedTag());
+
+        final Map<Class<?>, Integer> registrations = context.classRegistrations();
+        meta.writeInt(registrations.size());
+        for (Map.Entry<Class<?>, Integer> entry : registrations.entrySet()) {
+            meta.writeUTF(entry.getKey().getTypeName());
+            meta.writeInt(entry.getValue());
+        }
+
+        final List<SchemaStateReader> schemaReads = List.copyOf(context.schemaReads());
+        try (FileChannel fc = FileChannel.open(writingPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final long metaOffset;
+            try (MappedPages pages = new MappedPages(fc, FileChannel.MapMode.READ_WRITE, Long.MAX_VALUE)) {
+                meta.writeInt(schemaReads.size());
+                for (SchemaStateReader schemaRead : schemaReads) {
+                    meta.writeUTF(schemaRead.getSchema().getClazzName());
+                    schemaRead.localData().checkpoint(meta, pages::write);
+                }
+
+                metaOffset = MappedPages.align(pages.cursor());
+            }
+
+            // mapping a window beyond the last page grows the file, cut it back before appending meta
+            fc.truncate(metaOffset);
+            writeFully(fc, ByteBuffer.wrap(metaBytes.toByteArray()), metaOffset);
+
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                    .putInt(MAGIC)
+                    .putInt(FORMAT_VERSION)
+                    .putLong(version)
+                    .putLong(metaOffset)
+                    .putInt(metaBytes.size())
+                    .flip();
+            writeFully(fc, header, 0);
+            fc.force(true);
+        }
+
+        Files.move(writingPath, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        log.info("checkpoint version {} of {} schemas; size: {}KiB; took: {}", version, schemaReads.size(),
+                Files.size(this.path) / CobraConstants.KB, Elapsed.toStr(System.nanoTime() - start));
+    }
+
+    /**
+     * Restores state of every schema into a consumer that has no state yet. Nothing is registered into context
+     * unless every schema has been restored.
+     *
+     * @return version of checkpoint, or {@link CobraConstants#VERSION_NULL} if there is no checkpoint
+     */
+    public long restore(StateReadEngine stateReadEngine) throws IOException {
+        if (!exists())
+            return CobraConstants.VERSION_NULL;
+
+        final ConsumerStateContext context = stateReadEngine.consumerContext();
+        if (!context.schemaReads().isEmpty())
+            throw new IllegalStateException("Could not restore checkpoint into a consumer that has state");
+
+        final long start = System.nanoTime();
+        try (FileChannel fc = FileChannel.open(this.path, StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(fc, header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION)
+                throw new CobraException("File %s is not a checkpoint of this format".formatted(this.path));
+
+            final long version = header.getLong();
+            final long metaOffset = header.getLong();
+            final int metaLength = header.getInt();
+            if (metaOffset + metaLength != fc.size())
+                throw new CobraException("Checkpoint %s is truncated".formatted(this.path));
+
+            final ByteBuffer metaBuffer = ByteBuffer.allocate(metaLength);
+            readFully(fc, metaBuffer, metaOffset);
+            final DataInputStream meta = new DataInputStream(new ByteArrayInputStream(metaBuffer.array()));
+
+            final long originRandomizedTag = meta.readLong();
+            final long nextRandomizedTag = meta.readLong();
+
+            final Map<Class<?>, Integer> registrations = new LinkedHashMap<>();
+            final int numRegistrations = meta.readInt();
+            for (int i = 0; i < numRegistrations; i++) {
+                registrations.put(Utils.classLoader(meta.readUTF()), meta.readInt());
+            }
+
+            final int numSchemas = meta.readInt();
+            final List<SchemaStateReader> schemaReads = new ArrayList<>(numSchemas);
+            try (MappedPages pages = new MappedPages(fc, FileChannel.MapMode.READ_ONLY, metaOffset)) {
+                for (int i = 0; i < numSchemas; i++) {
+                    final ModelSchema modelSchema = new ModelSchema(Utils.classLoader(meta.readUTF()));
+                    final SchemaStateReader schemaRead = new SchemaStateReaderImpl(modelSchema, stateReadEngine);
+                    schemaRead.localData().restore(meta, pages::read);
+                    schemaReads.add(schemaRead);
+                }
+            }
+
+            registrations.forEach(context::registerClassRegistration);
+            schemaReads.forEach(context::register);
+            stateReadEngine.setOriginRandomizedTag(originRandomizedTag);
+            stateReadEngine.setNextRandomizedTag(nextRandomizedTag);
+
+            log.info("restored checkpoint version {} of {} schemas; took: {}", version, numSchemas,
+                    Elapsed.toStr(System.nanoTime() - start));
+            return version;
+        }
+    }
+
+    private static void writeFully(FileChannel fc, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += fc.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel fc, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            final int read = fc.read(buffer, position);
+            if (read < 0)
+                throw new EOFException("End of checkpoint at %d".formatted(position));
+
+            position += read;
+        }
+    }
+
+    /**
+     * Pages laid one after another from the first OS page of file, each aligned to OS page, copied through a window
+     * that is remapped when a page does not fit in it
+     */
+    private static final class MappedPages implements Closeable {
+
+        private final FileChannel fc;
+        private final FileChannel.MapMode mode;
+        private final long limit;
+
+        private long cursor = Jvm.osPageSize();
+        private MappedByteBuffer window;
+        private long windowStart;
+        private long windowEnd;
+
+        /**
+         * @param limit end of pages in file
+         */
+        MappedPages(FileChannel fc, FileChannel.MapMode mode, long limit) {
+            this.fc = fc;
+            this.mode = mode;
+            this.limit = limit;
+        }
+
+        static long align(long position) {
+            final long pageSize = Jvm.osPageSize();
+            return (position + pageSize - 1) / pageSize * pageSize;
+        }
+
+        long cursor() {
+            return this.cursor;
+        }
+
+        void write(long address, long size) throws IOException {
+            memory.copyMemory(address, next(size), Math.toIntExact(size));
+        }
+
+        void read(long address, long size) throws IOException {
+            memory.copyMemory(next(size), address, Math.toIntExact(size));
+        }
+
+        /* mapped address of the next page */
+        private long next(long size) throws IOException {
+            final long position = align(this.cursor);
+            if (position + size > this.limit)
+                throw new CobraException("Checkpoint is truncated; page of %d bytes at %d".formatted(size, position));
+
+            if (this.window == null || position + size > this.windowEnd) {
+                unmapWindow();
+
+                final long len = Math.min(Math.max(MAP_WINDOW_BYTES, size), this.limit - position);
+                this.window = this.fc.map(this.mode, position, len);
+                this.windowStart = position;
+                this.windowEnd = position + len;
+            }
+
+            this.cursor = position + size;
+            return memory.addressOf(this.window) + (position - this.windowStart);
+        }
+
+        private void unmapWindow() {
+            if (this.window == null)
+                return;
+
+            if (this.mode == FileChannel.MapMode.READ_WRITE)
+                this.window.force();
+
+            memory.unmap(this.window);
+            this.window = null;
+        }
+
+        @Override
+        public void close() {
+            unmapWindow();
+        }
+    }
+}
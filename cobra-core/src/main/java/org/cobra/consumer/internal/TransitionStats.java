@@ -1,13 +1,19 @@
 package org.cobra.consumer.internal;
 
+import org.cobra.commons.utils.Elapsed;
 import org.cobra.consumer.CobraConsumer;
 
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 public class TransitionStats {
     private final Set<DeltaTransition> failDelta = new HashSet<>();
     private final Set<DeltaTransition> successDelta = new HashSet<>();
+    private final Map<String, SchemaApply> schemaApplies = new ConcurrentHashMap<>();
 
     public void markFailPlan(TransitionPlan plan) {
         for (VersionTransition transition : plan.getTransitions())
@@ -35,9 +41,35 @@ public class TransitionStats {
         return this.successDelta.size();
     }
 
+    /**
+     * Records time of applying a schema section of delta, might be called concurrently by schema appliers
+     */
+    public void recordSchemaApply(String typeName, long elapsedNanos) {
+        this.schemaApplies.computeIfAbsent(typeName, k -> new SchemaApply()).record(elapsedNanos);
+    }
+
+    /**
+     * @return elapsed nanos of the latest apply of schema, -1 if schema has never been applied
+     */
+    public long getLastSchemaApplyNanos(String typeName) {
+        final SchemaApply apply = this.schemaApplies.get(typeName);
+        return apply == null ? -1 : apply.lastNanos;
+    }
+
+    public long getTotalSchemaApplyNanos(String typeName) {
+        final SchemaApply apply = this.schemaApplies.get(typeName);
+        return apply == null ? 0 : apply.totalNanos.sum();
+    }
+
+    public long getNumOfSchemaApply(String typeName) {
+        final SchemaApply apply = this.schemaApplies.get(typeName);
+        return apply == null ? 0 : apply.count.sum();
+    }
+
     public void clear() {
         this.failDelta.clear();
         this.successDelta.clear();
+        this.schemaApplies.clear();
     }
 
     public String dumpStats() {
@@ -45,6 +77,14 @@ public class TransitionStats {
                 .append("FAIL DELTA TRANSITION: ").append(String.format("%d time(s)", getNumOfFailTransition()))
                 .append("SUCCESS DELTA TRANSITION: ").append(String.format("%d times(s)", getNumOfSuccessTransition()));
 
+        for (Map.Entry<String, SchemaApply> entry : new TreeMap<>(this.schemaApplies).entrySet()) {
+            SchemaApply apply = entry.getValue();
+            sb.append("\nSCHEMA APPLY ").append(entry.getKey())
+                    .append(": ").append(String.format("%d time(s)", apply.count.sum()))
+                    .append("; last: ").append(Elapsed.toStr(apply.lastNanos))
+                    .append("; total: ").append(Elapsed.toStr(apply.totalNanos.sum()));
+        }
+
         return sb.toString();
     }
 
@@ -52,6 +92,18 @@ public class TransitionStats {
         return new DeltaTransition(transition.fromVersion(), transition.toVersion());
     }
 
+    private static class SchemaApply {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        volatile long lastNanos;
+
+        void record(long elapsedNanos) {
+            this.count.increment();
+            this.totalNanos.add(elapsedNanos);
+            this.lastNanos = elapsedNanos;
+        }
+    }
+
     private static class DeltaTransition {
         long fromVersion;
         long toVersion;
@@ -2,9 +2,28 @@ package org.cobra.consumer.internal;
 
 import org.cobra.commons.CobraConstants;
 import org.cobra.consumer.CobraConsumer;
+import org.cobra.core.objects.BlobDescriptor;
+import org.cobra.core.objects.BlobType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 public class TransitionUpdater {
 
+    private static final Logger log = LoggerFactory.getLogger(TransitionUpdater.class);
+
+    /* besides content, every hop of delta costs a header blob and a round trip */
+    static final long HOP_OVERHEAD_BYTES = 4096;
+
     private final BlobRetrieverFacade retrieverFacade;
 
     public TransitionUpdater(BlobRetrieverFacade blobRetrieverFacade) {
@@ -15,7 +34,174 @@ public class TransitionUpdater {
         if (fromVersion == toVersion)
             return new TransitionPlan();
 
-        return goDeltaPlan(fromVersion, toVersion);
+        // one step forward has no shorter path, so do not bother fetching index
+        if (fromVersion > toVersion || (fromVersion != CobraConstants.VERSION_NULL && toVersion - fromVersion == 1))
+            return goDeltaPlan(fromVersion, toVersion);
+
+        return goIndexedPlan(cheapestPath(retrieverFacade.blobIndex(), fromVersion, toVersion), fromVersion,
+                toVersion);
+    }
+
+    /**
+     * Finds the hops of fewest estimated bytes from fromVersion to toVersion. A hop is a delta, a skip-delta, or a
+     * snapshot when starting from VERSION_NULL. Every hop is charged {@link #HOP_OVERHEAD_BYTES}, so fewer hops win
+     * between paths of similar size.
+     * <p>
+     * Versions need not be contiguous (a timestamp minter leaves gaps), so the search runs over the distinct versions
+     * the index knows of in range rather than over every number between both ends. Deltas missing between two known
+     * versions are one hop of the whole gap, estimated as many deltas of average size as the average version span of
+     * known deltas fits in it.
+     */
+    static List<BlobDescriptor> cheapestPath(Collection<BlobDescriptor> index, long fromVersion, long toVersion) {
+        final TreeSet<Long> knownVersions = new TreeSet<>(List.of(fromVersion, toVersion));
+        final Map<Long, List<BlobDescriptor>> deltasByDestination = new HashMap<>();
+        final Map<Long, List<BlobDescriptor>> jumpsByDestination = new HashMap<>();
+        long totalDeltaSize = 0;
+        long totalDeltaSpan = 0;
+        int numOfDeltas = 0;
+        for (BlobDescriptor descriptor : index) {
+            if (descriptor.toVersion() <= fromVersion || descriptor.toVersion() > toVersion)
+                continue;
+
+            switch (descriptor.blobType()) {
+                case DELTA_BLOB -> {
+                    totalDeltaSize += descriptor.size();
+                    totalDeltaSpan += descriptor.toVersion() - descriptor.fromVersion();
+                    numOfDeltas++;
+                    if (descriptor.fromVersion() < fromVersion)
+                        continue;
+
+                    deltasByDestination.computeIfAbsent(descriptor.toVersion(), x -> new ArrayList<>())
+                            .add(descriptor);
+                    knownVersions.add(descriptor.fromVersion());
+                    knownVersions.add(descriptor.toVersion());
+                }
+                case SKIP_DELTA, SNAPSHOT -> {
+                    if (startOf(descriptor, fromVersion) < fromVersion)
+                        continue;
+
+                    jumpsByDestination.computeIfAbsent(descriptor.toVersion(), x -> new ArrayList<>())
+                            .add(descriptor);
+                    knownVersions.add(startOf(descriptor, fromVersion));
+                    knownVersions.add(descriptor.toVersion());
+                }
+                default -> {
+                    // reversed deltas never move forward
+                }
+            }
+        }
+
+        final long averageDeltaSize = numOfDeltas == 0 ? 0 : totalDeltaSize / numOfDeltas;
+        final long averageDeltaSpan = numOfDeltas == 0 ? 1 : Math.max(1, totalDeltaSpan / numOfDeltas);
+
+        final long[] versions = knownVersions.stream().mapToLong(Long::longValue).toArray();
+        final long[] costs = new long[versions.length];
+        final BlobDescriptor[] hops = new BlobDescriptor[versions.length];
+        for (int i = 1; i < versions.length; i++) {
+            final long version = versions[i];
+            final long previous = versions[i - 1];
+            costs[i] = Long.MAX_VALUE;
+
+            final List<BlobDescriptor> deltas = deltasByDestination.getOrDefault(version, List.of());
+            if (deltas.stream().noneMatch(delta -> delta.fromVersion() == previous)) {
+                final long missing = ceilDiv(version - previous, averageDeltaSpan);
+                final long estimatedSize = saturatedMultiply(missing, averageDeltaSize);
+                costs[i] = saturatedAdd(costs[i - 1], estimatedSize, saturatedMultiply(missing, HOP_OVERHEAD_BYTES));
+                hops[i] = new BlobDescriptor(BlobType.DELTA_BLOB, previous, version, estimatedSize);
+            }
+
+            for (BlobDescriptor hop : deltas) {
+                relax(versions, costs, hops, i, hop, hop.fromVersion());
+            }
+            for (BlobDescriptor jump : jumpsByDestination.getOrDefault(version, List.of())) {
+                relax(versions, costs, hops, i, jump, startOf(jump, fromVersion));
+            }
+        }
+
+        final int last = versions.length - 1;
+        final LinkedList<BlobDescriptor> path = new LinkedList<>();
+        for (int i = last; i > 0; i = Arrays.binarySearch(versions, startOf(hops[i], fromVersion))) {
+            path.addFirst(hops[i]);
+        }
+
+        log.debug("planned {} hops from version {} to version {}; estimated {} bytes", path.size(), fromVersion,
+                toVersion, costs[last]);
+
+        return path;
+    }
+
+    /* takes the hop into versions[i] once it is strictly cheaper, so between equals the earlier one stays */
+    private static void relax(long[] versions, long[] costs, BlobDescriptor[] hops, int i, BlobDescriptor hop,
+                              long start) {
+        final long cost = saturatedAdd(costs[Arrays.binarySearch(versions, start)], hop.size(), HOP_OVERHEAD_BYTES);
+        if (cost < costs[i]) {
+            costs[i] = cost;
+            hops[i] = hop;
+        }
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return x / y + (x % y == 0 ? 0 : 1);
+    }
+
+    /* estimates of a wide gap must not wrap around into a cheap path */
+    private static long saturatedMultiply(long x, long y) {
+        return y != 0 && x > Long.MAX_VALUE / y ? Long.MAX_VALUE : x * y;
+    }
+
+    private static long saturatedAdd(long x, long y, long z) {
+        final long sum = x + y;
+        if (sum < 0)
+            return Long.MAX_VALUE;
+
+        final long total = sum + z;
+        return total < 0 ? Long.MAX_VALUE : total;
+    }
+
+    /* a snapshot only starts from nothing */
+    private static long startOf(BlobDescriptor descriptor, long fromVersion) {
+        if (descriptor.blobType() == BlobType.SNAPSHOT)
+            return fromVersion == CobraConstants.VERSION_NULL ? CobraConstants.VERSION_NULL : Long.MIN_VALUE;
+
+        return descriptor.fromVersion();
+    }
+
+    private TransitionPlan goIndexedPlan(List<BlobDescriptor> path, long fromVersion, long toVersion) {
+        TransitionPlan plan = new TransitionPlan();
+        final List<BlobDescriptor> hops = new ArrayList<>(path);
+
+        long currentVersion = fromVersion;
+        for (int i = 0; i < hops.size(); i++) {
+            final BlobDescriptor hop = hops.get(i);
+            if (hop.blobType() == BlobType.DELTA_BLOB) {
+                // a run of deltas is walked at once, so it is fetched as one plan
+                while (i + 1 < hops.size() && hops.get(i + 1).blobType() == BlobType.DELTA_BLOB) {
+                    i++;
+                }
+
+                final long runEnd = hops.get(i).toVersion();
+                currentVersion = applyDeltaPlan(currentVersion, runEnd, plan);
+                if (currentVersion != runEnd)
+                    return plan; // delta is not available, stop as walking deltas does
+
+                continue;
+            }
+
+            CobraConsumer.Blob blob = hop.blobType() == BlobType.SNAPSHOT
+                    ? retrieverFacade.getSnapshotBlob(hop.toVersion())
+                    : retrieverFacade.getSkipDeltaBlob(hop.fromVersion(), hop.toVersion());
+            if (blob == null) {
+                // pruned since index was taken, walk the rest by deltas
+                applyDeltaPlan(currentVersion, toVersion, plan);
+                return plan;
+            }
+
+            // snapshot and skip-delta carry their own header
+            plan.add(new VersionTransition(hop.toVersion(), null, blob));
+            currentVersion = hop.toVersion();
+        }
+
+        return plan;
     }
 
     private TransitionPlan goDeltaPlan(long fromVersion, long toVersion) {
@@ -30,8 +216,21 @@ public class TransitionUpdater {
         return plan;
     }
 
+    /* deltas missing locally are fetched as plans, held ones are walked one by one */
     private long applyDeltaPlan(long currentVersion, long toVersion, TransitionPlan plan) {
+        final Set<Long> localDeltas = retrieverFacade.canFetchPlan(currentVersion, toVersion)
+                ? retrieverFacade.localDeltaVersions()
+                : null;
         while (currentVersion < toVersion) {
+            if (localDeltas != null && !localDeltas.contains(currentVersion + 1)) {
+                final List<VersionTransition> transitions = retrieverFacade.getDeltaPlan(currentVersion, toVersion);
+                if (!transitions.isEmpty()) {
+                    transitions.forEach(plan::add);
+                    currentVersion = transitions.getLast().getVersion();
+                    continue;
+                }
+            }
+
             currentVersion = includeDelta(plan, currentVersion + 1);
         }
 
@@ -13,4 +13,23 @@ public interface BlobReader {
     void applyDelta(BlobInput blobInput) throws IOException;
 
     void applyDelta(InputStream is) throws IOException;
+
+    /**
+     * Applies a snapshot blob, which carries its own full header followed by the whole state as additions. A
+     * skip-delta shares this layout with a merged header and net mutations, so it is applied the same way.
+     */
+    void applySnapshot(BlobInput blobInput) throws IOException;
+
+    void applySnapshot(InputStream is) throws IOException;
+
+    /**
+     * Gets notified once a schema section of delta has been applied
+     */
+    @FunctionalInterface
+    interface SchemaApplyListener {
+        SchemaApplyListener NONE = (typeName, elapsedNanos) -> {
+        };
+
+        void onSchemaApplied(String typeName, long elapsedNanos);
+    }
 }
@@ -2,9 +2,12 @@ package org.cobra.consumer.read;
 
 import org.cobra.commons.CobraConstants;
 import org.cobra.commons.Jvm;
+import org.cobra.commons.errors.CobraException;
+import org.cobra.commons.threads.CobraThreadExecutor;
 import org.cobra.commons.utils.Elapsed;
 import org.cobra.commons.utils.Utils;
 import org.cobra.core.ModelSchema;
+import org.cobra.core.encoding.Varint;
 import org.cobra.core.memory.MemoryMode;
 import org.cobra.core.objects.BlobInput;
 import org.slf4j.Logger;
@@ -13,17 +16,35 @@ import org.slf4j.LoggerFactory;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 public class BlobReaderImpl implements BlobReader {
 
     private static final Logger log = LoggerFactory.getLogger(BlobReaderImpl.class);
 
+    private static final String PROC_DESC_APPLY_DELTA = "blob_reader_impl.delta";
+    private static final int DELTA_SECTION_BLOCKS = 3;
+    private static final Varint varint = Jvm.varint();
+
     private final MemoryMode memoryMode;
     private final StateReadEngine stateReadEngine;
+    private final SchemaApplyListener schemaApplyListener;
+
+    /* kept for the reader's life, threads of an idle reader time out instead of being created per delta */
+    private CobraThreadExecutor sectionExecutor;
 
     public BlobReaderImpl(MemoryMode memoryMode, StateReadEngine stateReadEngine) {
+        this(memoryMode, stateReadEngine, SchemaApplyListener.NONE);
+    }
+
+    public BlobReaderImpl(MemoryMode memoryMode, StateReadEngine stateReadEngine,
+                          SchemaApplyListener schemaApplyListener) {
         this.memoryMode = memoryMode;
         this.stateReadEngine = stateReadEngine;
+        this.schemaApplyListener = schemaApplyListener;
     }
 
     @Override
@@ -48,6 +69,22 @@ public class BlobReaderImpl implements BlobReader {
         applyDelta(input);
     }
 
+    @Override
+    public void applySnapshot(BlobInput blobInput) throws IOException {
+        final long start = System.nanoTime();
+
+        doReadHeader(blobInput);
+        doApplyDelta(blobInput);
+
+        log.debug("applied snapshot took {}", Elapsed.toStr(System.nanoTime() - start));
+    }
+
+    @Override
+    public void applySnapshot(InputStream is) throws IOException {
+        BlobInput input = BlobInput.serial(is);
+        applySnapshot(input);
+    }
+
     private void doApplyHeader(BlobInput blobInput) throws IOException {
         final long start = System.nanoTime();
 
@@ -61,15 +98,80 @@ public class BlobReaderImpl implements BlobReader {
 
         readAndCheckBlobRandomizedTag(blobInput);
 
-        int numSchemas = blobInput.readInt();
+        final int numSchemas = blobInput.readInt();
+        final long[] sectionLengths = new long[numSchemas];
         for (int i = 0; i < numSchemas; i++) {
-            readSchemaStateDelta(blobInput);
+            sectionLengths[i] = blobInput.readLong();
+        }
+
+        if (numSchemas > 1 && blobInput.isSeekable()) {
+            applySchemaSectionsConcurrently(blobInput, sectionLengths);
+        } else {
+            for (final long sectionLength : sectionLengths) {
+                readSchemaStateDelta(blobInput, sectionLength);
+            }
         }
 
-        final long elapsed = System.nanoTime() - start;
         log.debug("applied delta content took {}", Elapsed.toStr(System.nanoTime() - start));
     }
 
+    /**
+     * Schemas own their keyspace, so every section is applied on its own input, located by the offset table
+     */
+    private void applySchemaSectionsConcurrently(BlobInput blobInput, long[] sectionLengths) throws IOException {
+        final CobraThreadExecutor executor = sectionExecutor();
+        final List<Future<?>> futures = new ArrayList<>(sectionLengths.length);
+
+        long sectionOffset = blobInput.getCursor();
+        for (final long sectionLength : sectionLengths) {
+            final long offset = sectionOffset;
+            futures.add(executor.submit(() -> {
+                readSchemaStateDeltaAt(blobInput, offset, sectionLength);
+                return null;
+            }));
+            sectionOffset += sectionLength;
+        }
+
+        for (Future<?> future : futures) {
+            awaitSection(future);
+        }
+
+        blobInput.seek(sectionOffset);
+    }
+
+    private synchronized CobraThreadExecutor sectionExecutor() {
+        if (sectionExecutor == null) {
+            sectionExecutor = CobraThreadExecutor.of(Runtime.getRuntime().availableProcessors(), getClass(),
+                    PROC_DESC_APPLY_DELTA);
+            sectionExecutor.allowCoreThreadTimeOut(true);
+        }
+
+        return sectionExecutor;
+    }
+
+    private void readSchemaStateDeltaAt(BlobInput blobInput, long offset, long sectionLength) throws IOException {
+        try (BlobInput sectionInput = blobInput.duplicate()) {
+            sectionInput.seek(offset);
+            readSchemaStateDelta(sectionInput, sectionLength);
+        }
+    }
+
+    private static void awaitSection(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CobraException("Interrupted while applying delta", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioe)
+                throw ioe;
+            if (e.getCause() instanceof RuntimeException re)
+                throw re;
+
+            throw new CobraException(e.getCause());
+        }
+    }
+
     private void readAndCheckBlobRandomizedTag(BlobInput blobInput) throws IOException {
         long inputOriginRandomizedTag = blobInput.readLong();
         long inputNextRandomizedTag = blobInput.readLong();
@@ -80,13 +182,36 @@ public class BlobReaderImpl implements BlobReader {
 //        }
     }
 
-    private void readSchemaStateDelta(BlobInput blobInput) throws IOException {
+    /**
+     * @param sectionLength length of the section by the offset table, a section of unknown schema is seeked over
+     */
+    private void readSchemaStateDelta(BlobInput blobInput, long sectionLength) throws IOException {
+        final long start = System.nanoTime();
+        final long sectionStart = blobInput.isSeekable() ? blobInput.getCursor() : -1;
+
         ModelSchema modelSchema = ModelSchema.readFrom(blobInput);
-        SchemaStateReader schemaStateReader = stateReadEngine.getSchemaStateReader(modelSchema.getClazzName());
-        if (schemaStateReader != null) {
-            schemaStateReader.applyDelta(blobInput);
+        if (!stateReadEngine.consumerContext().isRegistered(modelSchema.getClazzName())) {
+            if (sectionStart >= 0)
+                blobInput.seek(sectionStart + sectionLength);
+            else
+                skipSchemaStateDelta(blobInput);
+            return;
+        }
+
+        stateReadEngine.getSchemaStateReader(modelSchema.getClazzName()).applyDelta(blobInput);
+
+        final long elapsed = System.nanoTime() - start;
+        schemaApplyListener.onSchemaApplied(modelSchema.getClazzName(), elapsed);
+        log.debug("DELTA read schema: {}; took: {}", modelSchema.getClazzName(), Elapsed.toStr(elapsed));
+    }
+
+    /* a stream can not seek: mutation_count, then blocks of [varint_len | bytes] */
+    private static void skipSchemaStateDelta(BlobInput blobInput) throws IOException {
+        varint.readVarInt(blobInput);
+        for (int i = 0; i < DELTA_SECTION_BLOCKS; i++) {
+            final int len = varint.readVarInt(blobInput);
+            blobInput.skipNBytes(len);
         }
-        log.debug("DELTA read schema: {}", modelSchema.getClazzName());
     }
 
     private void doReadHeader(BlobInput blobInput) throws IOException {
@@ -115,6 +240,9 @@ public class BlobReaderImpl implements BlobReader {
         final int numSchemas = blobInput.readInt();
         for (int i = 0; i < numSchemas; i++) {
             ModelSchema modelSchema = ModelSchema.readFrom(blobInput);
+            if (stateReadEngine.consumerContext().isRegistered(modelSchema.getClazzName()))
+                continue; // keep keyspace of a known schema
+
             stateReadEngine.consumerContext().register(new SchemaStateReaderImpl(modelSchema, stateReadEngine));
         }
     }
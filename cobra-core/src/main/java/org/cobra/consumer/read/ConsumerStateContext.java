@@ -1,11 +1,14 @@
 package org.cobra.consumer.read;
 
 import org.cobra.core.memory.datalocal.RecordRepository;
+import org.cobra.core.memory.datalocal.SlabMover;
 import org.cobra.core.serialization.RecordSerde;
 import org.cobra.core.serialization.RecordSerdeImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -15,22 +18,140 @@ public class ConsumerStateContext {
 
     private final RecordSerde serde = new RecordSerdeImpl();
     private final Map<String, SchemaStateReader> schemaStateReaderMap = new ConcurrentHashMap<>();
-    private final RecordRepository localData = new RecordRepository();
+    private final Map<String, ObjectCache> objectCaches = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Integer> classRegistrations = new ConcurrentHashMap<>();
+    private final int objectCacheCapacity;
+    private final SlabMover slabMover;
+    private final boolean adaptiveSlabClasses;
+
+    public ConsumerStateContext() {
+        this(0);
+    }
+
+    public ConsumerStateContext(int objectCacheCapacity) {
+        this(objectCacheCapacity, null);
+    }
+
+    public ConsumerStateContext(int objectCacheCapacity, SlabMover slabMover) {
+        this(objectCacheCapacity, slabMover, false);
+    }
+
+    /**
+     * @param objectCacheCapacity capacity of object cache per schema, 0 to disable caching
+     * @param slabMover           rebalancer of local data of every registered schema, null to disable
+     * @param adaptiveSlabClasses true to fit slab-classes of each schema to record sizes of its first applied blob
+     */
+    public ConsumerStateContext(int objectCacheCapacity, SlabMover slabMover, boolean adaptiveSlabClasses) {
+        if (objectCacheCapacity < 0)
+            throw new IllegalArgumentException("Negative object cache capacity: " + objectCacheCapacity);
+
+        this.objectCacheCapacity = objectCacheCapacity;
+        this.slabMover = slabMover;
+        this.adaptiveSlabClasses = adaptiveSlabClasses;
+    }
 
     public void register(SchemaStateReader stateReader) {
         putSchemaReadIfAbsent(stateReader);
     }
 
+    public boolean isRegistered(String typeName) {
+        return schemaStateReaderMap.containsKey(typeName);
+    }
+
     public void registerClassRegistration(Class<?> clazz, int id) {
         serde.register(clazz, id);
+        classRegistrations.put(clazz, id);
+    }
+
+    /**
+     * @return ids of classes registered by headers so far
+     */
+    public Map<Class<?>, Integer> classRegistrations() {
+        return Collections.unmodifiableMap(classRegistrations);
     }
 
     public RecordSerde serde() {
         return serde;
     }
 
-    public RecordRepository localData() {
-        return localData;
+    public boolean isAdaptiveSlabClasses() {
+        return adaptiveSlabClasses;
+    }
+
+    /**
+     * @return local data of a schema, or null if schema has not been seen yet
+     */
+    public RecordRepository localData(String typeName) {
+        final SchemaStateReader schemaStateReader = schemaStateReaderMap.get(typeName);
+        return schemaStateReader == null ? null : schemaStateReader.localData();
+    }
+
+    public Collection<SchemaStateReader> schemaReads() {
+        return schemaStateReaderMap.values();
+    }
+
+    public <T> T readObject(Class<T> clazz, String key) {
+        return readObject(clazz.getTypeName(), key);
+    }
+
+    /**
+     * Reads an object of a key in keyspace of a schema, through its object cache if enabled
+     *
+     * @return deserialized object, or null if key (or schema) does not exist
+     */
+    public <T> T readObject(String typeName, String key) {
+        final RecordRepository localData = localData(typeName);
+        if (localData == null)
+            return null;
+
+        final ObjectCache cache = objectCaches.get(typeName);
+        if (cache == null)
+            return localData.getObject(key, serde);
+
+        final T cached = cache.get(key);
+        if (cached != null)
+            return cached;
+
+        final long stamp = cache.stamp();
+        final T result = localData.getObject(key, serde);
+        if (result != null)
+            cache.put(key, result, stamp);
+
+        return result;
+    }
+
+    /**
+     * Reads an object of a key without knowing its schema, by looking up keyspaces one by one; if several schemas
+     * have the same key, any of them might be returned
+     *
+     * @return deserialized object, or null if key does not exist
+     */
+    public <T> T readObject(String key) {
+        for (String typeName : schemaStateReaderMap.keySet()) {
+            final T result = readObject(typeName, key);
+            if (result != null)
+                return result;
+        }
+
+        return null;
+    }
+
+    /**
+     * Invalidates cached object of a key that has just been touched by a delta of a schema
+     */
+    public void invalidate(String typeName, byte[] key) {
+        final ObjectCache cache = objectCaches.get(typeName);
+        if (cache == null)
+            return;
+
+        cache.invalidate(new String(key));
+    }
+
+    /**
+     * @return object cache of a schema, or null if caching is disabled
+     */
+    public ObjectCache objectCache(String typeName) {
+        return objectCaches.get(typeName);
     }
 
     public SchemaStateReader schemaRead(String typeName) {
@@ -43,7 +164,11 @@ public class ConsumerStateContext {
     }
 
     private void putSchemaReadIfAbsent(SchemaStateReader schemaStateReader) {
-        schemaStateReaderMap.putIfAbsent(schemaStateReader.getSchema().getClazzName(),
-                schemaStateReader);
+        final String typeName = schemaStateReader.getSchema().getClazzName();
+        if (schemaStateReaderMap.putIfAbsent(typeName, schemaStateReader) == null && this.slabMover != null)
+            this.slabMover.register(schemaStateReader.localData());
+
+        if (this.objectCacheCapacity > 0)
+            objectCaches.computeIfAbsent(typeName, ignored -> new ObjectCache(objectCacheCapacity));
     }
 }
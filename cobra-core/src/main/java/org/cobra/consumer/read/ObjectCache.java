@@ -0,0 +1,189 @@
+package org.cobra.consumer.read;
+
+import org.cobra.commons.utils.Utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of deserialized objects of a schema, keyed by record key; evicts with CLOCK (second-chance).
+ * <p>
+ * A hit only marks the entry as referenced, so reads never lock. Inserting, evicting and invalidating are
+ * serialized. Entries are invalidated by keys of applied deltas; an insert carries the stamp taken before the
+ * record was read, and is rejected if any invalidation happened since then, so a stale object never gets cached.
+ */
+public class ObjectCache {
+
+    private static final int NO_SLOT = -1;
+
+    private final int capacity;
+    private final Map<String, Entry> index;
+    private final Entry[] clock;
+    private final int[] freeSlots;
+    private final AtomicLong epoch;
+
+    private int freeSize;
+    private int hand;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public ObjectCache(int capacity) {
+        this(capacity, new AtomicLong());
+    }
+
+    /**
+     * @param capacity maximum number of cached objects
+     * @param epoch    invalidation epoch, can be shared between caches whose keys might be invalidated together
+     */
+    public ObjectCache(int capacity, AtomicLong epoch) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Illegal capacity %d".formatted(capacity));
+
+        this.capacity = capacity;
+        this.index = new ConcurrentHashMap<>(capacity);
+        this.clock = new Entry[capacity];
+        this.freeSlots = new int[capacity];
+        this.epoch = epoch;
+
+        for (int i = 0; i < capacity; i++)
+            this.freeSlots[i] = capacity - 1 - i;
+        this.freeSize = capacity;
+    }
+
+    public <T> T get(String key) {
+        final Entry entry = this.index.get(key);
+        if (entry == null) {
+            this.misses.increment();
+            return null;
+        }
+
+        entry.referenced = true;
+        this.hits.increment();
+        return Utils.uncheckedCast(entry.value);
+    }
+
+    /**
+     * @return stamp must be taken before reading the record that is going to be put
+     */
+    public long stamp() {
+        return this.epoch.get();
+    }
+
+    /**
+     * Puts an object if no invalidation happened since the stamp was taken
+     *
+     * @return true if object has been cached
+     */
+    public synchronized boolean put(String key, Object value, long stamp) {
+        if (this.epoch.get() != stamp)
+            return false;
+
+        final Entry existed = this.index.get(key);
+        if (existed != null) {
+            existed.value = value;
+            return true;
+        }
+
+        final int slot = this.freeSize > 0 ? this.freeSlots[--this.freeSize] : evict();
+        final Entry entry = new Entry(key, value, slot);
+        this.clock[slot] = entry;
+        this.index.put(key, entry);
+
+        return true;
+    }
+
+    public synchronized void invalidate(String key) {
+        this.epoch.incrementAndGet();
+
+        final Entry entry = this.index.remove(key);
+        if (entry == null)
+            return;
+
+        this.clock[entry.slot] = null;
+        this.freeSlots[this.freeSize++] = entry.slot;
+        this.invalidations.increment();
+    }
+
+    public synchronized void clear() {
+        this.epoch.incrementAndGet();
+        this.index.clear();
+        for (int i = 0; i < this.capacity; i++) {
+            this.clock[i] = null;
+            this.freeSlots[i] = this.capacity - 1 - i;
+        }
+        this.freeSize = this.capacity;
+    }
+
+    public int size() {
+        return this.index.size();
+    }
+
+    public int capacity() {
+        return this.capacity;
+    }
+
+    public long hitCount() {
+        return this.hits.sum();
+    }
+
+    public long missCount() {
+        return this.misses.sum();
+    }
+
+    public long evictionCount() {
+        return this.evictions.sum();
+    }
+
+    public long invalidationCount() {
+        return this.invalidations.sum();
+    }
+
+    public double hitRatio() {
+        final long hitCount = hitCount();
+        final long requests = hitCount + missCount();
+        return requests == 0 ? 0 : (double) hitCount / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "ObjectCache(size=%d, capacity=%d, hits=%d, misses=%d, evictions=%d, invalidations=%d)"
+                .formatted(size(), this.capacity, hitCount(), missCount(), evictionCount(), invalidationCount());
+    }
+
+    /* called when clock is full, so every slot holds an entry */
+    private int evict() {
+        int slot = NO_SLOT;
+        while (slot == NO_SLOT) {
+            final Entry candidate = this.clock[this.hand];
+            if (candidate.referenced) {
+                candidate.referenced = false; // second chance
+            } else {
+                slot = this.hand;
+                this.index.remove(candidate.key);
+                this.evictions.increment();
+            }
+
+            this.hand = (this.hand + 1) % this.capacity;
+        }
+
+        return slot;
+    }
+
+    private static final class Entry {
+        final String key;
+        final int slot;
+        volatile Object value;
+        volatile boolean referenced;
+
+        Entry(String key, Object value, int slot) {
+            this.key = key;
+            this.value = value;
+            this.slot = slot;
+        }
+    }
+}
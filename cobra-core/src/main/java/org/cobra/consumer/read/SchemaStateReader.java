@@ -1,6 +1,7 @@
 package org.cobra.consumer.read;
 
 import org.cobra.core.ModelSchema;
+import org.cobra.core.memory.datalocal.RecordRepository;
 import org.cobra.core.objects.BlobInput;
 
 import java.io.IOException;
@@ -8,5 +9,10 @@ import java.io.IOException;
 public interface SchemaStateReader {
     ModelSchema getSchema();
 
+    /**
+     * @return keyspace (index and arena) owned by this schema
+     */
+    RecordRepository localData();
+
     void applyDelta(BlobInput blobInput) throws IOException;
 }
@@ -5,19 +5,25 @@ import org.cobra.commons.utils.Elapsed;
 import org.cobra.commons.utils.Utils;
 import org.cobra.core.ModelSchema;
 import org.cobra.core.encoding.Varint;
+import org.cobra.core.memory.datalocal.RecordRepository;
 import org.cobra.core.objects.BlobInput;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 public class SchemaStateReaderImpl implements SchemaStateReader {
 
     private static final Logger log = LoggerFactory.getLogger(SchemaStateReaderImpl.class);
     private static final Varint varint = Jvm.varint();
 
+    /* records sampled from the first applied blob to fit slab-classes, if adaptive slab-classes are enabled */
+    static final int MAX_SLAB_SAMPLES = 10_000;
+
     protected final ModelSchema modelSchema;
     protected final StateReadEngine stateReadEngine;
+    protected final RecordRepository localData = new RecordRepository();
 
     public SchemaStateReaderImpl(ModelSchema modelSchema, StateReadEngine stateReadEngine) {
         this.modelSchema = modelSchema;
@@ -29,6 +35,11 @@ public class SchemaStateReaderImpl implements SchemaStateReader {
         return modelSchema;
     }
 
+    @Override
+    public RecordRepository localData() {
+        return localData;
+    }
+
     @Override
     public void applyDelta(BlobInput blobInput) throws IOException {
         readDeltaContent(blobInput);
@@ -54,6 +65,9 @@ public class SchemaStateReaderImpl implements SchemaStateReader {
         final int lenOfValues = varint.readVarInt(blobInput);
         long valueOffset = blobInput.getCursor();
 
+        if (lenOfKeys > 0 && stateReadEngine.consumerContext().isAdaptiveSlabClasses() && localData.isPristine())
+            adaptSlabClasses(blobInput, keyOffset, lenOfKeys, valueOffset);
+
         int position = 0;
         int count = 0; // todo: stats this
         while (position < lenOfKeys) {
@@ -64,17 +78,42 @@ public class SchemaStateReaderImpl implements SchemaStateReader {
             position += skips;
 
             blobInput.seek(valueOffset);
-            byte[] value = readBlock(blobInput);
-            valueOffset += varint.sizeOfVarint(value.length) + value.length;
+            int lenOfValue = varint.readVarInt(blobInput);
+            valueOffset += varint.sizeOfVarint(lenOfValue) + lenOfValue;
 
             count++;
 
-            stateReadEngine.addObject(key, value);
+            localData.putObject(key, blobInput, lenOfValue); // copied straight from blob into slab
+            stateReadEngine.consumerContext().invalidate(modelSchema.getClazzName(), key);
         }
 
         log.debug("read delta add values count {}", count);
     }
 
+    /* only lengths are read, the loop of additions re-seeks offsets of every record anyway */
+    private void adaptSlabClasses(BlobInput blobInput, long keyOffset, int lenOfKeys, long valueOffset)
+            throws IOException {
+        final int[] footprints = new int[MAX_SLAB_SAMPLES];
+        int n = 0;
+        int position = 0;
+        while (position < lenOfKeys && n < MAX_SLAB_SAMPLES) {
+            blobInput.seek(keyOffset);
+            final int lenOfKey = varint.readVarInt(blobInput);
+            final int skips = varint.sizeOfVarint(lenOfKey) + lenOfKey;
+            keyOffset += skips;
+            position += skips;
+
+            blobInput.seek(valueOffset);
+            final int lenOfValue = varint.readVarInt(blobInput);
+            valueOffset += varint.sizeOfVarint(lenOfValue) + lenOfValue;
+
+            footprints[n++] = RecordRepository.footprintOf(lenOfKey, lenOfValue);
+        }
+
+        if (localData.adaptSlabClasses(Arrays.copyOf(footprints, n)))
+            log.debug("adapted slab-classes of {} to {} sampled records", modelSchema.getClazzName(), n);
+    }
+
     private void readDeltaRemoval(BlobInput blobInput) throws IOException {
         final int lenOfKeys = varint.readVarInt(blobInput);
         int position = 0;
@@ -85,7 +124,8 @@ public class SchemaStateReaderImpl implements SchemaStateReader {
             position += varint.sizeOfVarint(key.length) + key.length;
             count++;
 
-            stateReadEngine.removeObject(key);
+            localData.removeObject(key);
+            stateReadEngine.consumerContext().invalidate(modelSchema.getClazzName(), key);
         }
 
         log.debug("read delta removal count {}", count);
@@ -94,7 +134,7 @@ public class SchemaStateReaderImpl implements SchemaStateReader {
     private static byte[] readBlock(BlobInput blobInput) throws IOException {
         int needLen = varint.readVarInt(blobInput);
         byte[] block = new byte[needLen];
-        blobInput.readNBytes(block, needLen);
+        blobInput.readFully(block, needLen);
 
         return block;
     }
@@ -35,14 +35,6 @@ public class StateReadEngine {
         return consumerStateContext;
     }
 
-    public void addObject(byte[] key, byte[] representation) {
-        consumerStateContext.localData().putObject(key, representation);
-    }
-
-    public void removeObject(byte[] key) {
-        consumerStateContext.localData().removeObject(key);
-    }
-
     public SchemaStateReader getSchemaStateReader(String clazzName) {
         return consumerStateContext.schemaRead(clazzName);
     }
@@ -120,7 +120,7 @@ public class NativeBytesStore implements BytesStore {
             memory.copyMemory(translate(pos), array, offset, copiesLoop);
 
             len -= copiesLoop;
-            pos += addressOffset;
+            pos += copiesLoop;
             offset += copiesLoop;
         }
     }
@@ -172,13 +172,13 @@ public class NativeBytesStore implements BytesStore {
         int i = 0;
         while (i < mustReads) {
             final int addressOffset = (int) (pos & this.bitmaskAlign);
-            final int copiesLoop = Math.min(len, addressLen - addressOffset);
+            final int copiesLoop = Math.min(mustReads - i, addressLen - addressOffset);
 
             memory.copyMemory(null, translate(pos),
-                    dest, OSMemory.ARRAY_BYTE_BASE_OFFSET + offset, copiesLoop);
+                    dest, OSMemory.ARRAY_BYTE_BASE_OFFSET + offset + i, copiesLoop);
 
             i += copiesLoop;
-            pos += addressOffset;
+            pos += copiesLoop;
         }
 
         return mustReads;
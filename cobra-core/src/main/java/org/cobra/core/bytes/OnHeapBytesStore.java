@@ -195,9 +195,9 @@ public class OnHeapBytesStore implements BytesStore {
         while (i < needReads) {
             final TranslatedAddress address = translate(pos);
             final byte[] segment = this.arena[address.index()];
-            final int copiesLoop = Math.min(needReads, segment.length - address.offset());
+            final int copiesLoop = Math.min(needReads - i, segment.length - address.offset());
 
-            memory.copyMemory(segment, address.offset(), dest, i, copiesLoop);
+            memory.copyMemory(segment, address.offset(), dest, offset + i, copiesLoop);
 
             i += copiesLoop;
             pos += copiesLoop;
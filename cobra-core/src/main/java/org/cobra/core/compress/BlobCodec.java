@@ -0,0 +1,31 @@
+package org.cobra.core.compress;
+
+import org.cobra.commons.errors.CobraException;
+
+/**
+ * Codec of blocks of a compressed blob, identified by a byte so a reader needs no configuration to pick it
+ */
+public enum BlobCodec {
+    NONE(0),
+    DEFLATE(1),
+    ;
+
+    private final byte id;
+
+    BlobCodec(int id) {
+        this.id = (byte) id;
+    }
+
+    public byte id() {
+        return this.id;
+    }
+
+    public static BlobCodec of(int id) {
+        for (BlobCodec codec : values()) {
+            if (codec.id == id)
+                return codec;
+        }
+
+        throw new CobraException("Unknown blob codec id %d".formatted(id));
+    }
+}
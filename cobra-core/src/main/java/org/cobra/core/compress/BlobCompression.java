@@ -0,0 +1,134 @@
+package org.cobra.core.compress;
+
+import org.cobra.commons.errors.CobraException;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Adler32;
+
+/**
+ * Helpers of block-compressed blobs: detecting, decoding, inflating into a mappable file and training a dictionary
+ */
+public final class BlobCompression {
+
+    /* "CBZ1" */
+    public static final int MAGIC = 0x43425A31;
+    public static final int NO_DICTIONARY = 0;
+
+    private static final int GRAM_BYTES = Long.BYTES;
+
+    private BlobCompression() {
+    }
+
+    /**
+     * @return id of dictionary (adler32 of its content), or {@link #NO_DICTIONARY} if there is none
+     */
+    public static int dictionaryId(byte[] dictionary) {
+        if (dictionary == null || dictionary.length == 0)
+            return NO_DICTIONARY;
+
+        final Adler32 adler32 = new Adler32();
+        adler32.update(dictionary);
+
+        return (int) adler32.getValue();
+    }
+
+    /**
+     * @return dictionaries keyed by their id
+     */
+    public static Map<Integer, byte[]> dictionaries(byte[]... dictionaries) {
+        final Map<Integer, byte[]> result = new HashMap<>();
+        for (byte[] dictionary : dictionaries) {
+            if (dictionaryId(dictionary) != NO_DICTIONARY)
+                result.put(dictionaryId(dictionary), dictionary);
+        }
+
+        return result;
+    }
+
+    public static boolean isCompressed(Path path) throws IOException {
+        try (DataInputStream dis = new DataInputStream(Files.newInputStream(path))) {
+            return Files.size(path) >= Integer.BYTES && dis.readInt() == MAGIC;
+        }
+    }
+
+    /**
+     * @return stream of raw content, a blob which is not compressed is passed through
+     */
+    public static InputStream decoding(InputStream is, Map<Integer, byte[]> dictionaries) throws IOException {
+        final BufferedInputStream bis = new BufferedInputStream(is);
+        bis.mark(Integer.BYTES);
+        final byte[] head = bis.readNBytes(Integer.BYTES);
+        bis.reset();
+
+        if (head.length == Integer.BYTES && ByteBuffer.wrap(head).getInt() == MAGIC)
+            return new BlockCompressedInputStream(bis, dictionaries);
+
+        return bis;
+    }
+
+    /**
+     * Inflates a compressed blob block by block into a file, which can be mapped for random access. The file only
+     * appears once it is complete.
+     */
+    public static void inflate(Path source, Path dest, Map<Integer, byte[]> dictionaries) throws IOException {
+        final Path tmp = dest.resolveSibling(dest.getFileName() + ".tmp");
+        try (
+                InputStream is = decoding(Files.newInputStream(source), dictionaries);
+                OutputStream os = Files.newOutputStream(tmp)
+        ) {
+            is.transferTo(os);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+
+        Files.move(tmp, dest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Trains a preset dictionary from sample blobs: the most frequent 8-byte sequences, least frequent first as
+     * deflate reaches the end of dictionary with shorter distances.
+     *
+     * @param maxSize maximum size in bytes of dictionary, deflate only looks back 32KB
+     */
+    public static byte[] trainDictionary(Collection<byte[]> samples, int maxSize) {
+        if (maxSize < GRAM_BYTES)
+            throw new CobraException("Illegal dictionary size %d".formatted(maxSize));
+
+        final Map<Long, Integer> counts = new HashMap<>();
+        for (byte[] sample : samples) {
+            final ByteBuffer buffer = ByteBuffer.wrap(sample);
+            for (int i = 0; i + GRAM_BYTES <= sample.length; i++) {
+                counts.merge(buffer.getLong(i), 1, Integer::sum);
+            }
+        }
+
+        final List<Map.Entry<Long, Integer>> grams = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : counts.entrySet()) {
+            if (entry.getValue() > 1)
+                grams.add(entry);
+        }
+        grams.sort(Map.Entry.<Long, Integer>comparingByValue().reversed());
+
+        final int numGrams = Math.min(grams.size(), maxSize / GRAM_BYTES);
+        final ByteBuffer dictionary = ByteBuffer.allocate(numGrams * GRAM_BYTES);
+        for (int i = numGrams - 1; i >= 0; i--) {
+            dictionary.putLong(grams.get(i).getKey());
+        }
+
+        return dictionary.array();
+    }
+}
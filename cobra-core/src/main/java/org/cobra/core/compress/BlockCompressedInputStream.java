@@ -0,0 +1,147 @@
+package org.cobra.core.compress;
+
+import org.cobra.commons.errors.CobraException;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads a blob written by {@link BlockCompressedOutputStream}, inflating a block at a time
+ */
+public class BlockCompressedInputStream extends InputStream {
+
+    private final DataInputStream in;
+    private final Inflater inflater;
+    private final byte[] dictionary;
+
+    private byte[] block = new byte[0];
+    private byte[] stored = new byte[0];
+    private int limit;
+    private int position;
+    private boolean isEnded = false;
+
+    /**
+     * @param dictionaries known dictionaries by their id, see {@link BlobCompression#dictionaryId(byte[])}
+     */
+    public BlockCompressedInputStream(InputStream in, Map<Integer, byte[]> dictionaries) throws IOException {
+        this.in = new DataInputStream(in);
+
+        if (this.in.readInt() != BlobCompression.MAGIC)
+            throw new CobraException("Blob is not block-compressed");
+
+        final BlobCodec codec = BlobCodec.of(this.in.readByte());
+        final int dictionaryId = this.in.readInt();
+        this.in.readInt(); // block size, blocks carry their own length
+
+        this.dictionary = dictionaryId == BlobCompression.NO_DICTIONARY ? null : dictionaries.get(dictionaryId);
+        if (dictionaryId != BlobCompression.NO_DICTIONARY && this.dictionary == null)
+            throw new CobraException("Missing compression dictionary %d".formatted(dictionaryId));
+
+        this.inflater = codec == BlobCodec.DEFLATE ? new Inflater(true) : null;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureBlock())
+            return -1;
+
+        return this.block[this.position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        if (!ensureBlock())
+            return -1;
+
+        final int n = Math.min(len, this.limit - this.position);
+        System.arraycopy(this.block, this.position, b, off, n);
+        this.position += n;
+
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return this.limit - this.position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.inflater != null)
+            this.inflater.end();
+
+        this.in.close();
+    }
+
+    private boolean ensureBlock() throws IOException {
+        while (this.position == this.limit) {
+            if (this.isEnded)
+                return false;
+
+            readBlock();
+        }
+
+        return true;
+    }
+
+    private void readBlock() throws IOException {
+        final int rawLen = this.in.readInt();
+        if (rawLen == 0) {
+            this.isEnded = true;
+            return;
+        }
+
+        final BlobCodec blockCodec = BlobCodec.of(this.in.readByte());
+        final int storedLen = this.in.readInt();
+        if (rawLen < 0 || storedLen < 0)
+            throw new CobraException("Corrupted block of compressed blob");
+
+        if (this.block.length < rawLen)
+            this.block = new byte[rawLen];
+
+        if (blockCodec == BlobCodec.NONE) {
+            this.in.readFully(this.block, 0, rawLen);
+        } else {
+            // raw inflater may need an extra dummy byte after the stored block
+            if (this.stored.length < storedLen + 1)
+                this.stored = new byte[storedLen + 1];
+
+            this.in.readFully(this.stored, 0, storedLen);
+            inflateBlock(storedLen, rawLen);
+        }
+
+        this.position = 0;
+        this.limit = rawLen;
+    }
+
+    private void inflateBlock(int storedLen, int rawLen) throws IOException {
+        if (this.inflater == null)
+            throw new CobraException("Block is deflated but blob codec is not");
+
+        this.inflater.reset();
+        if (this.dictionary != null)
+            this.inflater.setDictionary(this.dictionary);
+
+        this.stored[storedLen] = 0;
+        this.inflater.setInput(this.stored, 0, storedLen + 1);
+        try {
+            int len = 0;
+            while (len < rawLen) {
+                final int n = this.inflater.inflate(this.block, len, rawLen - len);
+                if (n == 0 && (this.inflater.finished() || this.inflater.needsInput()))
+                    throw new EOFException("Unexpected end of compressed block");
+
+                len += n;
+            }
+        } catch (DataFormatException e) {
+            throw new CobraException(e);
+        }
+    }
+}
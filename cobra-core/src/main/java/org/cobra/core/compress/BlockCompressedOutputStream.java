@@ -0,0 +1,126 @@
+package org.cobra.core.compress;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a compressed blob as independent blocks.
+ * <p>
+ * Layout: [int magic][byte codec][int dictionary_id][int block_size], then blocks of
+ * [int raw_len][byte block_codec][int stored_len][stored bytes], terminated by a raw_len of 0. A block that does
+ * not shrink is stored as is.
+ */
+public class BlockCompressedOutputStream extends OutputStream {
+
+    private final DataOutputStream out;
+    private final BlobCodec codec;
+    private final Deflater deflater;
+    private final byte[] dictionary;
+    private final byte[] block;
+
+    private byte[] compressed;
+    private int position;
+    private boolean isClosed = false;
+
+    public BlockCompressedOutputStream(OutputStream out, BlobCodec codec, int level, byte[] dictionary,
+                                       int blockSize) throws IOException {
+        if (blockSize <= 0)
+            throw new IllegalArgumentException("Illegal block size %d".formatted(blockSize));
+
+        this.out = new DataOutputStream(out);
+        this.codec = codec;
+        this.deflater = codec == BlobCodec.DEFLATE ? new Deflater(level, true) : null;
+        this.dictionary = dictionary;
+        this.block = new byte[blockSize];
+        this.compressed = new byte[blockSize];
+
+        this.out.writeInt(BlobCompression.MAGIC);
+        this.out.writeByte(codec.id());
+        this.out.writeInt(BlobCompression.dictionaryId(dictionary));
+        this.out.writeInt(blockSize);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (this.position == this.block.length)
+            writeBlock();
+
+        this.block[this.position++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (this.position == this.block.length)
+                writeBlock();
+
+            final int n = Math.min(len, this.block.length - this.position);
+            System.arraycopy(b, off, this.block, this.position, n);
+            this.position += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /* a partial block is only cut on close, flushing must not shrink blocks */
+    @Override
+    public void flush() throws IOException {
+        this.out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.isClosed)
+            return;
+
+        this.isClosed = true;
+        try {
+            if (this.position > 0)
+                writeBlock();
+
+            this.out.writeInt(0);
+            this.out.close();
+        } finally {
+            if (this.deflater != null)
+                this.deflater.end();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        final int storedLen = this.deflater == null ? this.position : deflateBlock();
+        final boolean isShrunk = storedLen < this.position;
+
+        this.out.writeInt(this.position);
+        this.out.writeByte(isShrunk ? this.codec.id() : BlobCodec.NONE.id());
+        this.out.writeInt(isShrunk ? storedLen : this.position);
+        this.out.write(isShrunk ? this.compressed : this.block, 0, isShrunk ? storedLen : this.position);
+
+        this.position = 0;
+    }
+
+    private int deflateBlock() {
+        this.deflater.reset();
+        if (this.dictionary != null)
+            this.deflater.setDictionary(this.dictionary);
+
+        this.deflater.setInput(this.block, 0, this.position);
+        this.deflater.finish();
+
+        int len = 0;
+        while (!this.deflater.finished()) {
+            if (len == this.compressed.length) {
+                if (len >= this.position)
+                    return this.position; // does not shrink, store as is
+
+                this.compressed = Arrays.copyOf(this.compressed, len * 2);
+            }
+
+            len += this.deflater.deflate(this.compressed, len, this.compressed.length - len);
+        }
+
+        return len;
+    }
+}
@@ -0,0 +1 @@
+package org.cobra.core.compress;
\ No newline at end of file
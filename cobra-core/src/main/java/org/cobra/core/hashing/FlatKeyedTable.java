@@ -0,0 +1,259 @@
+package org.cobra.core.hashing;
+
+import org.cobra.commons.utils.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Open-addressing table keeps pairs of [64-bit hash_key, pointer_data] in a flat long[] (linear probing).
+ * <p>
+ * A slot only matches when both the hash and the key verified by {@link KeyVerifier} are equal, so two keys that
+ * collide on hash live in different slots instead of overwriting each other.
+ * <p>
+ * Writers are serialized by a write-lock, readers never block and never allocate: they probe the current slots
+ * optimistically and validate the stamp afterward, retrying if a writer had interleaved (seqlock).
+ */
+public class FlatKeyedTable implements KeyedTable {
+
+    private static final Logger log = LoggerFactory.getLogger(FlatKeyedTable.class);
+
+    private static final float DEFAULT_LOAD_FACTOR = .7f;
+    private static final int DEFAULT_TABLE_CAPACITY = 128;
+    private static final int MAX_TABLE_CAPACITY = 1 << 29;
+    private static final int UNDEFINED_HASH = -1;
+    private static final long UNDEFINED_VALUE = -1L;
+
+    /* slot layout: [tag, value]; hashes equal to EMPTY/DELETED are remapped, a verified key resolves the clash */
+    private static final long EMPTY_TAG = 0L;
+    private static final long DELETED_TAG = -1L;
+    private static final long REMAPPED_TAG = 1L;
+    private static final int SLOT_LONGS = 2;
+
+    private final KeyVerifier verifier;
+    private final float loadFactor;
+    private final StampedLock seqLock = new StampedLock();
+
+    private volatile long[] slots;
+    private volatile int size;
+    private int deleted;
+
+    public FlatKeyedTable(KeyVerifier verifier) {
+        this(verifier, DEFAULT_TABLE_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    public FlatKeyedTable(KeyVerifier verifier, int initCapacity) {
+        this(verifier, initCapacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    public FlatKeyedTable(KeyVerifier verifier, int initCapacity, float loadFactor) {
+        if (initCapacity <= 0 || initCapacity > MAX_TABLE_CAPACITY)
+            throw new IllegalArgumentException("Illegal capacity %d".formatted(initCapacity));
+        if (loadFactor <= 0 || loadFactor >= 1)
+            throw new IllegalArgumentException("Illegal load factor %f".formatted(loadFactor));
+
+        this.verifier = Objects.requireNonNull(verifier, "verifier");
+        this.loadFactor = loadFactor;
+        this.slots = new long[Utils.nextPowerOf2(initCapacity) * SLOT_LONGS];
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public int capacity() {
+        return this.slots.length / SLOT_LONGS;
+    }
+
+    @Override
+    public long get(long hash, byte[] key) {
+        final long tag = tagOf(hash);
+        while (true) {
+            final long stamp = this.seqLock.tryOptimisticRead();
+            final long[] current = this.slots;
+            final int slot = probeOptimistic(current, tag, key, stamp);
+            final long value = slot == UNDEFINED_HASH ? UNDEFINED_VALUE : current[slot * SLOT_LONGS + 1];
+
+            if (this.seqLock.validate(stamp))
+                return value;
+
+            Thread.onSpinWait();
+        }
+    }
+
+    @Override
+    public long put(long hash, byte[] key, long value) {
+        final long stamp = this.seqLock.writeLock();
+        try {
+            final long previous = put0(this.slots, tagOf(hash), key, value);
+            if (this.size + this.deleted > threshold())
+                rehash();
+
+            return previous;
+        } finally {
+            this.seqLock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public long remove(long hash, byte[] key) {
+        final long stamp = this.seqLock.writeLock();
+        try {
+            final long[] current = this.slots;
+            final int slot = probe(current, tagOf(hash), key);
+            if (slot == UNDEFINED_HASH)
+                return UNDEFINED_VALUE; // not actual remove anything
+
+            final int index = slot * SLOT_LONGS;
+            final long result = current[index + 1];
+            // only the tag is cleared, an optimistic reader never verifies a slot that is not tagged with its hash
+            current[index] = DELETED_TAG;
+            this.size--;
+            this.deleted++;
+
+            return result;
+        } finally {
+            this.seqLock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FlatKeyedTable(loadFactor=%f, capacity=%d, size=%d)"
+                .formatted(this.loadFactor, capacity(), size());
+    }
+
+    /**
+     * Probing is bounded by capacity, so it always terminates
+     */
+    private int probe(long[] current, long tag, byte[] key) {
+        final int mask = current.length / SLOT_LONGS - 1;
+        int slot = spread(tag) & mask;
+        for (int i = 0; i <= mask; i++) {
+            final int index = slot * SLOT_LONGS;
+            final long slotTag = current[index];
+            if (slotTag == tag && this.verifier.verify(current[index + 1], key))
+                return slot;
+            if (slotTag == EMPTY_TAG)
+                return UNDEFINED_HASH;
+
+            slot = (slot + 1) & mask;
+        }
+
+        return UNDEFINED_HASH;
+    }
+
+    /**
+     * Same as {@link #probe} for a reader holding no lock: a pointer is only passed to verifier once the stamp proves
+     * the slot it was read from is not torn, so verifier never dereferences an address of a record a writer has
+     * already replaced. An invalidated stamp ends probing, caller retries
+     */
+    private int probeOptimistic(long[] current, long tag, byte[] key, long stamp) {
+        final int mask = current.length / SLOT_LONGS - 1;
+        int slot = spread(tag) & mask;
+        for (int i = 0; i <= mask; i++) {
+            final int index = slot * SLOT_LONGS;
+            final long slotTag = current[index];
+            if (slotTag == tag) {
+                final long pointer = current[index + 1];
+                if (!this.seqLock.validate(stamp))
+                    return UNDEFINED_HASH;
+                if (this.verifier.verify(pointer, key))
+                    return slot;
+            }
+            if (slotTag == EMPTY_TAG)
+                return UNDEFINED_HASH;
+
+            slot = (slot + 1) & mask;
+        }
+
+        return UNDEFINED_HASH;
+    }
+
+    private long put0(long[] current, long tag, byte[] key, long value) {
+        final int mask = current.length / SLOT_LONGS - 1;
+        int slot = spread(tag) & mask;
+        int firstDeleted = UNDEFINED_HASH;
+        for (int i = 0; i <= mask; i++) {
+            final int index = slot * SLOT_LONGS;
+            final long slotTag = current[index];
+            if (slotTag == tag && this.verifier.verify(current[index + 1], key)) {
+                final long previous = current[index + 1];
+                current[index + 1] = value;
+                return previous;
+            }
+            if (slotTag == DELETED_TAG && firstDeleted == UNDEFINED_HASH)
+                firstDeleted = slot;
+            if (slotTag == EMPTY_TAG)
+                break;
+
+            slot = (slot + 1) & mask;
+        }
+
+        if (firstDeleted != UNDEFINED_HASH) {
+            slot = firstDeleted;
+            this.deleted--;
+        }
+
+        final int index = slot * SLOT_LONGS;
+        current[index + 1] = value;
+        current[index] = tag;
+        this.size++;
+
+        return UNDEFINED_VALUE;
+    }
+
+    private void rehash() {
+        // only tombstones make the table look full, so compact it in place of growing
+        final int toCapacity = this.size > threshold() / 2 ? capacity() * 2 : capacity();
+        if (toCapacity > MAX_TABLE_CAPACITY)
+            throw new IllegalStateException("Could not grow more; exceed max capacity and overflow");
+
+        final long startWatch = System.currentTimeMillis();
+        log.debug("start rehashing table {} to capacity {}", this, toCapacity);
+
+        final long[] oldSlots = this.slots;
+        final long[] newSlots = new long[toCapacity * SLOT_LONGS];
+        this.size = 0;
+        this.deleted = 0;
+        for (int i = 0; i < oldSlots.length; i += SLOT_LONGS) {
+            final long tag = oldSlots[i];
+            if (tag == EMPTY_TAG || tag == DELETED_TAG)
+                continue;
+
+            rehash0(newSlots, tag, oldSlots[i + 1]);
+        }
+        this.slots = newSlots;
+
+        final long elapsedMs = System.currentTimeMillis() - startWatch;
+        log.debug("{} rehash done; elapsed_time = {}ms", this, elapsedMs);
+    }
+
+    /* entries are distinct already, just take the first free slot without verifying keys */
+    private void rehash0(long[] current, long tag, long value) {
+        final int mask = current.length / SLOT_LONGS - 1;
+        int slot = spread(tag) & mask;
+        while (current[slot * SLOT_LONGS] != EMPTY_TAG)
+            slot = (slot + 1) & mask;
+
+        current[slot * SLOT_LONGS + 1] = value;
+        current[slot * SLOT_LONGS] = tag;
+        this.size++;
+    }
+
+    private int threshold() {
+        return (int) (capacity() * this.loadFactor);
+    }
+
+    private static long tagOf(long hash) {
+        return hash == EMPTY_TAG || hash == DELETED_TAG ? REMAPPED_TAG : hash;
+    }
+
+    private static int spread(long tag) {
+        return (int) (tag ^ (tag >>> 32));
+    }
+}
@@ -0,0 +1,58 @@
+package org.cobra.core.hashing;
+
+/**
+ * Provides a table of [64-bit hash_key, pointer_data], where colliding hashes are told apart by comparing the
+ * original key that is referenced by pointer_data
+ */
+public interface KeyedTable {
+
+    /**
+     * @return number of entry has been put in table
+     */
+    int size();
+
+    /**
+     * @return table capacity
+     */
+    int capacity();
+
+    /**
+     * Retrieves pointer of data from a hash key
+     *
+     * @param hash 64-bit hash of key
+     * @param key  original key
+     * @return long pointer if exists, otherwise -1
+     */
+    long get(long hash, byte[] key);
+
+    /**
+     * Puts a pair [hash_key, pointer_data] into table
+     *
+     * @param hash  64-bit hash of key
+     * @param key   original key
+     * @param value pointer data, must reference the key for later verification
+     * @return previous pointer of the same key if exists, otherwise -1
+     */
+    long put(long hash, byte[] key, long value);
+
+    /**
+     * Removes a pointer from table
+     *
+     * @param hash 64-bit hash of key
+     * @param key  original key
+     * @return deleted data if exists, otherwise -1
+     */
+    long remove(long hash, byte[] key);
+
+    /**
+     * Verifies whether the key that is stored at a pointer equals to a given key.
+     * <p>
+     * Readers only call it with a pointer read from a validated view of table, writers while holding the table, so
+     * the pointer referenced a live record when it was read. An owner that frees records must keep them readable
+     * until readers that validated before the free are done; verifier must still tolerate a non-positive pointer.
+     */
+    @FunctionalInterface
+    interface KeyVerifier {
+        boolean verify(long pointer, byte[] key);
+    }
+}
@@ -115,4 +115,149 @@ public final class Murmur3Hash {
 
         return h1 & 0x7fffffff;
     }
+
+    /**
+     * Returns the lower 64 bits (h1) of MurmurHash3_x64_128, without allocating the 128-bit result.
+     */
+    public static long murmurhash3_x64_64(byte[] data, int offset, int len, int seed) {
+        return murmurhash3_x64_128(data, offset, len, seed, null);
+    }
+
+    /** Returns the MurmurHash3_x64_128 hash as [h1, h2]. */
+    public static long[] murmurhash3_x64_128(byte[] data, int offset, int len, int seed) {
+        final long[] ans = new long[2];
+        murmurhash3_x64_128(data, offset, len, seed, ans);
+        return ans;
+    }
+
+    public static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private static long murmurhash3_x64_128(byte[] data, int offset, int len, int seed, long[] out) {
+        final long c1 = 0x87c37b91114253d5L;
+        final long c2 = 0x4cf5ad432745937fL;
+
+        long h1 = seed & 0xffffffffL;
+        long h2 = seed & 0xffffffffL;
+        int roundedEnd = offset + (len & 0xfffffff0);  // round down to 16 byte block
+
+        for (int i = offset; i < roundedEnd; i += 16) {
+            long k1 = getLongLittleEndian(data, i);
+            long k2 = getLongLittleEndian(data, i + 8);
+
+            k1 *= c1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= c2;
+            h1 ^= k1;
+
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            k2 *= c2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= c1;
+            h2 ^= k2;
+
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        // tail
+        long k1 = 0;
+        long k2 = 0;
+
+        switch (len & 0x0f) {
+            case 15:
+                k2 ^= (long) (data[roundedEnd + 14] & 0xff) << 48;
+                // fallthrough
+            case 14:
+                k2 ^= (long) (data[roundedEnd + 13] & 0xff) << 40;
+                // fallthrough
+            case 13:
+                k2 ^= (long) (data[roundedEnd + 12] & 0xff) << 32;
+                // fallthrough
+            case 12:
+                k2 ^= (long) (data[roundedEnd + 11] & 0xff) << 24;
+                // fallthrough
+            case 11:
+                k2 ^= (long) (data[roundedEnd + 10] & 0xff) << 16;
+                // fallthrough
+            case 10:
+                k2 ^= (long) (data[roundedEnd + 9] & 0xff) << 8;
+                // fallthrough
+            case 9:
+                k2 ^= data[roundedEnd + 8] & 0xff;
+                k2 *= c2;
+                k2 = Long.rotateLeft(k2, 33);
+                k2 *= c1;
+                h2 ^= k2;
+                // fallthrough
+            case 8:
+                k1 ^= (long) (data[roundedEnd + 7] & 0xff) << 56;
+                // fallthrough
+            case 7:
+                k1 ^= (long) (data[roundedEnd + 6] & 0xff) << 48;
+                // fallthrough
+            case 6:
+                k1 ^= (long) (data[roundedEnd + 5] & 0xff) << 40;
+                // fallthrough
+            case 5:
+                k1 ^= (long) (data[roundedEnd + 4] & 0xff) << 32;
+                // fallthrough
+            case 4:
+                k1 ^= (long) (data[roundedEnd + 3] & 0xff) << 24;
+                // fallthrough
+            case 3:
+                k1 ^= (long) (data[roundedEnd + 2] & 0xff) << 16;
+                // fallthrough
+            case 2:
+                k1 ^= (long) (data[roundedEnd + 1] & 0xff) << 8;
+                // fallthrough
+            case 1:
+                k1 ^= data[roundedEnd] & 0xff;
+                k1 *= c1;
+                k1 = Long.rotateLeft(k1, 31);
+                k1 *= c2;
+                h1 ^= k1;
+        }
+
+        // finalization
+        h1 ^= len;
+        h2 ^= len;
+
+        h1 += h2;
+        h2 += h1;
+
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+
+        h1 += h2;
+        h2 += h1;
+
+        if (out != null) {
+            out[0] = h1;
+            out[1] = h2;
+        }
+
+        return h1;
+    }
+
+    private static long getLongLittleEndian(byte[] data, int i) {
+        return (data[i] & 0xffL)
+                | ((data[i + 1] & 0xffL) << 8)
+                | ((data[i + 2] & 0xffL) << 16)
+                | ((data[i + 3] & 0xffL) << 24)
+                | ((data[i + 4] & 0xffL) << 32)
+                | ((data[i + 5] & 0xffL) << 40)
+                | ((data[i + 6] & 0xffL) << 48)
+                | ((data[i + 7] & 0xffL) << 56);
+    }
 }
@@ -7,11 +7,22 @@ import org.jetbrains.annotations.Nullable;
 
 import java.lang.reflect.Field;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Access to native memory by raw addresses. The backend is selected at startup by system property
+ * {@value #BACKEND_PROPERTY}: {@value #UNSAFE_BACKEND} (default) or {@value #FOREIGN_BACKEND}, a bounds checked one
+ * on {@code java.lang.foreign}, that is a preview API of Java 21: it is built apart from the rest (source set
+ * {@code foreign}) and needs {@code --enable-preview} once selected.
+ */
 public class OSMemory {
 
+    public static final String BACKEND_PROPERTY = "cobra.memory.backend";
+    public static final String UNSAFE_BACKEND = "unsafe";
+    public static final String FOREIGN_BACKEND = "foreign";
+
     private final static sun.misc.Unsafe UNSAFE;
     public final static OSMemory MEMORY;
 
@@ -32,10 +43,35 @@ public class OSMemory {
             sunUnsafe = sun.misc.Unsafe.class.getDeclaredField("theUnsafe");
             sunUnsafe.setAccessible(true);
             UNSAFE = (sun.misc.Unsafe) sunUnsafe.get(null);
-            MEMORY = new OSMemory();
         } catch (NoSuchFieldException | IllegalAccessException e) {
             throw new CobraException(e);
         }
+
+        MEMORY = backend(System.getProperty(BACKEND_PROPERTY, UNSAFE_BACKEND));
+    }
+
+    /* foreign backend is only loaded if selected, so the unsafe one needs no preview of java.lang.foreign */
+    static OSMemory backend(String name) {
+        return switch (name) {
+            case UNSAFE_BACKEND -> new OSMemory();
+            case FOREIGN_BACKEND -> foreignBackend();
+            default -> throw new CobraException("Unknown memory backend: " + name);
+        };
+    }
+
+    private static OSMemory foreignBackend() {
+        try {
+            return (OSMemory) Class.forName(OSMemory.class.getPackageName() + ".ForeignMemory")
+                    .getDeclaredMethod("create")
+                    .invoke(null);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new CobraException("Could not load memory backend %s; it needs --enable-preview and classes of "
+                    .formatted(FOREIGN_BACKEND) + "source set foreign", e);
+        }
+    }
+
+    public String backendName() {
+        return UNSAFE_BACKEND;
     }
 
     public int pageSize() {
@@ -46,6 +82,11 @@ public class OSMemory {
         return this.nativeMemUsed.get();
     }
 
+    /* for backends that allocate on their own */
+    void trackNativeMemory(long bytes) {
+        this.nativeMemUsed.addAndGet(bytes);
+    }
+
     public void freeMemory(long address, long size) {
         assert SKIP_ASSERT || size >= 0;
         if (address != 0)
@@ -82,6 +123,14 @@ public class OSMemory {
         return ((sun.nio.ch.DirectBuffer) bb).address();
     }
 
+    /**
+     * Unmaps a mapped buffer right away instead of on garbage collection; the buffer must not be used after
+     */
+    public void unmap(final MappedByteBuffer bb) {
+        Objects.requireNonNull(bb);
+        UNSAFE.invokeCleaner(bb);
+    }
+
     public void writeByte(long address, byte i8) {
         assert SKIP_ASSERT || address > 0;
         UNSAFE.putByte(address, i8);
@@ -0,0 +1,103 @@
+package org.cobra.core.memory.datalocal;
+
+import java.lang.ref.WeakReference;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Epoch-based reclamation of slab chunks that reads may still be reading.
+ * <p>
+ * A read announces the global epoch it entered at until it exits. A writer retires a chunk, that it has already
+ * unlinked from table, at the epoch it advances from, and frees it only once no read that entered at or before
+ * that epoch is still inside: such a read may have looked up the chunk, any later one can not. A read is protected
+ * however long it stalls, e.g. by a pause; reads never lock, and never allocate once their thread is registered.
+ */
+final class ReadEpochs {
+
+    /* epoch of a thread that is not reading, above any epoch a chunk is retired at */
+    static final long QUIESCENT = Long.MAX_VALUE;
+
+    private static final long AWAIT_PARK_NS = 50_000;
+
+    private final AtomicLong epoch = new AtomicLong();
+    private final ThreadLocal<Reader> readers = ThreadLocal.withInitial(this::register);
+    private final Queue<Reader> allReaders = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Enters a read of chunks, which must look up their addresses after it; reads of a thread may nest
+     *
+     * @return reader to exit with
+     */
+    Reader enter() {
+        final Reader reader = this.readers.get();
+        if (reader.depth++ == 0)
+            reader.epoch = this.epoch.get(); // volatile write, published before any address is looked up
+
+        return reader;
+    }
+
+    void exit(Reader reader) {
+        if (--reader.depth == 0)
+            reader.epoch = QUIESCENT;
+    }
+
+    /**
+     * Called after a chunk is unlinked, so a read that enters at a later epoch can not look it up
+     *
+     * @return epoch the chunk is retired at
+     */
+    long advance() {
+        return this.epoch.getAndIncrement();
+    }
+
+    /**
+     * Waits until every read that has entered so far has exited, however long it takes; must not be called inside
+     * a read
+     */
+    void synchronize() {
+        final long retiredEpoch = advance();
+        while (oldestActive() <= retiredEpoch)
+            LockSupport.parkNanos(AWAIT_PARK_NS);
+    }
+
+    /**
+     * A chunk retired at an epoch below it is no longer read. Readers of terminated threads are dropped, they are
+     * quiescent as reads always exit
+     *
+     * @return oldest epoch a read is inside of, or {@link #QUIESCENT} if none is
+     */
+    long oldestActive() {
+        long ans = QUIESCENT;
+        for (Reader reader : this.allReaders) {
+            final long readerEpoch = reader.epoch;
+            if (readerEpoch < ans)
+                ans = readerEpoch;
+
+            final Thread owner = reader.owner.get();
+            if (readerEpoch == QUIESCENT && (owner == null || !owner.isAlive()))
+                this.allReaders.remove(reader);
+        }
+
+        return ans;
+    }
+
+    private Reader register() {
+        final Reader reader = new Reader(new WeakReference<>(Thread.currentThread()));
+        this.allReaders.add(reader);
+
+        return reader;
+    }
+
+    static final class Reader {
+
+        private final WeakReference<Thread> owner;
+        private volatile long epoch = QUIESCENT;
+        private int depth;
+
+        private Reader(WeakReference<Thread> owner) {
+            this.owner = owner;
+        }
+    }
+}
@@ -1,35 +1,112 @@
 package org.cobra.core.memory.datalocal;
 
-import org.cobra.core.hashing.HashingTable;
-import org.cobra.core.hashing.Table;
+import org.cobra.commons.config.ConfigDef;
+import org.cobra.core.hashing.FlatKeyedTable;
+import org.cobra.core.hashing.KeyedTable;
 import org.cobra.core.hashing.hashcodes.Murmur3Hash;
+import org.cobra.core.memory.slab.MemoryConfig;
 import org.cobra.core.memory.slab.SlabArena;
+import org.cobra.core.memory.slab.SlabHandle;
+import org.cobra.core.memory.slab.SlabMethods;
+import org.cobra.core.memory.slab.SlabSizing;
+import org.cobra.core.memory.slab.SlabStats;
+import org.cobra.core.objects.BlobInput;
+import org.cobra.core.serialization.RecordSerde;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Records of a keyspace in slab memory, looked up through a keyed table.
+ * <p>
+ * Writes of different threads run in parallel, {@link #reclaim(float)} runs exclusively of them; reads never
+ * lock. A chunk that is overwritten or removed is retired rather than freed, and freed by a later write once every
+ * read that may have looked up its address has exited (see {@link ReadEpochs}), so a read always reads its record
+ * rather than a reused chunk, however long it stalls.
+ */
 public class RecordRepository {
 
-    private final Table lookupTable = new HashingTable();
-    private final SlabArena arena;
+    private static final Logger log = LoggerFactory.getLogger(RecordRepository.class);
+
+    private final KeyedTable lookupTable;
+    private final ReadWriteLock reclaimLock = new ReentrantReadWriteLock();
+    private final Queue<RetiredChunk> retiredChunks = new ConcurrentLinkedQueue<>();
+    private final Lock retiredLock = new ReentrantLock();
+    private final ReadEpochs readEpochs = new ReadEpochs();
+    /* a bit per chunk marked since last sweep, by slab-class then page-offset of chunk */
+    private final long[][] marks = new long[SlabArena.MAX_SLAB_NUMBER][];
+    private volatile SlabArena arena;
 
     public RecordRepository() {
-        arena = SlabArena.initialize();
+        this(MemoryConfig.DEFAULT_CONFIG);
     }
 
-    public Table lookupTable() {
+    public RecordRepository(ConfigDef memoryConfig) {
+        arena = SlabArena.initialize(memoryConfig);
+        lookupTable = new FlatKeyedTable((pointer, key) -> arena.methods().keyEquals(pointer, key));
+    }
+
+    /**
+     * @return index of records; a lookup through it is not protected from a concurrent write, see
+     * {@link KeyedTable.KeyVerifier}
+     */
+    public KeyedTable lookupTable() {
         return lookupTable;
     }
 
+    ReadEpochs readEpochs() {
+        return readEpochs;
+    }
+
     public void putObject(String key, byte[] representation) {
         putObject(key.getBytes(), representation);
     }
 
     public void putObject(byte[] key, byte[] representation) {
-        final int hashKey = toHashKey(key);
+        final long hashKey = toHashKey(key);
+
+        reclaimLock.readLock().lock();
+        try {
+            final long allocAddress = arena.allocate(hashKey, key, representation);
+            retireIfExists(lookupTable.put(hashKey, key, allocAddress));
+        } finally {
+            reclaimLock.readLock().unlock();
+        }
+    }
 
-        // todo: mutex lock re-balance
-        // todo: free slab if overwrite an existed key
-        final long allocAddress = arena.allocate(hashKey, representation);
+    /**
+     * Puts data of len bytes at cursor of a blob input, copying it straight into slab memory
+     */
+    public void putObject(byte[] key, BlobInput blobInput, int len) throws IOException {
+        final long hashKey = toHashKey(key);
 
-        lookupTable.put(hashKey, allocAddress);
+        reclaimLock.readLock().lock();
+        try {
+            final long allocAddress = arena.allocate(hashKey, key, len);
+            try {
+                blobInput.copyTo(arena.methods().dataAddress(allocAddress), len);
+            } catch (IOException | RuntimeException e) {
+                arena.free(allocAddress);
+                throw e;
+            }
+
+            retireIfExists(lookupTable.put(hashKey, key, allocAddress));
+        } finally {
+            reclaimLock.readLock().unlock();
+        }
     }
 
     public byte[] removeObject(String key) {
@@ -37,28 +114,375 @@ public class RecordRepository {
     }
 
     public byte[] removeObject(byte[] key) {
-        final int hashKey = toHashKey(key);
+        final long hashKey = toHashKey(key);
+
+        reclaimLock.readLock().lock();
+        try {
+            final long retAddress = lookupTable.remove(hashKey, key);
+            if (retAddress <= 0)
+                return null;
+
+            byte[] ans = arena.methods().get(retAddress);
+            retire(retAddress);
+
+            return ans;
+        } finally {
+            reclaimLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Moves records out of under-utilized slab pages and releases drained pages to OS once every read that may
+     * still read a moved chunk has exited; writes wait meanwhile. Retired chunks are freed first, so none of them is
+     * moved or dropped.
+     *
+     * @param maxUtilized pages utilized above it are kept
+     * @return number of bytes released to OS
+     * @see SlabArena#reclaim(float, SlabArena.ChunkRelocator)
+     */
+    public long reclaim(float maxUtilized) {
+        reclaimLock.writeLock().lock();
+        try {
+            awaitRetired();
+            if (arena.reclaim(maxUtilized, this::relocate) == 0)
+                return 0;
+
+            readEpochs.synchronize();
+            return arena.releaseRetired();
+        } finally {
+            reclaimLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces slab-classes by ones fitted to sampled record sizes, to minimize internal fragmentation. Only an
+     * empty repository, that has never allocated, can be adapted.
+     *
+     * @param footprints number of bytes of chunks that sampled records need, see {@link #footprintOf(int, int)}
+     * @return true if slab-classes have been replaced
+     */
+    public boolean adaptSlabClasses(int[] footprints) {
+        if (footprints.length == 0)
+            return false;
+
+        reclaimLock.writeLock().lock();
+        try {
+            final SlabArena current = arena;
+            if (lookupTable.size() > 0 || current.collectMemory() > 0)
+                return false;
+
+            final ConfigDef config = current.config();
+            final int[] chunkSizes = SlabSizing.sampled(footprints,
+                    config.valueOf(MemoryConfig.SLAB_SAMPLED_CLASSES),
+                    config.valueOf(MemoryConfig.SLAB_GROWTH_FACTOR),
+                    config.valueOf(MemoryConfig.SLAB_CHUNK_MAX_SIZE),
+                    SlabArena.MAX_SLAB_NUMBER);
+
+            arena = SlabArena.initialize(config, chunkSizes);
+
+            if (log.isDebugEnabled()) {
+                log.debug("adapt slab-classes to {} samples; fragmentation: {} -> {}; chunk sizes: {}",
+                        footprints.length,
+                        "%.2f%%".formatted(SlabSizing.fragmentation(footprints, current.chunkSizes()) * 100),
+                        "%.2f%%".formatted(SlabSizing.fragmentation(footprints, chunkSizes) * 100),
+                        Arrays.toString(chunkSizes));
+            }
+            return true;
+        } finally {
+            reclaimLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes slab pages of records, see {@link SlabArena#checkpoint(DataOutput, SlabArena.PageWriter)}; writes wait
+     * until it is done, reads do not. Retired chunks are freed first, so they are not restored as records.
+     */
+    public void checkpoint(DataOutput meta, SlabArena.PageWriter pages) throws IOException {
+        reclaimLock.writeLock().lock();
+        try {
+            awaitRetired();
+            arena.checkpoint(meta, pages);
+        } finally {
+            reclaimLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Restores records written by {@link #checkpoint(DataOutput, SlabArena.PageWriter)} into an empty repository.
+     * Table holds addresses that differ across processes, so it is rebuilt from hash and key inlined in chunks.
+     */
+    public void restore(DataInput meta, SlabArena.PageReader pages) throws IOException {
+        reclaimLock.writeLock().lock();
+        try {
+            if (!isPristine())
+                throw new IllegalStateException("Could not restore into a repository that has records");
+
+            final SlabArena restored = SlabArena.restore(arena.config(), meta, pages);
+            final SlabMethods methods = restored.methods();
+            arena = restored;
+            restored.forEachLive(address -> lookupTable.put(methods.hash(address), methods.key(address), address));
+        } finally {
+            reclaimLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marks the record of a key as seen, until the next {@link #sweepUnmarked(Consumer)}; must not run concurrently
+     * with writes nor reclaim, as a mark belongs to the chunk the record is in
+     *
+     * @return true if key exists
+     */
+    public boolean mark(byte[] key) {
+        final long address = lookupTable.get(toHashKey(key), key);
+        if (address <= 0)
+            return false;
+
+        final long handle = arena.methods().location(address);
+        final int clsid = SlabHandle.clsid(handle);
+        final int index = markIndex(handle);
+        final int word = index >>> 6;
+        if (marks[clsid] == null)
+            marks[clsid] = new long[Math.max(word, arena.slab(clsid).getTotalChunks() >>> 6) + 1];
+        else if (marks[clsid].length <= word)
+            marks[clsid] = Arrays.copyOf(marks[clsid], Math.max(word + 1, marks[clsid].length * 2));
+
+        marks[clsid][word] |= 1L << index;
+        return true;
+    }
+
+    /**
+     * Visits key of every record that has not been marked since the last sweep, then clears every mark; writes wait
+     * until it is done. Retired chunks are freed first, so only records are visited.
+     *
+     * @param unmarked must not write into this repository
+     */
+    public void sweepUnmarked(Consumer<byte[]> unmarked) {
+        reclaimLock.writeLock().lock();
+        try {
+            awaitRetired();
+            final SlabMethods methods = arena.methods();
+            arena.forEachLive(address -> {
+                if (!isMarked(methods.location(address)))
+                    unmarked.accept(methods.key(address));
+            });
+        } finally {
+            Arrays.fill(marks, null);
+            reclaimLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Visits chunk of every record, in the same order across calls as long as nothing is written in between; writes
+     * wait until it is done. Retired chunks are freed first, so only records are visited.
+     */
+    public void forEachRecord(RecordVisitor visitor) throws IOException {
+        reclaimLock.writeLock().lock();
+        try {
+            awaitRetired();
+            final SlabMethods methods = arena.methods();
+            final IOException[] failure = new IOException[1];
+            arena.forEachLive(address -> {
+                if (failure[0] != null)
+                    return;
+
+                try {
+                    visitor.visit(methods, address);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+
+            if (failure[0] != null)
+                throw failure[0];
+        } finally {
+            reclaimLock.writeLock().unlock();
+        }
+    }
 
-        final long retAddress = lookupTable.remove(hashKey);
-        if (retAddress <= 0)
-            return null;
+    /**
+     * @return true if no record has ever been allocated
+     */
+    public boolean isPristine() {
+        return lookupTable.size() == 0 && arena.collectMemory() == 0;
+    }
 
-        byte[] ans = arena.methods().get(retAddress);
-        arena.free(retAddress);
+    /**
+     * @return usage and internal fragmentation of every slab-class
+     */
+    public List<SlabStats> slabStats() {
+        return arena.stats();
+    }
 
-        return ans;
+    /**
+     * @return number of bytes of slab chunk that a record needs
+     */
+    public static int footprintOf(int keyLength, int dataLength) {
+        return SlabMethods.footprint(keyLength, dataLength);
+    }
+
+    /**
+     * @return number of bytes of slab pages are being held, approximate while writes run
+     */
+    public long memoryFootprint() {
+        return arena.collectMemory();
     }
 
     public byte[] getData(String key) {
-        final int hashKey = toHashKey(key.getBytes());
-        final long retAddress = lookupTable.get(hashKey);
-        if (retAddress <= 0)
-            return null;
+        final ReadEpochs.Reader reader = readEpochs.enter();
+        try {
+            final long retAddress = locate(key);
+            if (retAddress <= 0)
+                return null;
+
+            return arena.methods().get(retAddress);
+        } finally {
+            readEpochs.exit(reader);
+        }
+    }
+
+    /**
+     * @return length of data of a key, or -1 if key does not exist
+     */
+    public int sizeOfData(String key) {
+        final ReadEpochs.Reader reader = readEpochs.enter();
+        try {
+            final long retAddress = locate(key);
+            if (retAddress <= 0)
+                return -1;
+
+            return arena.methods().dataLength(retAddress);
+        } finally {
+            readEpochs.exit(reader);
+        }
+    }
+
+    /**
+     * Copies data of a key into a caller-supplied buffer, without allocating
+     *
+     * @return number of copied bytes, or -1 if key does not exist
+     */
+    public int getData(String key, ByteBuffer sink) {
+        final ReadEpochs.Reader reader = readEpochs.enter();
+        try {
+            final long retAddress = locate(key);
+            if (retAddress <= 0)
+                return -1;
+
+            return arena.methods().copyData(retAddress, sink);
+        } finally {
+            readEpochs.exit(reader);
+        }
+    }
+
+    /**
+     * Compares data of a key with given data in slab memory, without copying it out
+     *
+     * @return true if key exists and its data is equal
+     */
+    public boolean dataEquals(byte[] key, byte[] data) {
+        final ReadEpochs.Reader reader = readEpochs.enter();
+        try {
+            return arena.methods().dataEquals(lookupTable.get(toHashKey(key), key), data);
+        } finally {
+            readEpochs.exit(reader);
+        }
+    }
+
+    /**
+     * Deserializes data of a key straight from its slab chunk, which is not freed until deserializing is done
+     *
+     * @return deserialized object, or null if key does not exist
+     */
+    public <T> T getObject(String key, RecordSerde serde) {
+        final ReadEpochs.Reader reader = readEpochs.enter();
+        try {
+            final long retAddress = locate(key);
+            if (retAddress <= 0)
+                return null;
+
+            final SlabMethods methods = arena.methods();
+            return serde.deserialize(methods.dataAddress(retAddress), methods.dataLength(retAddress));
+        } finally {
+            readEpochs.exit(reader);
+        }
+    }
+
+    private long locate(String key) {
+        final byte[] rawKey = key.getBytes();
+        return lookupTable.get(toHashKey(rawKey), rawKey);
+    }
+
+    private int markIndex(long handle) {
+        final int chunksPerPage = arena.slab(SlabHandle.clsid(handle)).getChunksPerPage();
+        return SlabHandle.pageId(handle) * chunksPerPage + SlabHandle.chunkId(handle);
+    }
+
+    private boolean isMarked(long handle) {
+        final long[] bits = marks[SlabHandle.clsid(handle)];
+        final int index = markIndex(handle);
+        final int word = index >>> 6;
+
+        return bits != null && word < bits.length && (bits[word] & 1L << index) != 0;
+    }
+
+    /* a chunk is only moved if table still references it, so an unreachable chunk is never resurrected */
+    private boolean relocate(long fromAddress, long toAddress) {
+        final SlabMethods methods = arena.methods();
+        final long hashKey = methods.hash(fromAddress);
+        final byte[] key = methods.key(fromAddress);
+        if (lookupTable.get(hashKey, key) != fromAddress)
+            return false;
+
+        lookupTable.put(hashKey, key, toAddress);
+        return true;
+    }
+
+    private void retireIfExists(long prevAddress) {
+        if (prevAddress > 0)
+            retire(prevAddress);
+    }
+
+    /* must hold read lock of reclaim, chunks are only freed by one writer at a time so none is freed twice */
+    private void retire(long address) {
+        retiredChunks.add(new RetiredChunk(address, readEpochs.advance()));
+        if (!retiredLock.tryLock())
+            return;
+
+        try {
+            final long oldestRead = readEpochs.oldestActive();
+            RetiredChunk retired;
+            while ((retired = retiredChunks.peek()) != null && retired.epoch() < oldestRead) {
+                retiredChunks.poll();
+                arena.free(retired.address());
+            }
+        } finally {
+            retiredLock.unlock();
+        }
+    }
+
+    /* must hold write lock of reclaim, so no chunk is retired meanwhile */
+    private void awaitRetired() {
+        if (retiredChunks.isEmpty())
+            return;
+
+        readEpochs.synchronize();
+        RetiredChunk retired;
+        while ((retired = retiredChunks.poll()) != null)
+            arena.free(retired.address());
+    }
+
+    private long toHashKey(byte[] key) {
+        return Murmur3Hash.murmurhash3_x64_64(key, 0, key.length, 0);
+    }
 
-        return arena.methods().get(retAddress);
+    private record RetiredChunk(long address, long epoch) {
     }
 
-    private int toHashKey(byte[] key) {
-        return Murmur3Hash.murmurhash3_x86_32(key, 0, key.length, 0);
+    /**
+     * Visits a record through the methods of the arena it is in
+     */
+    @FunctionalInterface
+    public interface RecordVisitor {
+        void visit(SlabMethods methods, long address) throws IOException;
     }
 }
@@ -0,0 +1,97 @@
+package org.cobra.core.memory.datalocal;
+
+import org.cobra.commons.CobraConstants;
+import org.cobra.commons.threads.CobraThread;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background rebalancer of slab memory: periodically drains under-utilized pages of registered repositories and
+ * releases them to OS, so resident memory tracks live records rather than the peak of each slab-class.
+ * <p>
+ * A drained page is released once every read that may still read it has exited, see
+ * {@link RecordRepository#reclaim(float)}.
+ */
+public class SlabMover implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(SlabMover.class);
+
+    public static final float DEFAULT_MAX_UTILIZED = 0.25f;
+
+    private final Set<RecordRepository> repositories = ConcurrentHashMap.newKeySet();
+    private final long intervalMs;
+    private final float maxUtilized;
+
+    private ScheduledExecutorService scheduler;
+
+    public SlabMover(long intervalMs) {
+        this(intervalMs, DEFAULT_MAX_UTILIZED);
+    }
+
+    /**
+     * @param intervalMs  milliseconds between runs
+     * @param maxUtilized pages utilized above it are kept, in (0, 1)
+     */
+    public SlabMover(long intervalMs, float maxUtilized) {
+        if (intervalMs <= 0)
+            throw new IllegalArgumentException("Illegal interval %d".formatted(intervalMs));
+        if (maxUtilized <= 0 || maxUtilized >= 1)
+            throw new IllegalArgumentException("Illegal max utilized %f".formatted(maxUtilized));
+
+        this.intervalMs = intervalMs;
+        this.maxUtilized = maxUtilized;
+    }
+
+    public void register(RecordRepository repository) {
+        this.repositories.add(repository);
+    }
+
+    public void unregister(RecordRepository repository) {
+        this.repositories.remove(repository);
+    }
+
+    public synchronized void start() {
+        if (this.scheduler != null)
+            return;
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                r -> CobraThread.daemon(r, SlabMover.class, "slab-mover", CobraThread.LOW_PRIORITY));
+        this.scheduler.scheduleWithFixedDelay(this::run, this.intervalMs, this.intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs one pass over every registered repository
+     *
+     * @return number of bytes released to OS
+     */
+    public long run() {
+        long releasedBytes = 0;
+        for (RecordRepository repository : this.repositories) {
+            try {
+                releasedBytes += repository.reclaim(this.maxUtilized);
+            } catch (RuntimeException e) {
+                log.warn("failed to reclaim slab memory of {}", repository, e);
+            }
+        }
+
+        if (releasedBytes > 0)
+            log.debug("slab-mover released {}KiB", releasedBytes / CobraConstants.KB);
+
+        return releasedBytes;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (this.scheduler == null)
+            return;
+
+        this.scheduler.shutdownNow();
+        this.scheduler = null;
+    }
+}
@@ -0,0 +1,60 @@
+package org.cobra.core.memory.slab;
+
+/**
+ * A stack of chunk handles of one slab-class that is owned by a single thread.
+ * <p>
+ * Free chunks are taken from and given back to a stripe of the shared slab-class in batches of half of capacity, so
+ * most of allocations and frees of a thread never lock. A cached chunk stays free in bookkeeping of its page.
+ */
+final class ChunkMagazine {
+
+    private final SlabClass slab;
+    private final long[] handles;
+    private final int stripe;
+    private int size;
+
+    /**
+     * @param stripe any number, e.g. id of owner thread, that picks a freelist stripe of slab-class
+     */
+    ChunkMagazine(SlabClass slab, int capacity, int stripe) {
+        if (capacity < 2)
+            throw new IllegalArgumentException("Illegal magazine capacity %d".formatted(capacity));
+
+        this.slab = slab;
+        this.handles = new long[capacity];
+        this.stripe = stripe;
+    }
+
+    long allocate() {
+        if (this.size == 0)
+            this.size = this.slab.take(this.handles, this.handles.length / 2, this.stripe);
+
+        final long handle = this.handles[--this.size];
+        this.slab.markAllocated(handle);
+
+        return handle;
+    }
+
+    void free(long handle) {
+        this.slab.markFree(handle);
+        if (this.size == this.handles.length) {
+            final int half = this.handles.length / 2;
+            this.size -= half;
+            this.slab.give(this.handles, this.size, half, this.stripe);
+        }
+
+        this.handles[this.size++] = handle;
+    }
+
+    /**
+     * Gives every cached chunk back to slab-class, must only be called by owner or while owner is parked
+     */
+    void flush() {
+        this.slab.give(this.handles, 0, this.size, this.stripe);
+        this.size = 0;
+    }
+
+    int size() {
+        return this.size;
+    }
+}
@@ -1,49 +1,90 @@
 package org.cobra.core.memory.slab;
 
+import org.cobra.commons.Jvm;
+import org.cobra.core.memory.OSMemory;
+
+import java.util.function.LongPredicate;
+
+/**
+ * An intrusive stack of free chunks: the handle of next free chunk is stored in the first 8 bytes of each free
+ * chunk itself, so neither offering nor polling allocates on heap
+ */
 public class Freelist {
 
-    private Node head = null;
+    private static final OSMemory memory = Jvm.osMemory();
 
-    public void offer(SlabOffset offset) {
-        final Node node = new Node(offset);
-        node.setNext(this.head);
-        this.head = node;
-    }
+    private final ChunkAddressing addressing;
+    private long head = SlabHandle.NULL_HANDLE;
+    private int size;
 
-    public SlabOffset poll() {
-        if (this.head == null)
-            return null;
+    public Freelist(ChunkAddressing addressing) {
+        this.addressing = addressing;
+    }
 
-        SlabOffset offset;
+    public void offer(long handle) {
+        memory.writeLong(this.addressing.addressOf(handle), this.head);
+        this.head = handle;
+        this.size++;
+    }
 
-        offset = this.head.getSelf();
-        this.head = this.head.getNext();
+    /**
+     * Pushes a run of chunks of a fresh page, so polling hands them out by ascending chunk-id
+     */
+    public void offerPage(int clsid, int pageId, int chunksNum) {
+        for (int chunkId = 0; chunkId < chunksNum; chunkId++) {
+            final long next = chunkId == chunksNum - 1 ? this.head : SlabHandle.of(clsid, pageId, chunkId + 1);
+            memory.writeLong(this.addressing.addressOf(SlabHandle.of(clsid, pageId, chunkId)), next);
+        }
 
-        return offset;
+        this.head = SlabHandle.of(clsid, pageId, 0);
+        this.size += chunksNum;
     }
 
-    static final class Node {
-        private SlabOffset self;
-        private Node next = null;
+    /**
+     * @return handle of a free chunk, or {@link SlabHandle#NULL_HANDLE} if empty
+     */
+    public long poll() {
+        final long handle = this.head;
+        if (handle == SlabHandle.NULL_HANDLE)
+            return SlabHandle.NULL_HANDLE;
 
-        Node(SlabOffset self) {
-            this.self = self;
-        }
+        this.head = memory.readLong(this.addressing.addressOf(handle));
+        this.size--;
 
-        public void setSelf(SlabOffset self) {
-            this.self = self;
-        }
+        return handle;
+    }
 
-        public SlabOffset getSelf() {
-            return this.self;
-        }
+    public int size() {
+        return this.size;
+    }
 
-        public Node getNext() {
-            return this.next;
+    /**
+     * Unlinks every handle that matches a filter, walking the whole list
+     */
+    public void removeIf(LongPredicate filter) {
+        while (this.head != SlabHandle.NULL_HANDLE && filter.test(this.head)) {
+            this.head = memory.readLong(this.addressing.addressOf(this.head));
+            this.size--;
         }
 
-        public void setNext(Node next) {
-            this.next = next;
+        long prev = this.head;
+        while (prev != SlabHandle.NULL_HANDLE) {
+            final long prevAddress = this.addressing.addressOf(prev);
+            final long next = memory.readLong(prevAddress);
+            if (next != SlabHandle.NULL_HANDLE && filter.test(next)) {
+                memory.writeLong(prevAddress, memory.readLong(this.addressing.addressOf(next)));
+                this.size--;
+            } else {
+                prev = next;
+            }
         }
     }
+
+    /**
+     * Resolves the native address of a chunk handle
+     */
+    @FunctionalInterface
+    public interface ChunkAddressing {
+        long addressOf(long handle);
+    }
 }
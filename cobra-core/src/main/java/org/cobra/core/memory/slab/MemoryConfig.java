@@ -7,14 +7,35 @@ public class MemoryConfig {
     public static final String SLAB_CHUNK_MAX_SIZE = "memory.slab.chunk.max_size";
     public static final int SLAB_CHUNK_MAX_SIZE_DEFAULT = 4 * 1024 * 1024; // 4Mbi
 
+    public static final String SLAB_CHUNK_MIN_SIZE = "memory.slab.chunk.min_size";
+    public static final int SLAB_CHUNK_MIN_SIZE_DEFAULT = 32;
+
+    /* chunk size of each slab-class is this factor of the previous one, e.g. 1.25 wastes less than 2 */
+    public static final String SLAB_GROWTH_FACTOR = "memory.slab.growth_factor";
+    public static final double SLAB_GROWTH_FACTOR_DEFAULT = 2.0;
+
+    /* number of slab-classes fitted to sampled record sizes, see RecordRepository#adaptSlabClasses */
+    public static final String SLAB_SAMPLED_CLASSES = "memory.slab.sampled_classes";
+    public static final int SLAB_SAMPLED_CLASSES_DEFAULT = 32;
+
     public static final String SLAB_PAGE_SIZE = "memory.slab.page_size";
     public static final int SLAB_PAGE_SIZE_DEFAULT = 1 << 16;
 
     public static final String SLAB_PAGE_CONSIST_CHUNKS_NUM = "memory.slab.page_chunks_num";
     public static final int SLAB_PAGE_CONSIST_CHUNKS_NUM_DEFAULT = 256;
 
-    public static ConfigDef DEFAULT_CONFIG = new ConfigDef()
-            .define(SLAB_CHUNK_MAX_SIZE, SLAB_CHUNK_MAX_SIZE_DEFAULT)
-            .define(SLAB_PAGE_SIZE, SLAB_PAGE_SIZE_DEFAULT)
-            .define(SLAB_PAGE_CONSIST_CHUNKS_NUM, SLAB_PAGE_CONSIST_CHUNKS_NUM_DEFAULT);
+    public static ConfigDef DEFAULT_CONFIG = defaultConfig();
+
+    /**
+     * @return a copy of default config, that can be merged without affecting other arenas
+     */
+    public static ConfigDef defaultConfig() {
+        return new ConfigDef()
+                .define(SLAB_CHUNK_MAX_SIZE, SLAB_CHUNK_MAX_SIZE_DEFAULT)
+                .define(SLAB_CHUNK_MIN_SIZE, SLAB_CHUNK_MIN_SIZE_DEFAULT)
+                .define(SLAB_GROWTH_FACTOR, SLAB_GROWTH_FACTOR_DEFAULT)
+                .define(SLAB_SAMPLED_CLASSES, SLAB_SAMPLED_CLASSES_DEFAULT)
+                .define(SLAB_PAGE_SIZE, SLAB_PAGE_SIZE_DEFAULT)
+                .define(SLAB_PAGE_CONSIST_CHUNKS_NUM, SLAB_PAGE_CONSIST_CHUNKS_NUM_DEFAULT);
+    }
 }
@@ -5,23 +5,52 @@ import org.cobra.commons.config.ConfigDef;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.LongConsumer;
+
+/**
+ * Slab allocator of chunks in native memory.
+ * <p>
+ * Allocate and free are thread-safe: each thread allocates from and frees into its own magazines of chunk handles,
+ * that are refilled from and flushed to slab-classes in batches.
+ */
 public class SlabArena {
 
     private static final Logger log = LoggerFactory.getLogger(SlabArena.class);
 
     private static final String ERROR_NOT_FIND_CLSID = "Could not find any slab-class for required size";
 
-    private static final int MAX_SLAB_NUMBER = (63 + 1);
-    private static final int SMALLEST_BASE2 = 1;
-    private static final int DEFAULT_SMALLEST_CHUNK_BASE2_SIZE = 5;
+    public static final int MAX_SLAB_NUMBER = (63 + 1);
     private static final int FAILED_CLSID = -1;
-    private static final int FACTOR = 2;
+
+    /* size-to-class lookup: by 8 bytes up to DENSE_LIMIT, then by SPARSE_GRANULE */
+    private static final int DENSE_LIMIT = 16 * CobraConstants.KB;
+    private static final int SPARSE_GRANULE_BASE2 = 10;
+
+    private static final int MAGAZINE_BYTES = 16 * CobraConstants.KB;
+    private static final int MIN_MAGAZINE_CAPACITY = 2;
+    private static final int MAX_MAGAZINE_CAPACITY = 64;
 
     private final ConfigDef configDef;
     private final SlabMethods slabMethods;
     private final SlabClass[] slabs = new SlabClass[MAX_SLAB_NUMBER];
+    private final Deque<RetiredPage> retiredPages = new ArrayDeque<>();
+    private final ThreadLocal<ChunkMagazine[]> magazines = ThreadLocal.withInitial(this::newMagazines);
+    private final Queue<ThreadMagazines> allMagazines = new ConcurrentLinkedQueue<>();
 
     private int largestIndex;
+    private byte[] denseIndex;
+    private byte[] sparseIndex;
 
     private SlabArena(ConfigDef configDef) {
         this.configDef = configDef;
@@ -32,80 +61,332 @@ public class SlabArena {
         return initialize(MemoryConfig.DEFAULT_CONFIG);
     }
 
+    /**
+     * Initializes slab-classes growing by {@link MemoryConfig#SLAB_GROWTH_FACTOR} from
+     * {@link MemoryConfig#SLAB_CHUNK_MIN_SIZE} up to {@link MemoryConfig#SLAB_CHUNK_MAX_SIZE}
+     */
     public static SlabArena initialize(ConfigDef configDef) {
-        final SlabArena arena = new SlabArena(configDef);
-
-        int chunkSize = 1 << DEFAULT_SMALLEST_CHUNK_BASE2_SIZE;
+        final int minChunkSize = configDef.valueOf(MemoryConfig.SLAB_CHUNK_MIN_SIZE);
+        final double growthFactor = configDef.valueOf(MemoryConfig.SLAB_GROWTH_FACTOR);
         final int maxChunkSize = configDef.valueOf(MemoryConfig.SLAB_CHUNK_MAX_SIZE);
 
-        int i = SMALLEST_BASE2 - 1;
-        while (i <= MAX_SLAB_NUMBER - 1) {
-            if (chunkSize > maxChunkSize)
-                break;
+        return initialize(configDef, SlabSizing.geometric(minChunkSize, growthFactor, maxChunkSize, MAX_SLAB_NUMBER));
+    }
+
+    /**
+     * Initializes a slab-class for each chunk size
+     *
+     * @param chunkSizes ascending multiples of {@link SlabSizing#ALIGNMENT}, see {@link SlabSizing}
+     */
+    public static SlabArena initialize(ConfigDef configDef, int[] chunkSizes) {
+        if (chunkSizes.length == 0 || chunkSizes.length > MAX_SLAB_NUMBER)
+            throw new IllegalArgumentException("Illegal number of slab-classes %d".formatted(chunkSizes.length));
+
+        final SlabArena arena = new SlabArena(configDef);
+        for (int i = 0; i < chunkSizes.length; i++) {
+            final int chunkSize = chunkSizes[i];
+            if (chunkSize < Long.BYTES || chunkSize % SlabSizing.ALIGNMENT != 0
+                    || (i > 0 && chunkSize <= chunkSizes[i - 1]))
+                throw new IllegalArgumentException("Illegal chunk sizes %s".formatted(Arrays.toString(chunkSizes)));
 
             arena.doAllocateSlab(i, chunkSize);
+        }
 
-            chunkSize *= FACTOR;
-            i++;
+        arena.largestIndex = chunkSizes.length;
+        arena.buildIndex();
+        return arena;
+    }
+
+    /**
+     * Reads an arena written by {@link #checkpoint(DataOutput, PageWriter)}, with the chunk sizes it was written
+     * with
+     */
+    public static SlabArena restore(ConfigDef configDef, DataInput meta, PageReader pages) throws IOException {
+        final int numClasses = meta.readInt();
+        if (numClasses <= 0 || numClasses > MAX_SLAB_NUMBER)
+            throw new IllegalStateException("Illegal number of slab-classes %d in checkpoint".formatted(numClasses));
+
+        final SlabArena arena = new SlabArena(configDef);
+        for (int clsid = 0; clsid < numClasses; clsid++) {
+            arena.slabs[clsid] = SlabClass.restore(clsid, meta, pages);
         }
 
-        arena.largestIndex = i;
+        arena.largestIndex = numClasses;
+        arena.buildIndex();
+        arena.forEachLive(address -> arena.slab(SlabHandle.clsid(arena.slabMethods.location(address)))
+                .addRequested(arena.slabMethods.footprint(address)));
+
+        log.debug("restore {}", arena);
         return arena;
     }
 
+    /**
+     * Writes every slab-class to meta and bytes of every page to pages. Must not run concurrently with allocate,
+     * free or reclaim; chunks cached by magazines are not live, so they are written as free.
+     */
+    public void checkpoint(DataOutput meta, PageWriter pages) throws IOException {
+        meta.writeInt(this.largestIndex);
+        for (int clsid = 0; clsid < this.largestIndex; clsid++) {
+            slab(clsid).checkpoint(meta, pages);
+        }
+    }
+
+    /**
+     * Visits address of every live chunk
+     */
+    public void forEachLive(LongConsumer consumer) {
+        for (int clsid = 0; clsid < this.largestIndex; clsid++) {
+            final SlabClass slab = slab(clsid);
+            for (int pageId = 0; pageId < slab.pageNum(); pageId++) {
+                final SlabClass.SlabPage page = slab.page(pageId);
+                if (page == null || page.isDraining())
+                    continue;
+
+                for (long handle : slab.liveHandles(pageId))
+                    consumer.accept(slab.addressOf(handle));
+            }
+        }
+    }
+
     public SlabMethods methods() {
         return slabMethods;
     }
 
+    public ConfigDef config() {
+        return configDef;
+    }
+
+    /**
+     * Finds the smallest slab-class that fits a size, in constant time
+     *
+     * @return clsid, or -1 if size is larger than any chunk
+     */
     public int clsid(int sizeof) {
-        int ans = SMALLEST_BASE2 - 1;
-        while (ans < this.largestIndex && sizeof > slab(ans).getChunkSize())
+        if (sizeof <= 0)
+            return 0;
+        if (sizeof > slab(this.largestIndex - 1).getChunkSize())
+            return FAILED_CLSID;
+
+        if (sizeof <= DENSE_LIMIT)
+            return this.denseIndex[(sizeof - 1) / SlabSizing.ALIGNMENT];
+
+        // a granule holds only a few classes, as classes are far apart at large sizes
+        int ans = this.sparseIndex[(sizeof - 1) >>> SPARSE_GRANULE_BASE2];
+        while (sizeof > slab(ans).getChunkSize())
             ans++;
 
-        if (ans == this.largestIndex)
-            return FAILED_CLSID;
+        return ans;
+    }
+
+    /**
+     * @return chunk sizes of every slab-class, ascending
+     */
+    public int[] chunkSizes() {
+        final int[] ans = new int[this.largestIndex];
+        for (int i = 0; i < this.largestIndex; i++)
+            ans[i] = slab(i).getChunkSize();
 
         return ans;
     }
 
-    public SlabClass slab(int i) {
-        return this.slabs[i];
+    /**
+     * @return usage and internal fragmentation of every slab-class
+     */
+    public List<SlabStats> stats() {
+        final List<SlabStats> ans = new ArrayList<>(this.largestIndex);
+        for (int i = 0; i < this.largestIndex; i++)
+            ans.add(slab(i).stats());
+
+        return ans;
     }
 
-    public SlabOffset allocate(int sizeof) {
-        final int requiredSize = sizeof + SlabMethods.SLAB_META_FOOTPRINT;
-        final int clsid = clsid(requiredSize);
+    /* entry of each size bucket is the smallest class whose chunk fits the lowest size of bucket */
+    private void buildIndex() {
+        final int largestChunk = slab(this.largestIndex - 1).getChunkSize();
+
+        this.denseIndex = new byte[Math.min(DENSE_LIMIT, largestChunk) / SlabSizing.ALIGNMENT];
+        int clsid = 0;
+        for (int i = 0; i < this.denseIndex.length; i++) {
+            final int lowest = i * SlabSizing.ALIGNMENT + 1;
+            while (slab(clsid).getChunkSize() < lowest)
+                clsid++;
+            this.denseIndex[i] = (byte) clsid;
+        }
 
-        if (clsid == FAILED_CLSID) {
-            log.error("failed to find a fit-size to allocate for size {}", requiredSize);
-            throw new IllegalStateException(ERROR_NOT_FIND_CLSID);
+        this.sparseIndex = new byte[(int) (((long) largestChunk + (1 << SPARSE_GRANULE_BASE2) - 1)
+                >>> SPARSE_GRANULE_BASE2)];
+        clsid = 0;
+        for (int i = 0; i < this.sparseIndex.length; i++) {
+            final long lowest = ((long) i << SPARSE_GRANULE_BASE2) + 1;
+            while (slab(clsid).getChunkSize() < lowest)
+                clsid++;
+            this.sparseIndex[i] = (byte) clsid;
         }
+    }
+
+    public SlabClass slab(int i) {
+        return this.slabs[i];
+    }
 
-        final SlabClass slabClass = slab(clsid);
-        return slabClass.allocate();
+    /**
+     * @return handle of a chunk that fits sizeof bytes of data
+     */
+    public long allocate(int sizeof) {
+        return allocateChunk(sizeof + SlabMethods.SLAB_META_FOOTPRINT);
     }
 
     @Deprecated
     public long allocate(int hash, byte[] arr) {
-        final int requiredSize = arr.length + SlabMethods.SLAB_META_FOOTPRINT;
+        return allocate(hash, new byte[0], arr);
+    }
+
+    /**
+     * Allocates a chunk then puts key (inline, for verifying on lookup) and data into it
+     *
+     * @return address of chunk
+     */
+    public long allocate(long hash, byte[] key, byte[] arr) {
+        final long justHandle = allocateChunk(slabMethods.sizeOf(key, arr));
+
+        this.slabMethods.put(justHandle, hash, key, arr);
+
+        return slabMethods.addressOf(justHandle);
+    }
+
+    /**
+     * Allocates a chunk then puts key into it, leaving room of dataLength bytes for the caller to fill at
+     * {@link SlabMethods#dataAddress(long)}
+     *
+     * @return address of chunk
+     */
+    public long allocate(long hash, byte[] key, int dataLength) {
+        final long justHandle = allocateChunk(slabMethods.sizeOf(key, dataLength));
+
+        this.slabMethods.putHeader(justHandle, hash, key, dataLength);
+
+        return slabMethods.addressOf(justHandle);
+    }
+
+    public void free(long address) {
+        final long handle = slabMethods.location(address);
+        final int clsid = SlabHandle.clsid(handle);
+        slab(clsid).addRequested(-slabMethods.footprint(address));
+        magazine(clsid).free(handle);
+    }
+
+    /**
+     * Drains under-utilized pages of every slab-class: live chunks are moved into free chunks of other pages of the
+     * same class, then drained pages are retired, to be released to OS by {@link #releaseRetired()}, so their memory
+     * can be taken by any class later.
+     * <p>
+     * Must not run concurrently with allocate or free; chunks cached by magazines of every thread are given back
+     * first.
+     *
+     * @param maxUtilized pages utilized above it are kept
+     * @param relocator   moves references of each live chunk to its new address
+     * @return number of retired pages
+     */
+    public int reclaim(float maxUtilized, ChunkRelocator relocator) {
+        flushMagazines();
+
+        int drainedPages = 0;
+        for (int clsid = 0; clsid < this.largestIndex; clsid++) {
+            final SlabClass slab = slab(clsid);
+            final List<Integer> pageIds = slab.drainablePages(maxUtilized);
+            if (pageIds.isEmpty())
+                continue;
+
+            // every drained page must stop handing out chunks before any chunk moves
+            for (int pageId : pageIds)
+                slab.drain(pageId);
+
+            int movedChunks = 0;
+            for (int pageId : pageIds) {
+                for (long handle : slab.liveHandles(pageId)) {
+                    final long fromAddress = slab.addressOf(handle);
+                    final long destHandle = slab.allocate();
+                    final long toAddress = slabMethods.relocate(fromAddress, destHandle);
+
+                    if (relocator.relocate(fromAddress, toAddress)) {
+                        movedChunks++;
+                    } else {
+                        slab.free(destHandle); // nothing references it, drop instead of moving
+                        slab.addRequested(-slabMethods.footprint(fromAddress));
+                    }
+                    slab.free(handle);
+                }
+
+                this.retiredPages.addLast(new RetiredPage(clsid, pageId));
+            }
+
+            drainedPages += pageIds.size();
+            log.debug("{} drained {} pages; moved chunks: {}", slab, pageIds.size(), movedChunks);
+        }
+
+        return drainedPages;
+    }
+
+    /**
+     * Releases pages retired by {@link #reclaim(float, ChunkRelocator)} to OS. Caller must make sure no reader still
+     * reads a chunk of them, i.e. every reader that looked up an address before its chunk moved is done.
+     *
+     * @return number of bytes released to OS
+     */
+    public long releaseRetired() {
+        long releasedBytes = 0;
+        while (!this.retiredPages.isEmpty()) {
+            final RetiredPage retired = this.retiredPages.pollFirst();
+            releasedBytes += slab(retired.clsid()).release(retired.pageId());
+        }
+
+        return releasedBytes;
+    }
+
+    /* magazines of terminated threads are dropped once their chunks are back */
+    private void flushMagazines() {
+        for (ThreadMagazines threadMagazines : this.allMagazines) {
+            for (ChunkMagazine magazine : threadMagazines.magazines()) {
+                if (magazine != null)
+                    magazine.flush();
+            }
+
+            final Thread owner = threadMagazines.owner().get();
+            if (owner == null || !owner.isAlive())
+                this.allMagazines.remove(threadMagazines);
+        }
+    }
+
+    private long allocateChunk(int requiredSize) {
         final int clsid = clsid(requiredSize);
         if (clsid == FAILED_CLSID) {
             log.error("failed to find a fit-size to allocate for size {}", requiredSize);
             throw new IllegalStateException(ERROR_NOT_FIND_CLSID);
         }
 
-        final SlabClass slab = slab(clsid);
-        final SlabOffset justOffset = slab.allocate();
+        final long handle = magazine(clsid).allocate();
+        slab(clsid).addRequested(requiredSize);
+        return handle;
+    }
 
-        this.slabMethods.put(justOffset, hash, arr);
+    private ChunkMagazine magazine(int clsid) {
+        final ChunkMagazine[] threadMagazines = this.magazines.get();
+        ChunkMagazine magazine = threadMagazines[clsid];
+        if (magazine == null) {
+            final SlabClass slab = slab(clsid);
+            final int capacity = Math.clamp(MAGAZINE_BYTES / slab.getChunkSize(),
+                    MIN_MAGAZINE_CAPACITY, MAX_MAGAZINE_CAPACITY);
+            magazine = new ChunkMagazine(slab, capacity, (int) Thread.currentThread().threadId());
+            threadMagazines[clsid] = magazine;
+        }
 
-        return slabMethods.addressOf(justOffset);
+        return magazine;
     }
 
-    public void free(long address) {
-        final SlabOffset slabOffset = slabMethods.location(address);
-        final SlabClass slab = slab(slabOffset.getClsid());
-        slab.free(slabOffset);
+    private ChunkMagazine[] newMagazines() {
+        final ChunkMagazine[] threadMagazines = new ChunkMagazine[MAX_SLAB_NUMBER];
+        this.allMagazines.add(new ThreadMagazines(new WeakReference<>(Thread.currentThread()), threadMagazines));
+
+        return threadMagazines;
     }
 
     private void doAllocateSlab(int clsid, int chunkSize) {
@@ -124,7 +405,10 @@ public class SlabArena {
         return this.largestIndex;
     }
 
-    private long collectMemory() {
+    /**
+     * @return number of bytes of pages are being held by every slab-class
+     */
+    public long collectMemory() {
         long totalMem = 0;
         for (SlabClass slab : this.slabs) {
             if (slab == null) continue;
@@ -135,6 +419,44 @@ public class SlabArena {
         return totalMem;
     }
 
+    /**
+     * Moves references of a chunk that is being relocated by {@link #reclaim(float, ChunkRelocator)}
+     */
+    @FunctionalInterface
+    public interface ChunkRelocator {
+
+        /**
+         * @param fromAddress address of chunk is being drained
+         * @param toAddress   address of its copy
+         * @return true if references have been moved to the copy, false if nothing references the chunk any more
+         */
+        boolean relocate(long fromAddress, long toAddress);
+    }
+
+    /**
+     * Sink of page bytes written by {@link #checkpoint(DataOutput, PageWriter)}
+     */
+    @FunctionalInterface
+    public interface PageWriter {
+
+        void write(long address, long size) throws IOException;
+    }
+
+    /**
+     * Source of page bytes read by {@link #restore(ConfigDef, DataInput, PageReader)}, in the order they were written
+     */
+    @FunctionalInterface
+    public interface PageReader {
+
+        void read(long address, long size) throws IOException;
+    }
+
+    private record RetiredPage(int clsid, int pageId) {
+    }
+
+    private record ThreadMagazines(WeakReference<Thread> owner, ChunkMagazine[] magazines) {
+    }
+
     @Override
     public String toString() {
         long totalMem = collectMemory();
@@ -4,28 +4,52 @@ import org.cobra.commons.Jvm;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
-
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Chunks of one size, carved out of pages.
+ * <p>
+ * Pages are guarded by the monitor of slab-class. Free chunks are kept in striped freelists, each guarded by its own
+ * monitor: a thread that caches handles in a {@link ChunkMagazine} takes a batch from its own stripe, takes from
+ * the other stripes once it is empty, and only locks slab-class to allocate a page once all of them are empty.
+ * Marking a chunk allocated or free and {@link #addressOf(long)} never lock; a page is always published before any
+ * handle of it is handed out. Monitor of slab-class is always taken before any of a stripe.
+ */
 public class SlabClass {
 
     private static final Logger log = LoggerFactory.getLogger(SlabClass.class);
+    private static final int INIT_PAGES_CAPACITY = 4;
+    private static final int STRIPES = Integer.highestOneBit(Math.clamp(Runtime.getRuntime().availableProcessors(), 1, 16));
+
     private final int clsid;
 
     private final int chunkSize;
     private final int chunksPerPage;
     private final int chunkBitmask;
 
-    private int totalChunks;
+    private volatile int totalChunks;
 
-    private final List<SlabPage> pages = new ArrayList<>();
-    private final Freelist freelist = new Freelist();
+    private volatile SlabPage[] pages = new SlabPage[INIT_PAGES_CAPACITY];
+    private int pageNum;
+    private final Freelist[] stripes = new Freelist[STRIPES];
+    private final LongAdder requestedBytes = new LongAdder();
 
     public SlabClass(int clsid, int chunkSize, int chunksPerPage) {
         this.clsid = clsid;
         this.chunkSize = chunkSize;
         this.chunkBitmask = (chunksPerPage - 1);
         this.chunksPerPage = chunksPerPage;
+        for (int i = 0; i < STRIPES; i++)
+            this.stripes[i] = new Freelist(this::addressOf);
     }
 
     public int getId() {
@@ -48,21 +72,138 @@ public class SlabClass {
         return this.totalChunks;
     }
 
+    /**
+     * @return page of index, or null if page has been released
+     */
     SlabPage page(int index) {
-        return this.pages.get(index);
+        final SlabPage[] current = this.pages;
+        return index < current.length ? current[index] : null;
     }
 
-    SlabOffset allocate() {
-        return doPollFreelistOffset();
+    synchronized int pageNum() {
+        return this.pageNum;
+    }
+
+    /**
+     * @return handle of an allocated chunk
+     */
+    long allocate() {
+        for (; ; ) {
+            final int seenChunks = this.totalChunks;
+            for (Freelist freelist : this.stripes) {
+                synchronized (freelist) {
+                    final long handle = freelist.poll();
+                    if (handle != SlabHandle.NULL_HANDLE) {
+                        markAllocated(handle);
+                        return handle;
+                    }
+                }
+            }
+
+            allocatePage(0, seenChunks);
+        }
     }
 
-    void free(SlabOffset offset) {
-        doFreeOffset(offset);
+    void free(long handle) {
+        markFree(handle);
+        final Freelist freelist = stripe(0);
+        synchronized (freelist) {
+            doOfferHandle(freelist, handle);
+        }
+    }
+
+    /**
+     * Takes a batch of free chunks off a stripe without marking them allocated, or off another stripe once it is
+     * empty, only allocating a page if there is no free chunk at all
+     *
+     * @param dest   handles are put from index 0
+     * @param len    maximum number of chunks
+     * @param stripe any number, e.g. id of thread, that is mapped to a stripe
+     * @return number of taken chunks, at least 1
+     */
+    int take(long[] dest, int len, int stripe) {
+        for (; ; ) {
+            final int seenChunks = this.totalChunks;
+            for (int i = 0; i < STRIPES; i++) {
+                final Freelist freelist = stripe(stripe + i);
+                synchronized (freelist) {
+                    int n = 0;
+                    long handle;
+                    while (n < len && (handle = freelist.poll()) != SlabHandle.NULL_HANDLE)
+                        dest[n++] = handle;
+
+                    if (n > 0)
+                        return n;
+                }
+            }
+
+            allocatePage(stripe, seenChunks);
+        }
     }
 
-    int countFreeNum() {
+    /**
+     * Gives free chunks taken by {@link #take(long[], int, int)} back to a stripe
+     */
+    void give(long[] handles, int from, int len, int stripe) {
+        final Freelist freelist = stripe(stripe);
+        synchronized (freelist) {
+            for (int i = from; i < from + len; i++) {
+                doOfferHandle(freelist, handles[i]);
+            }
+        }
+    }
+
+    /**
+     * @return number of free chunks in freelists, not cached by any magazine
+     */
+    int countFreelisted() {
+        int ans = 0;
+        for (Freelist freelist : this.stripes) {
+            synchronized (freelist) {
+                ans += freelist.size();
+            }
+        }
+
+        return ans;
+    }
+
+    void markAllocated(long handle) {
+        page(SlabHandle.pageId(handle)).markAllocated(SlabHandle.chunkId(handle));
+    }
+
+    void markFree(long handle) {
+        page(SlabHandle.pageId(handle)).markFree(SlabHandle.chunkId(handle));
+    }
+
+    /**
+     * @return native address of a chunk handle
+     */
+    long addressOf(long handle) {
+        return page(SlabHandle.pageId(handle)).getBaseAddress() + ((long) SlabHandle.chunkId(handle) * this.chunkSize);
+    }
+
+    /**
+     * Accounts bytes that allocations asked for, negative when chunks are freed
+     */
+    void addRequested(long bytes) {
+        this.requestedBytes.add(bytes);
+    }
+
+    synchronized SlabStats stats() {
+        int allocated = 0;
+        for (int pageId = 0; pageId < this.pageNum; pageId++) {
+            final SlabPage page = page(pageId);
+            if (page != null)
+                allocated += page.getAllocatedSize();
+        }
+
+        return new SlabStats(this.clsid, this.chunkSize, this.totalChunks, allocated, this.requestedBytes.sum());
+    }
+
+    synchronized int countFreeNum() {
         int allocated = 0;
-        for (SlabPage page : pages) {
+        for (int pageId = 0; pageId < this.pageNum; pageId++) {
+            final SlabPage page = page(pageId);
             if (page == null) continue;
 
             allocated += page.getAllocatedSize();
@@ -71,35 +212,190 @@ public class SlabClass {
         return this.totalChunks - allocated;
     }
 
-    private SlabOffset doPollFreelistOffset() {
-        SlabOffset useOffset = this.freelist.poll();
+    /**
+     * Picks under-utilized pages whose live chunks fit into free chunks of other pages, least utilized first, so
+     * draining them never grows this slab-class
+     *
+     * @param maxUtilized pages utilized above it are never picked
+     * @return ids of picked pages
+     */
+    synchronized List<Integer> drainablePages(float maxUtilized) {
+        final List<Integer> candidates = new ArrayList<>();
+        int freeChunks = 0;
+        for (int pageId = 0; pageId < this.pageNum; pageId++) {
+            final SlabPage page = page(pageId);
+            if (page == null || page.isDraining())
+                continue;
+
+            freeChunks += this.chunksPerPage - page.getAllocatedSize();
+            if (page.getUtilized() <= maxUtilized)
+                candidates.add(pageId);
+        }
+        candidates.sort(Comparator.comparingInt(pageId -> page(pageId).getAllocatedSize()));
+
+        final List<Integer> ans = new ArrayList<>();
+        int movingChunks = 0;
+        for (int pageId : candidates) {
+            final int allocated = page(pageId).getAllocatedSize();
+            final int remainFreeChunks = freeChunks - (this.chunksPerPage - allocated);
+            if (movingChunks + allocated > remainFreeChunks)
+                break;
+
+            freeChunks = remainFreeChunks;
+            movingChunks += allocated;
+            ans.add(pageId);
+        }
+
+        return ans;
+    }
 
-        if (useOffset == null) {
-            doAllocatePage();
-            useOffset = this.freelist.poll();
+    /**
+     * Stops a page from handing out chunks, its free chunks are taken off freelist and chunks freed later are
+     * never put back
+     */
+    synchronized void drain(int pageId) {
+        page(pageId).markDraining();
+        for (Freelist freelist : this.stripes) {
+            synchronized (freelist) {
+                freelist.removeIf(handle -> SlabHandle.pageId(handle) == pageId);
+            }
+        }
+    }
+
+    /**
+     * @return handles of chunks are being allocated in a page
+     */
+    synchronized long[] liveHandles(int pageId) {
+        final SlabPage page = page(pageId);
+        final long[] ans = new long[page.getAllocatedSize()];
+        int i = 0;
+        for (int chunkId = 0; chunkId < this.chunksPerPage; chunkId++) {
+            if (page.isLive(chunkId))
+                ans[i++] = SlabHandle.of(this.clsid, pageId, chunkId);
+        }
+
+        return ans;
+    }
+
+    /**
+     * Returns memory of a drained page, that no longer has any allocated chunk, to OS. The page id is reused by
+     * the next allocated page.
+     *
+     * @return number of released bytes
+     */
+    synchronized long release(int pageId) {
+        final SlabPage page = page(pageId);
+        if (!page.isDraining() || page.getAllocatedSize() > 0)
+            throw new IllegalStateException("Could not release page %d of %s; %s".formatted(pageId, this, page));
+
+        page.free();
+        this.pages[pageId] = null;
+        this.totalChunks -= this.chunksPerPage;
+
+        log.debug("{} release page {}", this, pageId);
+        return page.sizeOf();
+    }
+
+    /**
+     * Writes chunk size, page layout and live bitmap of every page to meta, and bytes of every page to pages.
+     * Released and draining pages are written as absent.
+     */
+    synchronized void checkpoint(DataOutput meta, SlabArena.PageWriter pages) throws IOException {
+        meta.writeInt(this.chunkSize);
+        meta.writeInt(this.chunksPerPage);
+        meta.writeInt(this.pageNum);
+        for (int pageId = 0; pageId < this.pageNum; pageId++) {
+            final SlabPage page = page(pageId);
+            final boolean present = page != null && !page.isDraining();
+            meta.writeBoolean(present);
+            if (!present)
+                continue;
+
+            for (int i = 0; i < page.liveBits.length(); i++)
+                meta.writeLong(page.liveBits.get(i));
+
+            pages.write(page.getBaseAddress(), page.sizeOf());
+        }
+    }
+
+    /**
+     * Reads a slab-class written by {@link #checkpoint(DataOutput, SlabArena.PageWriter)}. Pages keep their ids,
+     * so handles inside chunk headers stay valid; freelist is rebuilt from chunks that are not live.
+     */
+    static SlabClass restore(int clsid, DataInput meta, SlabArena.PageReader pages) throws IOException {
+        final int chunkSize = meta.readInt();
+        final int chunksPerPage = meta.readInt();
+        final int pageNum = meta.readInt();
+        if (chunkSize < Long.BYTES || chunksPerPage <= 0 || pageNum < 0 || pageNum > SlabHandle.MAX_PAGE_ID + 1)
+            throw new IllegalStateException("Illegal checkpoint of slab-class %d; chunk size: %d, chunks per page: %d, "
+                    .formatted(clsid, chunkSize, chunksPerPage) + "pages: " + pageNum);
+
+        final SlabClass slab = new SlabClass(clsid, chunkSize, chunksPerPage);
+        synchronized (slab) {
+            slab.pages = new SlabPage[Math.max(INIT_PAGES_CAPACITY, pageNum)];
+            slab.pageNum = pageNum;
+            for (int pageId = 0; pageId < pageNum; pageId++) {
+                if (!meta.readBoolean())
+                    continue; // slot is reused by the next allocated page
+
+                final SlabPage page = slab.new SlabPage();
+                page.preallocate();
+                for (int i = 0; i < page.liveBits.length(); i++)
+                    page.restoreLiveBits(i, meta.readLong());
+
+                pages.read(page.getBaseAddress(), page.sizeOf());
+                slab.pages[pageId] = page;
+                slab.totalChunks += chunksPerPage;
+
+                for (int chunkId = 0; chunkId < chunksPerPage; chunkId++) {
+                    if (!page.isLive(chunkId))
+                        slab.stripe(pageId).offer(SlabHandle.of(clsid, pageId, chunkId));
+                }
+            }
         }
 
-        page(useOffset.getPageId()).increaseAllocated();
+        return slab;
+    }
+
+    private Freelist stripe(int stripe) {
+        return this.stripes[stripe & (STRIPES - 1)];
+    }
 
-        return useOffset;
+    /* a page is only allocated if no other thread has added chunks since stripes were seen empty */
+    private synchronized void allocatePage(int stripe, int seenChunks) {
+        if (this.totalChunks == seenChunks)
+            doAllocatePage(stripe(stripe));
     }
 
-    private void doFreeOffset(SlabOffset offset) {
-        freelist.offer(offset);
-        page(offset.getPageId()).decreaseAllocated();
+    /* must hold monitor of freelist; drain marks a page before it clears every stripe, so none is put back after */
+    private void doOfferHandle(Freelist freelist, long handle) {
+        if (!page(SlabHandle.pageId(handle)).isDraining())
+            freelist.offer(handle);
     }
 
-    private void doAllocatePage() {
+    private void doAllocatePage(Freelist freelist) {
         final long startMs = System.currentTimeMillis();
 
-        final int pageId = this.pages.size();
         final SlabPage newPage = new SlabPage();
-        this.pages.addLast(newPage);
-
         newPage.preallocate();
 
-        for (int i = chunksPerPage - 1; i >= 0; i--) {
-            freelist.offer(new SlabOffset(clsid, pageId, i));
+        int pageId = 0;
+        while (pageId < this.pageNum && this.pages[pageId] != null)
+            pageId++;
+
+        if (pageId == this.pageNum) {
+            if (pageId > SlabHandle.MAX_PAGE_ID)
+                throw new IllegalStateException("Could not allocate more than %d pages of %s"
+                        .formatted(SlabHandle.MAX_PAGE_ID + 1, this));
+            if (pageId == this.pages.length)
+                this.pages = Arrays.copyOf(this.pages, this.pages.length * 2);
+
+            this.pageNum++;
+        }
+        this.pages[pageId] = newPage;
+
+        synchronized (freelist) {
+            freelist.offerPage(clsid, pageId, chunksPerPage);
         }
         totalChunks += chunksPerPage;
 
@@ -115,41 +411,72 @@ public class SlabClass {
 
     final class SlabPage {
 
+        private final AtomicLongArray liveBits = new AtomicLongArray((chunksPerPage + Long.SIZE - 1) / Long.SIZE);
+        private final AtomicInteger allocatedSize = new AtomicInteger();
         private long baseAddress;
-        private int allocatedSize;
+        private volatile boolean draining;
 
         public long getBaseAddress() {
             return this.baseAddress;
         }
 
         public int getAllocatedSize() {
-            return this.allocatedSize;
+            return this.allocatedSize.get();
         }
 
         public float getUtilized() {
-            return (float) this.allocatedSize / chunksPerPage;
+            return (float) getAllocatedSize() / chunksPerPage;
+        }
+
+        public boolean isDraining() {
+            return this.draining;
+        }
+
+        void markDraining() {
+            this.draining = true;
         }
 
-        void increaseAllocated() {
-            this.allocatedSize++;
+        boolean isLive(int chunkId) {
+            return (this.liveBits.get(chunkId / Long.SIZE) & (1L << chunkId)) != 0;
         }
 
-        void decreaseAllocated() {
-            this.allocatedSize--;
+        void markAllocated(int chunkId) {
+            this.liveBits.getAndAccumulate(chunkId / Long.SIZE, 1L << chunkId, (bits, mask) -> bits | mask);
+            this.allocatedSize.incrementAndGet();
+        }
+
+        void markFree(int chunkId) {
+            this.liveBits.getAndAccumulate(chunkId / Long.SIZE, ~(1L << chunkId), (bits, mask) -> bits & mask);
+            this.allocatedSize.decrementAndGet();
+        }
+
+        void restoreLiveBits(int index, long bits) {
+            this.liveBits.set(index, bits);
+            this.allocatedSize.addAndGet(Long.bitCount(bits));
         }
 
         void preallocate() {
             malloc();
-            this.allocatedSize = 0;
+            this.allocatedSize.set(0);
+        }
+
+        long sizeOf() {
+            return (long) chunkSize * chunksPerPage;
+        }
+
+        void free() {
+            Jvm.osMemory().freeMemory(this.baseAddress, sizeOf());
+            this.baseAddress = 0;
         }
 
         private void malloc() {
-            this.baseAddress = Jvm.osMemory().allocate((long) chunkSize * chunksPerPage);
+            this.baseAddress = Jvm.osMemory().allocate(sizeOf());
         }
 
         @Override
         public String toString() {
-            return "SlabPage(baseAddress=%d, allocatedSize=%d)".formatted(baseAddress, allocatedSize);
+            return "SlabPage(baseAddress=%d, allocatedSize=%d, draining=%s)"
+                    .formatted(baseAddress, getAllocatedSize(), draining);
         }
     }
 }
@@ -0,0 +1,45 @@
+package org.cobra.core.memory.slab;
+
+/**
+ * A chunk location packed into a long: [clsid (8) | page-id (24) | chunk-id (32)], so locating a chunk allocates
+ * nothing on heap
+ */
+public final class SlabHandle {
+
+    /**
+     * Handle of no chunk, its clsid is out of range of any slab-class
+     */
+    public static final long NULL_HANDLE = -1L;
+
+    private static final int CHUNK_BITS = 32;
+    private static final int PAGE_BITS = 24;
+    private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+    private static final long PAGE_MASK = (1L << PAGE_BITS) - 1;
+
+    public static final int MAX_PAGE_ID = (int) PAGE_MASK;
+
+    private SlabHandle() {
+    }
+
+    public static long of(int clsid, int pageId, int chunkId) {
+        return ((long) clsid << (PAGE_BITS + CHUNK_BITS))
+                | ((pageId & PAGE_MASK) << CHUNK_BITS)
+                | (chunkId & CHUNK_MASK);
+    }
+
+    public static int clsid(long handle) {
+        return (int) (handle >>> (PAGE_BITS + CHUNK_BITS));
+    }
+
+    public static int pageId(long handle) {
+        return (int) ((handle >>> CHUNK_BITS) & PAGE_MASK);
+    }
+
+    public static int chunkId(long handle) {
+        return (int) (handle & CHUNK_MASK);
+    }
+
+    public static String toString(long handle) {
+        return "SlabHandle(clsid=%d, pageId=%d, chunkId=%d)".formatted(clsid(handle), pageId(handle), chunkId(handle));
+    }
+}
@@ -4,8 +4,13 @@ import org.cobra.commons.Jvm;
 import org.cobra.core.encoding.Varint;
 import org.cobra.core.memory.OSMemory;
 
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
+/**
+ * Layout of a chunk: [clsid (1) | page-offset (4) | hash (8) | var_len key | key | var_len data | data]
+ */
 public class SlabMethods {
 
     private static final OSMemory memory = Jvm.osMemory();
@@ -13,87 +18,262 @@ public class SlabMethods {
 
     static final int SLAB_CLASS_FOOTPRINT = Byte.BYTES;
     static final int SLAB_OFFSET_FOOTPRINT = Integer.BYTES;
-    static final int SLAB_HASH_KEY_FOOTPRINT = Integer.BYTES;
+    static final int SLAB_HASH_KEY_FOOTPRINT = Long.BYTES;
     static final int SLAB_META_FOOTPRINT = SLAB_CLASS_FOOTPRINT + SLAB_OFFSET_FOOTPRINT + SLAB_HASH_KEY_FOOTPRINT;
 
+    private static final byte[] EMPTY_KEY = new byte[0];
+    private static final boolean NATIVE_BIG_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
+
     private final SlabArena arena;
 
     public SlabMethods(SlabArena arena) {
         this.arena = arena;
     }
 
-    public byte[] get(SlabOffset offset) {
-        SlabClass slab = arena.slab(offset.getClsid());
-        SlabClass.SlabPage page = slab.page(offset.getPageId());
-        long address = page.getBaseAddress() + ((long) slab.getChunkSize() * offset.getChunkId()) + SLAB_META_FOOTPRINT;
+    public byte[] get(long address) {
+        long skipKeyAddress = skipVarBytes(address + SLAB_META_FOOTPRINT);
 
-        int varintSize = varint.readVarInt(address);
-        address += varint.sizeOfVarint(varintSize);
+        int varintSize = varint.readVarInt(skipKeyAddress);
+        skipKeyAddress += varint.sizeOfVarint(varintSize);
         byte[] ans = new byte[varintSize];
 
-        memory.copyMemory(null, address, ans, OSMemory.ARRAY_BYTE_BASE_OFFSET, varintSize);
+        memory.copyMemory(null, skipKeyAddress, ans, OSMemory.ARRAY_BYTE_BASE_OFFSET, varintSize);
 
         return ans;
     }
 
-    public byte[] get(long address) {
-        long skipMetaAddress = address + SLAB_META_FOOTPRINT;
+    /**
+     * @return address of the data (past its var_len) of chunk
+     */
+    public long dataAddress(long address) {
+        final long lenAddress = skipVarBytes(address + SLAB_META_FOOTPRINT);
+        return lenAddress + varint.sizeOfVarint(varint.readVarInt(lenAddress));
+    }
+
+    /**
+     * @return length of the data of chunk
+     */
+    public int dataLength(long address) {
+        return varint.readVarInt(skipVarBytes(address + SLAB_META_FOOTPRINT));
+    }
+
+    /**
+     * @return length of the key of chunk
+     */
+    public int keyLength(long address) {
+        return varint.readVarInt(address + SLAB_META_FOOTPRINT);
+    }
+
+    /**
+     * Copies the data of chunk into a caller-supplied buffer at its position, then advances the position
+     *
+     * @param address chunk address
+     * @param sink    destination buffer, either heap or direct
+     * @return number of copied bytes
+     * @throws BufferOverflowException if sink does not have enough remaining space
+     */
+    public int copyData(long address, ByteBuffer sink) {
+        final long lenAddress = skipVarBytes(address + SLAB_META_FOOTPRINT);
+        final int len = varint.readVarInt(lenAddress);
+        final long srcAddress = lenAddress + varint.sizeOfVarint(len);
+        if (sink.remaining() < len)
+            throw new BufferOverflowException();
+
+        final int position = sink.position();
+        if (sink.isDirect()) {
+            memory.copyMemory(srcAddress, memory.addressOf(sink) + position, len);
+        } else if (sink.hasArray()) {
+            memory.copyMemory(null, srcAddress, sink.array(),
+                    OSMemory.ARRAY_BYTE_BASE_OFFSET + sink.arrayOffset() + position, len);
+        } else {
+            for (int i = 0; i < len; i++)
+                sink.put(position + i, memory.readByte(srcAddress + i));
+        }
+
+        sink.position(position + len);
+        return len;
+    }
 
-        int varintSize = varint.readVarInt(skipMetaAddress);
-        skipMetaAddress += varint.sizeOfVarint(varintSize);
+    public byte[] key(long address) {
+        long keyAddress = address + SLAB_META_FOOTPRINT;
+
+        int varintSize = varint.readVarInt(keyAddress);
+        keyAddress += varint.sizeOfVarint(varintSize);
         byte[] ans = new byte[varintSize];
 
-        memory.copyMemory(null, skipMetaAddress, ans, OSMemory.ARRAY_BYTE_BASE_OFFSET, varintSize);
+        memory.copyMemory(null, keyAddress, ans, OSMemory.ARRAY_BYTE_BASE_OFFSET, varintSize);
 
         return ans;
     }
 
-    public SlabOffset location(long address) {
-        final byte[] meta = new byte[SLAB_META_FOOTPRINT];
-        memory.copyMemory(null, address, meta, 0, SLAB_META_FOOTPRINT);
-        final ByteBuffer buffer = ByteBuffer.wrap(meta);
+    public long hash(long address) {
+        final long hash = memory.readLong(address + SLAB_CLASS_FOOTPRINT + SLAB_OFFSET_FOOTPRINT);
+        return NATIVE_BIG_ENDIAN ? hash : Long.reverseBytes(hash);
+    }
+
+    /**
+     * Compares the inline key of chunk with a given key without copying it out, 8 bytes at a time
+     *
+     * @param address chunk address, a non-positive address never matches
+     * @param key     key to compare
+     * @return true if both keys are equal
+     */
+    public boolean keyEquals(long address, byte[] key) {
+        if (address <= 0)
+            return false;
+
+        return varBytesEqual(address + SLAB_META_FOOTPRINT, key);
+    }
+
+    /**
+     * Compares the data of chunk with given data without copying it out
+     *
+     * @param address chunk address, a non-positive address never matches
+     * @param data    data to compare
+     * @return true if both are equal
+     */
+    public boolean dataEquals(long address, byte[] data) {
+        if (address <= 0)
+            return false;
 
-        final int clsid = buffer.get();
-        final int pageOffset = buffer.getInt();
-        final int pageId = pageOffset / arena.slab(clsid).getChunksPerPage();
-        final int chunkId = pageOffset & arena.slab(clsid).getChunkMasking();
+        return varBytesEqual(skipVarBytes(address + SLAB_META_FOOTPRINT), data);
+    }
+
+    /* compares [var_len | bytes] at address with bytes, 8 bytes at a time */
+    private boolean varBytesEqual(long address, byte[] bytes) {
+        final int len = varint.readVarInt(address);
+        if (len != bytes.length)
+            return false;
+
+        address += varint.sizeOfVarint(len);
+        int i = 0;
+        for (; i + Long.BYTES <= len; i += Long.BYTES) {
+            if (memory.readLong(address + i) != memory.readLong(bytes, OSMemory.ARRAY_BYTE_BASE_OFFSET + i))
+                return false;
+        }
+        for (; i < len; i++) {
+            if (memory.readByte(address + i) != bytes[i])
+                return false;
+        }
 
-        return new SlabOffset(clsid, pageId, chunkId);
+        return true;
     }
 
-    public void put(SlabOffset offset, int hash, byte[] arr) {
-        SlabClass slab = arena.slab(offset.getClsid());
-        SlabClass.SlabPage page = slab.page(offset.getPageId());
+    /**
+     * @return handle of chunk, read from its header
+     */
+    public long location(long address) {
+        final int clsid = memory.readByte(address);
+        final int pageOffset = readBigEndianInt(address + SLAB_CLASS_FOOTPRINT);
+        final int chunksPerPage = arena.slab(clsid).getChunksPerPage();
+        final int pageId = pageOffset / chunksPerPage;
+        final int chunkId = pageOffset % chunksPerPage;
 
-        long address = page.getBaseAddress() + ((long) slab.getChunkSize() * offset.getChunkId());
+        return SlabHandle.of(clsid, pageId, chunkId);
+    }
+
+    public void put(long handle, long hash, byte[] arr) {
+        put(handle, hash, EMPTY_KEY, arr);
+    }
 
-        int varintSize = varint.sizeOfVarint(arr.length);
-        // todo: poll
-        int length = varintSize + arr.length + SLAB_META_FOOTPRINT;
-        ByteBuffer buffer = ByteBuffer.allocate(length);
+    public void put(long handle, long hash, byte[] key, byte[] arr) {
+        final long dataAddress = putHeader(handle, hash, key, arr.length);
+
+        // put data
+        memory.copyMemory(dataAddress, arr, 0, arr.length);
+    }
+
+    /**
+     * Puts everything of a chunk but its data, so the data can be copied straight into chunk by the caller
+     *
+     * @return address where the data of dataLength bytes is going to be put
+     */
+    public long putHeader(long handle, long hash, byte[] key, int dataLength) {
+        final long address = addressOf(handle);
 
-        buffer.rewind();
         // put clsid
-        buffer.put((byte) offset.getClsid());
+        memory.writeByte(address, (byte) SlabHandle.clsid(handle));
 
         // put page-offset
-        int pageOffset = (offset.getPageId() * slab.getChunksPerPage()) + offset.getChunkId();
-        buffer.putInt(pageOffset);
+        writeBigEndianInt(address + SLAB_CLASS_FOOTPRINT, pageOffsetOf(handle));
 
         // put hash
-        buffer.putInt(hash);
+        memory.writeLong(address + SLAB_CLASS_FOOTPRINT + SLAB_OFFSET_FOOTPRINT,
+                NATIVE_BIG_ENDIAN ? hash : Long.reverseBytes(hash));
+
+        // put var_len key and key
+        long cursor = varint.writeVarInt(address + SLAB_META_FOOTPRINT, key.length);
+        memory.copyMemory(cursor, key, 0, key.length);
+        cursor += key.length;
 
         // put var_len
-        varint.writeVarInt(buffer, arr.length);
+        return varint.writeVarInt(cursor, dataLength);
+    }
 
-        // put data
-        buffer.put(arr);
+    /**
+     * Copies a whole chunk into another chunk of the same slab-class, then points its page-offset at the new
+     * location
+     *
+     * @param address chunk address to copy from
+     * @param offset  offset of destination chunk
+     * @return address of destination chunk
+     */
+    public long relocate(long address, long handle) {
+        final long destAddress = addressOf(handle);
+        memory.copyMemory(address, destAddress, arena.slab(SlabHandle.clsid(handle)).getChunkSize());
+        writeBigEndianInt(destAddress + SLAB_CLASS_FOOTPRINT, pageOffsetOf(handle));
+
+        return destAddress;
+    }
+
+    /**
+     * @return number of bytes a chunk needs to hold a key and its data
+     */
+    public int sizeOf(byte[] key, byte[] arr) {
+        return sizeOf(key, arr.length);
+    }
+
+    public int sizeOf(byte[] key, int dataLength) {
+        return footprint(key.length, dataLength);
+    }
+
+    /**
+     * @return number of bytes a chunk needs to hold a key of keyLength and data of dataLength
+     */
+    public static int footprint(int keyLength, int dataLength) {
+        return SLAB_META_FOOTPRINT
+                + varint.sizeOfVarint(keyLength) + keyLength
+                + varint.sizeOfVarint(dataLength) + dataLength;
+    }
+
+    /**
+     * @return number of bytes of chunk are being used by its header and data
+     */
+    public int footprint(long address) {
+        return footprint(varint.readVarInt(address + SLAB_META_FOOTPRINT), dataLength(address));
+    }
+
+    public long addressOf(long handle) {
+        return arena.slab(SlabHandle.clsid(handle)).addressOf(handle);
+    }
+
+    private int pageOffsetOf(long handle) {
+        final SlabClass slab = arena.slab(SlabHandle.clsid(handle));
+        return (SlabHandle.pageId(handle) * slab.getChunksPerPage()) + SlabHandle.chunkId(handle);
+    }
+
+    /* chunk header is big-endian, as it has always been written */
+    private static int readBigEndianInt(long address) {
+        final int i32 = memory.readInt(address);
+        return NATIVE_BIG_ENDIAN ? i32 : Integer.reverseBytes(i32);
+    }
 
-        memory.copyMemory(address, buffer.array(), 0, length);
+    private static void writeBigEndianInt(long address, int i32) {
+        memory.writeInt(address, NATIVE_BIG_ENDIAN ? i32 : Integer.reverseBytes(i32));
     }
 
-    public long addressOf(SlabOffset offset) {
-        final SlabClass slab = arena.slab(offset.getClsid());
-        return slab.page(offset.getPageId()).getBaseAddress() + ((long) offset.getChunkId() * slab.getChunkSize());
+    private long skipVarBytes(long address) {
+        final int len = varint.readVarInt(address);
+        return address + varint.sizeOfVarint(len) + len;
     }
 }
@@ -0,0 +1,193 @@
+package org.cobra.core.memory.slab;
+
+import java.util.Arrays;
+
+/**
+ * Derives chunk sizes of slab-classes, every size is a multiple of {@link #ALIGNMENT} and sizes are ascending
+ */
+public final class SlabSizing {
+
+    public static final int ALIGNMENT = Long.BYTES;
+
+    /* histogram of samples is coarsened to at most this many buckets, bounding the cost of sampled sizing */
+    private static final int MAX_SAMPLE_BUCKETS = 512;
+
+    private SlabSizing() {
+    }
+
+    /**
+     * Grows chunk sizes by a factor, like memcached; the largest class always fits maxChunkSize
+     *
+     * @param smallest   chunk size of the first class
+     * @param factor     growth factor, greater than 1
+     * @param maxChunk   largest chunk size
+     * @param maxClasses maximum number of classes
+     */
+    public static int[] geometric(int smallest, double factor, int maxChunk, int maxClasses) {
+        if (factor <= 1)
+            throw new IllegalArgumentException("Illegal growth factor %f".formatted(factor));
+        if (smallest <= 0 || smallest > maxChunk)
+            throw new IllegalArgumentException("Illegal smallest chunk size %d of max %d".formatted(smallest, maxChunk));
+
+        final int[] sizes = new int[maxClasses];
+        int n = 0;
+        long size = align(smallest);
+        while (size < maxChunk && n < maxClasses - 1) {
+            sizes[n++] = (int) size;
+            size = Math.max(align((long) Math.ceil(size * factor)), size + ALIGNMENT);
+        }
+        sizes[n++] = align(maxChunk);
+
+        return Arrays.copyOf(sizes, n);
+    }
+
+    /**
+     * Picks chunk sizes that minimize internal fragmentation of sampled record footprints, then keeps growing by
+     * a factor above the largest sample, so records larger than any sample still fit
+     *
+     * @param footprints     sampled number of bytes of chunks that records need
+     * @param sampledClasses maximum number of classes fitted to samples
+     * @param factor         growth factor of classes above the largest sample
+     * @param maxChunk       largest chunk size
+     * @param maxClasses     maximum number of classes in total
+     */
+    public static int[] sampled(int[] footprints, int sampledClasses, double factor, int maxChunk, int maxClasses) {
+        if (footprints.length == 0)
+            throw new IllegalArgumentException("No sampled footprint");
+
+        final Histogram histogram = Histogram.of(footprints, maxChunk);
+        final int[] fitted = fit(histogram, Math.min(sampledClasses, maxClasses - 1));
+
+        final int largest = fitted[fitted.length - 1];
+        if (largest >= maxChunk)
+            return fitted;
+
+        final int[] above = geometric((int) Math.min(maxChunk, align((long) Math.ceil(largest * factor))),
+                factor, maxChunk, maxClasses - fitted.length);
+
+        final int[] sizes = Arrays.copyOf(fitted, fitted.length + above.length);
+        System.arraycopy(above, 0, sizes, fitted.length, above.length);
+        return sizes;
+    }
+
+    /**
+     * @return fraction of bytes of chunks that samples would not use with given chunk sizes
+     */
+    public static double fragmentation(int[] footprints, int[] chunkSizes) {
+        long used = 0;
+        long allocated = 0;
+        for (int footprint : footprints) {
+            int i = Arrays.binarySearch(chunkSizes, footprint);
+            if (i < 0)
+                i = -i - 1;
+            if (i == chunkSizes.length)
+                continue; // does not fit any class
+
+            used += footprint;
+            allocated += chunkSizes[i];
+        }
+
+        return allocated == 0 ? 0 : 1 - (double) used / allocated;
+    }
+
+    /* dp over sorted distinct sizes: a class ends at a sampled size and holds every size since previous class */
+    private static int[] fit(Histogram histogram, int classes) {
+        final int n = histogram.sizes.length;
+        final int k = Math.min(classes, n);
+
+        final long[] prefixCount = new long[n + 1];
+        final long[] prefixBytes = new long[n + 1];
+        for (int i = 0; i < n; i++) {
+            prefixCount[i + 1] = prefixCount[i] + histogram.counts[i];
+            prefixBytes[i + 1] = prefixBytes[i] + histogram.counts[i] * histogram.sizes[i];
+        }
+
+        // waste[c][j]: least waste of sizes [0, j] with c + 1 classes, the last one ends at j
+        final long[][] waste = new long[k][n];
+        final int[][] from = new int[k][n];
+        for (int j = 0; j < n; j++) {
+            waste[0][j] = groupWaste(histogram, prefixCount, prefixBytes, 0, j);
+        }
+        for (int c = 1; c < k; c++) {
+            for (int j = 0; j < n; j++) {
+                waste[c][j] = waste[c - 1][j];
+                from[c][j] = -1; // no more class than c
+                for (int a = 1; a <= j; a++) {
+                    final long candidate = waste[c - 1][a - 1] + groupWaste(histogram, prefixCount, prefixBytes, a, j);
+                    if (candidate < waste[c][j]) {
+                        waste[c][j] = candidate;
+                        from[c][j] = a;
+                    }
+                }
+            }
+        }
+
+        final int[] ends = new int[k];
+        int m = 0;
+        int j = n - 1;
+        for (int c = k - 1; c >= 0 && j >= 0; c--) {
+            if (c > 0 && from[c][j] == -1)
+                continue;
+
+            ends[m++] = histogram.sizes[j];
+            j = c == 0 ? -1 : from[c][j] - 1;
+        }
+
+        final int[] sizes = Arrays.copyOf(ends, m);
+        Arrays.sort(sizes);
+        return sizes;
+    }
+
+    private static long groupWaste(Histogram histogram, long[] prefixCount, long[] prefixBytes, int a, int j) {
+        final long count = prefixCount[j + 1] - prefixCount[a];
+        final long bytes = prefixBytes[j + 1] - prefixBytes[a];
+        return count * histogram.sizes[j] - bytes;
+    }
+
+    static int align(int size) {
+        return (int) align((long) size);
+    }
+
+    private static long align(long size) {
+        return (size + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    /**
+     * Counts of distinct aligned sizes, ascending
+     */
+    private record Histogram(int[] sizes, long[] counts) {
+
+        static Histogram of(int[] footprints, int maxChunk) {
+            int granule = ALIGNMENT;
+            while (true) {
+                final int[] sorted = new int[footprints.length];
+                for (int i = 0; i < footprints.length; i++) {
+                    final long rounded = (Math.max(footprints[i], 1) + granule - 1L) / granule * granule;
+                    sorted[i] = (int) Math.min(rounded, align(maxChunk));
+                }
+                Arrays.sort(sorted);
+
+                int distinct = 0;
+                for (int i = 0; i < sorted.length; i++) {
+                    if (i == 0 || sorted[i] != sorted[i - 1])
+                        distinct++;
+                }
+
+                if (distinct <= MAX_SAMPLE_BUCKETS) {
+                    final int[] sizes = new int[distinct];
+                    final long[] counts = new long[distinct];
+                    int b = -1;
+                    for (int i = 0; i < sorted.length; i++) {
+                        if (i == 0 || sorted[i] != sorted[i - 1])
+                            sizes[++b] = sorted[i];
+                        counts[b]++;
+                    }
+
+                    return new Histogram(sizes, counts);
+                }
+
+                granule *= 2;
+            }
+        }
+    }
+}
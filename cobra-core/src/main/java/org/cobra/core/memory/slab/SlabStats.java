@@ -0,0 +1,29 @@
+package org.cobra.core.memory.slab;
+
+/**
+ * Usage of a slab-class
+ *
+ * @param totalChunks     number of chunks of every page
+ * @param allocatedChunks number of chunks are being allocated
+ * @param requestedBytes  number of bytes that allocated chunks were asked for
+ */
+public record SlabStats(int clsid, int chunkSize, int totalChunks, int allocatedChunks, long requestedBytes) {
+
+    public long allocatedBytes() {
+        return (long) this.chunkSize * this.allocatedChunks;
+    }
+
+    /**
+     * @return fraction of bytes of allocated chunks that are not used (internal fragmentation)
+     */
+    public double fragmentation() {
+        final long allocatedBytes = allocatedBytes();
+        return allocatedBytes == 0 ? 0 : 1 - (double) this.requestedBytes / allocatedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "SlabStats(clsid=%d, chunkSize=%d, totalChunks=%d, allocatedChunks=%d, fragmentation=%.2f%%)"
+                .formatted(clsid, chunkSize, totalChunks, allocatedChunks, fragmentation() * 100);
+    }
+}
@@ -1,6 +1,8 @@
 package org.cobra.core.objects;
 
+import org.cobra.commons.Jvm;
 import org.cobra.commons.utils.Utils;
+import org.cobra.core.memory.OSMemory;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -10,6 +12,8 @@ import java.nio.channels.FileChannel;
 
 public class BlobByteBuffer {
 
+    private static final OSMemory memory = Jvm.osMemory();
+
     private final ByteBuffer[] buffers;
     private final long size;
     private final int shift;
@@ -88,7 +92,30 @@ public class BlobByteBuffer {
         }
     }
 
+    public short getShort(long pos) {
+        final ByteBuffer spine = spineOf(pos, Short.BYTES);
+        if (spine != null)
+            return spine.getShort((int) (pos & this.alignMasking));
+
+        return (short) ((getByte(pos) << 8) | (getByte(pos + 1) & 0xff));
+    }
+
+    public int getInt(long pos) {
+        final ByteBuffer spine = spineOf(pos, Integer.BYTES);
+        if (spine != null)
+            return spine.getInt((int) (pos & this.alignMasking));
+
+        return ((getByte(pos)) << 24) |
+                ((getByte(pos + 1) & 0xff) << 16) |
+                ((getByte(pos + 2) & 0xff) << 8) |
+                ((getByte(pos + 3) & 0xff));
+    }
+
     public long getLong(long pos) {
+        final ByteBuffer spine = spineOf(pos, Long.BYTES);
+        if (spine != null)
+            return spine.getLong((int) (pos & this.alignMasking));
+
         byte[] bytes = new byte[Long.BYTES];
         for (int i = 0; i < Long.BYTES; i++) {
             bytes[i] = getByte(pos + i);
@@ -103,4 +130,61 @@ public class BlobByteBuffer {
                 (((long) (bytes[6] & 0xff)) << 8) |
                 (((long) (bytes[7] & 0xff))));
     }
+
+    /**
+     * Copies bytes at a position into an array, crossing buffer boundaries if needed
+     */
+    public void getBytes(long pos, byte[] dest, int destOffset, int len) {
+        checkRange(pos, len);
+
+        int copied = 0;
+        while (copied < len) {
+            final ByteBuffer spine = this.buffers[(int) ((pos + copied) >>> this.shift)];
+            final int byteIndex = (int) ((pos + copied) & this.alignMasking);
+            final int n = Math.min(len - copied, spine.limit() - byteIndex);
+
+            spine.get(byteIndex, dest, destOffset + copied, n);
+            copied += n;
+        }
+    }
+
+    /**
+     * Copies bytes at a position straight into native memory, crossing buffer boundaries if needed
+     */
+    public void copyTo(long pos, long address, long len) {
+        checkRange(pos, len);
+
+        long copied = 0;
+        while (copied < len) {
+            final ByteBuffer spine = this.buffers[(int) ((pos + copied) >>> this.shift)];
+            final int byteIndex = (int) ((pos + copied) & this.alignMasking);
+            final int n = (int) Math.min(len - copied, spine.limit() - byteIndex);
+
+            if (spine.isDirect()) {
+                memory.copyMemory(memory.addressOf(spine) + byteIndex, address + copied, n);
+            } else {
+                for (int i = 0; i < n; i++)
+                    memory.writeByte(address + copied + i, spine.get(byteIndex + i));
+            }
+            copied += n;
+        }
+    }
+
+    public long size() {
+        return this.size;
+    }
+
+    /* the buffer holding all of [pos, pos + len), or null if the range crosses a buffer boundary */
+    private ByteBuffer spineOf(long pos, int len) {
+        checkRange(pos, len);
+
+        final ByteBuffer spine = this.buffers[(int) (pos >>> this.shift)];
+        return (pos & this.alignMasking) + len <= spine.limit() ? spine : null;
+    }
+
+    private void checkRange(long pos, long len) {
+        if (pos < 0 || len < 0 || pos + len > this.size)
+            throw new IllegalArgumentException("Invalid range; position: " + pos + "; length: " + len
+                    + "; capacity: " + this.size);
+    }
 }
@@ -0,0 +1,90 @@
+package org.cobra.core.objects;
+
+import java.util.Objects;
+
+/**
+ * Describes a published blob by its type, versions and size in bytes, without its content.
+ * <p>
+ * A descriptor round-trips with the published name of blob, so a store can be indexed by listing names only.
+ */
+public final class BlobDescriptor {
+
+    private final BlobType blobType;
+    private final long fromVersion;
+    private final long toVersion;
+    private final long size;
+
+    public BlobDescriptor(BlobType blobType, long fromVersion, long toVersion, long size) {
+        this.blobType = Objects.requireNonNull(blobType, "blobType");
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        this.size = size;
+    }
+
+    public static BlobDescriptor snapshot(long version, long size) {
+        return new BlobDescriptor(BlobType.SNAPSHOT, VersioningBlob.VERSION_UNDEFINED, version, size);
+    }
+
+    /**
+     * Parses a published name of blob
+     *
+     * @return descriptor, or null if name is not of a versioning blob
+     */
+    public static BlobDescriptor parse(String filename, long size) {
+        for (BlobType blobType : BlobType.values()) {
+            final String prefix = blobType.prefix() + "-";
+            if (!filename.startsWith(prefix))
+                continue;
+
+            final String[] versions = filename.substring(prefix.length()).split("-");
+            try {
+                if (blobType == BlobType.SNAPSHOT && versions.length == 1)
+                    return snapshot(Long.parseLong(versions[0]), size);
+                if (blobType != BlobType.SNAPSHOT && versions.length == 2)
+                    return new BlobDescriptor(blobType, Long.parseLong(versions[0]), Long.parseLong(versions[1]), size);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        return null;
+    }
+
+    public BlobType blobType() {
+        return this.blobType;
+    }
+
+    public long fromVersion() {
+        return this.fromVersion;
+    }
+
+    public long toVersion() {
+        return this.toVersion;
+    }
+
+    public long size() {
+        return this.size;
+    }
+
+    public String filename() {
+        return this.blobType.filename(this.fromVersion, this.toVersion);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof BlobDescriptor other) {
+            return other.blobType == blobType && other.fromVersion == fromVersion && other.toVersion == toVersion;
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(blobType, fromVersion, toVersion);
+    }
+
+    @Override
+    public String toString() {
+        return "BlobDescriptor(name=%s, size=%d)".formatted(filename(), size);
+    }
+}
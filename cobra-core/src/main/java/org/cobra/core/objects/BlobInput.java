@@ -6,6 +6,7 @@ import org.cobra.core.memory.MemoryMode;
 import java.io.ByteArrayInputStream;
 import java.io.Closeable;
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -13,16 +14,21 @@ import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
 
 /**
- * Provides a navigation between RandomAccessFile and DataInputStream
+ * Provides a navigation between a memory-mapped file and DataInputStream.
+ * <p>
+ * A file is mapped into a {@link BlobByteBuffer} and every read or seek is served from it at the cursor, the
+ * RandomAccessFile only keeps the channel open.
  */
 @SuppressWarnings("resource")
 public class BlobInput implements Closeable {
 
     private static final String UNKNOWN_BLOB_INPUT_TYPE = "Unknown blob input type";
+    private static final String UNEXPECTED_END_OF_BLOB = "Unexpected end of blob-input";
 
     private final MemoryMode memoryMode;
     private Object input;
     private BlobByteBuffer blobBuffer;
+    private boolean duplicated;
 
     public BlobInput(MemoryMode memoryMode) {
         this.memoryMode = memoryMode;
@@ -38,7 +44,12 @@ public class BlobInput implements Closeable {
         blobInput.input = raf;
 
         FileChannel fc = raf.getChannel();
-        blobInput.blobBuffer = BlobByteBuffer.mmap(fc, bufferCapacity);
+        try {
+            blobInput.blobBuffer = BlobByteBuffer.mmap(fc, bufferCapacity);
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
 
         return blobInput;
     }
@@ -55,13 +66,41 @@ public class BlobInput implements Closeable {
         return blobInput;
     }
 
+    /**
+     * Creates another input over the same mapped file with its own cursor, so different regions of a blob can be
+     * read concurrently. Closing a duplicate does not close the file.
+     */
+    public BlobInput duplicate() {
+        if (isSerial())
+            throw new UnsupportedOperationException("Could not duplicate a stream");
+        if (!isFile())
+            throw new IllegalStateException(UNKNOWN_BLOB_INPUT_TYPE);
+
+        BlobInput blobInput = new BlobInput(this.memoryMode);
+        blobInput.input = this.input;
+        blobInput.blobBuffer = this.blobBuffer.duplicate();
+        blobInput.duplicated = true;
+
+        return blobInput;
+    }
+
+    public boolean isSeekable() {
+        return isFile();
+    }
+
     public MemoryMode memoryMode() {
         return this.memoryMode;
     }
 
     public int read() throws IOException {
-        if (isFile())
-            return asFile().read();
+        if (isFile()) {
+            final long pos = this.blobBuffer.position();
+            if (pos >= this.blobBuffer.size())
+                return -1;
+
+            this.blobBuffer.position(pos + 1);
+            return this.blobBuffer.getByte(pos) & 0xff;
+        }
         if (isSerial())
             return asStream().read();
 
@@ -69,8 +108,14 @@ public class BlobInput implements Closeable {
     }
 
     public int readNByte(byte[] dest, int offset, int len) throws IOException {
-        if (isFile())
-            return asFile().read(dest, offset, len);
+        if (isFile()) {
+            final int n = (int) Math.min(len, remaining());
+            if (n == 0 && len > 0)
+                return -1;
+
+            this.blobBuffer.getBytes(advance(n), dest, offset, n);
+            return n;
+        }
         if (isSerial())
             return asStream().read(dest, offset, len);
 
@@ -79,8 +124,9 @@ public class BlobInput implements Closeable {
 
     public int readNBytes(byte[] dest, int len) throws IOException {
         if (isFile()) {
-            asFile().read(dest);
-            return dest.length;
+            final int n = (int) Math.min(len, remaining());
+            this.blobBuffer.getBytes(advance(n), dest, 0, n);
+            return n;
         }
         if (isSerial()) {
             byte[] bytes = asStream().readNBytes(len);
@@ -91,9 +137,28 @@ public class BlobInput implements Closeable {
         throw new IllegalStateException(UNKNOWN_BLOB_INPUT_TYPE);
     }
 
+    /**
+     * Reads exactly len bytes into dest
+     *
+     * @throws EOFException if input does not have enough bytes
+     */
+    public void readFully(byte[] dest, int len) throws IOException {
+        if (isFile()) {
+            this.blobBuffer.getBytes(advanceExactly(len), dest, 0, len);
+            return;
+        }
+        if (isSerial()) {
+            if (asStream().readNBytes(dest, 0, len) < len)
+                throw new EOFException(UNEXPECTED_END_OF_BLOB);
+            return;
+        }
+
+        throw new IllegalStateException(UNKNOWN_BLOB_INPUT_TYPE);
+    }
+
     public short readShort() throws IOException {
         if (isFile())
-            return asFile().readShort();
+            return this.blobBuffer.getShort(advanceExactly(Short.BYTES));
         if (isSerial())
             return asStream().readShort();
 
@@ -102,7 +167,7 @@ public class BlobInput implements Closeable {
 
     public int readInt() throws IOException {
         if (isFile())
-            return asFile().readInt();
+            return this.blobBuffer.getInt(advanceExactly(Integer.BYTES));
         if (isSerial())
             return asStream().readInt();
 
@@ -111,7 +176,7 @@ public class BlobInput implements Closeable {
 
     public long readLong() throws IOException {
         if (isFile())
-            return asFile().readLong();
+            return this.blobBuffer.getLong(advanceExactly(Long.BYTES));
         if (isSerial())
             return asStream().readLong();
 
@@ -119,25 +184,51 @@ public class BlobInput implements Closeable {
     }
 
     public String readUtf() throws IOException {
-        if (isFile())
-            return asFile().readUTF();
+        if (isFile()) {
+            /* modified UTF-8 of DataOutput#writeUTF: unsigned short length, then encoded bytes */
+            final int utfLen = this.blobBuffer.getShort(advanceExactly(Short.BYTES)) & 0xffff;
+            final byte[] encoded = new byte[Short.BYTES + utfLen];
+            encoded[0] = (byte) (utfLen >>> 8);
+            encoded[1] = (byte) utfLen;
+            this.blobBuffer.getBytes(advanceExactly(utfLen), encoded, Short.BYTES, utfLen);
+
+            return new DataInputStream(new ByteArrayInputStream(encoded)).readUTF();
+        }
         if (isSerial())
             return asStream().readUTF();
 
         throw new IllegalStateException(UNKNOWN_BLOB_INPUT_TYPE);
     }
 
+    /**
+     * Copies bytes at cursor straight into native memory, then advances the cursor
+     *
+     * @param address destination address
+     * @param len     number of bytes to copy
+     * @throws EOFException if input does not have enough bytes
+     */
+    public void copyTo(long address, int len) throws IOException {
+        if (isFile()) {
+            this.blobBuffer.copyTo(advanceExactly(len), address, len);
+            return;
+        }
+        if (isSerial()) {
+            final byte[] bytes = asStream().readNBytes(len);
+            if (bytes.length < len)
+                throw new EOFException(UNEXPECTED_END_OF_BLOB);
+
+            Jvm.osMemory().copyMemory(address, bytes, 0, len);
+            return;
+        }
+
+        throw new IllegalStateException(UNKNOWN_BLOB_INPUT_TYPE);
+    }
+
     public long skipNBytes(long n) throws IOException {
         if (isFile()) {
-            long total = 0;
-            int expected;
-            int actual;
-            do {
-                expected = (n - total) > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) (n - total);
-                actual = asFile().skipBytes(expected);
-                total += actual;
-            } while (total < n && actual > 0);
-            return total;
+            final long skipped = Math.max(0, Math.min(n, remaining()));
+            advance(skipped);
+            return skipped;
         }
 
         if (isSerial())
@@ -148,7 +239,7 @@ public class BlobInput implements Closeable {
 
     public void seek(long pos) throws IOException {
         if (isFile())
-            asFile().seek(pos);
+            this.blobBuffer.position(pos);
         else if (isSerial())
             throw new UnsupportedOperationException("Could not seek cursor on stream");
         else
@@ -157,7 +248,7 @@ public class BlobInput implements Closeable {
 
     public long getCursor() throws IOException {
         if (isFile())
-            return asFile().getFilePointer();
+            return this.blobBuffer.position();
         if (isSerial())
             throw new UnsupportedOperationException("Could not get cursor on stream");
 
@@ -167,7 +258,8 @@ public class BlobInput implements Closeable {
     @Override
     public void close() throws IOException {
         if (isFile()) {
-            asFile().close();
+            if (!this.duplicated)
+                asFile().close();
         } else if (isSerial()) {
             asStream().close();
         } else {
@@ -186,6 +278,24 @@ public class BlobInput implements Closeable {
         throw new IllegalStateException(UNKNOWN_BLOB_INPUT_TYPE);
     }
 
+    private long remaining() {
+        return this.blobBuffer.size() - this.blobBuffer.position();
+    }
+
+    /* moves cursor forward, returns the position before moving */
+    private long advance(long n) {
+        final long pos = this.blobBuffer.position();
+        this.blobBuffer.position(pos + n);
+        return pos;
+    }
+
+    private long advanceExactly(long n) throws EOFException {
+        if (n > remaining())
+            throw new EOFException(UNEXPECTED_END_OF_BLOB);
+
+        return advance(n);
+    }
+
     private RandomAccessFile asFile() {
         return (RandomAccessFile) this.input;
     }
@@ -3,6 +3,8 @@ package org.cobra.core.objects;
 public enum BlobType {
     DELTA_BLOB("delta"),
     REVERSED_DELTA_BLOB("reversedelta"),
+    SNAPSHOT("snapshot"),
+    SKIP_DELTA("skipdelta"),
     ;
 
     private final String prefix;
@@ -14,4 +16,14 @@ public enum BlobType {
     public String prefix() {
         return this.prefix;
     }
+
+    /**
+     * @return published name of a blob, a snapshot is only named by the version it holds
+     */
+    public String filename(long fromVersion, long toVersion) {
+        if (this == SNAPSHOT)
+            return "%s-%d".formatted(this.prefix, toVersion);
+
+        return "%s-%d-%d".formatted(this.prefix, fromVersion, toVersion);
+    }
 }
@@ -11,4 +11,11 @@ public interface StreamingBlob {
     default File file() throws IOException {
         throw new UnsupportedOperationException("Default access to file for StreamingBlob implementation");
     }
+
+    /**
+     * Drops whatever was made to read the blob, such as an inflated copy, once it has been applied. The blob can
+     * still be read again afterward
+     */
+    default void release() throws IOException {
+    }
 }
@@ -10,14 +10,13 @@ public abstract class VersioningBlob {
     protected final BlobType blobType;
 
     protected VersioningBlob(long fromVersion, long toVersion) {
+        this(fromVersion, toVersion, toVersion > fromVersion ? BlobType.DELTA_BLOB : BlobType.REVERSED_DELTA_BLOB);
+    }
+
+    protected VersioningBlob(long fromVersion, long toVersion, BlobType blobType) {
         this.fromVersion = fromVersion;
         this.toVersion = toVersion;
-
-        if (isDeltaBlob())
-            this.blobType = BlobType.DELTA_BLOB;
-        else
-            this.blobType = BlobType.REVERSED_DELTA_BLOB;
-
+        this.blobType = blobType;
     }
 
     protected VersioningBlob(long toVersion) {
@@ -25,11 +24,32 @@ public abstract class VersioningBlob {
     }
 
     public final boolean isDeltaBlob() {
-        return this.toVersion > this.fromVersion;
+        return this.blobType == BlobType.DELTA_BLOB;
     }
 
     public final boolean isReversedDeltaBlob() {
-        return !isDeltaBlob();
+        return this.blobType == BlobType.REVERSED_DELTA_BLOB;
+    }
+
+    /**
+     * @return true if blob holds the whole state of toVersion, rather than changes from fromVersion
+     */
+    public final boolean isSnapshotBlob() {
+        return this.blobType == BlobType.SNAPSHOT;
+    }
+
+    /**
+     * @return true if blob is a net delta compacted from deltas of (fromVersion, toVersion]
+     */
+    public final boolean isSkipDeltaBlob() {
+        return this.blobType == BlobType.SKIP_DELTA;
+    }
+
+    /**
+     * @return true if blob carries its own header ahead of its content, rather than relying on header blobs
+     */
+    public final boolean hasEmbeddedHeader() {
+        return isSnapshotBlob() || isSkipDeltaBlob();
     }
 
     public final BlobType blobType() {
@@ -0,0 +1,60 @@
+package org.cobra.core.serialization;
+
+import com.esotericsoftware.kryo.io.Input;
+import org.cobra.commons.Jvm;
+import org.cobra.core.memory.OSMemory;
+
+/**
+ * An {@link Input} over a native region (e.g. a slab chunk), read through {@link OSMemory} at an address and
+ * length: bytes are pulled block by block into its own reusable buffer as Kryo needs them, so deserializing a record
+ * needs no intermediate byte array nor heap buffer per record.
+ * <p>
+ * The region is read until the record is read, so it must stay allocated until then. A slab chunk looked up by
+ * {@link org.cobra.core.memory.datalocal.RecordRepository} is not reused until the read that looked it up exits.
+ */
+public class NativeInput extends Input {
+
+    private static final OSMemory memory = Jvm.osMemory();
+
+    /* a block is copied at once, large enough to hold most records */
+    static final int BUFFER_SIZE = 4096;
+
+    private long address;
+    private int remaining;
+
+    public NativeInput() {
+        this(BUFFER_SIZE);
+    }
+
+    public NativeInput(int bufferSize) {
+        super(bufferSize);
+    }
+
+    /**
+     * Points this input to a native region, discarding any buffered bytes
+     *
+     * @param address start address of region
+     * @param length  number of readable bytes
+     */
+    public void setAddress(long address, int length) {
+        if (length < 0)
+            throw new IllegalArgumentException("Negative length: " + length);
+
+        this.address = address;
+        this.remaining = length;
+        setBuffer(getBuffer(), 0, 0);
+    }
+
+    @Override
+    protected int fill(byte[] buffer, int offset, int count) {
+        if (this.remaining <= 0)
+            return -1;
+
+        final int len = Math.min(count, this.remaining);
+        memory.copyMemory(null, this.address, buffer, OSMemory.ARRAY_BYTE_BASE_OFFSET + offset, len);
+        this.address += len;
+        this.remaining -= len;
+
+        return len;
+    }
+}
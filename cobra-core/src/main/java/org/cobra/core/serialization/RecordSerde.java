@@ -30,5 +30,15 @@ public interface RecordSerde {
      */
     <T> T deserialize(byte[] bytes);
 
+    /**
+     * Deserializes a record reading directly from native memory, without copying it into a byte array first
+     *
+     * @param address start address of serialized record
+     * @param length  length of serialized record
+     * @param <T>     any type
+     * @return deserialized object
+     */
+    <T> T deserialize(long address, int length);
+
     SerdeContext serdeContext();
 }
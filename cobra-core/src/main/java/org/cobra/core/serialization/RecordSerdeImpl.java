@@ -75,6 +75,24 @@ public class RecordSerdeImpl implements RecordSerde {
         }
     }
 
+    @Override
+    public <T> T deserialize(long address, int length) {
+        Kryo kryo = this.serdeContext.obtain();
+        NativeInput input = this.serdeContext.nativeInputPool.obtain();
+        try {
+            input.setAddress(address, length);
+            Object result = kryo.readClassAndObject(input);
+
+            return Utils.uncheckedCast(result);
+        } catch (Exception e) {
+            log.error("Failed to deserialize object at address {}, length {}", address, length, e);
+            throw new CobraException(e);
+        } finally {
+            this.serdeContext.free(kryo);
+            this.serdeContext.nativeInputPool.free(input);
+        }
+    }
+
     @Override
     public SerdeContext serdeContext() {
         return this.serdeContext;
@@ -53,6 +53,14 @@ public class SerdeContext {
         }
     };
 
+    public final Pool<NativeInput> nativeInputPool = new Pool<>(true, true, 64) {
+
+        @Override
+        protected NativeInput create() {
+            return new NativeInput();
+        }
+    };
+
     public final Pool<Output> outputPool = new Pool<>(true, true, 64) {
 
         @Override
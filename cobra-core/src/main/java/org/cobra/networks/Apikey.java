@@ -4,7 +4,13 @@ public enum Apikey {
 
     FETCH_VERSION(1, "FETCH_VERSION"),
     FETCH_HEADER(2, "FETCH_HEADER"),
-    FETCH_BLOB(3, "FETCH_BLOB"),;
+    FETCH_BLOB(3, "FETCH_BLOB"),
+    FETCH_SNAPSHOT(4, "FETCH_SNAPSHOT"),
+    FETCH_BLOB_INDEX(5, "FETCH_BLOB_INDEX"),
+    FETCH_SKIP_DELTA(6, "FETCH_SKIP_DELTA"),
+    SUBSCRIBE_VERSION(7, "SUBSCRIBE_VERSION"),
+    STREAM_BLOB(8, "STREAM_BLOB"),
+    FETCH_PLAN(9, "FETCH_PLAN"),;
 
     private final short id;
     private final String label;
@@ -21,4 +27,16 @@ public enum Apikey {
     public String label() {
         return label;
     }
+
+    /**
+     * @return apikey of id, or null if id is unknown
+     */
+    public static Apikey of(int id) {
+        for (Apikey apikey : values()) {
+            if (apikey.id == id)
+                return apikey;
+        }
+
+        return null;
+    }
 }
@@ -2,16 +2,43 @@ package org.cobra.networks;
 
 import org.cobra.commons.Jvm;
 import org.cobra.commons.errors.CobraException;
+import org.cobra.commons.threads.CobraThread;
+import org.cobra.core.objects.BlobDescriptor;
+import org.cobra.core.objects.BlobType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.ConnectException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
-
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+
+/**
+ * Client of producer on one connection, framed as {@link Frames}. Requests are written by callers, responses are
+ * read by a thread of connection and matched to their requests by id, so requests are pipelined. A subscription is a
+ * request answered by many responses, pushed by producer as long as the connection lives; a blob is streamed as many
+ * parts into a file, so it is never held on heap.
+ */
 public class CobraClient implements Network {
 
     private static final Logger log = LoggerFactory.getLogger(CobraClient.class);
@@ -19,12 +46,26 @@ public class CobraClient implements Network {
     private static final long BACKOFF_INITIAL_INTERVAL_NANOS = (long) 1e8; // 100ms
     private static final long BACKOFF_MAX_INTERVAL_NANOS = (long) 1e10; // 10_000ms
 
+    private static final String PROC_DESC_READ_RESPONSES = "read_responses";
+
+    /* a streamed part is copied into its file through a direct buffer of this size */
+    static final int TRANSFER_BUFFER_BYTES = 256 * 1024;
+    /* a download resumes from what it has written when connection is lost, this many times at most */
+    static final int MAX_DOWNLOAD_RESUMES = 3;
+
     private final InetSocketAddress inetAddress;
-    private SocketChannel socket;
+    private volatile SocketChannel socket;
 
-    private final ByteBuffer sizeBuffer = ByteBuffer.allocate(4);
     private final ExponentialBackoff exponentBackoff;
 
+    /* requests in flight on current connection by their ids, subscriptions included; writes of a frame never
+    interleave */
+    private volatile Map<Integer, Exchange> inflight = new ConcurrentHashMap<>();
+    /* subscribed on every connection */
+    private volatile LongConsumer versionListener;
+    private final AtomicInteger nextRequestId = new AtomicInteger();
+    private final ReentrantLock writeLock = new ReentrantLock();
+
     private int connectAttempts = 0;
     private long lastAttemptTime = 0;
 
@@ -64,6 +105,8 @@ public class CobraClient implements Network {
                 initializeSocket();
 
             socket.connect(getAddress());
+            startReader();
+            renewSubscriptions();
 
             log.info("establish connection success; remote: {}", this);
         } catch (ConnectException connEx) {
@@ -80,12 +123,27 @@ public class CobraClient implements Network {
         }
     }
 
+    private void startReader() {
+        final SocketChannel channel;
+        final Map<Integer, Exchange> pending;
+        writeLock.lock();
+        try {
+            channel = this.socket;
+            pending = this.inflight;
+        } finally {
+            writeLock.unlock();
+        }
+
+        CobraThread.daemon(() -> readResponses(channel, pending), getClass(), PROC_DESC_READ_RESPONSES).start();
+    }
+
     @Override
     public void shutdown() {
         log.debug("client {} shutting down...", this);
 
         try {
-            socket.close();
+            if (socket != null)
+                socket.close();
         } catch (IOException e) {
             throw new CobraException(e);
         }
@@ -98,67 +156,643 @@ public class CobraClient implements Network {
         return socket;
     }
 
+    /**
+     * Opens a new socket, it has its own requests in flight which are failed by its own reader once it is closed
+     */
     public void initializeSocket() throws IOException {
-        socket = SocketChannel.open();
-        socket.configureBlocking(true);
+        writeLock.lock();
+        try {
+            socket = SocketChannel.open();
+            socket.configureBlocking(true);
+            inflight = new ConcurrentHashMap<>();
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     public void socketSend(Send send) {
         try {
-            send.writeTo(socket);
+            send(socket, send);
         } catch (IOException e) {
             throw new CobraException(e);
         }
     }
 
+    /**
+     * Sends a request without waiting for its response, so many requests are in flight on the connection at once
+     *
+     * @return body of response, or null if producer does not have what is requested; completed exceptionally if
+     * request fails or connection is lost before
+     */
+    public CompletableFuture<ByteBuffer> request(Apikey apikey, ByteBuffer payload) {
+        final BufferedExchange exchange = new BufferedExchange();
+        send(apikey, payload, exchange);
+        return exchange.response;
+    }
+
+    /**
+     * Streams a blob from offset to its end into target at the same position, see
+     * {@link #requestStream(BlobType, long, long, long, long, FileChannel)}
+     */
+    public CompletableFuture<Long> requestStream(
+            BlobType blobType,
+            long fromVersion,
+            long toVersion,
+            long offset,
+            FileChannel target) {
+        return requestStream(blobType, fromVersion, toVersion, offset, Long.MAX_VALUE, target);
+    }
+
+    /**
+     * Streams a range of a blob into target at the same position, with an on-heap footprint of a part at most; a
+     * range of length 0 only asks for size of blob
+     *
+     * @param length bytes from offset, the range ends at the end of blob at most
+     * @return size of whole blob, or null if producer does not have it; completed exceptionally if connection is
+     * lost before the range ends, or target could not be written
+     */
+    public CompletableFuture<Long> requestStream(
+            BlobType blobType,
+            long fromVersion,
+            long toVersion,
+            long offset,
+            long length,
+            FileChannel target) {
+        ByteBuffer buffer = ByteBuffer.allocate(Byte.BYTES + 4 * Long.BYTES);
+        buffer.put((byte) blobType.ordinal());
+        buffer.putLong(fromVersion);
+        buffer.putLong(toVersion);
+        buffer.putLong(offset);
+        buffer.putLong(length);
+        buffer.flip();
+
+        final DownloadExchange exchange = new DownloadExchange(target, offset, length);
+        send(Apikey.STREAM_BLOB, buffer, exchange);
+        return exchange.response;
+    }
+
+    /**
+     * Downloads a blob into a file, which is overwritten; once connection is lost the download resumes from what has
+     * been written on a new connection, up to {@link #MAX_DOWNLOAD_RESUMES} times
+     *
+     * @return false if producer does not have the blob
+     */
+    public boolean download(BlobType blobType, long fromVersion, long toVersion, Path target) throws IOException {
+        try (FileChannel fc = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int resumes = 0; ; resumes++) {
+                final long offset = fc.size();
+                try {
+                    return await(requestStream(blobType, fromVersion, toVersion, offset, fc)) != null;
+                } catch (IOException e) {
+                    if (resumes == MAX_DOWNLOAD_RESUMES)
+                        throw e;
+
+                    log.warn("download {} interrupted at {} bytes, resume; remote: {}",
+                            blobType.filename(fromVersion, toVersion), fc.size(), this, e);
+                    if (!isReady())
+                        tryConnect();
+                }
+            }
+        }
+    }
+
+    /**
+     * Fetches header blobs and delta blobs after fromVersion up to toVersion in one request, each streamed into the
+     * path given for its name
+     *
+     * @return manifest of versions fetched, consecutive from fromVersion + 1; it ends before toVersion at the first
+     * version producer misses a blob of, or at the most versions producer serves in one plan
+     */
+    public CompletableFuture<List<PlanEntry>> requestPlan(
+            long fromVersion,
+            long toVersion,
+            Function<String, Path> downloadPath) {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.putLong(fromVersion);
+        buffer.putLong(toVersion);
+        buffer.flip();
+
+        final PlanExchange exchange = new PlanExchange(downloadPath);
+        send(Apikey.FETCH_PLAN, buffer, exchange);
+        return exchange.response;
+    }
+
+    private void send(Apikey apikey, ByteBuffer payload, Exchange exchange) {
+        writeLock.lock();
+        try {
+            final SocketChannel channel = this.socket;
+            final Map<Integer, Exchange> pending = this.inflight;
+            if (channel == null || !channel.isConnected() || !channel.isOpen()) {
+                exchange.fail(new IOException("Client %s is not connected".formatted(this)));
+                return;
+            }
+
+            /* registered before it is sent, a response never arrives ahead of its request */
+            final int requestId = nextRequestId.incrementAndGet();
+            pending.put(requestId, exchange);
+            try {
+                send(channel, new SendByteBuffer(apikey, requestId, payload));
+            } catch (IOException e) {
+                pending.remove(requestId);
+                exchange.fail(e);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Subscribes to versions announced by producer, each is pushed to the listener on the thread reading responses as
+     * soon as it is announced, the current one first. The subscription is renewed on every connection.
+     */
+    public void subscribeVersions(LongConsumer listener) {
+        this.versionListener = listener;
+        if (isReady())
+            renewSubscriptions();
+    }
+
+    private void renewSubscriptions() {
+        final LongConsumer listener = this.versionListener;
+        if (listener == null)
+            return;
+
+        send(Apikey.SUBSCRIBE_VERSION, Jvm.EMPTY_BUFFER, new Subscription(body -> listener.accept(body.getLong())));
+    }
+
     public long fetchVersion() throws IOException {
-        Send send = new SendByteBuffer(Apikey.FETCH_VERSION, Jvm.EMPTY_BUFFER);
-        socketSend(send);
+        return await(request(Apikey.FETCH_VERSION, Jvm.EMPTY_BUFFER)).getLong();
+    }
 
-        ByteBuffer readBuffer = doRead();
-        return readBuffer.getLong();
+    public CompletableFuture<ByteBuffer> requestHeader(long version) {
+        return request(Apikey.FETCH_HEADER, ByteBuffer.allocate(8).putLong(version).flip());
     }
 
-    public ByteBuffer fetchHeaderBuffer(long version) throws IOException {
-        Send send = new SendByteBuffer(Apikey.FETCH_HEADER, ByteBuffer.allocate(8).putLong(version).flip());
-        socketSend(send);
+    public CompletableFuture<ByteBuffer> requestBlob(long fromVersion, long toVersion) {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.putLong(fromVersion);
+        buffer.putLong(toVersion);
+        buffer.flip();
 
-        return doRead();
+        return request(Apikey.FETCH_BLOB, buffer);
     }
 
+    /**
+     * @return header blob, or null if producer does not have it
+     */
+    public ByteBuffer fetchHeaderBuffer(long version) throws IOException {
+        return await(requestHeader(version));
+    }
+
+    /**
+     * @return delta or reversed delta blob, or null if producer does not have it
+     */
     public ByteBuffer fetchBlobBuffer(long fromVersion, long toVersion) throws IOException {
+        return await(requestBlob(fromVersion, toVersion));
+    }
+
+    /**
+     * @return snapshot blob, or null if producer does not have it
+     */
+    public ByteBuffer fetchSnapshotBuffer(long version) throws IOException {
+        return await(request(Apikey.FETCH_SNAPSHOT, ByteBuffer.allocate(8).putLong(version).flip()));
+    }
+
+    /**
+     * @return skip-delta blob, or null if producer does not have it
+     */
+    public ByteBuffer fetchSkipDeltaBuffer(long fromVersion, long toVersion) throws IOException {
         ByteBuffer buffer = ByteBuffer.allocate(16);
         buffer.putLong(fromVersion);
         buffer.putLong(toVersion);
         buffer.flip();
 
-        Send send = new SendByteBuffer(Apikey.FETCH_BLOB, buffer);
-        socketSend(send);
+        return await(request(Apikey.FETCH_SKIP_DELTA, buffer));
+    }
 
-        return doRead();
+    /**
+     * @return descriptors of all blobs published by producer, with their sizes
+     */
+    public List<BlobDescriptor> fetchBlobIndex() throws IOException {
+        ByteBuffer readBuffer = await(request(Apikey.FETCH_BLOB_INDEX, Jvm.EMPTY_BUFFER));
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(
+                readBuffer.array(), readBuffer.position(), readBuffer.remaining()));
+
+        final int count = dis.readInt();
+        final List<BlobDescriptor> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final String filename = dis.readUTF();
+            final long size = dis.readLong();
+            final BlobDescriptor descriptor = BlobDescriptor.parse(filename, size);
+            if (descriptor != null)
+                result.add(descriptor);
+        }
+
+        return result;
     }
 
-    private ByteBuffer doRead() throws IOException {
-        sizeBuffer.rewind();
-        socket.read(sizeBuffer);
+    /**
+     * Waits for response of a request, rethrowing the failure of it as is
+     */
+    public static <T> T await(CompletableFuture<T> response) throws IOException {
+        try {
+            return response.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while awaiting response");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioe)
+                throw ioe;
+            if (e.getCause() instanceof RuntimeException re)
+                throw re;
+
+            throw new CobraException(e.getCause());
+        }
+    }
 
-        sizeBuffer.flip();
-        int mustReceiveSize = sizeBuffer.getInt();
-        if (mustReceiveSize < 0)
-            throw new IllegalArgumentException("negative size");
+    private static void send(SocketChannel channel, Send send) throws IOException {
+        while (!send.isCompleted()) {
+            send.writeTo(channel);
+        }
+    }
 
-        ByteBuffer buffer = ByteBuffer.allocate(mustReceiveSize);
+    /**
+     * Reads responses of a connection and completes their requests, until connection is closed; then every request
+     * still in flight on it fails
+     */
+    private void readResponses(SocketChannel channel, Map<Integer, Exchange> pending) {
+        final ByteBuffer header = ByteBuffer.allocate(Frames.LENGTH_FIELD_BYTES + Frames.RESPONSE_HEADER_BYTES);
+        final ByteBuffer transfer = ByteBuffer.allocateDirect(TRANSFER_BUFFER_BYTES);
+        try {
+            while (true) {
+                header.clear();
+                readFully(channel, header);
+                header.flip();
+
+                final int length = header.getInt();
+                Frames.checkVersion(header.get());
+                final int requestId = header.getInt();
+                final Frames.Status status = Frames.Status.of(header.get());
+                if (length < Frames.RESPONSE_HEADER_BYTES)
+                    throw new IOException("Corrupted response of %d bytes".formatted(length));
+
+                final int bodyLength = length - Frames.RESPONSE_HEADER_BYTES;
+                final Exchange exchange = pending.get(requestId);
+                if (exchange == null) {
+                    log.warn("discard response of unknown request {}", requestId);
+                    skip(channel, bodyLength, transfer);
+                } else if (exchange.receive(channel, requestId, status, bodyLength, transfer)) {
+                    pending.remove(requestId);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (channel.isOpen())
+                log.warn("connection lost; remote: {}", this, e);
+
+            closeQuietly(channel);
+            final IOException failure = new IOException("Connection to %s is closed".formatted(inetAddress), e);
+            pending.values().forEach(exchange -> exchange.fail(failure));
+            pending.clear();
+        }
+    }
 
-        int reads = 0;
-        while (reads < mustReceiveSize) {
-            int actualReads = socket.read(buffer);
-            if (actualReads < 0)
-                throw new IOException("unexpected end of stream");
-            reads += actualReads;
+    /* reads a whole body into heap */
+    private static ByteBuffer readBody(SocketChannel channel, int bodyLength) throws IOException {
+        final ByteBuffer body = ByteBuffer.allocate(bodyLength);
+        readFully(channel, body);
+        return body.flip();
+    }
+
+    private static void skip(SocketChannel channel, long bodyLength, ByteBuffer transfer) throws IOException {
+        for (long remaining = bodyLength; remaining > 0; remaining -= transfer.limit()) {
+            transfer.clear()
+                    .limit((int) Math.min(transfer.capacity(), remaining));
+            readFully(channel, transfer);
         }
+    }
 
-        buffer.flip();
-        return buffer;
+    /**
+     * Responses of one request; a body is read from the connection by the exchange itself
+     */
+    private interface Exchange {
+
+        /**
+         * @return true if the request is answered, false if more responses of it follow
+         */
+        boolean receive(
+                SocketChannel channel,
+                int requestId,
+                Frames.Status status,
+                int bodyLength,
+                ByteBuffer transfer) throws IOException;
+
+        void fail(IOException cause);
+    }
+
+    private static final class BufferedExchange implements Exchange {
+        final CompletableFuture<ByteBuffer> response = new CompletableFuture<>();
+
+        @Override
+        public boolean receive(
+                SocketChannel channel,
+                int requestId,
+                Frames.Status status,
+                int bodyLength,
+                ByteBuffer transfer) throws IOException {
+            final ByteBuffer body = readBody(channel, bodyLength);
+            switch (status) {
+                case OK -> response.complete(body);
+                case NOT_FOUND -> response.complete(null);
+                default -> response.completeExceptionally(new CobraException(
+                        "Request %d failed on server".formatted(requestId)));
+            }
+
+            return true;
+        }
+
+        @Override
+        public void fail(IOException cause) {
+            response.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * A manifest of versions, then header and delta of each streamed in manifest order as one run of parts, cut into
+     * files by their sizes in manifest. Once a file fails, the rest of parts are skipped so the connection stays
+     * usable.
+     */
+    private static final class PlanExchange implements Exchange {
+        final CompletableFuture<List<PlanEntry>> response = new CompletableFuture<>();
+        final Function<String, Path> downloadPath;
+        List<PlanEntry> manifest;
+        final List<String> filenames = new ArrayList<>();
+        final List<Long> sizes = new ArrayList<>();
+        int nextFile;
+        long fileSize = -1;
+        long position;
+        FileChannel target;
+        IOException writeFailure;
+
+        PlanExchange(Function<String, Path> downloadPath) {
+            this.downloadPath = downloadPath;
+        }
+
+        @Override
+        public boolean receive(
+                SocketChannel channel,
+                int requestId,
+                Frames.Status status,
+                int bodyLength,
+                ByteBuffer transfer) throws IOException {
+            switch (status) {
+                case PARTIAL -> {
+                    if (manifest == null)
+                        readManifest(readBody(channel, bodyLength));
+                    else
+                        write(channel, bodyLength, transfer);
+                    return false;
+                }
+                case OK -> {
+                    skip(channel, bodyLength, transfer);
+                    if (manifest != null && advance() >= 0 && writeFailure == null)
+                        writeFailure = new IOException("Plan ended at %d bytes of %s".formatted(position,
+                                filenames.get(nextFile - 1)));
+                    closeTarget();
+
+                    if (writeFailure != null)
+                        response.completeExceptionally(writeFailure);
+                    else if (manifest == null)
+                        response.completeExceptionally(new IOException("Plan ended without manifest"));
+                    else
+                        response.complete(manifest);
+                }
+                default -> {
+                    skip(channel, bodyLength, transfer);
+                    closeTarget();
+                    response.completeExceptionally(new CobraException(
+                            "Request %d failed on server".formatted(requestId)));
+                }
+            }
+
+            return true;
+        }
+
+        private void readManifest(ByteBuffer body) {
+            final int count = body.getInt();
+            final List<PlanEntry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                final PlanEntry entry = new PlanEntry(body.getLong(), body.getLong(), body.getLong());
+                entries.add(entry);
+                filenames.add(entry.headerFilename());
+                sizes.add(entry.headerSize());
+                filenames.add(entry.deltaFilename());
+                sizes.add(entry.deltaSize());
+            }
+
+            manifest = entries;
+        }
+
+        private void write(SocketChannel channel, int bodyLength, ByteBuffer transfer) throws IOException {
+            for (long remaining = bodyLength; remaining > 0; remaining -= transfer.limit()) {
+                final long fileRemaining = advance();
+                if (fileRemaining < 0)
+                    throw new IOException("Plan has more bytes than its manifest");
+
+                transfer.clear()
+                        .limit((int) Math.min(transfer.capacity(), Math.min(remaining, fileRemaining)));
+                readFully(channel, transfer);
+                transfer.flip();
+
+                final long start = position;
+                position += transfer.limit();
+                if (writeFailure != null)
+                    continue;
+                try {
+                    for (long at = start; transfer.hasRemaining(); ) {
+                        at += target.write(transfer, at);
+                    }
+                } catch (IOException e) {
+                    writeFailure = e;
+                }
+            }
+        }
+
+        /**
+         * Moves on to the next file once the current one is complete, empty files are created on the way
+         *
+         * @return bytes left of current file, or -1 if all files are complete
+         */
+        private long advance() {
+            while (position == fileSize || fileSize < 0) {
+                closeTarget();
+                if (nextFile == filenames.size())
+                    return -1;
+
+                final String filename = filenames.get(nextFile);
+                fileSize = sizes.get(nextFile++);
+                position = 0;
+                if (writeFailure == null) {
+                    try {
+                        target = FileChannel.open(downloadPath.apply(filename), StandardOpenOption.CREATE,
+                                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                    } catch (IOException e) {
+                        writeFailure = e;
+                    }
+                }
+            }
+
+            return fileSize - position;
+        }
+
+        private void closeTarget() {
+            if (target == null)
+                return;
+
+            try {
+                target.close();
+            } catch (IOException e) {
+                if (writeFailure == null)
+                    writeFailure = e;
+            }
+            target = null;
+        }
+
+        @Override
+        public void fail(IOException cause) {
+            closeTarget();
+            response.completeExceptionally(cause);
+        }
+    }
+
+    /* a failing listener must not stop the responses of other requests */
+    private record Subscription(Consumer<ByteBuffer> listener) implements Exchange {
+
+        @Override
+        public boolean receive(
+                SocketChannel channel,
+                int requestId,
+                Frames.Status status,
+                int bodyLength,
+                ByteBuffer transfer) throws IOException {
+            final ByteBuffer body = readBody(channel, bodyLength);
+            if (status != Frames.Status.OK) {
+                log.warn("discard push of subscription {}; status: {}", requestId, status);
+                return false;
+            }
+
+            try {
+                listener.accept(body);
+            } catch (RuntimeException e) {
+                log.error("listener of subscription {} failed", requestId, e);
+            }
+
+            return false;
+        }
+
+        @Override
+        public void fail(IOException cause) {
+            log.debug("subscription ended", cause);
+        }
+    }
+
+    /**
+     * Parts of a streamed range of blob, the first is [long size of blob] and the rest are written to target one after
+     * another from offset. Once target fails, the rest of parts are skipped so the connection stays usable.
+     */
+    private static final class DownloadExchange implements Exchange {
+        final CompletableFuture<Long> response = new CompletableFuture<>();
+        final FileChannel target;
+        final long offset;
+        final long length;
+        long position;
+        long size = -1;
+        IOException writeFailure;
+
+        DownloadExchange(FileChannel target, long offset, long length) {
+            this.target = target;
+            this.offset = offset;
+            this.length = length;
+            this.position = offset;
+        }
+
+        @Override
+        public boolean receive(
+                SocketChannel channel,
+                int requestId,
+                Frames.Status status,
+                int bodyLength,
+                ByteBuffer transfer) throws IOException {
+            switch (status) {
+                case PARTIAL -> {
+                    if (size < 0)
+                        size = readBody(channel, bodyLength).getLong();
+                    else
+                        write(channel, bodyLength, transfer);
+                    return false;
+                }
+                case OK -> {
+                    skip(channel, bodyLength, transfer);
+                    if (writeFailure != null)
+                        response.completeExceptionally(writeFailure);
+                    else if (position != offset + Math.min(length, size - offset))
+                        response.completeExceptionally(new IOException("Range [%d, +%d) of blob of %d bytes ended at %d"
+                                .formatted(offset, length, size, position)));
+                    else
+                        response.complete(size);
+                }
+                case NOT_FOUND -> {
+                    skip(channel, bodyLength, transfer);
+                    response.complete(null);
+                }
+                default -> {
+                    skip(channel, bodyLength, transfer);
+                    response.completeExceptionally(new CobraException(
+                            "Request %d failed on server".formatted(requestId)));
+                }
+            }
+
+            return true;
+        }
+
+        private void write(SocketChannel channel, int bodyLength, ByteBuffer transfer) throws IOException {
+            for (int remaining = bodyLength; remaining > 0; remaining -= transfer.limit()) {
+                transfer.clear()
+                        .limit(Math.min(transfer.capacity(), remaining));
+                readFully(channel, transfer);
+                transfer.flip();
+
+                if (writeFailure != null)
+                    continue;
+                try {
+                    while (transfer.hasRemaining()) {
+                        position += target.write(transfer, position);
+                    }
+                } catch (IOException e) {
+                    writeFailure = e;
+                }
+            }
+        }
+
+        @Override
+        public void fail(IOException cause) {
+            response.completeExceptionally(cause);
+        }
+    }
+
+    /* a read may return any part of what has been sent */
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0)
+                throw new EOFException("Unexpected end of stream");
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.debug("error while closing channel", e);
+        }
     }
 
     @Override
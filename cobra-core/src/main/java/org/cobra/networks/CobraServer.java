@@ -21,6 +21,9 @@ import java.util.Set;
 public class CobraServer implements Network {
 
     private static final Logger log = LoggerFactory.getLogger(CobraServer.class);
+
+    private static final ChannelHandler UNHANDLED_REQUEST_HANDLER = new UnhandledRequestHandler();
+
     private final InetSocketAddress inetSocketAddress;
 
     private final EventLoopGroup masterGroup = new NioEventLoopGroup();
@@ -81,9 +84,11 @@ public class CobraServer implements Network {
             @Override
             protected void initChannel(SocketChannel socketChannel) {
                 ChannelPipeline pipeline = socketChannel.pipeline();
+                pipeline.addLast(new RequestFrameDecoder());
                 for (ChannelHandler handler : channelHandlers) {
                     pipeline.addLast(handler);
                 }
+                pipeline.addLast(UNHANDLED_REQUEST_HANDLER);
             }
         };
     }
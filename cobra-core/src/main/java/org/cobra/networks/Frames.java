@@ -0,0 +1,112 @@
+package org.cobra.networks;
+
+import org.cobra.commons.errors.CobraException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Wire protocol between {@link CobraClient} and {@link CobraServer}; every message is a frame prefixed by the length
+ * of the rest of it.
+ * <ul>
+ *     <li>request: [int length][byte protocol version][byte apikey][int request id][payload]</li>
+ *     <li>response: [int length][byte protocol version][int request id][byte status][body]</li>
+ * </ul>
+ * A response carries the id of its request, so a client keeps many requests in flight on one connection. A request
+ * may be answered by many responses: parts of {@link Status#PARTIAL} ended by one of another status, so a body is not
+ * bound by the int length of a frame.
+ */
+public final class Frames {
+
+    public static final byte PROTOCOL_VERSION = 1;
+
+    public static final int LENGTH_FIELD_BYTES = Integer.BYTES;
+    public static final int REQUEST_HEADER_BYTES = Byte.BYTES + Byte.BYTES + Integer.BYTES;
+    public static final int RESPONSE_HEADER_BYTES = Byte.BYTES + Integer.BYTES + Byte.BYTES;
+
+    /* requests only carry a few versions */
+    public static final int MAX_REQUEST_BYTES = 64 * 1024;
+
+    /* a streamed body is split into parts of this size at most */
+    public static final int MAX_PART_BYTES = 4 * 1024 * 1024;
+
+    private Frames() {
+    }
+
+    public enum Status {
+        OK(0),
+        NOT_FOUND(1),
+        ERROR(2),
+        PARTIAL(3);
+
+        private final byte id;
+
+        Status(int id) {
+            this.id = (byte) id;
+        }
+
+        public byte id() {
+            return id;
+        }
+
+        public static Status of(int id) {
+            for (Status status : values()) {
+                if (status.id == id)
+                    return status;
+            }
+
+            throw new CobraException("Unknown response status %d".formatted(id));
+        }
+    }
+
+    public static ByteBuffer request(Apikey apikey, int requestId, ByteBuffer payload) {
+        if (REQUEST_HEADER_BYTES + payload.remaining() > MAX_REQUEST_BYTES)
+            throw new IllegalArgumentException("Request of %d bytes is too large".formatted(payload.remaining()));
+
+        return ByteBuffer.allocate(LENGTH_FIELD_BYTES + REQUEST_HEADER_BYTES + payload.remaining())
+                .putInt(REQUEST_HEADER_BYTES + payload.remaining())
+                .put(PROTOCOL_VERSION)
+                .put((byte) apikey.id())
+                .putInt(requestId)
+                .put(payload.duplicate())
+                .flip();
+    }
+
+    /**
+     * @return length field and header of a response, its body of bodyLength bytes is written after
+     */
+    public static ByteBuffer responseHeader(int requestId, Status status, int bodyLength) {
+        if (bodyLength > Integer.MAX_VALUE - RESPONSE_HEADER_BYTES)
+            throw new IllegalArgumentException("Response body of %d bytes is too large".formatted(bodyLength));
+
+        return ByteBuffer.allocate(LENGTH_FIELD_BYTES + RESPONSE_HEADER_BYTES)
+                .putInt(RESPONSE_HEADER_BYTES + bodyLength)
+                .put(PROTOCOL_VERSION)
+                .putInt(requestId)
+                .put(status.id())
+                .flip();
+    }
+
+    public static ByteBuffer response(int requestId, ByteBuffer body) {
+        return response(requestId, Status.OK, body);
+    }
+
+    public static ByteBuffer response(int requestId, Status status, ByteBuffer body) {
+        return ByteBuffer.allocate(LENGTH_FIELD_BYTES + RESPONSE_HEADER_BYTES + body.remaining())
+                .put(responseHeader(requestId, status, body.remaining()))
+                .put(body.duplicate())
+                .flip();
+    }
+
+    /**
+     * @return response of a status without body
+     */
+    public static ByteBuffer response(int requestId, Status status) {
+        return responseHeader(requestId, status, 0);
+    }
+
+    static void checkVersion(byte version) {
+        if (version != PROTOCOL_VERSION)
+            throw new CobraException("Unsupported protocol version %d, expected %d".formatted(version,
+                    PROTOCOL_VERSION));
+    }
+}
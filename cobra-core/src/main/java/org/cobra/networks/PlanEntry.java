@@ -0,0 +1,17 @@
+package org.cobra.networks;
+
+import org.cobra.core.objects.BlobType;
+
+/**
+ * A version of a plan fetched in one request, with sizes of its header blob and delta blob
+ */
+public record PlanEntry(long version, long headerSize, long deltaSize) {
+
+    public String headerFilename() {
+        return "header-%d".formatted(version);
+    }
+
+    public String deltaFilename() {
+        return BlobType.DELTA_BLOB.filename(version - 1, version);
+    }
+}
@@ -0,0 +1,133 @@
+package org.cobra.networks;
+
+import org.cobra.core.objects.BlobType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Downloads a large blob as ranges streamed at once over many connections to producer, each written at its own
+ * position of a file sized up front, so a download is bound by the link rather than by one connection. A blob too
+ * small to be split is downloaded on the main connection, with resume. Downloads are not run concurrently.
+ */
+public class RangedDownloader {
+
+    private static final Logger log = LoggerFactory.getLogger(RangedDownloader.class);
+
+    /* a range is never smaller, below this a connection costs more than it saves */
+    static final long MIN_RANGE_BYTES = 8L * 1024 * 1024;
+
+    private final CobraClient client;
+    private final CobraClient[] connections;
+    private final long minRangeBytes;
+
+    /**
+     * @param connections number of connections a blob is downloaded over, the main one included
+     */
+    public RangedDownloader(CobraClient client, int connections) {
+        this(client, connections, MIN_RANGE_BYTES);
+    }
+
+    RangedDownloader(CobraClient client, int connections, long minRangeBytes) {
+        if (connections < 1)
+            throw new IllegalArgumentException("Illegal number of connections: " + connections);
+
+        this.client = client;
+        this.connections = new CobraClient[connections];
+        this.connections[0] = client;
+        this.minRangeBytes = minRangeBytes;
+    }
+
+    /**
+     * Downloads a blob into a file, which is overwritten
+     *
+     * @return false if producer does not have the blob
+     */
+    public boolean download(BlobType blobType, long fromVersion, long toVersion, Path target) throws IOException {
+        if (connections.length == 1)
+            return client.download(blobType, fromVersion, toVersion, target);
+
+        final Long size = CobraClient.await(client.requestStream(blobType, fromVersion, toVersion, 0, 0, null));
+        if (size == null)
+            return false;
+
+        final int ranges = (int) Math.min(connections.length, size / minRangeBytes);
+        if (ranges < 2)
+            return client.download(blobType, fromVersion, toVersion, target);
+
+        try (FileChannel fc = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            /* sized up front, a range is written at its position whichever lands first */
+            fc.write(ByteBuffer.allocate(1), size - 1);
+
+            final long rangeBytes = (size + ranges - 1) / ranges;
+            final List<CompletableFuture<Long>> responses = new ArrayList<>(ranges);
+            for (int i = 0; i < ranges; i++) {
+                responses.add(connection(i).requestStream(blobType, fromVersion, toVersion, i * rangeBytes,
+                        rangeBytes, fc));
+            }
+
+            for (int i = 0; i < ranges; i++) {
+                awaitRange(responses.get(i), blobType, fromVersion, toVersion, i * rangeBytes, rangeBytes, fc);
+            }
+        }
+
+        log.debug("downloaded {} of {} bytes in {} ranges", blobType.filename(fromVersion, toVersion), size, ranges);
+        return true;
+    }
+
+    /* a range that failed is fetched again on the main connection */
+    private void awaitRange(
+            CompletableFuture<Long> response,
+            BlobType blobType,
+            long fromVersion,
+            long toVersion,
+            long offset,
+            long length,
+            FileChannel target) throws IOException {
+        for (int retries = 0; ; retries++) {
+            try {
+                if (CobraClient.await(response) == null)
+                    throw new IOException("Blob %s disappeared while downloading".formatted(
+                            blobType.filename(fromVersion, toVersion)));
+                return;
+            } catch (IOException e) {
+                if (retries == CobraClient.MAX_DOWNLOAD_RESUMES)
+                    throw e;
+
+                log.warn("range [{}, +{}) of {} failed, retry", offset, length,
+                        blobType.filename(fromVersion, toVersion), e);
+                if (!client.isReady())
+                    client.tryConnect();
+                response = client.requestStream(blobType, fromVersion, toVersion, offset, length, target);
+            }
+        }
+    }
+
+    /* connections beside the main one are opened once they are needed, and reopened once they are lost */
+    private CobraClient connection(int index) throws IOException {
+        if (connections[index] == null)
+            connections[index] = new CobraClient(client.getAddress());
+
+        final CobraClient connection = connections[index];
+        if (!connection.isReady())
+            connection.tryConnect();
+
+        return connection;
+    }
+
+    public void shutdown() {
+        for (int i = 1; i < connections.length; i++) {
+            if (connections[i] != null)
+                connections[i].shutdown();
+        }
+    }
+}
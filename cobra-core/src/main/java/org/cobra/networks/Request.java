@@ -0,0 +1,13 @@
+package org.cobra.networks;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Request decoded from a frame, see {@link Frames}
+ *
+ * @param apikey    apikey of request, null if it is unknown to server
+ * @param requestId id its response is correlated by
+ * @param payload   arguments of request
+ */
+public record Request(Apikey apikey, int requestId, ByteBuffer payload) {
+}
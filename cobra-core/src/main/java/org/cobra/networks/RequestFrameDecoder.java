@@ -0,0 +1,38 @@
+package org.cobra.networks;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Gathers a request frame however it has been split across reads, then decodes it into a {@link Request}; one
+ * instance per channel
+ */
+public class RequestFrameDecoder extends LengthFieldBasedFrameDecoder {
+
+    public RequestFrameDecoder() {
+        super(Frames.LENGTH_FIELD_BYTES + Frames.MAX_REQUEST_BYTES, 0, Frames.LENGTH_FIELD_BYTES, 0,
+                Frames.LENGTH_FIELD_BYTES);
+    }
+
+    @Override
+    protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+        final ByteBuf frame = (ByteBuf) super.decode(ctx, in);
+        if (frame == null)
+            return null;
+
+        try {
+            Frames.checkVersion(frame.readByte());
+            final Apikey apikey = Apikey.of(frame.readByte());
+            final int requestId = frame.readInt();
+
+            final ByteBuffer payload = ByteBuffer.allocate(frame.readableBytes());
+            frame.readBytes(payload);
+            return new Request(apikey, requestId, payload.flip());
+        } finally {
+            frame.release();
+        }
+    }
+}
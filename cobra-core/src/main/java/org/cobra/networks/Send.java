@@ -8,5 +8,7 @@ public interface Send {
 
     Apikey apikey();
 
+    int requestId();
+
     void writeTo(GatheringByteChannel channel) throws IOException;
 }
@@ -4,21 +4,24 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.GatheringByteChannel;
 
+/**
+ * A request frame, see {@link Frames}; a channel may take it over several writes
+ */
 public class SendByteBuffer implements Send {
 
     private final Apikey apikey;
-    private final ByteBuffer byteBuffer;
-    private int remains;
+    private final int requestId;
+    private final ByteBuffer frame;
 
-    public SendByteBuffer(Apikey apikey, ByteBuffer byteBuffer) {
+    public SendByteBuffer(Apikey apikey, int requestId, ByteBuffer payload) {
         this.apikey = apikey;
-        this.byteBuffer = byteBuffer;
-        this.remains = byteBuffer.remaining();
+        this.requestId = requestId;
+        this.frame = Frames.request(apikey, requestId, payload);
     }
 
     @Override
     public boolean isCompleted() {
-        return remains <= 0;
+        return !frame.hasRemaining();
     }
 
     @Override
@@ -27,18 +30,12 @@ public class SendByteBuffer implements Send {
     }
 
     @Override
-    public void writeTo(GatheringByteChannel channel) throws IOException {
-        ByteBuffer writableBuffer = toWritableBuffer();
-
-        int written = channel.write(writableBuffer);
-        remains -= written;
+    public int requestId() {
+        return requestId;
     }
 
-    private ByteBuffer toWritableBuffer() {
-        ByteBuffer writableBuffer = ByteBuffer.allocate(1 + byteBuffer.remaining());
-        writableBuffer.put((byte) apikey().id());
-        writableBuffer.put(this.byteBuffer);
-        writableBuffer.flip();
-        return writableBuffer;
+    @Override
+    public void writeTo(GatheringByteChannel channel) throws IOException {
+        channel.write(frame);
     }
 }
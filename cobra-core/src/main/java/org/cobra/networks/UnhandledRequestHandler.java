@@ -0,0 +1,34 @@
+package org.cobra.networks;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Last handler of server pipeline: answers a request no handler has taken with an error, so its client does not
+ * wait forever, and closes a channel whose frames could not be decoded
+ */
+@ChannelHandler.Sharable
+class UnhandledRequestHandler extends ChannelInboundHandlerAdapter {
+
+    private static final Logger log = LoggerFactory.getLogger(UnhandledRequestHandler.class);
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof Request request) {
+            log.warn("unhandled request; apikey: {}; channel: {}", request.apikey(), ctx.channel());
+            ctx.writeAndFlush(Unpooled.wrappedBuffer(Frames.response(request.requestId(), Frames.Status.ERROR)));
+        } else {
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        log.error("close channel {} on error", ctx.channel(), cause);
+        ctx.close();
+    }
+}
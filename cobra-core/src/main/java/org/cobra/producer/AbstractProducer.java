@@ -3,12 +3,20 @@ package org.cobra.producer;
 import org.cobra.commons.Clock;
 import org.cobra.commons.CobraConstants;
 import org.cobra.commons.errors.CobraException;
+import org.cobra.commons.threads.CobraThread;
 import org.cobra.core.ModelSchema;
-import org.cobra.core.hashing.Table;
+import org.cobra.core.hashing.KeyedTable;
+import org.cobra.core.memory.datalocal.RecordRepository;
 import org.cobra.networks.CobraServer;
 import org.cobra.producer.handler.FetchBlobHandler;
+import org.cobra.producer.handler.FetchBlobIndexHandler;
 import org.cobra.producer.handler.FetchHeaderBlobHandler;
+import org.cobra.producer.handler.FetchPlanHandler;
+import org.cobra.producer.handler.FetchSkipDeltaHandler;
+import org.cobra.producer.handler.FetchSnapshotHandler;
 import org.cobra.producer.handler.FetchVersionHandler;
+import org.cobra.producer.handler.StreamBlobHandler;
+import org.cobra.producer.handler.SubscribeVersionHandler;
 import org.cobra.producer.internal.Artifact;
 import org.cobra.producer.internal.AtomicState;
 import org.cobra.producer.internal.Blob;
@@ -16,6 +24,7 @@ import org.cobra.producer.internal.HeaderBlob;
 import org.cobra.producer.internal.StateWriteProvider;
 import org.cobra.producer.state.BlobWriter;
 import org.cobra.producer.state.BlobWriterImpl;
+import org.cobra.producer.state.DeltaCompactor;
 import org.cobra.producer.state.ProducerStateContext;
 import org.cobra.producer.state.StateWriteEngine;
 import org.cobra.producer.state.VersionStateImpl;
@@ -24,12 +33,18 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.locks.ReentrantLock;
 
 public abstract class AbstractProducer implements CobraProducer {
 
     private static final Logger log = LoggerFactory.getLogger(AbstractProducer.class);
 
+    private static final String PROC_DESC_PUBLISH_CYCLE = "abstract_producer.publish_cycle";
+
     protected final CobraProducer.VersionState versionState;
     protected final CobraProducer.BlobStagger blobStagger;
     protected final CobraProducer.BlobPublisher blobPublisher;
@@ -37,19 +52,39 @@ public abstract class AbstractProducer implements CobraProducer {
     protected final ProducerStateContext producerStateContext;
     protected final Announcer announcer;
     protected final Clock clock;
+    protected final int snapshotInterval;
+    protected final int skipDeltaSpan;
+    protected final DeltaCompactor deltaCompactor;
 
     protected AtomicState populationAtomic;
 
     protected final CobraServer network;
+    protected final SubscribeVersionHandler versionSubscribers;
     protected boolean isBootstrap = false;
 
     protected final ReentrantLock lock = new ReentrantLock();
 
+    /* pipelined cycles: population of a cycle overlaps publishing of the previous one on a single stage, so
+     * versions are still announced in order */
+    protected final boolean pipelinedCycles;
+    protected final ReentrantLock populationLock = new ReentrantLock();
+    private final ExecutorService publishExecutor;
+    private Future<?> publishing;
+
     protected AbstractProducer(Builder builder) {
         this.blobStagger = builder.blobStagger;
         this.blobPublisher = builder.blobPublisher;
         this.clock = builder.clock;
         this.announcer = builder.announcer;
+        this.snapshotInterval = builder.snapshotInterval;
+        this.skipDeltaSpan = builder.skipDeltaSpan;
+        this.deltaCompactor = builder.blobStorePath == null ? null
+                : new DeltaCompactor(builder.blobStorePath, builder.blobCompressor);
+        this.pipelinedCycles = builder.pipelinedCycles;
+        this.publishExecutor = this.pipelinedCycles
+                ? Executors.newSingleThreadExecutor(
+                        task -> CobraThread.daemon(task, getClass(), PROC_DESC_PUBLISH_CYCLE))
+                : null;
 
         this.versionState = new VersionStateImpl();
         this.producerStateContext = new ProducerStateContext();
@@ -57,10 +92,17 @@ public abstract class AbstractProducer implements CobraProducer {
 
         this.populationAtomic = AtomicState.initChain(CobraConstants.VERSION_NULL);
 
+        this.versionSubscribers = new SubscribeVersionHandler(announcer);
         network = new CobraServer(new InetSocketAddress(builder.localPort));
         network.registerHandler(new FetchVersionHandler(announcer),
+                this.versionSubscribers,
                 new FetchHeaderBlobHandler(builder.blobStorePath),
-                new FetchBlobHandler(builder.blobStorePath));
+                new FetchBlobHandler(builder.blobStorePath),
+                new FetchSnapshotHandler(builder.blobStorePath),
+                new FetchSkipDeltaHandler(builder.blobStorePath),
+                new FetchBlobIndexHandler(builder.blobStorePath),
+                new StreamBlobHandler(builder.blobStorePath),
+                new FetchPlanHandler(builder.blobStorePath));
     }
 
     @Override
@@ -81,16 +123,27 @@ public abstract class AbstractProducer implements CobraProducer {
     }
 
     @Override
-    public Table lookupTable() {
-        return producerStateContext.getLocalData().lookupTable();
+    public KeyedTable lookupTable(Class<?> clazz) {
+        final RecordRepository localData = producerStateContext.localData(clazz.getTypeName());
+        return localData == null ? null : localData.lookupTable();
     }
 
     protected long runProduce(Populator task) {
+        return runProduce(task, false);
+    }
+
+    /**
+     * @param fullState populator adds every live record, so records it has not added are removed
+     */
+    protected long runProduce(Populator task, boolean fullState) {
         if (!isBootstrap)
             throw new CobraException("producer must be bootstrap before produce a cycle");
 
+        return this.pipelinedCycles ? runPipelinedProduce(task, fullState) : runSequentialProduce(task, fullState);
+    }
+
+    private long runSequentialProduce(Populator task, boolean fullState) {
         long toVersion = this.versionState.mint();
-        Artifact artifact = new Artifact();
 
         long startMillis = clock.milliseconds();
 
@@ -102,38 +155,164 @@ public abstract class AbstractProducer implements CobraProducer {
 
             /* 2. population */
             populateTask(task, toVersion);
+            sealCycle(fullState);
 
             /* 3. produce state */
-            if (stateWriteEngine.isModified()) {
-                publish(artifact, toVersion);
+            if (publishCycle(toVersion))
+                versionState.pin(toVersion);
+        } catch (IOException e) {
+            revertOnFailure();
+            throw new CobraException(e);
+        } catch (RuntimeException e) {
+            revertOnFailure();
+            throw e;
+        } finally {
+            long endMillis = clock.milliseconds();
+            this.lock.unlock();
+            log.info("producer a version: version: {}; elapsed: {} ms", toVersion, endMillis - startMillis);
+        }
 
-                AtomicState candidate = this.populationAtomic.stage(toVersion);
-                candidate = doCheckout(candidate, artifact);
+        return latestVersion();
+    }
 
-                announce(candidate);
-                populationAtomic = candidate.commit();
+    /**
+     * Populates a cycle while the previous one is still being written and published, then hands it to the publish
+     * stage once that one is done. Mutations are only applied to local data by the stage, because the previous
+     * cycle streams its records out of local data.
+     * <p>
+     * A previous cycle that failed has been reverted by the stage, its mutations are shipped by this cycle and the
+     * failure is only logged here; {@link #awaitPublished()} throws it.
+     *
+     * @return version the cycle is going to be announced as, or the latest version if nothing has been modified;
+     * a cycle whose records turn out to be unchanged when written, or that fails, is not announced
+     */
+    private long runPipelinedProduce(Populator task, boolean fullState) {
+        this.populationLock.lock();
+        try {
+            final long toVersion = this.versionState.mint();
+            populateTask(task, toVersion);
 
-                versionState.pin(toVersion);
-            } else {
-                log.debug("state not modified, revert to last state");
-                stateWriteEngine.revertToLastState();
-            }
-        } catch (IOException e) {
-            try {
-                stateWriteEngine.revertToLastState();
-            } catch (Throwable cause) {
-                log.error("error when revert to last state", e);
-                // swallow inner throwable
+            final RuntimeException failure = awaitPublishing();
+            if (failure != null)
+                log.error("previous cycle failed to publish, version {} carries its mutations", toVersion, failure);
+
+            stateWriteEngine.moveToNextCycle();
+            sealCycle(fullState);
+            if (!stateWriteEngine.isModified()) {
+                log.debug("state not modified; version: {}", toVersion);
+                return latestVersion();
             }
 
+            this.publishing = this.publishExecutor.submit(() -> publishPipelinedCycle(toVersion));
+            return toVersion;
+        } finally {
+            this.populationLock.unlock();
+        }
+    }
+
+    /**
+     * Waits until every produced cycle has been published and announced
+     *
+     * @return latest version
+     */
+    @Override
+    public long awaitPublished() {
+        this.populationLock.lock();
+        try {
+            final RuntimeException failure = awaitPublishing();
+            if (failure != null)
+                throw failure;
+
+            return latestVersion();
+        } finally {
+            this.populationLock.unlock();
+        }
+    }
+
+    /**
+     * @return failure of the publish stage if any, the failed cycle has been reverted so its mutations go to the
+     * next cycle
+     */
+    private RuntimeException awaitPublishing() {
+        if (this.publishing == null)
+            return null;
+
+        try {
+            this.publishing.get();
+            this.publishing = null;
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CobraException("Interrupted while publishing a cycle", e);
+        } catch (ExecutionException e) {
+            this.publishing = null;
+            if (e.getCause() instanceof RuntimeException re)
+                return re;
+
+            return new CobraException(e.getCause());
+        }
+    }
+
+    private void publishPipelinedCycle(long toVersion) {
+        long startMillis = clock.milliseconds();
+
+        try {
+            this.lock.lock();
+
+            /* counter of versions is ahead as the next cycle has been minted, so version is not pinned back */
+            publishCycle(toVersion);
+        } catch (IOException e) {
+            revertOnFailure();
             throw new CobraException(e);
+        } catch (RuntimeException e) {
+            revertOnFailure();
+            throw e;
         } finally {
             long endMillis = clock.milliseconds();
             this.lock.unlock();
-            log.info("producer a version: version: {}; elapsed: {} ms", toVersion, endMillis - startMillis);
+            log.info("publish a version: version: {}; elapsed: {} ms", toVersion, endMillis - startMillis);
         }
+    }
 
-        return latestVersion();
+    private void sealCycle(boolean fullState) {
+        if (fullState) {
+            stateWriteEngine.sealFullState();
+        } else {
+            stateWriteEngine.sealMutations();
+        }
+    }
+
+    /**
+     * Writes, publishes and announces sealed mutations as a version
+     *
+     * @return false if no record has changed
+     */
+    private boolean publishCycle(long toVersion) throws IOException {
+        stateWriteEngine.prepareBeforeWriting();
+        if (!stateWriteEngine.isModified()) {
+            log.debug("state not modified; version: {}", toVersion);
+            return false;
+        }
+
+        Artifact artifact = new Artifact();
+        publish(artifact, toVersion);
+
+        AtomicState candidate = this.populationAtomic.stage(toVersion);
+        candidate = doCheckout(candidate, artifact);
+
+        announce(candidate);
+        populationAtomic = candidate.commit();
+
+        return true;
+    }
+
+    private void revertOnFailure() {
+        try {
+            stateWriteEngine.revertToLastState();
+        } catch (Throwable cause) {
+            log.error("error when revert to last state", cause);
+            // swallow inner throwable
+        }
     }
 
     protected boolean moveToVersion(long version) {
@@ -142,7 +321,17 @@ public abstract class AbstractProducer implements CobraProducer {
             return false;
         }
 
-        lock.lock();
+        populationLock.lock();
+        try {
+            /* publish stage takes the lock, so wait for it before */
+            awaitPublishing();
+            lock.lock();
+        } catch (Throwable cause) {
+            populationLock.unlock();
+            log.error("error when move version {} to version {}", version, latestVersion(), cause);
+            return false;
+        }
+
         try {
             AtomicState candidate = this.populationAtomic.stage(version);
 
@@ -158,6 +347,7 @@ public abstract class AbstractProducer implements CobraProducer {
             return false;
         } finally {
             lock.unlock();
+            populationLock.unlock();
         }
     }
 
@@ -195,10 +385,46 @@ public abstract class AbstractProducer implements CobraProducer {
 
         doPublishBlob(artifact.getDeltaBlob());
         doPublishBlob(artifact.getReversedDeltaBlob());
+
+        if (isSnapshotDue(toVersion)) {
+            artifact.setSnapshotBlob(doStage(blobStagger.stageSnapshot(toVersion)));
+            doPublishBlob(artifact.getSnapshotBlob());
+        }
+
+        if (isSkipDeltaDue(toVersion))
+            publishSkipDelta(artifact, toVersion - this.skipDeltaSpan, toVersion);
+    }
+
+    boolean isSkipDeltaDue(long version) {
+        return this.skipDeltaSpan > 0 && this.deltaCompactor != null && version % this.skipDeltaSpan == 0;
+    }
+
+    /* compaction only saves catch-up work of consumers, so a failure must not fail the cycle */
+    private void publishSkipDelta(Artifact artifact, long fromVersion, long toVersion) {
+        if (!this.deltaCompactor.isCompactable(fromVersion, toVersion)) {
+            log.warn("skip compacting deltas ({}, {}]; not all of them are published at blob store",
+                    fromVersion, toVersion);
+            return;
+        }
+
+        try {
+            Blob skipDeltaBlob = blobStagger.stageSkipDelta(fromVersion, toVersion);
+            skipDeltaBlob.write(new BlobWriterImpl(stateWriteEngine, this.deltaCompactor));
+            artifact.setSkipDeltaBlob(skipDeltaBlob);
+
+            doPublishBlob(skipDeltaBlob);
+        } catch (IOException | RuntimeException e) {
+            log.warn("error when compacting deltas ({}, {}]", fromVersion, toVersion, e);
+        }
+    }
+
+    boolean isSnapshotDue(long version) {
+        return this.snapshotInterval > 0 && version % this.snapshotInterval == 0;
     }
 
     void announce(AtomicState atomic) {
         announcer.announce(atomic.getCurrent().getVersion());
+        versionSubscribers.announce(atomic.getCurrent().getVersion());
     }
 
     private void doStageAndPublishHeaderBlob(HeaderBlob headerBlob) throws IOException {
@@ -1,7 +1,8 @@
 package org.cobra.producer;
 
 import org.cobra.commons.Clock;
-import org.cobra.core.hashing.Table;
+import org.cobra.commons.errors.CobraException;
+import org.cobra.core.hashing.KeyedTable;
 import org.cobra.core.objects.StreamingBlob;
 import org.cobra.networks.NetworkConfig;
 import org.cobra.producer.internal.Blob;
@@ -18,15 +19,43 @@ public interface CobraProducer {
 
     void bootstrapServer();
 
+    /**
+     * Produces a cycle of mutations added by populator. With pipelined cycles the cycle is published after this
+     * returns, and the returned version may never be announced: a cycle that fails to publish is reverted and its
+     * mutations are shipped by the next cycle under a later version, see {@link #awaitPublished()}
+     *
+     * @return version the cycle is announced as, or the latest version if nothing has been modified
+     */
     long produce(Populator populator);
 
+    /**
+     * Produces a cycle where populator adds every live record: records it has not added are removed, and records
+     * serialized to the same bytes as the current version are not shipped
+     *
+     * @return version the cycle is announced as, which may never be announced, see {@link #produce(Populator)}
+     */
+    long produceFullState(Populator populator);
+
+    /**
+     * Waits until every produced version has been published and announced; only producers with pipelined cycles
+     * publish after {@link #produce(Populator)} returns
+     *
+     * @return latest version
+     * @throws CobraException if the last cycle failed to publish, its mutations are shipped by the next cycle
+     */
+    long awaitPublished();
+
     boolean pinVersion(long version);
 
     void registerModel(Class<?> clazz);
 
     long currentVersion();
 
-    Table lookupTable();
+    /**
+     * @return index of records of a model, keyed by 64-bit hash of key and verified by the key itself; or null if
+     * model has not been registered
+     */
+    KeyedTable lookupTable(Class<?> clazz);
 
     interface Announcer {
         void announce(long version);
@@ -44,6 +73,10 @@ public interface CobraProducer {
         Blob stageDelta(long fromVersion, long toVersion);
 
         Blob stageReverseDelta(long fromVersion, long toVersion);
+
+        Blob stageSnapshot(long version);
+
+        Blob stageSkipDelta(long fromVersion, long toVersion);
     }
 
     interface BlobCompressor {
@@ -129,6 +162,11 @@ public interface CobraProducer {
     }
 
     class Builder {
+        /* snapshots are opt-in, a producer publishes only deltas unless it is given an interval */
+        static final int DEFAULT_SNAPSHOT_INTERVAL = 0;
+        /* compaction is opt-in, as it re-reads published deltas from blob store */
+        static final int DEFAULT_SKIP_DELTA_SPAN = 0;
+
         BlobPublisher blobPublisher;
         BlobStagger blobStagger;
         BlobCompressor blobCompressor;
@@ -136,6 +174,9 @@ public interface CobraProducer {
         Announcer announcer;
         Path blobStorePath;
         int localPort = 0;
+        int snapshotInterval = DEFAULT_SNAPSHOT_INTERVAL;
+        int skipDeltaSpan = DEFAULT_SKIP_DELTA_SPAN;
+        boolean pipelinedCycles = false;
 
         public Builder withBlobPublisher(BlobPublisher blobPublisher) {
             this.blobPublisher = blobPublisher;
@@ -147,6 +188,9 @@ public interface CobraProducer {
             return this;
         }
 
+        /**
+         * @param blobCompressor compressor given to blob stagger, producer reads published blobs back through it
+         */
         public Builder withBlobCompressor(BlobCompressor blobCompressor) {
             this.blobCompressor = blobCompressor;
             return this;
@@ -172,6 +216,40 @@ public interface CobraProducer {
             return this;
         }
 
+        /**
+         * @param snapshotInterval a snapshot blob is published every this many versions, so a new consumer does not
+         *                         replay every delta since the first version; 0, by default, disables snapshots
+         */
+        public Builder withSnapshotInterval(int snapshotInterval) {
+            if (snapshotInterval < 0)
+                throw new IllegalArgumentException("Illegal snapshot interval %d".formatted(snapshotInterval));
+
+            this.snapshotInterval = snapshotInterval;
+            return this;
+        }
+
+        /**
+         * @param skipDeltaSpan every this many versions, the last span of deltas is compacted into one skip-delta, so
+         *                      a lagging consumer catches up in fewer hops; 0, by default, disables compaction
+         */
+        public Builder withSkipDeltaSpan(int skipDeltaSpan) {
+            if (skipDeltaSpan < 0 || skipDeltaSpan == 1)
+                throw new IllegalArgumentException("Illegal skip-delta span %d".formatted(skipDeltaSpan));
+
+            this.skipDeltaSpan = skipDeltaSpan;
+            return this;
+        }
+
+        /**
+         * @param pipelinedCycles populate the next cycle while the previous one is written and published in
+         *                        background, versions are still announced in order; a failure of publishing
+         *                        surfaces on the next {@link #produce(Populator)} or {@link #awaitPublished()}
+         */
+        public Builder withPipelinedCycles(boolean pipelinedCycles) {
+            this.pipelinedCycles = pipelinedCycles;
+            return this;
+        }
+
         public CobraProducer buildSimple() {
             if (localPort == 0)
                 localPort = NetworkConfig.DEFAULT_PORT;
@@ -179,6 +257,9 @@ public interface CobraProducer {
             if (clock == null)
                 clock = Clock.system();
 
+            if (blobCompressor == null)
+                blobCompressor = BlobCompressor.EMPTY_INSTANCE;
+
             return new CobraSimpleProducer(this);
         }
     }
@@ -11,6 +11,11 @@ public class CobraSimpleProducer extends AbstractProducer {
         return runProduce(populator);
     }
 
+    @Override
+    public long produceFullState(Populator populator) {
+        return runProduce(populator, true);
+    }
+
     @Override
     public boolean pinVersion(long version) {
         return moveToVersion(version);
@@ -0,0 +1,60 @@
+package org.cobra.producer.fs;
+
+import org.cobra.commons.errors.CobraException;
+import org.cobra.core.compress.BlobCodec;
+import org.cobra.core.compress.BlobCompression;
+import org.cobra.core.compress.BlockCompressedOutputStream;
+import org.cobra.producer.CobraProducer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses blobs into independent deflated blocks, optionally with a preset dictionary (see
+ * {@link BlobCompression#trainDictionary}). Consumers must be given the same dictionary.
+ */
+public class DeflateBlobCompressor implements CobraProducer.BlobCompressor {
+
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 18;
+
+    private final int level;
+    private final byte[] dictionary;
+    private final int blockSize;
+    private final Map<Integer, byte[]> dictionaries;
+
+    public DeflateBlobCompressor() {
+        this(Deflater.DEFAULT_COMPRESSION, null);
+    }
+
+    public DeflateBlobCompressor(int level, byte[] dictionary) {
+        this(level, dictionary, DEFAULT_BLOCK_SIZE);
+    }
+
+    public DeflateBlobCompressor(int level, byte[] dictionary, int blockSize) {
+        this.level = level;
+        this.dictionary = dictionary;
+        this.blockSize = blockSize;
+        this.dictionaries = BlobCompression.dictionaries(dictionary == null ? new byte[0] : dictionary);
+    }
+
+    @Override
+    public OutputStream compress(OutputStream os) {
+        try {
+            return new BlockCompressedOutputStream(os, BlobCodec.DEFLATE, this.level, this.dictionary, this.blockSize);
+        } catch (IOException e) {
+            throw new CobraException(e);
+        }
+    }
+
+    @Override
+    public InputStream decompress(InputStream is) {
+        try {
+            return BlobCompression.decoding(is, this.dictionaries);
+        } catch (IOException e) {
+            throw new CobraException(e);
+        }
+    }
+}
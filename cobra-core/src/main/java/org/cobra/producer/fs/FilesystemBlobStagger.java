@@ -3,6 +3,8 @@ package org.cobra.producer.fs;
 import org.cobra.commons.Jvm;
 import org.cobra.commons.errors.CobraException;
 import org.cobra.commons.utils.IOx;
+import org.cobra.core.objects.BlobType;
+import org.cobra.core.objects.VersioningBlob;
 import org.cobra.producer.CobraProducer;
 import org.cobra.producer.internal.Blob;
 import org.cobra.producer.internal.HeaderBlob;
@@ -45,6 +47,17 @@ public class FilesystemBlobStagger implements CobraProducer.BlobStagger {
         return new FilesystemBlob(fromVersion, toVersion, stagingPathDir, compressor);
     }
 
+    @Override
+    public Blob stageSnapshot(long version) {
+        return new FilesystemBlob(BlobType.SNAPSHOT, VersioningBlob.VERSION_UNDEFINED, version, stagingPathDir,
+                compressor);
+    }
+
+    @Override
+    public Blob stageSkipDelta(long fromVersion, long toVersion) {
+        return new FilesystemBlob(BlobType.SKIP_DELTA, fromVersion, toVersion, stagingPathDir, compressor);
+    }
+
     public static class FilesystemHeaderBlob extends HeaderBlob {
         private final CobraProducer.BlobCompressor compressor;
 
@@ -104,6 +117,12 @@ public class FilesystemBlobStagger implements CobraProducer.BlobStagger {
             this.compressor = compressor;
         }
 
+        public FilesystemBlob(BlobType blobType, long fromVersion, long toVersion, Path dir,
+                              CobraProducer.BlobCompressor compressor) {
+            super(dir, blobType, fromVersion, toVersion);
+            this.compressor = compressor;
+        }
+
         @Override
         public void write(BlobWriter blobWriter) throws IOException {
             Path parentDir = this.path.getParent();
@@ -118,6 +137,8 @@ public class FilesystemBlobStagger implements CobraProducer.BlobStagger {
                 switch (blobType) {
                     case DELTA_BLOB -> blobWriter.writeDelta(os);
                     case REVERSED_DELTA_BLOB -> blobWriter.writeReversedDelta(os);
+                    case SNAPSHOT -> blobWriter.writeSnapshot(os);
+                    case SKIP_DELTA -> blobWriter.writeSkipDelta(os, fromVersion, toVersion);
                     default -> throw new IllegalStateException("Unknown blob type");
                 }
             }
@@ -44,16 +44,16 @@ public class FilesystemPublisher implements CobraProducer.BlobPublisher {
     }
 
     private void doPublishBlob(Blob blob) throws IOException {
-        Path dest = pathDir.resolve("%s-%d-%d".formatted(blob.blobType().prefix(),
-                blob.fromVersion(), blob.toVersion()));
+        Path dest = pathDir.resolve(blob.blobType().filename(blob.fromVersion(), blob.toVersion()));
         doPublishContent(blob, dest);
     }
 
     private void doPublishContent(CobraProducer.PublishableArtifact publishable, Path dest) throws IOException {
         final long startMillis = System.currentTimeMillis();
 
+        // published as staged, so a compressed blob stays compressed on disk and on the wire
         try (
-                InputStream is = publishable.input();
+                InputStream is = Files.newInputStream(publishable.getPath());
                 OutputStream os = Files.newOutputStream(dest);
         ) {
             byte[] buf = new byte[4096];
@@ -4,21 +4,36 @@ import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.DefaultFileRegion;
 import org.cobra.commons.errors.CobraException;
+import org.cobra.networks.Frames;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 public class ChannelContextFileTransfers {
-    public static void zeroCopy(Path filepath, ChannelHandlerContext context) {
+
+    private static final Logger log = LoggerFactory.getLogger(ChannelContextFileTransfers.class);
+
+    /**
+     * Replies a file as body of response to a request, or {@link Frames.Status#NOT_FOUND} if it does not exist
+     */
+    public static void zeroCopy(Path filepath, int requestId, ChannelHandlerContext context) {
+        if (!Files.isRegularFile(filepath)) {
+            log.debug("file {} not found; channel: {}", filepath.toAbsolutePath(), context.channel());
+            context.writeAndFlush(Unpooled.wrappedBuffer(Frames.response(requestId, Frames.Status.NOT_FOUND)));
+            return;
+        }
 
         RandomAccessFile raf = null;
         int len = -1;
         try {
             raf = new RandomAccessFile(filepath.toFile(), "r");
-            len = (int) raf.length();
-        } catch (IOException e) {
+            len = Math.toIntExact(raf.length());
+        } catch (IOException | ArithmeticException e) {
             throw new CobraException(e);
         } finally {
             if (len < 0 && raf != null) {
@@ -30,11 +45,56 @@ public class ChannelContextFileTransfers {
             }
         }
 
-        ByteBuffer sizeBuffer = ByteBuffer.allocate(Integer.BYTES);
-        sizeBuffer.putInt(len);
-
         // zero copy
-        context.writeAndFlush(Unpooled.wrappedBuffer(sizeBuffer.rewind()));
+        context.write(Unpooled.wrappedBuffer(Frames.responseHeader(requestId, Frames.Status.OK, len)));
         context.writeAndFlush(new DefaultFileRegion(raf.getChannel(), 0, len));
     }
+
+    /**
+     * Streams a range of length bytes from offset of a file, clipped at its end, as {@link Frames.Status#PARTIAL}
+     * responses to a request: [long size of file] first, then parts of at most {@link Frames#MAX_PART_BYTES} each
+     * sent as a region of exactly its slice, ended by an empty {@link Frames.Status#OK}. Replies
+     * {@link Frames.Status#NOT_FOUND} if it does not exist.
+     */
+    public static void stream(Path filepath, long offset, long length, int requestId, ChannelHandlerContext context) {
+        final long size;
+        try {
+            size = Files.isRegularFile(filepath) ? Files.size(filepath) : -1;
+        } catch (IOException e) {
+            throw new CobraException(e);
+        }
+
+        if (size < 0) {
+            log.debug("file {} not found; channel: {}", filepath.toAbsolutePath(), context.channel());
+            context.writeAndFlush(Unpooled.wrappedBuffer(Frames.response(requestId, Frames.Status.NOT_FOUND)));
+            return;
+        }
+        if (offset < 0 || offset > size || length < 0) {
+            log.warn("range [{}, +{}) out of file {} of {} bytes; channel: {}", offset, length,
+                    filepath.toAbsolutePath(), size, context.channel());
+            context.writeAndFlush(Unpooled.wrappedBuffer(Frames.response(requestId, Frames.Status.ERROR)));
+            return;
+        }
+
+        final ByteBuffer sizeBuffer = ByteBuffer.allocate(Long.BYTES);
+        sizeBuffer.putLong(size)
+                .flip();
+        context.write(Unpooled.wrappedBuffer(Frames.response(requestId, Frames.Status.PARTIAL, sizeBuffer)));
+
+        writeParts(filepath, offset, offset + Math.min(length, size - offset), requestId, context);
+        context.writeAndFlush(Unpooled.wrappedBuffer(Frames.response(requestId, Frames.Status.OK)));
+    }
+
+    /**
+     * Writes [offset, end) of a file as {@link Frames.Status#PARTIAL} responses of at most
+     * {@link Frames#MAX_PART_BYTES}, each a region of exactly its slice; they are flushed by the caller
+     */
+    public static void writeParts(Path filepath, long offset, long end, int requestId, ChannelHandlerContext context) {
+        /* a region opens the file once it is transferred, and closes it after */
+        for (long position = offset; position < end; position += Frames.MAX_PART_BYTES) {
+            final int count = (int) Math.min(Frames.MAX_PART_BYTES, end - position);
+            context.write(Unpooled.wrappedBuffer(Frames.responseHeader(requestId, Frames.Status.PARTIAL, count)));
+            context.write(new DefaultFileRegion(filepath.toFile(), position, count));
+        }
+    }
 }
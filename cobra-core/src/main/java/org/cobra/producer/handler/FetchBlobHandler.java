@@ -1,11 +1,11 @@
 package org.cobra.producer.handler;
 
-import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import org.cobra.core.objects.BlobType;
 import org.cobra.networks.Apikey;
+import org.cobra.networks.Request;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,9 +25,8 @@ public class FetchBlobHandler extends ChannelInboundHandlerAdapter {
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-        ByteBuffer buffer = ((ByteBuf) msg).nioBuffer();
-        if (buffer.hasRemaining() && buffer.get(0) == Apikey.FETCH_BLOB.id()) {
-            buffer.position(1); // skip first apikey
+        if (msg instanceof Request request && request.apikey() == Apikey.FETCH_BLOB) {
+            final ByteBuffer buffer = request.payload();
             final long fromVersion = buffer.getLong();
             final long toVersion = buffer.getLong();
 
@@ -36,8 +35,7 @@ public class FetchBlobHandler extends ChannelInboundHandlerAdapter {
 
             log.debug("transfer blob {}; channel: {}", filepath.toAbsolutePath(), ctx.channel());
 
-            ChannelContextFileTransfers.zeroCopy(filepath, ctx);
-            ((ByteBuf) msg).release();
+            ChannelContextFileTransfers.zeroCopy(filepath, request.requestId(), ctx);
         } else {
             ctx.fireChannelRead(msg);
         }
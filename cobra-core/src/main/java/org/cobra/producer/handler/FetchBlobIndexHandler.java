@@ -0,0 +1,85 @@
+package org.cobra.producer.handler;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import org.cobra.core.objects.BlobDescriptor;
+import org.cobra.networks.Apikey;
+import org.cobra.networks.Frames;
+import org.cobra.networks.Request;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Replies the published blobs with their sizes, as [int count][(utf name, long size)...], so a consumer can plan
+ * the cheapest path to a version before downloading anything
+ */
+@ChannelHandler.Sharable
+public class FetchBlobIndexHandler extends ChannelInboundHandlerAdapter {
+
+    private static final Logger log = LoggerFactory.getLogger(FetchBlobIndexHandler.class);
+
+    private final Path blobStorePath;
+
+    public FetchBlobIndexHandler(Path blobStorePath) {
+        this.blobStorePath = blobStorePath;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof Request request && request.apikey() == Apikey.FETCH_BLOB_INDEX) {
+            final byte[] payload = encode(listBlobs(blobStorePath));
+
+            log.debug("transfer blob index; {} bytes; channel: {}", payload.length, ctx.channel());
+
+            ctx.writeAndFlush(Unpooled.wrappedBuffer(Frames.response(request.requestId(), ByteBuffer.wrap(payload))));
+        } else {
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        super.exceptionCaught(ctx, cause);
+        log.error("exception caught", cause);
+    }
+
+    static List<BlobDescriptor> listBlobs(Path blobStorePath) throws IOException {
+        final List<BlobDescriptor> result = new ArrayList<>();
+        if (!Files.isDirectory(blobStorePath))
+            return result;
+
+        try (Stream<Path> paths = Files.list(blobStorePath)) {
+            for (Path path : paths.toList()) {
+                final BlobDescriptor descriptor = BlobDescriptor.parse(path.getFileName().toString(), Files.size(path));
+                if (descriptor != null)
+                    result.add(descriptor);
+            }
+        }
+
+        return result;
+    }
+
+    static byte[] encode(List<BlobDescriptor> descriptors) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(baos);
+        dos.writeInt(descriptors.size());
+        for (BlobDescriptor descriptor : descriptors) {
+            dos.writeUTF(descriptor.filename());
+            dos.writeLong(descriptor.size());
+        }
+
+        return baos.toByteArray();
+    }
+}
@@ -1,10 +1,10 @@
 package org.cobra.producer.handler;
 
-import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import org.cobra.networks.Apikey;
+import org.cobra.networks.Request;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,16 +24,14 @@ public class FetchHeaderBlobHandler extends ChannelInboundHandlerAdapter {
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-        ByteBuffer buffer = ((ByteBuf) msg).nioBuffer();
-        if (buffer.hasRemaining() && buffer.get(0) == Apikey.FETCH_HEADER.id()) {
-            buffer.position(1); // skip first apikey
+        if (msg instanceof Request request && request.apikey() == Apikey.FETCH_HEADER) {
+            final ByteBuffer buffer = request.payload();
             final long desiredVersion = buffer.getLong();
             Path filepath = blobStorePath.resolve("header-%d".formatted(desiredVersion));
 
             log.debug("transfer header blob {}", filepath.toAbsolutePath());
 
-            ChannelContextFileTransfers.zeroCopy(filepath, ctx);
-            ((ByteBuf) msg).release();
+            ChannelContextFileTransfers.zeroCopy(filepath, request.requestId(), ctx);
         } else {
             ctx.fireChannelRead(msg);
         }
@@ -0,0 +1,99 @@
+package org.cobra.producer.handler;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import org.cobra.networks.Apikey;
+import org.cobra.networks.Frames;
+import org.cobra.networks.PlanEntry;
+import org.cobra.networks.Request;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams header blobs and delta blobs of (from version, to version] as one response, request is [long from version]
+ * [long to version]. The first part is a manifest [int count][(long version, long header size, long delta size)...]
+ * of consecutive versions, ending before the first one missing a blob; the header and delta of each follow in
+ * manifest order, ended by an empty {@link Frames.Status#OK}.
+ */
+@ChannelHandler.Sharable
+public class FetchPlanHandler extends ChannelInboundHandlerAdapter {
+
+    private static final Logger log = LoggerFactory.getLogger(FetchPlanHandler.class);
+
+    /* bounds the manifest, a consumer further behind fetches a plan again from where this one ends */
+    static final int MAX_PLAN_VERSIONS = 4096;
+
+    private final Path blobStorePath;
+
+    public FetchPlanHandler(Path blobStorePath) {
+        this.blobStorePath = blobStorePath;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof Request request && request.apikey() == Apikey.FETCH_PLAN) {
+            final ByteBuffer buffer = request.payload();
+            final long fromVersion = buffer.getLong();
+            final long toVersion = buffer.getLong();
+
+            final List<PlanEntry> manifest = manifest(blobStorePath, fromVersion, toVersion);
+
+            log.debug("transfer plan ({}, {}] of {} versions; channel: {}", fromVersion, toVersion, manifest.size(),
+                    ctx.channel());
+
+            ctx.write(Unpooled.wrappedBuffer(Frames.response(request.requestId(), Frames.Status.PARTIAL,
+                    encode(manifest))));
+            for (PlanEntry entry : manifest) {
+                ChannelContextFileTransfers.writeParts(blobStorePath.resolve(entry.headerFilename()), 0,
+                        entry.headerSize(), request.requestId(), ctx);
+                ChannelContextFileTransfers.writeParts(blobStorePath.resolve(entry.deltaFilename()), 0,
+                        entry.deltaSize(), request.requestId(), ctx);
+            }
+            ctx.writeAndFlush(Unpooled.wrappedBuffer(Frames.response(request.requestId(), Frames.Status.OK)));
+        } else {
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        super.exceptionCaught(ctx, cause);
+        log.error("exception caught", cause);
+    }
+
+    static List<PlanEntry> manifest(Path blobStorePath, long fromVersion, long toVersion) throws IOException {
+        final List<PlanEntry> result = new ArrayList<>();
+        for (long version = fromVersion + 1; version <= toVersion && result.size() < MAX_PLAN_VERSIONS; version++) {
+            final PlanEntry probe = new PlanEntry(version, 0, 0);
+            final Path header = blobStorePath.resolve(probe.headerFilename());
+            final Path delta = blobStorePath.resolve(probe.deltaFilename());
+            if (!Files.isRegularFile(header) || !Files.isRegularFile(delta))
+                break;
+
+            result.add(new PlanEntry(version, Files.size(header), Files.size(delta)));
+        }
+
+        return result;
+    }
+
+    static ByteBuffer encode(List<PlanEntry> manifest) {
+        final ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + manifest.size() * 3 * Long.BYTES);
+        buffer.putInt(manifest.size());
+        for (PlanEntry entry : manifest) {
+            buffer.putLong(entry.version());
+            buffer.putLong(entry.headerSize());
+            buffer.putLong(entry.deltaSize());
+        }
+
+        return buffer.flip();
+    }
+}
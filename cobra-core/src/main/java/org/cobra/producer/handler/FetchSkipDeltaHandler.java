@@ -0,0 +1,47 @@
+package org.cobra.producer.handler;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import org.cobra.core.objects.BlobType;
+import org.cobra.networks.Apikey;
+import org.cobra.networks.Request;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+@ChannelHandler.Sharable
+public class FetchSkipDeltaHandler extends ChannelInboundHandlerAdapter {
+
+    private static final Logger log = LoggerFactory.getLogger(FetchSkipDeltaHandler.class);
+
+    private final Path blobStorePath;
+
+    public FetchSkipDeltaHandler(Path blobStorePath) {
+        this.blobStorePath = blobStorePath;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof Request request && request.apikey() == Apikey.FETCH_SKIP_DELTA) {
+            final ByteBuffer buffer = request.payload();
+            final long fromVersion = buffer.getLong();
+            final long toVersion = buffer.getLong();
+            Path filepath = blobStorePath.resolve(BlobType.SKIP_DELTA.filename(fromVersion, toVersion));
+
+            log.debug("transfer skip-delta blob {}; channel: {}", filepath.toAbsolutePath(), ctx.channel());
+
+            ChannelContextFileTransfers.zeroCopy(filepath, request.requestId(), ctx);
+        } else {
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        super.exceptionCaught(ctx, cause);
+        log.error("exception caught", cause);
+    }
+}
@@ -0,0 +1,46 @@
+package org.cobra.producer.handler;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import org.cobra.core.objects.BlobDescriptor;
+import org.cobra.networks.Apikey;
+import org.cobra.networks.Request;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+@ChannelHandler.Sharable
+public class FetchSnapshotHandler extends ChannelInboundHandlerAdapter {
+
+    private static final Logger log = LoggerFactory.getLogger(FetchSnapshotHandler.class);
+
+    private final Path blobStorePath;
+
+    public FetchSnapshotHandler(Path blobStorePath) {
+        this.blobStorePath = blobStorePath;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof Request request && request.apikey() == Apikey.FETCH_SNAPSHOT) {
+            final ByteBuffer buffer = request.payload();
+            final long version = buffer.getLong();
+            Path filepath = blobStorePath.resolve(BlobDescriptor.snapshot(version, 0).filename());
+
+            log.debug("transfer snapshot blob {}; channel: {}", filepath.toAbsolutePath(), ctx.channel());
+
+            ChannelContextFileTransfers.zeroCopy(filepath, request.requestId(), ctx);
+        } else {
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        super.exceptionCaught(ctx, cause);
+        log.error("exception caught", cause);
+    }
+}
@@ -1,11 +1,12 @@
 package org.cobra.producer.handler;
 
-import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import org.cobra.networks.Apikey;
+import org.cobra.networks.Frames;
+import org.cobra.networks.Request;
 import org.cobra.producer.CobraProducer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,19 +31,15 @@ public class FetchVersionHandler extends ChannelInboundHandlerAdapter {
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-        ByteBuffer buffer = ((ByteBuf) msg).nioBuffer();
-        if (buffer.hasRemaining() && buffer.get(0) == Apikey.FETCH_VERSION.id()) {
+        if (msg instanceof Request request && request.apikey() == Apikey.FETCH_VERSION) {
 
             long version = announcer.retrieve();
 
-            ByteBuffer buf = ByteBuffer.allocate(4 + 8);
-            buf.putInt(Long.BYTES);
+            ByteBuffer buf = ByteBuffer.allocate(Long.BYTES);
             buf.putLong(version)
                     .flip();
 
-            ctx.writeAndFlush(Unpooled.wrappedBuffer(buf));
-
-            ((ByteBuf) msg).release();
+            ctx.writeAndFlush(Unpooled.wrappedBuffer(Frames.response(request.requestId(), buf)));
         } else {
             ctx.fireChannelRead(msg);
         }
@@ -0,0 +1,65 @@
+package org.cobra.producer.handler;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import org.cobra.core.objects.BlobType;
+import org.cobra.networks.Apikey;
+import org.cobra.networks.Frames;
+import org.cobra.networks.Request;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Streams a range of blob, request is [byte blob type][long from version][long to version][long offset][long length];
+ * see {@link ChannelContextFileTransfers#stream}
+ */
+@ChannelHandler.Sharable
+public class StreamBlobHandler extends ChannelInboundHandlerAdapter {
+
+    private static final Logger log = LoggerFactory.getLogger(StreamBlobHandler.class);
+
+    private final Path blobStorePath;
+
+    public StreamBlobHandler(Path blobStorePath) {
+        this.blobStorePath = blobStorePath;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof Request request && request.apikey() == Apikey.STREAM_BLOB) {
+            final ByteBuffer buffer = request.payload();
+            final int type = buffer.get();
+            if (type < 0 || type >= BlobType.values().length) {
+                log.warn("unknown blob type {}; channel: {}", type, ctx.channel());
+                ctx.writeAndFlush(Unpooled.wrappedBuffer(Frames.response(request.requestId(), Frames.Status.ERROR)));
+                return;
+            }
+
+            final BlobType blobType = BlobType.values()[type];
+            final long fromVersion = buffer.getLong();
+            final long toVersion = buffer.getLong();
+            final long offset = buffer.getLong();
+            final long length = buffer.getLong();
+
+            Path filepath = blobStorePath.resolve(blobType.filename(fromVersion, toVersion));
+
+            log.debug("stream blob {} [{}, +{}); channel: {}", filepath.toAbsolutePath(), offset, length,
+                    ctx.channel());
+
+            ChannelContextFileTransfers.stream(filepath, offset, length, request.requestId(), ctx);
+        } else {
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        super.exceptionCaught(ctx, cause);
+        log.error("exception caught", cause);
+    }
+}
@@ -0,0 +1,87 @@
+package org.cobra.producer.handler;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import org.cobra.networks.Apikey;
+import org.cobra.networks.Frames;
+import org.cobra.networks.Request;
+import org.cobra.producer.CobraProducer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps channels subscribed to announcements and pushes every announced version to them, as responses [long version]
+ * to their subscribe request; a subscriber is pushed the current version first. Pushes are ordered as versions are
+ * announced, also against the first one.
+ */
+@ChannelHandler.Sharable
+public class SubscribeVersionHandler extends ChannelInboundHandlerAdapter {
+
+    private static final Logger log = LoggerFactory.getLogger(SubscribeVersionHandler.class);
+
+    private final CobraProducer.Announcer announcer;
+    /* subscribed channels by id of their subscribe request */
+    private final Map<Channel, Integer> subscribers = new ConcurrentHashMap<>();
+    private final ReentrantLock pushLock = new ReentrantLock();
+
+    public SubscribeVersionHandler(CobraProducer.Announcer announcer) {
+        this.announcer = announcer;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof Request request && request.apikey() == Apikey.SUBSCRIBE_VERSION) {
+            final Channel channel = ctx.channel();
+
+            pushLock.lock();
+            try {
+                if (subscribers.put(channel, request.requestId()) == null)
+                    channel.closeFuture().addListener(future -> subscribers.remove(channel));
+
+                push(channel, request.requestId(), announcer.retrieve());
+            } finally {
+                pushLock.unlock();
+            }
+
+            log.debug("subscribe version; subscribers: {}; channel: {}", subscribers.size(), channel);
+        } else {
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    /**
+     * Pushes an announced version to every subscriber
+     */
+    public void announce(long version) {
+        pushLock.lock();
+        try {
+            subscribers.forEach((channel, requestId) -> push(channel, requestId, version));
+        } finally {
+            pushLock.unlock();
+        }
+
+        log.debug("push version {}; subscribers: {}", version, subscribers.size());
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        super.exceptionCaught(ctx, cause);
+        log.error("exception caught", cause);
+    }
+
+    private static void push(Channel channel, int requestId, long version) {
+        final ByteBuffer buf = ByteBuffer.allocate(Long.BYTES);
+        buf.putLong(version)
+                .flip();
+
+        channel.writeAndFlush(Unpooled.wrappedBuffer(Frames.response(requestId, buf)));
+    }
+}
@@ -5,6 +5,8 @@ public final class Artifact {
     private HeaderBlob headerBlob = null;
     private Blob deltaBlob = null;
     private Blob reversedDeltaBlob = null;
+    private Blob snapshotBlob = null;
+    private Blob skipDeltaBlob = null;
 
     private boolean isClosed = false;
 
@@ -16,6 +18,14 @@ public final class Artifact {
         return this.reversedDeltaBlob != null;
     }
 
+    public boolean hasSnapshot() {
+        return this.snapshotBlob != null;
+    }
+
+    public boolean hasSkipDelta() {
+        return this.skipDeltaBlob != null;
+    }
+
     public HeaderBlob getHeaderBlob() {
         return this.headerBlob;
     }
@@ -40,6 +50,22 @@ public final class Artifact {
         this.reversedDeltaBlob = reversedDeltaBlob;
     }
 
+    public Blob getSnapshotBlob() {
+        return this.snapshotBlob;
+    }
+
+    public void setSnapshotBlob(Blob snapshotBlob) {
+        this.snapshotBlob = snapshotBlob;
+    }
+
+    public Blob getSkipDeltaBlob() {
+        return this.skipDeltaBlob;
+    }
+
+    public void setSkipDeltaBlob(Blob skipDeltaBlob) {
+        this.skipDeltaBlob = skipDeltaBlob;
+    }
+
     public synchronized void close() {
         if (this.isClosed)
             return;
@@ -55,6 +81,16 @@ public final class Artifact {
             this.reversedDeltaBlob.cleanup();
             this.reversedDeltaBlob = null;
         }
+
+        if (hasSnapshot()) {
+            this.snapshotBlob.cleanup();
+            this.snapshotBlob = null;
+        }
+
+        if (hasSkipDelta()) {
+            this.skipDeltaBlob.cleanup();
+            this.skipDeltaBlob = null;
+        }
     }
 
 }
@@ -1,5 +1,6 @@
 package org.cobra.producer.internal;
 
+import org.cobra.core.objects.BlobType;
 import org.cobra.core.objects.VersioningBlob;
 import org.cobra.producer.CobraProducer;
 
@@ -11,15 +12,25 @@ public abstract class Blob extends VersioningBlob implements CobraProducer.Publi
 
     protected Blob(Path path, long fromVersion, long toVersion) {
         super(fromVersion, toVersion);
+        this.path = resolve(path);
+    }
+
+    protected Blob(Path path, BlobType blobType, long fromVersion, long toVersion) {
+        super(fromVersion, toVersion, blobType);
+        this.path = resolve(path);
+    }
 
+    private Path resolve(Path path) {
         String blobPrefix = blobType().prefix();
-        switch (blobType()) {
-            case DELTA_BLOB -> this.path = path.resolve(String.format("%s-%d-%d",
+        return switch (blobType()) {
+            case DELTA_BLOB -> path.resolve(String.format("%s-%d-%d",
                     blobPrefix, fromVersion, toVersion));
-            case REVERSED_DELTA_BLOB -> this.path = path.resolve(String.format("%s-%d-%d",
+            case REVERSED_DELTA_BLOB -> path.resolve(String.format("%s-%d-%d",
                     blobPrefix, toVersion, fromVersion));
-            default -> throw new IllegalStateException("Unknown blob type: " + blobType());
-        }
+            case SNAPSHOT -> path.resolve(String.format("%s-%d", blobPrefix, toVersion));
+            case SKIP_DELTA -> path.resolve(String.format("%s-%d-%d",
+                    blobPrefix, fromVersion, toVersion));
+        };
     }
 
     @Override
@@ -29,6 +40,6 @@ public abstract class Blob extends VersioningBlob implements CobraProducer.Publi
 
     @Override
     public String toString() {
-        return "Blob(fromVersion=%d, toVersion=%d)".formatted(fromVersion, toVersion);
+        return "Blob(fromVersion=%d, toVersion=%d, blobType=%s)".formatted(fromVersion, toVersion, blobType);
     }
 }
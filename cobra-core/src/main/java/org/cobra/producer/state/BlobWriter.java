@@ -12,4 +12,14 @@ public interface BlobWriter {
     void writeDelta(OutputStream os) throws IOException;
 
     void writeReversedDelta(OutputStream os) throws IOException;
+
+    /**
+     * Writes the whole current state: a header of every schema and registration, then all records as additions
+     */
+    void writeSnapshot(OutputStream os) throws IOException;
+
+    /**
+     * Writes a net delta of published deltas of (fromVersion, toVersion], with a header merged from their headers
+     */
+    void writeSkipDelta(OutputStream os, long fromVersion, long toVersion) throws IOException;
 }
@@ -2,29 +2,37 @@ package org.cobra.producer.state;
 
 import org.cobra.commons.CobraConstants;
 import org.cobra.commons.Jvm;
-import org.cobra.commons.threads.CobraThreadExecutor;
+import org.cobra.commons.errors.CobraException;
 import org.cobra.core.ModelSchema;
 import org.cobra.core.encoding.Varint;
 
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
 
 public class BlobWriterImpl implements BlobWriter {
 
-    private static final String PROC_DESC_WRITE_DELTA = "blob_writer_impl.delta";
     private static final String PROC_DESC_WRITE_REVERSED_DELTA = "blob_writer_impl.reversed_delta";
 
     private static final Varint varint = Jvm.varint();
 
     private final StateWriteEngine stateWriteEngine;
+    private final DeltaCompactor deltaCompactor;
 
     public BlobWriterImpl(StateWriteEngine stateWriteEngine) {
+        this(stateWriteEngine, null);
+    }
+
+    public BlobWriterImpl(StateWriteEngine stateWriteEngine, DeltaCompactor deltaCompactor) {
         this.stateWriteEngine = stateWriteEngine;
+        this.deltaCompactor = deltaCompactor;
     }
 
     @Override
@@ -45,22 +53,13 @@ public class BlobWriterImpl implements BlobWriter {
         dos.writeLong(this.stateWriteEngine.getOriginRandomizedTag());
         dos.writeLong(this.stateWriteEngine.getNextRandomizedTag());
 
-        Set<SchemaStateWrite> modifiedStateWriteSet = collectModifiedSchemaStateWrite();
+        /* schemas whose records are all unchanged are left out */
+        this.stateWriteEngine.prepareBeforeWriting();
+        final List<SchemaStateWrite> modifiedStateWrites = new ArrayList<>(collectModifiedSchemaStateWrite());
 
-        dos.writeInt(modifiedStateWriteSet.size());
+        dos.writeInt(modifiedStateWrites.size());
 
-        try (
-                final CobraThreadExecutor executor = CobraThreadExecutor.ofPhysicalProcessor(getClass(),
-                        PROC_DESC_WRITE_DELTA)
-        ) {
-            for (final SchemaStateWrite stateWrite : modifiedStateWriteSet) {
-                executor.execute(stateWrite::prepareBeforeWriting);
-            }
-        }
-
-        for (final SchemaStateWrite stateWrite : modifiedStateWriteSet) {
-            stateWrite.writeDelta(dos);
-        }
+        writeSections(dos, modifiedStateWrites, SchemaStateWrite::sizeOfDelta, SchemaStateWrite::writeDelta);
 
         os.flush();
     }
@@ -73,16 +72,77 @@ public class BlobWriterImpl implements BlobWriter {
         dos.writeLong(this.stateWriteEngine.getNextRandomizedTag());
         dos.writeLong(this.stateWriteEngine.getOriginRandomizedTag());
 
-        Set<SchemaStateWrite> modifiedStateWriteSet = collectModifiedSchemaStateWrite();
-        dos.writeInt(modifiedStateWriteSet.size());
+        final List<SchemaStateWrite> modifiedStateWrites = new ArrayList<>(collectModifiedSchemaStateWrite());
+        dos.writeInt(modifiedStateWrites.size());
 
-        for (final SchemaStateWrite stateWrite : modifiedStateWriteSet) {
-            stateWrite.writeReversedDelta(dos);
-        }
+        writeSections(dos, modifiedStateWrites, SchemaStateWrite::sizeOfReversedDelta,
+                SchemaStateWrite::writeReversedDelta);
+
+        os.flush();
+    }
+
+    @Override
+    public void writeSnapshot(OutputStream os) throws IOException {
+        this.stateWriteEngine.moveToWritePhase();
+        DataOutputStream dos = new DataOutputStream(os);
+
+        /* a fresh consumer starts from nothing, so header carries every schema and registration */
+        doWriteHeader(dos, this.stateWriteEngine.producerStateContext().collectRegisteredSchemas(),
+                collectClassRegistrations());
+
+        dos.writeLong(this.stateWriteEngine.getOriginRandomizedTag());
+        dos.writeLong(this.stateWriteEngine.getNextRandomizedTag());
+
+        final List<SchemaStateWrite> stateWrites =
+                new ArrayList<>(this.stateWriteEngine.producerStateContext().collectSchemaStateWrites());
+        dos.writeInt(stateWrites.size());
+
+        writeSections(dos, stateWrites, SchemaStateWrite::sizeOfSnapshot, SchemaStateWrite::writeSnapshot);
+
+        os.flush();
+    }
+
+    @Override
+    public void writeSkipDelta(OutputStream os, long fromVersion, long toVersion) throws IOException {
+        if (this.deltaCompactor == null)
+            throw new IllegalStateException("Writing skip-delta requires a delta compactor");
 
+        this.deltaCompactor.compact(fromVersion, toVersion, os);
         os.flush();
     }
 
+    /**
+     * Writes the offset table (length of each schema section, so reader can locate all sections up front), then
+     * the sections
+     */
+    private static void writeSections(
+            DataOutputStream dos,
+            List<SchemaStateWrite> stateWrites,
+            ToLongFunction<SchemaStateWrite> sizeOfSection,
+            SectionWriter sectionWriter) throws IOException {
+        final long[] sizes = new long[stateWrites.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = sizeOfSection.applyAsLong(stateWrites.get(i));
+            dos.writeLong(sizes[i]);
+        }
+
+        for (int i = 0; i < sizes.length; i++) {
+            final int start = dos.size();
+            sectionWriter.write(stateWrites.get(i), dos);
+            checkSectionWritten(stateWrites.get(i), start, dos.size(), sizes[i]);
+        }
+    }
+
+    /* a mismatch would shift every following section; DataOutputStream counter saturates at 2GB, so stop there */
+    private static void checkSectionWritten(SchemaStateWrite stateWrite, int start, int end, long expected) {
+        if (end == Integer.MAX_VALUE)
+            return;
+
+        if (end - start != expected)
+            throw new CobraException("Schema %s wrote %d bytes to delta section, but declared %d".formatted(
+                    stateWrite.getSchema().getClazzName(), end - start, expected));
+    }
+
     private Set<SchemaStateWrite> collectModifiedSchemaStateWrite() {
         return this.stateWriteEngine.collectAffectedSchemaStateWrite();
     }
@@ -95,19 +155,34 @@ public class BlobWriterImpl implements BlobWriter {
     }
 
     private void doWriteHeader(DataOutputStream dos) throws IOException {
+        doWriteHeader(dos, collectNewSchemas(), collectNewClassRegistrations());
+    }
+
+    private void doWriteHeader(
+            DataOutputStream dos,
+            Set<ModelSchema> schemas,
+            Map<String, Integer> registrations) throws IOException {
         /* write version_id, tag */
         dos.writeInt(CobraConstants.BLOB_HEADER_VERSION_ID);
         dos.writeLong(this.stateWriteEngine.getOriginRandomizedTag());
         dos.writeLong(this.stateWriteEngine.getNextRandomizedTag());
 
-        doWriteHeaderModifiedSchema(dos);
-        doWriteHeaderClassRegistration(dos);
+        dos.writeInt(schemas.size());
+        for (final ModelSchema schema : schemas) {
+            dos.writeUTF(schema.getClazzName());
+        }
+
+        dos.writeInt(registrations.size());
+        for (Map.Entry<String, Integer> entry : registrations.entrySet()) {
+            dos.writeUTF(entry.getKey());
+            dos.writeInt(entry.getValue());
+        }
 
         // backward compatibility, will be skipped when reading
         varint.writeVarInt(dos, 0);
     }
 
-    private void doWriteHeaderModifiedSchema(DataOutputStream dos) throws IOException {
+    private Set<ModelSchema> collectNewSchemas() {
         final Set<ModelSchema> modifiedSchemas = collectModifiedSchemas();
         final Set<ModelSchema> lastStateSchemas = this.stateWriteEngine.producerStateContext().lastSchemas;
 
@@ -118,13 +193,10 @@ public class BlobWriterImpl implements BlobWriter {
 
         lastStateSchemas.addAll(newSchemas);
 
-        dos.writeInt(newSchemas.size());
-        for (final ModelSchema schema : newSchemas) {
-            dos.writeUTF(schema.getClazzName());
-        }
+        return newSchemas;
     }
 
-    private void doWriteHeaderClassRegistration(DataOutputStream dos) throws IOException {
+    private Map<String, Integer> collectNewClassRegistrations() {
         Map<Class<?>, Integer> clazzRegistration = this.stateWriteEngine.producerStateContext()
                 .serdeContext().collectRegistrations();
 
@@ -137,10 +209,21 @@ public class BlobWriterImpl implements BlobWriter {
             }
         }
 
-        dos.writeInt(affectedRegistries.size());
-        for (Map.Entry<String, Integer> entry : affectedRegistries.entrySet()) {
-            dos.writeUTF(entry.getKey());
-            dos.writeInt(entry.getValue());
+        return affectedRegistries;
+    }
+
+    private Map<String, Integer> collectClassRegistrations() {
+        Map<String, Integer> registrations = new HashMap<>();
+        for (Map.Entry<Class<?>, Integer> entry : this.stateWriteEngine.producerStateContext()
+                .serdeContext().collectRegistrations().entrySet()) {
+            registrations.put(entry.getKey().getName(), entry.getValue());
         }
+
+        return registrations;
+    }
+
+    @FunctionalInterface
+    private interface SectionWriter {
+        void write(SchemaStateWrite stateWrite, DataOutputStream dos) throws IOException;
     }
 }
@@ -0,0 +1,271 @@
+package org.cobra.producer.state;
+
+import org.cobra.commons.CobraConstants;
+import org.cobra.commons.Jvm;
+import org.cobra.commons.errors.CobraException;
+import org.cobra.commons.utils.Elapsed;
+import org.cobra.core.encoding.Varint;
+import org.cobra.core.objects.BlobInput;
+import org.cobra.core.objects.BlobType;
+import org.cobra.producer.CobraProducer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Merges published deltas of (fromVersion, toVersion] into one net delta (skip-delta).
+ * <p>
+ * Only the last write or delete of each key survives. A key that is deleted in range is always kept as a removal,
+ * because it might exist in the state of fromVersion. Headers of range are merged and written ahead of the content,
+ * so a consumer needs no header blob to apply a skip-delta.
+ */
+public class DeltaCompactor {
+
+    private static final Logger log = LoggerFactory.getLogger(DeltaCompactor.class);
+
+    private static final Varint varint = Jvm.varint();
+
+    private final Path blobStorePath;
+    private final CobraProducer.BlobCompressor compressor;
+
+    /**
+     * @param blobStorePath directory of published header and delta blobs
+     */
+    public DeltaCompactor(Path blobStorePath) {
+        this(blobStorePath, CobraProducer.BlobCompressor.EMPTY_INSTANCE);
+    }
+
+    /**
+     * @param compressor compressor of published blobs, to read them back
+     */
+    public DeltaCompactor(Path blobStorePath, CobraProducer.BlobCompressor compressor) {
+        this.blobStorePath = blobStorePath;
+        this.compressor = compressor;
+    }
+
+    /**
+     * @return true if every header and delta of (fromVersion, toVersion] has been published
+     */
+    public boolean isCompactable(long fromVersion, long toVersion) {
+        if (fromVersion >= toVersion)
+            return false;
+
+        for (long version = fromVersion + 1; version <= toVersion; version++) {
+            if (!Files.exists(headerPath(version)) || !Files.exists(deltaPath(version)))
+                return false;
+        }
+
+        return true;
+    }
+
+    public void compact(long fromVersion, long toVersion, OutputStream os) throws IOException {
+        if (!isCompactable(fromVersion, toVersion))
+            throw new CobraException("Could not compact deltas (%d, %d]; some blobs are not published"
+                    .formatted(fromVersion, toVersion));
+
+        final long start = System.nanoTime();
+
+        final MergedHeader header = new MergedHeader();
+        final Map<String, Map<String, byte[]>> mutations = new LinkedHashMap<>();
+        for (long version = fromVersion + 1; version <= toVersion; version++) {
+            try (BlobInput input = open(headerPath(version))) {
+                header.merge(input);
+            }
+            try (BlobInput input = open(deltaPath(version))) {
+                mergeDelta(input, mutations);
+            }
+        }
+
+        DataOutputStream dos = new DataOutputStream(os);
+        header.write(dos);
+
+        dos.writeLong(header.originTag);
+        dos.writeLong(header.nextTag);
+        dos.writeInt(mutations.size());
+
+        final List<byte[]> sections = new ArrayList<>(mutations.size());
+        for (Map.Entry<String, Map<String, byte[]>> entry : mutations.entrySet()) {
+            sections.add(section(entry.getKey(), entry.getValue()));
+        }
+        for (byte[] section : sections) {
+            dos.writeLong(section.length);
+        }
+        for (byte[] section : sections) {
+            dos.write(section);
+        }
+
+        dos.flush();
+
+        log.debug("compacted deltas ({}, {}] of {} schemas; elapsed: {}", fromVersion, toVersion, sections.size(),
+                Elapsed.toStr(System.nanoTime() - start));
+    }
+
+    private BlobInput open(Path path) throws IOException {
+        return BlobInput.serial(this.compressor.decompress(new BufferedInputStream(Files.newInputStream(path))));
+    }
+
+    private Path headerPath(long version) {
+        return this.blobStorePath.resolve("header-%d".formatted(version));
+    }
+
+    private Path deltaPath(long version) {
+        return this.blobStorePath.resolve(BlobType.DELTA_BLOB.filename(version - 1, version));
+    }
+
+    /* sections are read in order, additions go before removals as the consumer applies them */
+    private static void mergeDelta(BlobInput input, Map<String, Map<String, byte[]>> mutations) throws IOException {
+        input.readLong(); // origin tag
+        input.readLong(); // next tag
+
+        final int numSchemas = input.readInt();
+        for (int i = 0; i < numSchemas; i++) {
+            input.readLong(); // sections are read sequentially, no need of offset table
+        }
+
+        for (int i = 0; i < numSchemas; i++) {
+            final String typeName = input.readUtf();
+            final Map<String, byte[]> schemaMutations = mutations.computeIfAbsent(typeName,
+                    x -> new LinkedHashMap<>());
+
+            varint.readVarInt(input); // mutation count
+
+            final List<byte[]> keys = readBlocks(input);
+            final List<byte[]> values = readBlocks(input);
+            if (keys.size() != values.size())
+                throw new CobraException("Delta section of %s has %d keys but %d values"
+                        .formatted(typeName, keys.size(), values.size()));
+
+            for (int k = 0; k < keys.size(); k++) {
+                putLast(schemaMutations, new String(keys.get(k)), values.get(k));
+            }
+
+            for (byte[] key : readBlocks(input)) {
+                putLast(schemaMutations, new String(key), null);
+            }
+        }
+    }
+
+    /* re-insert, so records keep the order of their last mutation */
+    private static void putLast(Map<String, byte[]> schemaMutations, String key, byte[] value) {
+        schemaMutations.remove(key);
+        schemaMutations.put(key, value);
+    }
+
+    private static byte[] section(String typeName, Map<String, byte[]> schemaMutations) throws IOException {
+        final ByteArrayOutputStream addKeys = new ByteArrayOutputStream();
+        final ByteArrayOutputStream addValues = new ByteArrayOutputStream();
+        final ByteArrayOutputStream removeKeys = new ByteArrayOutputStream();
+        for (Map.Entry<String, byte[]> entry : schemaMutations.entrySet()) {
+            final byte[] key = entry.getKey().getBytes();
+            if (entry.getValue() == null) {
+                writeBlock(removeKeys, key);
+            } else {
+                writeBlock(addKeys, key);
+                writeBlock(addValues, entry.getValue());
+            }
+        }
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final DataOutputStream dos = new DataOutputStream(baos);
+        dos.writeUTF(typeName);
+        varint.writeVarInt(dos, schemaMutations.size());
+        writeBlocks(dos, addKeys);
+        writeBlocks(dos, addValues);
+        writeBlocks(dos, removeKeys);
+
+        return baos.toByteArray();
+    }
+
+    private static List<byte[]> readBlocks(BlobInput input) throws IOException {
+        final int len = varint.readVarInt(input);
+        final List<byte[]> blocks = new ArrayList<>();
+        int position = 0;
+        while (position < len) {
+            final int blockLen = varint.readVarInt(input);
+            final byte[] block = new byte[blockLen];
+            input.readNBytes(block, blockLen);
+            blocks.add(block);
+
+            position += varint.sizeOfVarint(blockLen) + blockLen;
+        }
+
+        return blocks;
+    }
+
+    private static void writeBlock(ByteArrayOutputStream baos, byte[] block) throws IOException {
+        varint.writeVarInt(baos, block.length);
+        baos.write(block);
+    }
+
+    private static void writeBlocks(DataOutputStream dos, ByteArrayOutputStream blocks) throws IOException {
+        varint.writeVarInt(dos, blocks.size());
+        blocks.writeTo(dos);
+    }
+
+    /**
+     * Union of schemas and class registrations of every header in range, with tags of the first and last header
+     */
+    private static final class MergedHeader {
+        private final Set<String> schemas = new LinkedHashSet<>();
+        private final Map<String, Integer> registrations = new LinkedHashMap<>();
+        private long originTag;
+        private long nextTag;
+        private boolean isEmpty = true;
+
+        void merge(BlobInput input) throws IOException {
+            if (input.readInt() != CobraConstants.BLOB_HEADER_VERSION_ID)
+                throw new CobraException("Blob is not a header");
+
+            final long inputOriginTag = input.readLong();
+            this.nextTag = input.readLong();
+            if (this.isEmpty) {
+                this.originTag = inputOriginTag;
+                this.isEmpty = false;
+            }
+
+            final int numSchemas = input.readInt();
+            for (int i = 0; i < numSchemas; i++) {
+                this.schemas.add(input.readUtf());
+            }
+
+            final int numRegistrations = input.readInt();
+            for (int i = 0; i < numRegistrations; i++) {
+                this.registrations.put(input.readUtf(), input.readInt());
+            }
+
+            input.skipNBytes(varint.readVarInt(input));
+        }
+
+        void write(DataOutputStream dos) throws IOException {
+            dos.writeInt(CobraConstants.BLOB_HEADER_VERSION_ID);
+            dos.writeLong(this.originTag);
+            dos.writeLong(this.nextTag);
+
+            dos.writeInt(this.schemas.size());
+            for (String schema : this.schemas) {
+                dos.writeUTF(schema);
+            }
+
+            dos.writeInt(this.registrations.size());
+            for (Map.Entry<String, Integer> entry : this.registrations.entrySet()) {
+                dos.writeUTF(entry.getKey());
+                dos.writeInt(entry.getValue());
+            }
+
+            varint.writeVarInt(dos, 0);
+        }
+    }
+}
@@ -24,7 +24,6 @@ public class ProducerStateContext {
 
     private final RecordSerde serde = new RecordSerdeImpl();
     private final Map<String, SchemaStateWrite> schemaStateWriteMap = new ConcurrentHashMap<>();
-    private final RecordRepository localData = new RecordRepository();
 
     /* last state */
     final Set<Class<?>> lastRegisteredClazzes = ConcurrentHashMap.newKeySet();
@@ -50,8 +49,12 @@ public class ProducerStateContext {
         return schemaStateWriteMap.values();
     }
 
-    public RecordRepository getLocalData() {
-        return localData;
+    /**
+     * @return local data of a schema, or null if schema has not been registered
+     */
+    public RecordRepository localData(String typeName) {
+        final SchemaStateWrite schemaStateWrite = schemaStateWriteMap.get(typeName);
+        return schemaStateWrite == null ? null : schemaStateWrite.localData();
     }
 
     public void addObject(String key, Object obj) {
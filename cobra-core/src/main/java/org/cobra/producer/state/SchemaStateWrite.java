@@ -1,14 +1,21 @@
 package org.cobra.producer.state;
 
 import org.cobra.core.ModelSchema;
+import org.cobra.core.memory.datalocal.RecordRepository;
 
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
 
 public interface SchemaStateWrite {
 
     ModelSchema getSchema();
 
+    /**
+     * @return keyspace (index and arena) owned by this schema
+     */
+    RecordRepository localData();
+
     boolean isModified();
 
     int mutationCount();
@@ -17,13 +24,62 @@ public interface SchemaStateWrite {
 
     void moveToNextCycle();
 
+    /**
+     * Seals mutations added so far into the cycle to be written; mutations added afterwards belong to the next cycle
+     */
+    void sealMutations();
+
+    /**
+     * Seals records added so far as the whole state of schema: every live record that has not been added is
+     * removed, see {@link #sealMutations()}
+     */
+    void sealFullState();
+
     void addRecord(String key, Object object);
 
     void removeRecord(String key);
 
+    /**
+     * Applies sealed mutations to local data, only records that changed are going to be written
+     */
     void prepareBeforeWriting();
 
+    /**
+     * As {@link #prepareBeforeWriting()}, a large schema is partitioned across workers of a pool shared by every
+     * schema being prepared, so no more workers run than the pool has however many schemas are prepared at once
+     *
+     * @param partitionExecutor pool that runs partitions, which never wait on one another
+     * @param maxPartitions     number of workers of pool
+     */
+    void prepareBeforeWriting(ExecutorService partitionExecutor, int maxPartitions);
+
+    /**
+     * Undoes what {@link #prepareBeforeWriting()} did to local data once the cycle fails to be published; sealed
+     * mutations are kept, so the next cycle ships them
+     */
+    void revertToLastState();
+
     void writeDelta(DataOutputStream dos) throws IOException;
 
     void writeReversedDelta(DataOutputStream dos) throws IOException;
+
+    /**
+     * @return number of bytes {@link #writeDelta(DataOutputStream)} is going to write
+     */
+    long sizeOfDelta();
+
+    /**
+     * @return number of bytes {@link #writeReversedDelta(DataOutputStream)} is going to write
+     */
+    long sizeOfReversedDelta();
+
+    /**
+     * Writes every live record of schema as additions of a delta section
+     */
+    void writeSnapshot(DataOutputStream dos) throws IOException;
+
+    /**
+     * @return number of bytes {@link #writeSnapshot(DataOutputStream)} is going to write
+     */
+    long sizeOfSnapshot();
 }
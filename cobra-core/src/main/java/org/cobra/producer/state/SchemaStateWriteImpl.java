@@ -1,37 +1,65 @@
 package org.cobra.producer.state;
 
 import org.cobra.commons.Jvm;
-import org.cobra.commons.pools.BytesPool;
+import org.cobra.commons.errors.CobraException;
+import org.cobra.commons.threads.CobraThreadExecutor;
 import org.cobra.commons.utils.Elapsed;
 import org.cobra.core.ModelSchema;
 import org.cobra.core.bytes.Bytes;
-import org.cobra.core.bytes.OnHeapBytes;
+import org.cobra.core.bytes.NativeBytes;
 import org.cobra.core.encoding.Varint;
+import org.cobra.core.memory.datalocal.RecordRepository;
+import org.cobra.core.memory.slab.SlabMethods;
 import org.cobra.core.serialization.RecordSerde;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 public class SchemaStateWriteImpl implements SchemaStateWrite {
 
     private static final Logger log = LoggerFactory.getLogger(SchemaStateWriteImpl.class);
 
+    private static final String PROC_DESC_PREPARE_PARTITION = "schema_state_write_impl.prepare_partition";
+
     private static final Object DELETE_OBJECT = new Object();
     private static final Varint varint = Jvm.varint();
 
+    /* below this many mutations per partition, handing a partition to a worker costs more than serializing it */
+    static final int MIN_MUTATIONS_PER_PARTITION = 4_096;
+
+    /* records are streamed into blob through a buffer of this size, a larger record is copied on its own */
+    static final int TRANSFER_BUFFER_BYTES = 64 * 1024;
+
+    /* removed records are kept off-heap until reversed delta is written, in segments of this size */
+    private static final int LOG2_REMOVAL_SEGMENT = 20;
+
     protected final ModelSchema modelSchema;
     protected final RecordSerde serde;
     protected final ProducerStateContext producerStateContext;
-    protected final Map<String, Object> mutations = new ConcurrentHashMap<>();
-
-    private final Bytes toAdditionalKeyBytes = OnHeapBytes.create(BytesPool.NONE);
-    private final Bytes toAdditionalObjectBytes = OnHeapBytes.create(BytesPool.NONE);
-    private final Bytes toRemovalKeyBytes = OnHeapBytes.create(BytesPool.NONE);
-    private final Bytes toRemovalObjectForReverseBytes = OnHeapBytes.create(BytesPool.NONE);
+    /* mutations being populated, and sealed mutations of the cycle being written */
+    protected volatile Map<String, Object> mutations = new ConcurrentHashMap<>();
+    protected volatile Map<String, Object> cycleMutations = new ConcurrentHashMap<>();
+    /* sealed mutations of the cycle are the whole state, every other live record is removed when it is prepared */
+    protected volatile boolean fullState = false;
+    protected final RecordRepository localData = new RecordRepository();
+
+    /* partitions are reused across cycles; partitions in use are written one after another */
+    private final List<Partition> partitions = new ArrayList<>();
+    private int usedPartitions = 0;
+    /* sealed mutations have been applied to local data, partitions hold what is going to be shipped */
+    private volatile boolean prepared = false;
 
     private boolean isReversedDelta = false;
 
@@ -46,14 +74,22 @@ public class SchemaStateWriteImpl implements SchemaStateWrite {
         return this.modelSchema;
     }
 
+    @Override
+    public RecordRepository localData() {
+        return this.localData;
+    }
+
+    /**
+     * Once prepared, a cycle is only modified if a record has changed
+     */
     @Override
     public boolean isModified() {
-        return !this.mutations.isEmpty();
+        return this.prepared ? shippedCount() > 0 : !this.cycleMutations.isEmpty();
     }
 
     @Override
     public int mutationCount() {
-        return this.mutations.size();
+        return this.prepared ? shippedCount() : this.cycleMutations.size();
     }
 
     @Override
@@ -61,15 +97,52 @@ public class SchemaStateWriteImpl implements SchemaStateWrite {
         // todo: can we shrink?
     }
 
+    /**
+     * Sealed mutations of a reverted cycle are kept, so they are shipped by the next one
+     */
     @Override
     public void moveToNextCycle() {
-        mutations.clear();
+        if (this.prepared) {
+            cycleMutations.clear();
+            fullState = false;
+        }
 
-        toAdditionalKeyBytes.rewind();
-        toAdditionalObjectBytes.rewind();
+        for (Partition partition : this.partitions) {
+            partition.rewind();
+        }
+        this.usedPartitions = 0;
+        this.prepared = false;
+    }
+
+    /**
+     * Sealed mutations of a cycle that has not been written are kept, a later mutation of the same key wins
+     */
+    @Override
+    public void sealMutations() {
+        final Map<String, Object> populated = this.mutations;
+        this.prepared = false;
+        if (this.cycleMutations.isEmpty()) {
+            this.mutations = this.cycleMutations;
+            this.cycleMutations = populated;
+            return;
+        }
+
+        this.cycleMutations.putAll(populated);
+        populated.clear();
+    }
 
-        toRemovalKeyBytes.rewind();
-        toRemovalObjectForReverseBytes.rewind();
+    /**
+     * Populated records are the whole state, so sealed mutations of a cycle that has not been written are dropped;
+     * live records that are not populated are found in local data when the cycle is prepared
+     */
+    @Override
+    public void sealFullState() {
+        final Map<String, Object> populated = this.mutations;
+        this.prepared = false;
+        this.cycleMutations.clear();
+        this.mutations = this.cycleMutations;
+        this.cycleMutations = populated;
+        this.fullState = true;
     }
 
     @Override
@@ -82,23 +155,77 @@ public class SchemaStateWriteImpl implements SchemaStateWrite {
         this.mutations.put(key, DELETE_OBJECT);
     }
 
+    /**
+     * Serializes mutations into local data, partitioned across processors for a large schema; every key is mutated
+     * once per cycle, so partitions never touch the same record. Only keys and lengths of blocks are kept on heap,
+     * records are streamed from local data when blobs are written. A record serialized to the same bytes as in
+     * local data is left out, and a cycle is only prepared once. Of a full state, every live record that has not
+     * been populated is removed afterward.
+     */
     @Override
     public void prepareBeforeWriting() {
+        prepareBeforeWriting(Runtime.getRuntime().availableProcessors());
+    }
+
+    /* partitions are prepared by a pool of their own */
+    void prepareBeforeWriting(int maxPartitions) {
+        try (
+                final CobraThreadExecutor executor = CobraThreadExecutor.of(maxPartitions, getClass(),
+                        PROC_DESC_PREPARE_PARTITION)
+        ) {
+            prepareBeforeWriting(executor, maxPartitions);
+        }
+    }
+
+    @Override
+    public void prepareBeforeWriting(ExecutorService partitionExecutor, int maxPartitions) {
+        if (this.prepared)
+            return;
+
         final long start = System.nanoTime();
-        for (Map.Entry<String, Object> entry : this.mutations.entrySet()) {
+        final List<Map.Entry<String, Object>> entries = List.copyOf(this.cycleMutations.entrySet());
+        final int numPartitions = numPartitions(entries.size(), maxPartitions);
 
-            if (entry.getValue() == DELETE_OBJECT) {
-                doPrepareRemovalData(entry.getKey());
-                continue; // continue process other entry
-            }
+        while (this.partitions.size() < numPartitions) {
+            this.partitions.add(new Partition());
+        }
+        for (int i = 0; i < this.usedPartitions; i++) {
+            this.partitions.get(i).rewind();
+        }
+        this.usedPartitions = numPartitions;
 
-            doPrepareAdditionalData(entry.getKey(), entry.getValue());
+        if (numPartitions == 1) {
+            doPreparePartition(this.partitions.get(0), entries);
+        } else {
+            prepareConcurrently(partitionExecutor, entries, numPartitions);
         }
+        if (this.fullState)
+            doPrepareUnpopulatedRemovals(this.partitions.get(0), entries);
+        this.prepared = true;
 
-        log.debug("prepare before writing schema state {}; elapsed: {}", modelSchema.getClazzName(),
+        log.debug("prepare before writing schema state {}; mutations: {}; shipped: {}; partitions: {}; elapsed: {}",
+                modelSchema.getClazzName(), entries.size(), shippedCount(), numPartitions,
                 Elapsed.toStr(System.nanoTime() - start));
     }
 
+    /**
+     * Puts back records that preparing the cycle replaced or removed in local data, and removes the ones it added.
+     * Sealed mutations are kept, a later mutation of the same key wins
+     */
+    @Override
+    public void revertToLastState() {
+        for (int i = 0; i < this.usedPartitions; i++) {
+            final Partition partition = this.partitions.get(i);
+            partition.revert(this.localData);
+            partition.rewind();
+        }
+        this.usedPartitions = 0;
+        this.prepared = false;
+
+        log.debug("revert schema state {}; mutations kept: {}", modelSchema.getClazzName(),
+                this.cycleMutations.size());
+    }
+
     @Override
     public void writeDelta(DataOutputStream dos) throws IOException {
         final long start = System.nanoTime();
@@ -118,31 +245,185 @@ public class SchemaStateWriteImpl implements SchemaStateWrite {
                 Elapsed.toStr(System.nanoTime() - start));
     }
 
-    private void doPrepareAdditionalData(String key, Object object) {
+    @Override
+    public long sizeOfDelta() {
+        return sizeOfSchemaName()
+                + varint.sizeOfVarint(mutationCount())
+                + sizeOfBlock(p -> p.additionalKeysLength)
+                + sizeOfBlock(p -> p.additionalObjectsLength)
+                + sizeOfBlock(p -> p.removalKeysLength);
+    }
+
+    @Override
+    public long sizeOfReversedDelta() {
+        return sizeOfSchemaName()
+                + varint.sizeOfVarint(mutationCount())
+                + sizeOfBlock(p -> p.removalKeysLength)
+                + sizeOfBlock(p -> p.removalObjectsForReverse.position())
+                + sizeOfBlock(p -> p.additionalKeysLength);
+    }
+
+    /**
+     * Records are visited in local data, which is not written until the next cycle is prepared
+     */
+    @Override
+    public void writeSnapshot(DataOutputStream dos) throws IOException {
+        final long start = System.nanoTime();
+        final SnapshotBlocks blocks = sizeOfSnapshotBlocks();
+
+        dos.writeUTF(this.modelSchema.getClazzName());
+        varint.writeVarInt(dos, blocks.records());
+
+        varint.writeVarInt(dos, blocks.keysLength());
+        this.localData.forEachRecord((methods, address) -> {
+            final byte[] rawKey = methods.key(address);
+            varint.writeVarInt(dos, rawKey.length);
+            dos.write(rawKey);
+        });
+
+        varint.writeVarInt(dos, blocks.valuesLength());
+        final ByteBuffer transfer = ByteBuffer.allocate(TRANSFER_BUFFER_BYTES);
+        this.localData.forEachRecord((methods, address) -> writeRecordData(dos, methods, address, transfer));
+
+        varint.writeVarInt(dos, 0); // nothing to remove
+
+        log.debug("write snapshot {}; records: {}; elapsed: {}", modelSchema.getClazzName(), blocks.records(),
+                Elapsed.toStr(System.nanoTime() - start));
+    }
+
+    @Override
+    public long sizeOfSnapshot() {
+        final SnapshotBlocks blocks;
+        try {
+            blocks = sizeOfSnapshotBlocks();
+        } catch (IOException e) {
+            throw new CobraException(e); // sizing only reads local data
+        }
+
+        return sizeOfSchemaName()
+                + varint.sizeOfVarint(blocks.records())
+                + varint.sizeOfVarint(blocks.keysLength()) + blocks.keysLength()
+                + varint.sizeOfVarint(blocks.valuesLength()) + blocks.valuesLength()
+                + varint.sizeOfVarint(0);
+    }
+
+    static int numPartitions(int numMutations, int maxPartitions) {
+        return Math.max(1, Math.min(maxPartitions, numMutations / MIN_MUTATIONS_PER_PARTITION));
+    }
+
+    /* every partition is awaited before a failure is thrown, so none is still running once it surfaces */
+    private void prepareConcurrently(
+            ExecutorService executor,
+            List<Map.Entry<String, Object>> entries,
+            int numPartitions) {
+        final List<Future<?>> futures = new ArrayList<>(numPartitions);
+        for (int i = 0; i < numPartitions; i++) {
+            final Partition partition = this.partitions.get(i);
+            final List<Map.Entry<String, Object>> range = entries.subList(
+                    (int) ((long) entries.size() * i / numPartitions),
+                    (int) ((long) entries.size() * (i + 1) / numPartitions));
+            futures.add(executor.submit(() -> doPreparePartition(partition, range)));
+        }
+
+        RuntimeException failure = null;
+        for (Future<?> future : futures) {
+            try {
+                awaitPartition(future);
+            } catch (RuntimeException e) {
+                if (failure == null)
+                    failure = e;
+                else
+                    failure.addSuppressed(e);
+            }
+        }
+
+        if (failure != null)
+            throw failure;
+    }
+
+    private void awaitPartition(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CobraException("Interrupted while preparing schema state %s".formatted(
+                    modelSchema.getClazzName()), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re)
+                throw re;
+
+            throw new CobraException(e.getCause());
+        }
+    }
+
+    /* marks every populated record, then removes every live record left unmarked */
+    private void doPrepareUnpopulatedRemovals(Partition partition, List<Map.Entry<String, Object>> entries) {
+        for (Map.Entry<String, Object> entry : entries) {
+            if (entry.getValue() != DELETE_OBJECT)
+                this.localData.mark(entry.getKey().getBytes());
+        }
+
+        final List<byte[]> unpopulated = new ArrayList<>();
+        this.localData.sweepUnmarked(unpopulated::add);
+        for (byte[] rawKey : unpopulated) {
+            doPrepareRemovalData(partition, new String(rawKey));
+        }
+    }
+
+    private void doPreparePartition(Partition partition, List<Map.Entry<String, Object>> entries) {
+        for (Map.Entry<String, Object> entry : entries) {
+
+            if (entry.getValue() == DELETE_OBJECT) {
+                doPrepareRemovalData(partition, entry.getKey());
+                continue; // continue process other entry
+            }
+
+            doPrepareAdditionalData(partition, entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void doPrepareAdditionalData(Partition partition, String key, Object object) {
         byte[] rawKey = key.getBytes();
         byte[] serializedObject = serde.serialize(object);
 
-        /* a. object key */
-        writeBlock(toAdditionalKeyBytes, rawKey);
-        /* b. object bytes */
-        writeBlock(toAdditionalObjectBytes, serializedObject);
+        final RecordRepository localData = this.localData;
+        if (localData.dataEquals(rawKey, serializedObject))
+            return; // unchanged, nothing to ship
+
+        /* a. object key, and the record it replaces in case cycle is reverted */
+        partition.additions.add(key);
+        partition.keepPrevious(localData, key);
+        partition.additionalKeysLength += sizeOfBlock(rawKey.length);
+        /* b. object bytes, streamed from data repo when written */
+        partition.additionalObjectsLength += sizeOfBlock(serializedObject.length);
 
         /* put object to data repo */
-        this.producerStateContext.getLocalData().putObject(rawKey, serializedObject);
+        localData.putObject(rawKey, serializedObject);
     }
 
-    private void doPrepareRemovalData(String key) {
+    private void doPrepareRemovalData(Partition partition, String key) {
         byte[] rawKey = key.getBytes();
-        byte[] removalData = this.producerStateContext.getLocalData().removeObject(rawKey);
+        byte[] removalData = this.localData.removeObject(rawKey);
 
         if (removalData == null || removalData.length == 0) {
             return; // return if none
         }
 
         /* a. removal key */
-        writeBlock(toRemovalKeyBytes, rawKey);
+        partition.removals.add(key);
+        partition.removalKeysLength += sizeOfBlock(rawKey.length);
         /* setup for reversed */
-        writeBlock(toRemovalObjectForReverseBytes, removalData);
+        writeBlock(partition.removalObjectsForReverse, removalData);
+    }
+
+    private int shippedCount() {
+        int count = 0;
+        for (int i = 0; i < this.usedPartitions; i++) {
+            final Partition partition = this.partitions.get(i);
+            count += partition.additions.size() + partition.removals.size();
+        }
+
+        return count;
     }
 
     private static void writeBlock(Bytes bytes, byte[] block) {
@@ -163,34 +444,231 @@ public class SchemaStateWriteImpl implements SchemaStateWrite {
 
     private void doWriteDelta(DataOutputStream dos) throws IOException {
         varint.writeVarInt(dos, mutationCount());
+        final ByteBuffer transfer = ByteBuffer.allocate(TRANSFER_BUFFER_BYTES);
 
-        doWriteBlobOutputStream(dos, toAdditionalKeyBytes);
-        doWriteBlobOutputStream(dos, toAdditionalObjectBytes);
+        doWriteKeys(dos, p -> p.additions, p -> p.additionalKeysLength);
+        doWriteAdditionalObjects(dos, transfer);
 
-        doWriteBlobOutputStream(dos, toRemovalKeyBytes);
+        doWriteKeys(dos, p -> p.removals, p -> p.removalKeysLength);
     }
 
     private void doWriteReversedDelta(DataOutputStream dos) throws IOException {
         varint.writeVarInt(dos, mutationCount());
+        final ByteBuffer transfer = ByteBuffer.allocate(TRANSFER_BUFFER_BYTES);
 
-        doWriteBlobOutputStream(dos, toRemovalKeyBytes);
-        doWriteBlobOutputStream(dos, toRemovalObjectForReverseBytes);
+        doWriteKeys(dos, p -> p.removals, p -> p.removalKeysLength);
+        doWriteRemovalObjects(dos, transfer);
 
-        doWriteBlobOutputStream(dos, toAdditionalKeyBytes);
+        doWriteKeys(dos, p -> p.additions, p -> p.additionalKeysLength);
     }
 
-    private static void doWriteBlobOutputStream(DataOutputStream dos, Bytes bytes) throws IOException {
-        if (bytes.position() == 0) {
-            varint.writeVarInt(dos, 0);
-            return; // end if nothing to write
+    /* partitions are written as one block, so readers see the same layout as of a single partition */
+    private void doWriteKeys(
+            DataOutputStream dos,
+            Function<Partition, List<String>> keys,
+            ToLongFunction<Partition> length) throws IOException {
+        varint.writeVarInt(dos, lengthOf(length));
+        for (int i = 0; i < this.usedPartitions; i++) {
+            for (String key : keys.apply(this.partitions.get(i))) {
+                final byte[] rawKey = key.getBytes();
+                varint.writeVarInt(dos, rawKey.length);
+                dos.write(rawKey);
+            }
         }
+    }
 
-        /* varint_len of bytes */
-        varint.writeVarInt(dos, (int) bytes.position());
+    private void doWriteAdditionalObjects(DataOutputStream dos, ByteBuffer transfer) throws IOException {
+        varint.writeVarInt(dos, lengthOf(p -> p.additionalObjectsLength));
+        for (int i = 0; i < this.usedPartitions; i++) {
+            for (String key : this.partitions.get(i).additions) {
+                writeRecordData(dos, this.localData, key, transfer);
+            }
+        }
+    }
 
-        byte[] dataOfBytes = new byte[(int) bytes.position()];
-        bytes.readAt(0, dataOfBytes);
+    private void doWriteRemovalObjects(DataOutputStream dos, ByteBuffer transfer) throws IOException {
+        varint.writeVarInt(dos, lengthOf(p -> p.removalObjectsForReverse.position()));
+        for (int i = 0; i < this.usedPartitions; i++) {
+            final Bytes bytes = this.partitions.get(i).removalObjectsForReverse;
+            for (long pos = 0; pos < bytes.position(); ) {
+                final int len = (int) Math.min(transfer.capacity(), bytes.position() - pos);
+                bytes.readAt(pos, transfer.array(), 0, len);
+                dos.write(transfer.array(), 0, len);
+                pos += len;
+            }
+        }
+    }
+
+    /* [varint_len | data] of a live record, copied out of local data without allocating unless it is large */
+    private void writeRecordData(
+            DataOutputStream dos,
+            RecordRepository localData,
+            String key,
+            ByteBuffer transfer) throws IOException {
+        final int len = localData.sizeOfData(key);
+        if (len < 0)
+            throw new CobraException("Live record %s of %s is missing in local data".formatted(key,
+                    modelSchema.getClazzName()));
+
+        varint.writeVarInt(dos, len);
+        if (len > transfer.capacity()) {
+            dos.write(localData.getData(key));
+            return;
+        }
+
+        transfer.clear();
+        localData.getData(key, transfer);
+        dos.write(transfer.array(), 0, len);
+    }
+
+    /* [varint_len | data] of a record visited in local data */
+    private static void writeRecordData(
+            DataOutputStream dos,
+            SlabMethods methods,
+            long address,
+            ByteBuffer transfer) throws IOException {
+        final int len = methods.dataLength(address);
+        varint.writeVarInt(dos, len);
+        if (len > transfer.capacity()) {
+            dos.write(methods.get(address));
+            return;
+        }
 
-        dos.write(dataOfBytes);
+        transfer.clear();
+        methods.copyData(address, transfer);
+        dos.write(transfer.array(), 0, len);
+    }
+
+    /* length of modified UTF-8 as written by DataOutputStream#writeUTF */
+    private long sizeOfSchemaName() {
+        final String name = this.modelSchema.getClazzName();
+        long size = 2;
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            if (c >= 0x0001 && c <= 0x007f)
+                size += 1;
+            else if (c <= 0x07ff)
+                size += 2;
+            else
+                size += 3;
+        }
+
+        return size;
+    }
+
+    private SnapshotBlocks sizeOfSnapshotBlocks() throws IOException {
+        final long[] sizes = new long[3]; // records, keys, values
+        this.localData.forEachRecord((methods, address) -> {
+            final int keyLength = methods.keyLength(address);
+            final int dataLength = methods.dataLength(address);
+            sizes[0]++;
+            sizes[1] += varint.sizeOfVarint(keyLength) + keyLength;
+            sizes[2] += varint.sizeOfVarint(dataLength) + dataLength;
+        });
+
+        return new SnapshotBlocks((int) sizes[0], checkBlockSize(sizes[1]), checkBlockSize(sizes[2]));
+    }
+
+    /* a block length is a varint */
+    private int checkBlockSize(long size) {
+        if (size > Integer.MAX_VALUE)
+            throw new CobraException("Block of %s is too large: %d bytes".formatted(
+                    modelSchema.getClazzName(), size));
+
+        return (int) size;
+    }
+
+    private long sizeOfBlock(ToLongFunction<Partition> length) {
+        return sizeOfBlock(lengthOf(length));
+    }
+
+    private static long sizeOfBlock(int len) {
+        return varint.sizeOfVarint(len) + len;
+    }
+
+    private int lengthOf(ToLongFunction<Partition> length) {
+        long len = 0;
+        for (int i = 0; i < this.usedPartitions; i++) {
+            len += length.applyAsLong(this.partitions.get(i));
+        }
+
+        return checkBlockSize(len);
+    }
+
+    private record SnapshotBlocks(int records, int keysLength, int valuesLength) {
+    }
+
+    /**
+     * Mutations of a range of entries, prepared by one worker: keys and block lengths, and removed records that
+     * are no longer in local data
+     */
+    private static final class Partition {
+        final List<String> additions = new ArrayList<>();
+        final List<String> removals = new ArrayList<>();
+        final Bytes removalObjectsForReverse = NativeBytes.createLog2Align(LOG2_REMOVAL_SEGMENT);
+        /* per addition [varint (len + 1) | data] of the record it replaced, 0 if there was none */
+        final Bytes previousObjectsForRevert = NativeBytes.createLog2Align(LOG2_REMOVAL_SEGMENT);
+        private ByteBuffer transfer;
+
+        long additionalKeysLength;
+        long additionalObjectsLength;
+        long removalKeysLength;
+
+        void keepPrevious(RecordRepository localData, String key) {
+            final int len = localData.sizeOfData(key);
+            varint.writeVarInt(previousObjectsForRevert, len + 1);
+            if (len <= 0)
+                return;
+
+            if (len > TRANSFER_BUFFER_BYTES) {
+                previousObjectsForRevert.write(localData.getData(key));
+                return;
+            }
+
+            if (transfer == null)
+                transfer = ByteBuffer.allocate(TRANSFER_BUFFER_BYTES);
+            transfer.clear();
+            localData.getData(key, transfer);
+            previousObjectsForRevert.write(transfer.array(), 0, len);
+        }
+
+        void revert(RecordRepository localData) {
+            long pos = 0;
+            for (String key : additions) {
+                final int tagged = varint.readVarInt(previousObjectsForRevert, pos);
+                pos += varint.sizeOfVarint(tagged);
+                if (tagged == 0) {
+                    localData.removeObject(key);
+                    continue;
+                }
+
+                final byte[] previous = new byte[tagged - 1];
+                previousObjectsForRevert.readAt(pos, previous);
+                pos += previous.length;
+                localData.putObject(key, previous);
+            }
+
+            pos = 0;
+            for (String key : removals) {
+                final int len = varint.readVarInt(removalObjectsForReverse, pos);
+                pos += varint.sizeOfVarint(len);
+
+                final byte[] removed = new byte[len];
+                removalObjectsForReverse.readAt(pos, removed);
+                pos += len;
+                localData.putObject(key, removed);
+            }
+        }
+
+        void rewind() {
+            additions.clear();
+            removals.clear();
+            removalObjectsForReverse.rewind();
+            previousObjectsForRevert.rewind();
+
+            additionalKeysLength = 0;
+            additionalObjectsLength = 0;
+            removalKeysLength = 0;
+        }
     }
 }
@@ -10,6 +10,8 @@ public class StateWriteEngine {
 
     private static final String PROC_DESC_STATE_WRITE_ENGINE_WRITING = "state_write_engine.writing";
     private static final String PROC_DESC_STATE_WRITE_ENGINE_NEXT_CYCLE = "state_write_engine.next_cycle";
+    private static final String PROC_DESC_STATE_WRITE_ENGINE_PREPARE = "state_write_engine.prepare";
+    private static final String PROC_DESC_STATE_WRITE_ENGINE_PREPARE_PARTITION = "state_write_engine.prepare_partition";
 
     private final ProducerStateContext producerStateContext;
 
@@ -68,8 +70,51 @@ public class StateWriteEngine {
         this.phase = Phasing.NEXT_CYCLE;
     }
 
+    /**
+     * Seals mutations populated so far into the cycle to be written, see {@link SchemaStateWrite#sealMutations()}
+     */
+    public void sealMutations() {
+        for (final SchemaStateWrite schemaStateWrite : this.producerStateContext.collectSchemaStateWrites()) {
+            schemaStateWrite.sealMutations();
+        }
+    }
+
+    /**
+     * Seals records populated so far as the whole state, see {@link SchemaStateWrite#sealFullState()}
+     */
+    public void sealFullState() {
+        for (final SchemaStateWrite schemaStateWrite : this.producerStateContext.collectSchemaStateWrites()) {
+            schemaStateWrite.sealFullState();
+        }
+    }
+
+    /**
+     * Applies sealed mutations of every modified schema, afterward a schema is only modified if it ships a record.
+     * Schemas are prepared in parallel, and partitions of large ones by one pool that all of them share, so workers
+     * are bounded by processors rather than multiplied by the number of schemas
+     */
+    public void prepareBeforeWriting() {
+        /* declared first so it is closed last, once no schema submits partitions anymore */
+        try (
+                final CobraThreadExecutor partitionExecutor = CobraThreadExecutor.ofPhysicalProcessor(getClass(),
+                        PROC_DESC_STATE_WRITE_ENGINE_PREPARE_PARTITION);
+                final CobraThreadExecutor executor = CobraThreadExecutor.ofPhysicalProcessor(getClass(),
+                        PROC_DESC_STATE_WRITE_ENGINE_PREPARE)
+        ) {
+            final int maxPartitions = partitionExecutor.getMaximumPoolSize();
+            for (final SchemaStateWrite schemaStateWrite : collectAffectedSchemaStateWrite()) {
+                executor.execute(() -> schemaStateWrite.prepareBeforeWriting(partitionExecutor, maxPartitions));
+            }
+        }
+    }
+
+    /**
+     * Reverts local data of a cycle that failed to be published, see {@link SchemaStateWrite#revertToLastState()}
+     */
     public void revertToLastState() {
-        // todo: implement me
+        for (final SchemaStateWrite schemaStateWrite : this.producerStateContext.collectSchemaStateWrites()) {
+            schemaStateWrite.revertToLastState();
+        }
     }
 
     public boolean isModified() {
@@ -0,0 +1,61 @@
+package org.cobra.consumer.fs;
+
+import org.cobra.consumer.CobraConsumer;
+import org.cobra.core.compress.BlobCodec;
+import org.cobra.core.compress.BlockCompressedOutputStream;
+import org.cobra.core.objects.BlobType;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FilesystemBlobRetrieverTest {
+
+    @Test
+    void compressedBlob_inflatedCopyDeletedOnRelease() throws IOException {
+        Path storePath = Files.createTempDirectory("cobra-retriever");
+        byte[] raw = "delta-content;".repeat(1_000).getBytes();
+        try (OutputStream os = new BlockCompressedOutputStream(
+                Files.newOutputStream(storePath.resolve(BlobType.DELTA_BLOB.filename(1, 2))),
+                BlobCodec.DEFLATE, Deflater.DEFAULT_COMPRESSION, null, 4096)) {
+            os.write(raw);
+        }
+
+        FilesystemBlobRetriever retriever = new FilesystemBlobRetriever(storePath);
+        CobraConsumer.Blob blob = retriever.openBlob(BlobType.DELTA_BLOB, 1, 2);
+
+        File inflated = blob.file();
+        assertArrayEquals(raw, Files.readAllBytes(inflated.toPath()));
+        assertEquals(inflated, blob.file());
+
+        blob.release();
+        assertFalse(inflated.exists());
+        assertTrue(Files.exists(storePath.resolve(BlobType.DELTA_BLOB.filename(1, 2))));
+
+        // released blob is inflated again once read again
+        assertArrayEquals(raw, Files.readAllBytes(blob.file().toPath()));
+        blob.release();
+    }
+
+    @Test
+    void rawBlob_readInPlace() throws IOException {
+        Path storePath = Files.createTempDirectory("cobra-retriever");
+        Path stored = storePath.resolve(BlobType.DELTA_BLOB.filename(1, 2));
+        Files.write(stored, "raw".getBytes());
+
+        CobraConsumer.Blob blob = new FilesystemBlobRetriever(storePath).openBlob(BlobType.DELTA_BLOB, 1, 2);
+        assertEquals(stored.toFile(), blob.file());
+
+        blob.release();
+        assertTrue(Files.exists(stored));
+    }
+}
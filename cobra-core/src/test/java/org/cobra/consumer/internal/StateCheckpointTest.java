@@ -0,0 +1,110 @@
+package org.cobra.consumer.internal;
+
+import org.cobra.commons.CobraConstants;
+import org.cobra.commons.errors.CobraException;
+import org.cobra.commons.pools.BytesPool;
+import org.cobra.consumer.ConsumeTypeA;
+import org.cobra.consumer.ConsumeTypeB;
+import org.cobra.consumer.read.ConsumerStateContext;
+import org.cobra.consumer.read.SchemaStateReaderImpl;
+import org.cobra.consumer.read.StateReadEngine;
+import org.cobra.core.ModelSchema;
+import org.cobra.core.memory.datalocal.RecordRepository;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StateCheckpointTest {
+
+    static final String TYPE_A = ConsumeTypeA.class.getTypeName();
+    static final String TYPE_B = ConsumeTypeB.class.getTypeName();
+
+    @Test
+    void write_restore() throws IOException {
+        StateReadEngine engine = engine();
+        engine.setOriginRandomizedTag(11L);
+        engine.setNextRandomizedTag(12L);
+        engine.consumerContext().registerClassRegistration(ConsumeTypeA.class, 100);
+
+        RecordRepository localA = engine.consumerContext().localData(TYPE_A);
+        for (int i = 0; i < 20_000; i++) {
+            localA.putObject("a" + i, ("value-a-" + i).getBytes());
+        }
+        for (int i = 0; i < 20_000; i += 7) {
+            localA.removeObject("a" + i);
+        }
+        engine.consumerContext().localData(TYPE_B).putObject("b", new byte[10_000]);
+
+        StateCheckpoint checkpoint = new StateCheckpoint(Files.createTempDirectory("cobra-checkpoint"));
+        checkpoint.path().toFile().deleteOnExit();
+        checkpoint.write(42L, engine);
+        assertTrue(checkpoint.exists());
+
+        StateReadEngine restored = new StateReadEngine(new ConsumerStateContext(), BytesPool.NONE);
+        assertEquals(42L, checkpoint.restore(restored));
+
+        assertEquals(11L, restored.getOriginRandomizedTag());
+        assertEquals(12L, restored.getNextRandomizedTag());
+        assertEquals(Map.of(ConsumeTypeA.class, 100), restored.consumerContext().classRegistrations());
+
+        RecordRepository restoredA = restored.consumerContext().localData(TYPE_A);
+        assertEquals(localA.lookupTable().size(), restoredA.lookupTable().size());
+        for (int i = 0; i < 20_000; i++) {
+            if (i % 7 == 0) {
+                assertNull(restoredA.getData("a" + i));
+            } else {
+                assertArrayEquals(("value-a-" + i).getBytes(), restoredA.getData("a" + i));
+            }
+        }
+        assertArrayEquals(new byte[10_000], restored.consumerContext().localData(TYPE_B).getData("b"));
+
+        // a consumer that has state is never overwritten
+        assertThrows(IllegalStateException.class, () -> checkpoint.restore(restored));
+    }
+
+    @Test
+    void restore_noCheckpoint() throws IOException {
+        StateCheckpoint checkpoint = new StateCheckpoint(Files.createTempDirectory("cobra-checkpoint"));
+
+        assertFalse(checkpoint.exists());
+        assertEquals(CobraConstants.VERSION_NULL, checkpoint.restore(engine()));
+    }
+
+    @Test
+    void restore_truncatedCheckpoint() throws IOException {
+        StateReadEngine engine = engine();
+        engine.consumerContext().localData(TYPE_A).putObject("a", "value".getBytes());
+
+        Path directory = Files.createTempDirectory("cobra-checkpoint");
+        StateCheckpoint checkpoint = new StateCheckpoint(directory);
+        checkpoint.path().toFile().deleteOnExit();
+        checkpoint.write(1L, engine);
+
+        try (RandomAccessFile file = new RandomAccessFile(checkpoint.path().toFile(), "rw")) {
+            file.setLength(file.length() - 1);
+        }
+
+        StateReadEngine restored = new StateReadEngine(new ConsumerStateContext(), BytesPool.NONE);
+        assertThrows(CobraException.class, () -> checkpoint.restore(restored));
+        assertTrue(restored.consumerContext().schemaReads().isEmpty());
+    }
+
+    static StateReadEngine engine() {
+        StateReadEngine engine = new StateReadEngine(new ConsumerStateContext(), BytesPool.NONE);
+        engine.consumerContext().register(new SchemaStateReaderImpl(new ModelSchema(ConsumeTypeA.class), engine));
+        engine.consumerContext().register(new SchemaStateReaderImpl(new ModelSchema(ConsumeTypeB.class), engine));
+
+        return engine;
+    }
+}
@@ -0,0 +1,108 @@
+package org.cobra.consumer.internal;
+
+import org.cobra.core.objects.BlobDescriptor;
+import org.cobra.core.objects.BlobType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TransitionUpdaterTest {
+
+    @Test
+    void cheapestPath_nearestSnapshotCheaperThanDeltas() {
+        List<BlobDescriptor> index = deltas(1, 250, 100);
+        index.add(BlobDescriptor.snapshot(100, 5_000));
+        index.add(BlobDescriptor.snapshot(200, 6_000));
+        index.add(BlobDescriptor.snapshot(300, 1)); // after destination
+
+        List<BlobDescriptor> path = TransitionUpdater.cheapestPath(index, 0, 250);
+
+        assertEquals(51, path.size());
+        assertEquals(BlobDescriptor.snapshot(200, 0), path.getFirst());
+        assertEquals(delta(201), path.get(1));
+        assertEquals(delta(250), path.getLast());
+    }
+
+    @Test
+    void cheapestPath_deltasCheaperThanSnapshot() {
+        List<BlobDescriptor> index = deltas(1, 10, 10);
+        index.add(BlobDescriptor.snapshot(5, 100_000));
+
+        assertEquals(deltas(1, 10, 10).stream().filter(x -> x.blobType() == BlobType.DELTA_BLOB).toList(),
+                TransitionUpdater.cheapestPath(index, 0, 10));
+    }
+
+    @Test
+    void cheapestPath_missingDeltasEstimatedByAverage() {
+        // only 2 deltas are known, 98 pruned ones are assumed to be of average size
+        List<BlobDescriptor> index = deltas(99, 100, 100);
+        index.add(BlobDescriptor.snapshot(98, 5_000));
+
+        assertEquals(List.of(BlobDescriptor.snapshot(98, 0), delta(99), delta(100)),
+                TransitionUpdater.cheapestPath(index, 0, 100));
+    }
+
+    @Test
+    void cheapestPath_skipDeltasFromMidRange() {
+        List<BlobDescriptor> index = deltas(1, 30, 100);
+        index.add(skipDelta(0, 10, 500));
+        index.add(skipDelta(10, 20, 500));
+        index.add(skipDelta(20, 30, 50_000)); // larger than its deltas together
+        index.add(BlobDescriptor.snapshot(20, 1)); // only for cold start
+
+        List<BlobDescriptor> path = TransitionUpdater.cheapestPath(index, 7, 25);
+
+        assertEquals(List.of(delta(8), delta(9), delta(10), skipDelta(10, 20, 0),
+                delta(21), delta(22), delta(23), delta(24), delta(25)), path);
+    }
+
+    @Test
+    void cheapestPath_fewerHopsOfSameSize() {
+        List<BlobDescriptor> index = deltas(1, 4, 100);
+        index.add(skipDelta(0, 4, 400));
+
+        assertEquals(List.of(skipDelta(0, 4, 0)), TransitionUpdater.cheapestPath(index, 0, 4));
+    }
+
+    @Test
+    void cheapestPath_timestampVersions() {
+        long t0 = 1_700_000_000_000L;
+        long step = 60_000L;
+        List<BlobDescriptor> index = new ArrayList<>();
+        for (int i = 1; i <= 5; i++)
+            index.add(new BlobDescriptor(BlobType.DELTA_BLOB, t0 + (i - 1) * step, t0 + i * step, 100));
+        index.add(skipDelta(t0, t0 + 3 * step, 150));
+        index.add(BlobDescriptor.snapshot(t0 + 3 * step, 5_000));
+
+        assertEquals(List.of(skipDelta(t0, t0 + 3 * step, 0),
+                        new BlobDescriptor(BlobType.DELTA_BLOB, t0 + 3 * step, t0 + 4 * step, 0),
+                        new BlobDescriptor(BlobType.DELTA_BLOB, t0 + 4 * step, t0 + 5 * step, 0)),
+                TransitionUpdater.cheapestPath(index, t0, t0 + 5 * step));
+
+        // cold start: deltas before the snapshot are pruned, the gap from nothing is far too wide to walk
+        List<BlobDescriptor> coldPath = TransitionUpdater.cheapestPath(index, 0, t0 + 5 * step);
+        assertEquals(BlobDescriptor.snapshot(t0 + 3 * step, 0), coldPath.getFirst());
+        assertEquals(3, coldPath.size());
+    }
+
+    static BlobDescriptor delta(long version) {
+        return new BlobDescriptor(BlobType.DELTA_BLOB, version - 1, version, 0);
+    }
+
+    static BlobDescriptor skipDelta(long from, long to, long size) {
+        return new BlobDescriptor(BlobType.SKIP_DELTA, from, to, size);
+    }
+
+    static List<BlobDescriptor> deltas(long from, long to, long size) {
+        List<BlobDescriptor> result = new ArrayList<>();
+        for (long version = from; version <= to; version++) {
+            result.add(new BlobDescriptor(BlobType.DELTA_BLOB, version - 1, version, size));
+            result.add(new BlobDescriptor(BlobType.REVERSED_DELTA_BLOB, version, version - 1, size));
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,159 @@
+package org.cobra.consumer.read;
+
+import org.cobra.commons.CobraConstants;
+import org.cobra.commons.Jvm;
+import org.cobra.commons.pools.BytesPool;
+import org.cobra.consumer.ConsumeTypeA;
+import org.cobra.consumer.ConsumeTypeB;
+import org.cobra.core.ModelSchema;
+import org.cobra.core.memory.MemoryMode;
+import org.cobra.core.objects.BlobInput;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlobReaderImplTest {
+
+    static final String TYPE_A = ConsumeTypeA.class.getTypeName();
+    static final String TYPE_B = ConsumeTypeB.class.getTypeName();
+    static final String TYPE_UNKNOWN = String.class.getTypeName();
+
+    StateReadEngine stateReadEngine;
+    Map<String, Long> appliedSchemas;
+    BlobReaderImpl blobReader;
+
+    @BeforeEach
+    void setUp() {
+        stateReadEngine = new StateReadEngine(new ConsumerStateContext(), BytesPool.NONE);
+        stateReadEngine.consumerContext().register(
+                new SchemaStateReaderImpl(new ModelSchema(ConsumeTypeA.class), stateReadEngine));
+        stateReadEngine.consumerContext().register(
+                new SchemaStateReaderImpl(new ModelSchema(ConsumeTypeB.class), stateReadEngine));
+
+        appliedSchemas = new ConcurrentHashMap<>();
+        blobReader = new BlobReaderImpl(MemoryMode.VIRTUAL_MAPPED, stateReadEngine, appliedSchemas::put);
+    }
+
+    @Test
+    void applyDelta_sectionsConcurrently() throws IOException {
+        File f = File.createTempFile("cobra-delta", ".blob");
+        f.deleteOnExit();
+        Files.write(f.toPath(), deltaBlob());
+
+        try (BlobInput input = BlobInput.randomAccessFile(f)) {
+            blobReader.applyDelta(input);
+            assertEquals(f.length(), input.getCursor());
+        }
+
+        assertArrayEquals("a1".getBytes(), stateReadEngine.consumerContext().localData(TYPE_A).getData("k1"));
+        assertArrayEquals("a2".getBytes(), stateReadEngine.consumerContext().localData(TYPE_A).getData("k2"));
+        assertArrayEquals("b1".getBytes(), stateReadEngine.consumerContext().localData(TYPE_B).getData("k1"));
+        assertNull(stateReadEngine.consumerContext().localData(TYPE_B).getData("k2"));
+
+        // unknown schema is skipped without breaking the sections after it
+        assertEquals(2, appliedSchemas.size());
+        assertTrue(appliedSchemas.get(TYPE_A) > 0);
+        assertTrue(appliedSchemas.get(TYPE_B) > 0);
+    }
+
+    @Test
+    void applyDelta_reusesReaderAcrossDeltas() throws IOException {
+        File f = File.createTempFile("cobra-delta", ".blob");
+        f.deleteOnExit();
+        Files.write(f.toPath(), deltaBlob());
+
+        for (int i = 0; i < 3; i++) {
+            try (BlobInput input = BlobInput.randomAccessFile(f)) {
+                blobReader.applyDelta(input);
+                assertEquals(f.length(), input.getCursor());
+            }
+        }
+
+        assertArrayEquals("a1".getBytes(), stateReadEngine.consumerContext().localData(TYPE_A).getData("k1"));
+    }
+
+    @Test
+    void applySnapshot_registersSchemasOfHeader() throws IOException {
+        StateReadEngine freshEngine = new StateReadEngine(new ConsumerStateContext(), BytesPool.NONE);
+        BlobReaderImpl freshReader = new BlobReaderImpl(MemoryMode.VIRTUAL_MAPPED, freshEngine);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(baos);
+        dos.writeInt(CobraConstants.BLOB_HEADER_VERSION_ID);
+        dos.writeLong(1L);
+        dos.writeLong(2L);
+        dos.writeInt(2);
+        dos.writeUTF(TYPE_A);
+        dos.writeUTF(TYPE_B);
+        dos.writeInt(0);
+        Jvm.varint().writeVarInt(dos, 0);
+        dos.write(deltaBlob());
+
+        File f = File.createTempFile("cobra-snapshot", ".blob");
+        f.deleteOnExit();
+        Files.write(f.toPath(), baos.toByteArray());
+
+        try (BlobInput input = BlobInput.randomAccessFile(f)) {
+            freshReader.applySnapshot(input);
+            assertEquals(f.length(), input.getCursor());
+        }
+
+        assertArrayEquals("a2".getBytes(), freshEngine.consumerContext().localData(TYPE_A).getData("k2"));
+        assertArrayEquals("b1".getBytes(), freshEngine.consumerContext().localData(TYPE_B).getData("k1"));
+    }
+
+    static byte[] deltaBlob() throws IOException {
+        List<byte[]> sections = List.of(
+                section(TYPE_A, List.of("k1", "k2"), List.of("a1", "a2")),
+                section(TYPE_UNKNOWN, List.of("k1"), List.of("x1")),
+                section(TYPE_B, List.of("k1"), List.of("b1")));
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(baos);
+        dos.writeLong(1L);
+        dos.writeLong(2L);
+        dos.writeInt(sections.size());
+        for (byte[] section : sections)
+            dos.writeLong(section.length);
+        for (byte[] section : sections)
+            dos.write(section);
+
+        return baos.toByteArray();
+    }
+
+    static byte[] section(String typeName, List<String> keys, List<String> values) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(baos);
+        dos.writeUTF(typeName);
+        Jvm.varint().writeVarInt(dos, keys.size());
+        writeBlocks(dos, keys);
+        writeBlocks(dos, values);
+        writeBlocks(dos, List.of());
+
+        return baos.toByteArray();
+    }
+
+    static void writeBlocks(DataOutputStream dos, List<String> blocks) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        for (String block : blocks) {
+            Jvm.varint().writeVarInt(baos, block.length());
+            baos.write(block.getBytes());
+        }
+
+        Jvm.varint().writeVarInt(dos, baos.size());
+        dos.write(baos.toByteArray());
+    }
+}
@@ -0,0 +1,70 @@
+package org.cobra.consumer.read;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ObjectCacheTest {
+
+    @Test
+    void put_get() {
+        ObjectCache cache = new ObjectCache(4);
+        assertNull(cache.get("k1"));
+
+        assertTrue(cache.put("k1", "v1", cache.stamp()));
+        assertEquals("v1", cache.get("k1"));
+
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        assertEquals(.5, cache.hitRatio());
+    }
+
+    @Test
+    void evict_secondChance() {
+        ObjectCache cache = new ObjectCache(3);
+        cache.put("k1", "v1", cache.stamp());
+        cache.put("k2", "v2", cache.stamp());
+        cache.put("k3", "v3", cache.stamp());
+
+        // k1 gets referenced, so k2 is the first one without a second chance
+        cache.get("k1");
+        cache.put("k4", "v4", cache.stamp());
+
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.evictionCount());
+        assertEquals("v1", cache.get("k1"));
+        assertNull(cache.get("k2"));
+        assertEquals("v4", cache.get("k4"));
+    }
+
+    @Test
+    void invalidate() {
+        ObjectCache cache = new ObjectCache(2);
+        cache.put("k1", "v1", cache.stamp());
+        cache.invalidate("k1");
+        cache.invalidate("absent");
+
+        assertNull(cache.get("k1"));
+        assertEquals(1, cache.invalidationCount());
+
+        // freed slot is reusable, nothing gets evicted
+        cache.put("k2", "v2", cache.stamp());
+        cache.put("k3", "v3", cache.stamp());
+        assertEquals(0, cache.evictionCount());
+    }
+
+    @Test
+    void put_rejectStaleStamp() {
+        ObjectCache cache = new ObjectCache(2);
+        long stamp = cache.stamp();
+
+        // a delta touched a key while the record was being read
+        cache.invalidate("k1");
+
+        assertFalse(cache.put("k1", "old", stamp));
+        assertNull(cache.get("k1"));
+    }
+}
@@ -5,6 +5,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -99,4 +100,24 @@ class NativeBytesStoreTest {
 
         assertEquals(a, nativeStore.readAt(100));
     }
-}
\ No newline at end of file
+
+    @Test
+    void write_read_acrossSegments() {
+        byte[] data = new byte[21];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + i);
+        }
+        nativeStore.attemptResizing(32);
+        nativeStore.writeAt(3, data);
+
+        for (int i = 0; i < data.length; i++) {
+            assertEquals(data[i], nativeStore.readAt(3 + i));
+        }
+
+        byte[] ret = new byte[data.length + 2];
+        assertEquals(data.length, nativeStore.readAt(3, ret, 1, data.length));
+        assertArrayEquals(data, Arrays.copyOfRange(ret, 1, data.length + 1));
+        assertEquals(0, ret[0]);
+        assertEquals(0, ret[data.length + 1]);
+    }
+}
@@ -0,0 +1,108 @@
+package org.cobra.core.compress;
+
+import org.cobra.commons.errors.CobraException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlobCompressionTest {
+
+    @Test
+    void roundTrip_acrossBlocks() throws IOException {
+        byte[] raw = records(0, 2_000);
+        byte[] compressed = compress(raw, null, 1024);
+
+        assertTrue(compressed.length < raw.length / 2);
+        assertArrayEquals(raw, decompress(compressed, Map.of()));
+    }
+
+    @Test
+    void roundTrip_incompressibleStoredAsIs() throws IOException {
+        byte[] raw = new byte[10_000];
+        new Random(7).nextBytes(raw);
+        byte[] compressed = compress(raw, null, 4096);
+
+        assertTrue(compressed.length < raw.length + 64);
+        assertArrayEquals(raw, decompress(compressed, Map.of()));
+    }
+
+    @Test
+    void dictionary_shrinksSmallBlobs() throws IOException {
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+            samples.add(records(i * 50, 50));
+        byte[] dictionary = BlobCompression.trainDictionary(samples, 4096);
+
+        byte[] raw = records(5_000, 20);
+        byte[] plain = compress(raw, null, 1024);
+        byte[] withDictionary = compress(raw, dictionary, 1024);
+
+        assertTrue(withDictionary.length < plain.length);
+        assertArrayEquals(raw, decompress(withDictionary, BlobCompression.dictionaries(dictionary)));
+        assertThrows(CobraException.class, () -> decompress(withDictionary, Map.of()));
+    }
+
+    @Test
+    void decoding_passesRawThrough() throws IOException {
+        byte[] raw = records(0, 10);
+        assertArrayEquals(raw, decompress(raw, Map.of()));
+    }
+
+    @Test
+    void inflate_intoFile() throws IOException {
+        byte[] raw = records(0, 500);
+        Path source = Files.createTempFile("cobra-compressed", ".blob");
+        Path dest = Files.createTempFile("cobra-inflated", ".blob");
+        source.toFile().deleteOnExit();
+        dest.toFile().deleteOnExit();
+        Files.write(source, compress(raw, null, 1024));
+
+        assertTrue(BlobCompression.isCompressed(source));
+        BlobCompression.inflate(source, dest, Map.of());
+
+        assertFalse(BlobCompression.isCompressed(dest));
+        assertArrayEquals(raw, Files.readAllBytes(dest));
+    }
+
+    static byte[] records(int from, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = from; i < from + count; i++)
+            sb.append("org.cobra.Record{id=").append(i).append(", name='record-").append(i).append("', flag=false}");
+
+        return sb.toString().getBytes();
+    }
+
+    static byte[] compress(byte[] raw, byte[] dictionary, int blockSize) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (OutputStream os = new BlockCompressedOutputStream(baos, BlobCodec.DEFLATE,
+                Deflater.DEFAULT_COMPRESSION, dictionary, blockSize)) {
+            // odd chunks, so writes straddle blocks
+            for (int i = 0; i < raw.length; i += 333)
+                os.write(raw, i, Math.min(333, raw.length - i));
+        }
+
+        return baos.toByteArray();
+    }
+
+    static byte[] decompress(byte[] compressed, Map<Integer, byte[]> dictionaries) throws IOException {
+        try (InputStream is = BlobCompression.decoding(new ByteArrayInputStream(compressed), dictionaries)) {
+            return is.readAllBytes();
+        }
+    }
+}
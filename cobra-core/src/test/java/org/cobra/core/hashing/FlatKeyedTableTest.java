@@ -0,0 +1,87 @@
+package org.cobra.core.hashing;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FlatKeyedTableTest {
+
+    /* pointer -> key, stands for keys being stored inline in slab chunks */
+    private final Map<Long, byte[]> storedKeys = new HashMap<>();
+
+    FlatKeyedTable lookupTable;
+
+    @BeforeEach
+    void setUp() {
+        storedKeys.clear();
+        lookupTable = new FlatKeyedTable((pointer, key) -> Arrays.equals(storedKeys.get(pointer), key));
+    }
+
+    @Test
+    void put_get() {
+        put(10L, "k1", 100L);
+        put(11L, "k2", 200L);
+
+        assertEquals(100L, lookupTable.get(10L, "k1".getBytes()));
+        assertEquals(200L, lookupTable.get(11L, "k2".getBytes()));
+        assertEquals(-1, lookupTable.get(12L, "k3".getBytes()));
+        assertEquals(2, lookupTable.size());
+    }
+
+    @Test
+    void collision_keepBothKeys() {
+        long sameHash = 42L;
+        put(sameHash, "first", 100L);
+        put(sameHash, "second", 200L);
+
+        assertEquals(2, lookupTable.size());
+        assertEquals(100L, lookupTable.get(sameHash, "first".getBytes()));
+        assertEquals(200L, lookupTable.get(sameHash, "second".getBytes()));
+        assertEquals(-1, lookupTable.get(sameHash, "third".getBytes()));
+
+        assertEquals(100L, lookupTable.remove(sameHash, "first".getBytes()));
+        assertEquals(-1, lookupTable.get(sameHash, "first".getBytes()));
+        assertEquals(200L, lookupTable.get(sameHash, "second".getBytes()));
+    }
+
+    @Test
+    void overwrite_returnPrevious() {
+        assertEquals(-1, put(7L, "k", 100L));
+        assertEquals(100L, put(7L, "k", 200L));
+
+        assertEquals(200L, lookupTable.get(7L, "k".getBytes()));
+        assertEquals(1, lookupTable.size());
+    }
+
+    @Test
+    void reservedHashes() {
+        put(0L, "zero", 100L);
+        put(-1L, "minus", 200L);
+
+        assertEquals(100L, lookupTable.get(0L, "zero".getBytes()));
+        assertEquals(200L, lookupTable.get(-1L, "minus".getBytes()));
+    }
+
+    @Test
+    void resize() {
+        int count = 10_000;
+        for (int i = 0; i < count; i++) {
+            put(i % 100, "key-" + i, 1_000L + i);
+        }
+        assertEquals(count, lookupTable.size());
+
+        for (int i = 0; i < count; i++) {
+            assertEquals(1_000L + i, lookupTable.get(i % 100, ("key-" + i).getBytes()));
+        }
+    }
+
+    private long put(long hash, String key, long pointer) {
+        storedKeys.put(pointer, key.getBytes());
+        return lookupTable.put(hash, key.getBytes(), pointer);
+    }
+}
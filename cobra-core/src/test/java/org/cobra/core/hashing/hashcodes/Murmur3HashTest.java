@@ -0,0 +1,36 @@
+package org.cobra.core.hashing.hashcodes;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class Murmur3HashTest {
+
+    @Test
+    void x64_128_knownVectors() {
+        byte[] empty = new byte[0];
+        assertArrayEquals(new long[]{0L, 0L}, Murmur3Hash.murmurhash3_x64_128(empty, 0, 0, 0));
+
+        byte[] fox = "The quick brown fox jumps over the lazy dog".getBytes();
+        assertArrayEquals(new long[]{0xe34bbc7bbc071b6cL, 0x7a433ca9c49a9347L},
+                Murmur3Hash.murmurhash3_x64_128(fox, 0, fox.length, 0));
+    }
+
+    @Test
+    void x64_64_isLowerHalf() {
+        byte[] data = "cobra-record-key".getBytes();
+        for (int len = 0; len <= data.length; len++) {
+            long[] full = Murmur3Hash.murmurhash3_x64_128(data, 0, len, 0);
+            assertEquals(full[0], Murmur3Hash.murmurhash3_x64_64(data, 0, len, 0));
+        }
+    }
+
+    @Test
+    void x64_128_offset() {
+        byte[] data = "__hello".getBytes();
+        byte[] hello = "hello".getBytes();
+        assertArrayEquals(Murmur3Hash.murmurhash3_x64_128(hello, 0, hello.length, 0),
+                Murmur3Hash.murmurhash3_x64_128(data, 2, 5, 0));
+    }
+}
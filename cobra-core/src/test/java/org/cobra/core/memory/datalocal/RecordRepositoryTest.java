@@ -0,0 +1,267 @@
+package org.cobra.core.memory.datalocal;
+
+import org.cobra.commons.Jvm;
+import org.cobra.core.memory.OSMemory;
+import org.cobra.core.memory.slab.SlabSizing;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecordRepositoryTest {
+
+    static final int PAGE_SIZE = 1 << 16;
+
+    @Test
+    void putObject_overwriteFreesPreviousChunk() {
+        RecordRepository repository = new RecordRepository();
+        for (int i = 0; i < 10_000; i++) {
+            repository.putObject("k", "value-%05d".formatted(i).getBytes());
+        }
+
+        assertArrayEquals("value-09999".getBytes(), repository.getData("k"));
+        assertEquals(PAGE_SIZE, repository.memoryFootprint(), "every overwrite reuses the freed chunk");
+        assertEquals(RecordRepository.footprintOf(1, 11), repository.slabStats().getFirst().requestedBytes());
+    }
+
+    @Test
+    void putObject_overwriteKeepsPreviousChunkWhileReadIsInside() {
+        RecordRepository repository = new RecordRepository();
+        ReadEpochs.Reader reader = repository.readEpochs().enter();
+        for (int i = 0; i < 100; i++) {
+            repository.putObject("k", "value-%05d".formatted(i).getBytes());
+        }
+        repository.removeObject("k");
+
+        assertNull(repository.getData("k"));
+        assertEquals(100L * RecordRepository.footprintOf(1, 11), repository.slabStats().getFirst().requestedBytes(),
+                "no retired chunk is freed while a read entered before it is inside");
+
+        repository.readEpochs().exit(reader);
+        repository.putObject("k", "value-00100".getBytes());
+        repository.putObject("k", "value-00101".getBytes()); // retiring a chunk frees every one no read is inside
+        assertEquals(RecordRepository.footprintOf(1, 11), repository.slabStats().getFirst().requestedBytes());
+    }
+
+    @Test
+    void dataEquals() {
+        RecordRepository repository = new RecordRepository();
+        repository.putObject("k", "value-0123456789".getBytes());
+
+        assertTrue(repository.dataEquals("k".getBytes(), "value-0123456789".getBytes()));
+        assertFalse(repository.dataEquals("k".getBytes(), "value-0123456788".getBytes()));
+        assertFalse(repository.dataEquals("k".getBytes(), "value-012345678".getBytes()));
+        assertFalse(repository.dataEquals("absent".getBytes(), "value-0123456789".getBytes()));
+
+        repository.putObject("empty", new byte[0]);
+        assertTrue(repository.dataEquals("empty".getBytes(), new byte[0]));
+    }
+
+    @Test
+    void sweepUnmarked_visitsRecordsNotMarked() {
+        RecordRepository repository = new RecordRepository();
+        for (int i = 0; i < 10_000; i++) {
+            repository.putObject("k" + i, ("value-" + i).getBytes());
+        }
+        repository.putObject("k0", "value-0'".getBytes()); // previous chunk is retired, it is not a record
+
+        for (int i = 0; i < 10_000; i += 2) {
+            assertTrue(repository.mark(("k" + i).getBytes()));
+        }
+        assertFalse(repository.mark("missing".getBytes()));
+
+        Set<String> unmarked = new HashSet<>();
+        repository.sweepUnmarked(key -> unmarked.add(new String(key)));
+        assertEquals(5_000, unmarked.size());
+        assertTrue(unmarked.contains("k1"));
+        assertFalse(unmarked.contains("k0"));
+
+        // a sweep clears marks
+        unmarked.clear();
+        repository.sweepUnmarked(key -> unmarked.add(new String(key)));
+        assertEquals(10_000, unmarked.size());
+    }
+
+    @Test
+    void adaptSlabClasses_onlyWhilePristine() {
+        RecordRepository repository = new RecordRepository();
+        int footprint = RecordRepository.footprintOf(6, 500);
+
+        assertTrue(repository.adaptSlabClasses(new int[]{footprint, footprint}));
+        int chunkSize = (footprint + SlabSizing.ALIGNMENT - 1) & -SlabSizing.ALIGNMENT;
+        assertEquals(chunkSize, repository.slabStats().getFirst().chunkSize());
+
+        repository.putObject("key-01", new byte[500]);
+        assertEquals(1, repository.slabStats().getFirst().allocatedChunks());
+        assertFalse(repository.isPristine());
+        assertFalse(repository.adaptSlabClasses(new int[]{64}));
+        assertArrayEquals(new byte[500], repository.getData("key-01"));
+    }
+
+    @Test
+    void reclaim_movesLiveRecordsAndReleasesPages() {
+        RecordRepository repository = new RecordRepository();
+        for (int i = 0; i < 4096; i++) {
+            repository.putObject(key(i), value(i));
+        }
+        assertEquals(4 * PAGE_SIZE, repository.memoryFootprint());
+
+        for (int i = 0; i < 4096; i++) {
+            if (i % 16 != 0)
+                repository.removeObject(key(i));
+        }
+
+        // live records of 3 pages fit into the 4th one
+        assertEquals(3 * PAGE_SIZE, repository.reclaim(0.25f));
+        assertEquals(PAGE_SIZE, repository.memoryFootprint());
+        assertEquals(0, repository.reclaim(0.25f));
+
+        for (int i = 0; i < 4096; i++) {
+            if (i % 16 == 0) {
+                assertArrayEquals(value(i), repository.getData(key(i)));
+            } else {
+                assertNull(repository.getData(key(i)));
+            }
+        }
+
+        // moved records are still removable and their chunks reusable
+        assertArrayEquals(value(16), repository.removeObject(key(16)));
+        repository.putObject(key(17), value(17));
+        assertArrayEquals(value(17), repository.getData(key(17)));
+        assertEquals(PAGE_SIZE, repository.memoryFootprint());
+    }
+
+    @Test
+    void reclaim_waitsForReadsBeforeReleasingPages() throws Exception {
+        RecordRepository repository = new RecordRepository();
+        for (int i = 0; i < 2048; i++) {
+            repository.putObject(key(i), value(i));
+        }
+        for (int i = 1; i < 2048; i++) {
+            repository.removeObject(key(i));
+        }
+
+        ReadEpochs.Reader reader = repository.readEpochs().enter();
+        FutureTask<Long> reclaim = new FutureTask<>(() -> repository.reclaim(0.25f));
+        Thread.ofPlatform().start(reclaim);
+
+        // drained page is not released while a read entered before is inside
+        assertThrows(TimeoutException.class, () -> reclaim.get(100, TimeUnit.MILLISECONDS));
+        repository.readEpochs().exit(reader);
+
+        assertEquals(PAGE_SIZE, (long) reclaim.get(10, TimeUnit.SECONDS));
+        assertArrayEquals(value(0), repository.getData(key(0)));
+    }
+
+    @Test
+    void checkpoint_restore() throws IOException {
+        RecordRepository repository = new RecordRepository();
+        for (int i = 0; i < 4096; i++) {
+            repository.putObject(key(i), value(i));
+        }
+        for (int i = 0; i < 4096; i += 3) {
+            repository.removeObject(key(i));
+        }
+        repository.putObject("large", new byte[3000]); // another slab-class
+
+        ByteArrayOutputStream meta = new ByteArrayOutputStream();
+        List<byte[]> pages = new ArrayList<>();
+        repository.checkpoint(new DataOutputStream(meta), (address, size) -> {
+            byte[] page = new byte[Math.toIntExact(size)];
+            Jvm.osMemory().copyMemory(null, address, page, OSMemory.ARRAY_BYTE_BASE_OFFSET, page.length);
+            pages.add(page);
+        });
+
+        RecordRepository restored = new RecordRepository();
+        Iterator<byte[]> pageIterator = pages.iterator();
+        restored.restore(new DataInputStream(new ByteArrayInputStream(meta.toByteArray())),
+                (address, size) -> Jvm.osMemory().copyMemory(address, pageIterator.next(), 0, Math.toIntExact(size)));
+
+        assertFalse(pageIterator.hasNext());
+        assertEquals(repository.lookupTable().size(), restored.lookupTable().size());
+        assertEquals(repository.memoryFootprint(), restored.memoryFootprint());
+        assertEquals(repository.slabStats(), restored.slabStats());
+        for (int i = 0; i < 4096; i++) {
+            if (i % 3 == 0) {
+                assertNull(restored.getData(key(i)));
+            } else {
+                assertArrayEquals(value(i), restored.getData(key(i)));
+            }
+        }
+        assertArrayEquals(new byte[3000], restored.getData("large"));
+
+        // freed chunks are reused after restore
+        long footprint = restored.memoryFootprint();
+        for (int i = 0; i < 4096; i += 3) {
+            restored.putObject(key(i), value(i));
+        }
+        assertEquals(footprint, restored.memoryFootprint());
+        assertArrayEquals(value(3), restored.getData(key(3)));
+        assertThrows(IllegalStateException.class, () -> restored.restore(
+                new DataInputStream(new ByteArrayInputStream(meta.toByteArray())), (address, size) -> {
+                }));
+    }
+
+    @Test
+    void putObject_removeObject_concurrently() throws InterruptedException {
+        RecordRepository repository = new RecordRepository();
+        int threadsNum = 4;
+        int perThread = 5_000;
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadsNum; t++) {
+            int base = t * perThread;
+            Thread thread = new Thread(() -> {
+                for (int i = base; i < base + perThread; i++) {
+                    repository.putObject(key(i), value(i));
+                    repository.putObject(key(i), value(i + 1)); // overwrite frees the first chunk
+                    if (i % 2 == 0)
+                        repository.removeObject(key(i));
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        for (int i = 0; i < threadsNum * perThread; i++) {
+            if (i % 2 == 0) {
+                assertNull(repository.getData(key(i)));
+            } else {
+                assertArrayEquals(value(i + 1), repository.getData(key(i)));
+            }
+        }
+        assertEquals(threadsNum * perThread / 2, repository.lookupTable().size());
+
+        repository.reclaim(0.25f);
+        for (int i = 1; i < threadsNum * perThread; i += 2)
+            assertArrayEquals(value(i + 1), repository.getData(key(i)));
+    }
+
+    static String key(int i) {
+        return "k%05d".formatted(i);
+    }
+
+    static byte[] value(int i) {
+        return "value-of-record-%04d".formatted(i).getBytes();
+    }
+}
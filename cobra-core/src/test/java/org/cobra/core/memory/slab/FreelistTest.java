@@ -1,33 +1,84 @@
 package org.cobra.core.memory.slab;
 
+import org.cobra.commons.Jvm;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import static org.junit.jupiter.api.Assertions.assertNull;
-import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 class FreelistTest {
 
+    static final int CHUNK_SIZE = Long.BYTES;
+    static final int CHUNKS_PER_PAGE = 4;
+    static final int PAGES_NUM = 2;
+
+    long baseAddress;
+    Freelist freelist;
+
+    @BeforeEach
+    void setUp() {
+        baseAddress = Jvm.osMemory().allocate((long) CHUNK_SIZE * CHUNKS_PER_PAGE * PAGES_NUM);
+        freelist = new Freelist(handle -> baseAddress
+                + ((long) SlabHandle.pageId(handle) * CHUNKS_PER_PAGE + SlabHandle.chunkId(handle)) * CHUNK_SIZE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Jvm.osMemory().freeMemory(baseAddress, (long) CHUNK_SIZE * CHUNKS_PER_PAGE * PAGES_NUM);
+    }
+
     @Test
     void offer_poll() {
-        final Freelist freelist = new Freelist();
-        SlabOffset offset1 = new SlabOffset(1, 1, 100);
+        long handle1 = SlabHandle.of(1, 1, 0);
 
-        assertNull(freelist.poll());
+        assertEquals(SlabHandle.NULL_HANDLE, freelist.poll());
 
-        freelist.offer(offset1);
-        SlabOffset offset2 = freelist.poll();
-        assertSame(offset1, offset2);
+        freelist.offer(handle1);
+        assertEquals(handle1, freelist.poll());
 
-        freelist.offer(offset1);
+        freelist.offer(handle1);
 
-        SlabOffset offset3 = new SlabOffset(1, 1, 200);
-        freelist.offer(offset3);
-        SlabOffset offset4 = new SlabOffset(1, 1, 300);
-        freelist.offer(offset4);
+        long handle3 = SlabHandle.of(1, 1, 2);
+        freelist.offer(handle3);
+        long handle4 = SlabHandle.of(1, 1, 3);
+        freelist.offer(handle4);
+        assertEquals(3, freelist.size());
 
-        assertSame(offset4, freelist.poll());
-        assertSame(offset3, freelist.poll());
-        assertSame(offset1, freelist.poll());
+        assertEquals(handle4, freelist.poll());
+        assertEquals(handle3, freelist.poll());
+        assertEquals(handle1, freelist.poll());
+        assertEquals(SlabHandle.NULL_HANDLE, freelist.poll());
+        assertEquals(0, freelist.size());
     }
 
-}
\ No newline at end of file
+    @Test
+    void offerPage_ascendingChunks() {
+        long handle = SlabHandle.of(0, 1, 3);
+        freelist.offer(handle);
+        freelist.offerPage(0, 0, CHUNKS_PER_PAGE);
+
+        for (int chunkId = 0; chunkId < CHUNKS_PER_PAGE; chunkId++)
+            assertEquals(SlabHandle.of(0, 0, chunkId), freelist.poll());
+        assertEquals(handle, freelist.poll());
+        assertEquals(SlabHandle.NULL_HANDLE, freelist.poll());
+    }
+
+    @Test
+    void removeIf() {
+        long handle1 = SlabHandle.of(0, 1, 0);
+        long handle2 = SlabHandle.of(0, 0, 0);
+        long handle3 = SlabHandle.of(0, 1, 1);
+        long handle4 = SlabHandle.of(0, 0, 1);
+        freelist.offer(handle1);
+        freelist.offer(handle2);
+        freelist.offer(handle3);
+        freelist.offer(handle4);
+
+        freelist.removeIf(handle -> SlabHandle.pageId(handle) == 0);
+        assertEquals(2, freelist.size());
+        assertEquals(handle3, freelist.poll());
+        assertEquals(handle1, freelist.poll());
+        assertEquals(SlabHandle.NULL_HANDLE, freelist.poll());
+    }
+}
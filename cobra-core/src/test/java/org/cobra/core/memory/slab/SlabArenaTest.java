@@ -1,13 +1,19 @@
 package org.cobra.core.memory.slab;
 
+import org.cobra.commons.config.ConfigDef;
 import org.cobra.utils.TestUtils;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class SlabArenaTest {
@@ -27,6 +33,56 @@ class SlabArenaTest {
         assertEquals(1, arena.clsid(50));
     }
 
+    @Test
+    void clsid_constantTimeLookupMatchesScan() {
+        final ConfigDef config = MemoryConfig.defaultConfig();
+        config.merge(MemoryConfig.SLAB_GROWTH_FACTOR, 1.25);
+        final SlabArena arena = SlabArena.initialize(config);
+        final int[] chunkSizes = arena.chunkSizes();
+
+        for (int sizeof = 1; sizeof <= chunkSizes[chunkSizes.length - 1]; sizeof += sizeof < 32 * 1024 ? 1 : 97) {
+            int expected = 0;
+            while (chunkSizes[expected] < sizeof)
+                expected++;
+
+            assertEquals(expected, arena.clsid(sizeof));
+        }
+
+        assertEquals(-1, arena.clsid(chunkSizes[chunkSizes.length - 1] + 1));
+    }
+
+    @Test
+    void initialize_chunkSizes() {
+        final SlabArena arena = SlabArena.initialize(MemoryConfig.defaultConfig(), new int[]{24, 520, 4096});
+
+        assertArrayEquals(new int[]{24, 520, 4096}, arena.chunkSizes());
+        assertEquals(1, arena.clsid(500));
+        assertEquals(2, arena.clsid(521));
+        assertThrows(IllegalArgumentException.class,
+                () -> SlabArena.initialize(MemoryConfig.defaultConfig(), new int[]{64, 32}));
+    }
+
+    @Test
+    void stats_fragmentation() {
+        final SlabArena arena = SlabArena.initialize(MemoryConfig.defaultConfig(), new int[]{64, 128});
+        final int footprint = SlabMethods.footprint(4, 40);
+
+        List<Long> addresses = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            addresses.add(arena.allocate(i, ("key" + i).getBytes(), new byte[40]));
+
+        SlabStats stats = arena.stats().get(0);
+        assertEquals(10, stats.allocatedChunks());
+        assertEquals(10L * footprint, stats.requestedBytes());
+        assertEquals(1 - (double) footprint / 64, stats.fragmentation(), 1e-9);
+
+        for (long address : addresses)
+            arena.free(address);
+
+        assertEquals(0, arena.stats().get(0).requestedBytes());
+        assertEquals(0.0, arena.stats().get(0).fragmentation());
+    }
+
     @Test
     void allocate_free() {
         final SlabArena arena = SlabArena.initialize();
@@ -67,4 +123,89 @@ class SlabArenaTest {
         final long end = System.currentTimeMillis();
         System.out.printf("allocate 10_000 took %dms%n", end - start);
     }
-}
\ No newline at end of file
+
+    @Test
+    void free_reusesChunk() {
+        final SlabArena arena = SlabArena.initialize();
+
+        long addr0 = arena.allocate(1L, "k0".getBytes(), "v0".getBytes());
+        long addr1 = arena.allocate(2L, "k1".getBytes(), "v1".getBytes());
+        arena.free(addr0);
+
+        // free chain lives in the freed chunk, the next allocation takes it back
+        long addr2 = arena.allocate(3L, "k2".getBytes(), "v2".getBytes());
+        assertEquals(addr0, addr2);
+        assertEquals(3L, arena.methods().hash(addr2));
+        assertEquals(2L, arena.methods().hash(addr1));
+        assertEquals(2, arena.slab(0).page(0).getAllocatedSize());
+    }
+
+    @Test
+    void allocate_free_concurrently() throws InterruptedException {
+        final SlabArena arena = SlabArena.initialize();
+        final int threadsNum = 8;
+        final int perThread = 20_000;
+        final Set<Long> liveAddresses = ConcurrentHashMap.newKeySet();
+
+        runConcurrently(threadsNum, t -> {
+            List<Long> own = new ArrayList<>();
+            for (int i = 0; i < perThread; i++) {
+                byte[] data = "t%d-%d".formatted(t, i).getBytes();
+                long addr = arena.allocate(i, data, data);
+                own.add(addr);
+
+                // frees every other chunk, so chunks flow between magazines and slab-classes
+                if (i % 2 == 1)
+                    arena.free(own.remove(own.size() - 2));
+            }
+
+            for (int k = 0; k < own.size(); k++) {
+                byte[] data = "t%d-%d".formatted(t, 2 * k + 1).getBytes();
+                // no chunk is handed to 2 threads
+                assertArrayEquals(data, arena.methods().get(own.get(k)));
+                liveAddresses.add(own.get(k));
+            }
+        });
+
+        assertEquals(threadsNum * perThread / 2, liveAddresses.size());
+
+        int allocated = 0;
+        SlabClass slab = arena.slab(0);
+        for (int pageId = 0; pageId < slab.pageNum(); pageId++)
+            allocated += slab.page(pageId).getAllocatedSize();
+        assertEquals(threadsNum * perThread / 2, allocated);
+    }
+
+    static void runConcurrently(int threadsNum, ThreadTask task) throws InterruptedException {
+        final CountDownLatch startGate = new CountDownLatch(1);
+        final List<Throwable> failures = new ArrayList<>();
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadsNum; t++) {
+            final int index = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    startGate.await();
+                    task.run(index);
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        startGate.countDown();
+        for (Thread thread : threads)
+            thread.join();
+
+        if (!failures.isEmpty())
+            throw new AssertionError(failures.getFirst());
+    }
+
+    @FunctionalInterface
+    interface ThreadTask {
+        void run(int index) throws Exception;
+    }
+}
@@ -2,8 +2,15 @@ package org.cobra.core.memory.slab;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class SlabClassTest {
 
@@ -22,22 +29,41 @@ class SlabClassTest {
     @Test
     void allocate_free() {
         final SlabClass slab = new SlabClass(0, 32, 4);
-        SlabOffset offset0 = slab.allocate();
-        SlabOffset offset1 = slab.allocate();
+        long offset0 = slab.allocate();
+        long offset1 = slab.allocate();
 
         assertEquals(2, slab.page(0).getAllocatedSize());
         assertEquals(4, slab.getTotalChunks(), "poll offset 2-time, must allocate 1 page");
 
-        assertEquals(0, offset0.getClsid());
-        assertEquals(0, offset0.getPageId());
-        assertEquals(0, offset1.getPageId());
-        assertEquals(0, offset0.getChunkId());
-        assertEquals(1, offset1.getChunkId());
+        assertEquals(0, SlabHandle.clsid(offset0));
+        assertEquals(0, SlabHandle.pageId(offset0));
+        assertEquals(0, SlabHandle.pageId(offset1));
+        assertEquals(0, SlabHandle.chunkId(offset0));
+        assertEquals(1, SlabHandle.chunkId(offset1));
 
         slab.free(offset0);
         slab.free(offset1);
     }
 
+    @Test
+    void take_fromOtherStripeBeforeAllocatingPage() {
+        final SlabClass slab = new SlabClass(0, 32, 4);
+        final long[] handles = new long[4];
+
+        assertEquals(4, slab.take(handles, 4, 0));
+        assertEquals(4, slab.getTotalChunks());
+        slab.give(handles, 0, 4, 0);
+        assertEquals(4, slab.countFreelisted());
+
+        final long[] stolen = new long[4];
+        assertEquals(4, slab.take(stolen, 4, 1));
+        assertEquals(4, slab.getTotalChunks(), "free chunks of another stripe are taken before a page is allocated");
+        assertEquals(0, slab.countFreelisted());
+
+        slab.give(stolen, 0, 4, 1);
+        assertEquals(4, slab.countFreelisted());
+    }
+
     @Test
     void allocate_grow() {
         final SlabClass slab = new SlabClass(0, 32, 4);
@@ -54,4 +80,54 @@ class SlabClassTest {
         assertEquals(2, slab.countFreeNum());
     }
 
-}
\ No newline at end of file
+    @Test
+    void drainablePages_fitIntoOtherPages() {
+        final SlabClass slab = new SlabClass(0, 32, 4);
+        List<Long> offsets = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            offsets.add(slab.allocate());
+        }
+
+        // page 0: 1 live, page 1: 2 live, page 2: 4 live
+        slab.free(offsets.get(0));
+        slab.free(offsets.get(1));
+        slab.free(offsets.get(2));
+        slab.free(offsets.get(4));
+        slab.free(offsets.get(5));
+
+        // page 0 fits into 2 free chunks of page 1, page 1 then has nowhere to go
+        assertEquals(List.of(0), slab.drainablePages(0.5f));
+        assertEquals(List.of(), slab.drainablePages(0.1f));
+    }
+
+    @Test
+    void drain_release() {
+        final SlabClass slab = new SlabClass(0, 32, 4);
+        List<Long> offsets = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            offsets.add(slab.allocate());
+        }
+        slab.free(offsets.get(0));
+        slab.free(offsets.get(2));
+
+        slab.drain(0);
+        assertArrayEquals(new long[]{SlabHandle.of(0, 0, 1), SlabHandle.of(0, 0, 3)}, slab.liveHandles(0));
+        // page still has live chunks
+        assertThrows(IllegalStateException.class, () -> slab.release(0));
+
+        // a drained page hands out no chunk, even one freed after draining
+        slab.free(offsets.get(1));
+        for (int i = 0; i < 2; i++) {
+            assertNotEquals(0, SlabHandle.pageId(slab.allocate()));
+        }
+
+        slab.free(offsets.get(3));
+        assertEquals(128, slab.release(0));
+        assertNull(slab.page(0));
+        assertEquals(4, slab.getTotalChunks());
+
+        // released page id is reused
+        assertEquals(0, SlabHandle.pageId(slab.allocate()));
+        assertEquals(8, slab.getTotalChunks());
+    }
+}
@@ -0,0 +1,24 @@
+package org.cobra.core.memory.slab;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class SlabHandleTest {
+
+    @Test
+    void pack_unpack() {
+        long handle = SlabHandle.of(63, SlabHandle.MAX_PAGE_ID, Integer.MAX_VALUE);
+
+        assertEquals(63, SlabHandle.clsid(handle));
+        assertEquals(SlabHandle.MAX_PAGE_ID, SlabHandle.pageId(handle));
+        assertEquals(Integer.MAX_VALUE, SlabHandle.chunkId(handle));
+
+        long zero = SlabHandle.of(0, 0, 0);
+        assertEquals(0, SlabHandle.clsid(zero));
+        assertEquals(0, SlabHandle.pageId(zero));
+        assertEquals(0, SlabHandle.chunkId(zero));
+        assertNotEquals(SlabHandle.NULL_HANDLE, zero);
+    }
+}
@@ -4,7 +4,15 @@ import org.cobra.utils.TestUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class SlabMethodsTest {
 
@@ -18,19 +26,64 @@ class SlabMethodsTest {
     @Test
     void put_and_get() {
         SlabMethods slabMethods = new SlabMethods(arena);
-        SlabOffset offset = arena.slab(0).allocate();
+        long handle = arena.slab(0).allocate();
 
         int hash = 1;
         byte[] raw = TestUtils.randString(4).getBytes();
 
-        slabMethods.put(offset, hash, raw);
+        slabMethods.put(handle, hash, raw);
 
-        long addrOf = slabMethods.addressOf(offset);
+        long addrOf = slabMethods.addressOf(handle);
 
         // get loc
-        SlabOffset loc = slabMethods.location(addrOf);
-        byte[] retData = slabMethods.get(loc);
+        long loc = slabMethods.location(addrOf);
+        assertEquals(handle, loc);
+        byte[] retData = slabMethods.get(slabMethods.addressOf(loc));
 
         assertArrayEquals(raw, retData);
+        assertEquals(hash, slabMethods.hash(addrOf));
+    }
+
+    @Test
+    void put_withKey() {
+        SlabMethods slabMethods = new SlabMethods(arena);
+
+        long hash = 0x1234_5678_9abc_def0L;
+        byte[] key = "movie-12345678901".getBytes();
+        byte[] raw = TestUtils.randString(20).getBytes();
+
+        long addrOf = arena.allocate(hash, key, raw);
+
+        assertArrayEquals(raw, slabMethods.get(addrOf));
+        assertArrayEquals(key, slabMethods.key(addrOf));
+        assertEquals(hash, slabMethods.hash(addrOf));
+
+        assertTrue(slabMethods.keyEquals(addrOf, key));
+        assertFalse(slabMethods.keyEquals(addrOf, "movie-12345678902".getBytes()));
+        assertFalse(slabMethods.keyEquals(addrOf, "movie".getBytes()));
+        assertFalse(slabMethods.keyEquals(-1, key));
+    }
+
+    @Test
+    void copyData_toSink() {
+        SlabMethods slabMethods = new SlabMethods(arena);
+        byte[] raw = TestUtils.randString(100).getBytes();
+        long addrOf = arena.allocate(7L, "key".getBytes(), raw);
+
+        assertEquals(raw.length, slabMethods.dataLength(addrOf));
+
+        ByteBuffer heap = ByteBuffer.allocate(raw.length + 1);
+        heap.put((byte) 1);
+        assertEquals(raw.length, slabMethods.copyData(addrOf, heap));
+        assertEquals(raw.length + 1, heap.position());
+        assertArrayEquals(raw, Arrays.copyOfRange(heap.array(), 1, raw.length + 1));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(raw.length);
+        assertEquals(raw.length, slabMethods.copyData(addrOf, direct));
+        byte[] fromDirect = new byte[raw.length];
+        direct.flip().get(fromDirect);
+        assertArrayEquals(raw, fromDirect);
+
+        assertThrows(BufferOverflowException.class, () -> slabMethods.copyData(addrOf, ByteBuffer.allocate(10)));
     }
-}
\ No newline at end of file
+}
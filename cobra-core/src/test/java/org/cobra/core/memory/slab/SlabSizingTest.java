@@ -0,0 +1,69 @@
+package org.cobra.core.memory.slab;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlabSizingTest {
+
+    @Test
+    void geometric_alignedAscendingUpToMax() {
+        int[] sizes = SlabSizing.geometric(32, 1.25, 1 << 20, SlabArena.MAX_SLAB_NUMBER);
+
+        assertEquals(32, sizes[0]);
+        assertEquals(1 << 20, sizes[sizes.length - 1]);
+        assertTrue(sizes.length <= SlabArena.MAX_SLAB_NUMBER);
+        for (int i = 0; i < sizes.length; i++) {
+            assertEquals(0, sizes[i] % SlabSizing.ALIGNMENT);
+            if (i > 0)
+                assertTrue(sizes[i] > sizes[i - 1]);
+        }
+    }
+
+    @Test
+    void geometric_factorOfTwo() {
+        assertEquals("[32, 64, 128, 256, 512, 1024]",
+                Arrays.toString(SlabSizing.geometric(32, 2, 1024, SlabArena.MAX_SLAB_NUMBER)));
+        assertThrows(IllegalArgumentException.class, () -> SlabSizing.geometric(32, 1, 1024, 8));
+    }
+
+    @Test
+    void sampled_fitsRecordSizes() {
+        // records of two shapes, both just above a power of two
+        int[] footprints = new int[1_000];
+        for (int i = 0; i < footprints.length; i++)
+            footprints[i] = i % 2 == 0 ? 520 : 2_100;
+
+        int[] geometric = SlabSizing.geometric(32, 2, 1 << 20, SlabArena.MAX_SLAB_NUMBER);
+        int[] sampled = SlabSizing.sampled(footprints, 32, 2, 1 << 20, SlabArena.MAX_SLAB_NUMBER);
+
+        assertTrue(Arrays.binarySearch(sampled, 520) >= 0);
+        assertTrue(Arrays.binarySearch(sampled, 2_104) >= 0);
+        assertEquals(1 << 20, sampled[sampled.length - 1]);
+        assertEquals(0.0, SlabSizing.fragmentation(footprints, sampled), 0.01);
+        assertTrue(SlabSizing.fragmentation(footprints, geometric) > 0.4);
+    }
+
+    @Test
+    void sampled_boundedClasses() {
+        Random random = new Random(7);
+        int[] footprints = new int[10_000];
+        for (int i = 0; i < footprints.length; i++)
+            footprints[i] = 16 + random.nextInt(64 * 1024);
+
+        int[] sampled = SlabSizing.sampled(footprints, 8, 1.25, 1 << 20, SlabArena.MAX_SLAB_NUMBER);
+
+        assertTrue(sampled.length <= SlabArena.MAX_SLAB_NUMBER);
+        assertTrue(sampled[7] >= 64 * 1024);
+        for (int i = 1; i < sampled.length; i++)
+            assertTrue(sampled[i] > sampled[i - 1]);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> SlabSizing.sampled(new int[0], 8, 1.25, 1 << 20, SlabArena.MAX_SLAB_NUMBER));
+    }
+}
@@ -1,5 +1,7 @@
 package org.cobra.core.objects;
 
+import org.cobra.commons.Jvm;
+import org.cobra.core.memory.OSMemory;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -86,4 +88,60 @@ class BlobByteBufferTest {
     void getLong() {
         assertEquals(100_000L, blobBuffer.getLong(3));
     }
-}
\ No newline at end of file
+
+    @Test
+    void getPrimitives_crossBufferBoundary() {
+        // 4 buffers of 8 bytes, values straddle the boundaries
+        ByteBuffer whole = ByteBuffer.allocate(32);
+        whole.putShort(7, (short) 0x1234);
+        whole.putInt(13, 0x0a0b0c0d);
+        whole.putLong(21, 123_456_789L);
+        BlobByteBuffer split = split(whole, 8);
+
+        assertEquals((short) 0x1234, split.getShort(7));
+        assertEquals(0x0a0b0c0d, split.getInt(13));
+        assertEquals(123_456_789L, split.getLong(21));
+        assertThrows(IllegalArgumentException.class, () -> split.getLong(28));
+    }
+
+    @Test
+    void getBytes_crossBufferBoundary() {
+        ByteBuffer whole = ByteBuffer.allocate(24);
+        for (int i = 0; i < 24; i++)
+            whole.put(i, (byte) i);
+        BlobByteBuffer split = split(whole, 8);
+
+        byte[] dest = new byte[12];
+        split.getBytes(5, dest, 1, 11);
+        for (int i = 0; i < 11; i++)
+            assertEquals((byte) (5 + i), dest[i + 1]);
+    }
+
+    @Test
+    void copyTo_nativeMemory() {
+        ByteBuffer whole = ByteBuffer.allocateDirect(24);
+        for (int i = 0; i < 24; i++)
+            whole.put(i, (byte) i);
+        BlobByteBuffer split = split(whole, 8);
+
+        OSMemory memory = Jvm.osMemory();
+        long address = memory.allocate(16);
+        try {
+            split.copyTo(4, address, 16);
+            for (int i = 0; i < 16; i++)
+                assertEquals((byte) (4 + i), memory.readByte(address + i));
+        } finally {
+            memory.freeMemory(address, 16);
+        }
+    }
+
+    private static BlobByteBuffer split(ByteBuffer whole, int bufferCapacity) {
+        int count = whole.capacity() / bufferCapacity;
+        ByteBuffer[] buffers = new ByteBuffer[count];
+        for (int i = 0; i < count; i++)
+            buffers[i] = whole.slice(i * bufferCapacity, bufferCapacity);
+
+        int shift = 31 - Integer.numberOfLeadingZeros(bufferCapacity);
+        return new BlobByteBuffer(buffers, whole.capacity(), shift, bufferCapacity - 1);
+    }
+}
@@ -0,0 +1,35 @@
+package org.cobra.core.objects;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BlobDescriptorTest {
+
+    @Test
+    void parse_filename_roundTrip() {
+        BlobDescriptor delta = new BlobDescriptor(BlobType.DELTA_BLOB, 4, 5, 100);
+        BlobDescriptor reversed = new BlobDescriptor(BlobType.REVERSED_DELTA_BLOB, 5, 4, 90);
+        BlobDescriptor snapshot = BlobDescriptor.snapshot(200, 4096);
+        BlobDescriptor skipDelta = new BlobDescriptor(BlobType.SKIP_DELTA, 10, 20, 300);
+
+        assertEquals("delta-4-5", delta.filename());
+        assertEquals("reversedelta-5-4", reversed.filename());
+        assertEquals("snapshot-200", snapshot.filename());
+        assertEquals("skipdelta-10-20", skipDelta.filename());
+
+        assertEquals(delta, BlobDescriptor.parse("delta-4-5", 100));
+        assertEquals(reversed, BlobDescriptor.parse("reversedelta-5-4", 90));
+        assertEquals(snapshot, BlobDescriptor.parse("snapshot-200", 4096));
+        assertEquals(skipDelta, BlobDescriptor.parse("skipdelta-10-20", 300));
+        assertEquals(4096, BlobDescriptor.parse("snapshot-200", 4096).size());
+    }
+
+    @Test
+    void parse_unknownName() {
+        assertNull(BlobDescriptor.parse("header-5", 10));
+        assertNull(BlobDescriptor.parse("delta-x-5", 10));
+        assertNull(BlobDescriptor.parse("snapshot-1-2", 10));
+    }
+}
@@ -0,0 +1,113 @@
+package org.cobra.core.objects;
+
+import org.cobra.commons.Jvm;
+import org.cobra.core.memory.OSMemory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BlobInputTest {
+
+    File blobFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(baos);
+        dos.writeInt(7);
+        dos.writeLong(-9L);
+        dos.writeShort(300);
+        dos.writeUTF("org.cobra.Sampleé");
+        Jvm.varint().writeVarInt(dos, 1_000);
+        dos.write(new byte[]{1, 2, 3, 4, 5});
+
+        blobFile = File.createTempFile("blob-input", ".blob");
+        blobFile.deleteOnExit();
+        Files.write(blobFile.toPath(), baos.toByteArray());
+    }
+
+    @Test
+    void read_mapped() throws IOException {
+        // tiny buffers make every primitive cross a boundary at some point
+        try (BlobInput input = BlobInput.randomAccessFile(blobFile, 4)) {
+            assertEquals(7, input.readInt());
+            assertEquals(-9L, input.readLong());
+            assertEquals(300, input.readShort());
+            assertEquals("org.cobra.Sampleé", input.readUtf());
+            assertEquals(1_000, Jvm.varint().readVarInt(input));
+
+            byte[] dest = new byte[5];
+            assertEquals(5, input.readNBytes(dest, 5));
+            assertArrayEquals(new byte[]{1, 2, 3, 4, 5}, dest);
+
+            assertEquals(blobFile.length(), input.getCursor());
+            assertEquals(-1, input.read());
+            assertThrows(EOFException.class, input::readInt);
+        }
+    }
+
+    @Test
+    void readFully_throwsOnShortRead() throws IOException {
+        try (BlobInput input = BlobInput.randomAccessFile(blobFile, 4)) {
+            input.seek(blobFile.length() - 5);
+            byte[] dest = new byte[6];
+            assertThrows(EOFException.class, () -> input.readFully(dest, 6));
+
+            input.seek(blobFile.length() - 5);
+            input.readFully(dest, 5);
+            assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 0}, dest);
+        }
+    }
+
+    @Test
+    void seek_skip() throws IOException {
+        try (BlobInput input = BlobInput.randomAccessFile(blobFile)) {
+            input.seek(4);
+            assertEquals(-9L, input.readLong());
+
+            assertEquals(2, input.skipNBytes(2));
+            assertEquals(14, input.getCursor());
+            assertEquals(blobFile.length() - 14, input.skipNBytes(Long.MAX_VALUE));
+        }
+    }
+
+    @Test
+    void duplicate_ownCursor() throws IOException {
+        try (BlobInput input = BlobInput.randomAccessFile(blobFile)) {
+            input.seek(4);
+            try (BlobInput duplicate = input.duplicate()) {
+                duplicate.seek(0);
+                assertEquals(7, duplicate.readInt());
+            }
+
+            // closing a duplicate keeps the origin readable
+            assertEquals(-9L, input.readLong());
+        }
+    }
+
+    @Test
+    void copyTo_nativeMemory() throws IOException {
+        OSMemory memory = Jvm.osMemory();
+        long address = memory.allocate(5);
+        try (BlobInput input = BlobInput.randomAccessFile(blobFile, 4)) {
+            input.seek(blobFile.length() - 5);
+            input.copyTo(address, 5);
+
+            for (int i = 0; i < 5; i++)
+                assertEquals((byte) (i + 1), memory.readByte(address + i));
+            assertThrows(EOFException.class, () -> input.copyTo(address, 1));
+        } finally {
+            memory.freeMemory(address, 5);
+        }
+    }
+}
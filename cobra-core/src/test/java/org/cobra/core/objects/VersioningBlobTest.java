@@ -3,6 +3,7 @@ package org.cobra.core.objects;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class VersioningBlobTest {
@@ -24,4 +25,14 @@ class VersioningBlobTest {
         assertEquals(BlobType.REVERSED_DELTA_BLOB, versioningBlob.blobType());
         assertTrue(versioningBlob.isReversedDeltaBlob());
     }
-}
\ No newline at end of file
+
+    @Test
+    void isSnapshot() {
+        VersioningBlob versioningBlob = new VersioningBlob(VersioningBlob.VERSION_UNDEFINED, 100, BlobType.SNAPSHOT) {
+        };
+
+        assertTrue(versioningBlob.isSnapshotBlob());
+        assertFalse(versioningBlob.isDeltaBlob());
+        assertEquals("snapshot-100", versioningBlob.blobType().filename(versioningBlob.fromVersion(), 100));
+    }
+}
@@ -0,0 +1,66 @@
+package org.cobra.core.serialization;
+
+import org.cobra.commons.Jvm;
+import org.cobra.core.memory.OSMemory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class NativeInputTest {
+
+    private static final OSMemory memory = Jvm.osMemory();
+    private static final int REGION_SIZE = 1024;
+
+    private long address;
+
+    @BeforeEach
+    void setUp() {
+        address = memory.allocate(REGION_SIZE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        memory.freeMemory(address, REGION_SIZE);
+    }
+
+    @Test
+    void fill_fromAddress() {
+        byte[] raw = "native-bytes".getBytes();
+        memory.copyMemory(address, raw, 0, raw.length);
+
+        NativeInput input = new NativeInput(16);
+        input.setAddress(address, raw.length);
+
+        byte[] dest = new byte[raw.length + 2];
+        assertEquals(5, input.fill(dest, 2, 5));
+        assertEquals(raw.length - 5, input.fill(dest, 7, 100));
+        assertEquals(-1, input.fill(dest, 0, 1));
+
+        byte[] expected = new byte[raw.length + 2];
+        System.arraycopy(raw, 0, expected, 2, raw.length);
+        assertArrayEquals(expected, dest);
+
+        // pointing to another region drops what is left of the previous one
+        input.setAddress(address + 2, 3);
+        assertEquals(3, input.fill(dest, 0, 100));
+        assertEquals(raw[2], dest[0]);
+        assertThrows(IllegalArgumentException.class, () -> input.setAddress(address, -1));
+    }
+
+    @Test
+    void deserialize_fromAddress() {
+        RecordSerde serde = new RecordSerdeImpl();
+        List<String> object = List.of("a", "b", "c");
+        byte[] raw = serde.serialize(object);
+        memory.copyMemory(address, raw, 0, raw.length);
+
+        List<String> result = serde.deserialize(address, raw.length);
+        assertEquals(object, result);
+    }
+}
@@ -0,0 +1,335 @@
+package org.cobra.networks;
+
+import org.cobra.commons.errors.CobraException;
+import org.cobra.core.objects.BlobType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CobraClientTest {
+
+    ServerSocketChannel server;
+    SocketChannel accepted;
+    CobraClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        client = new CobraClient((InetSocketAddress) server.getLocalAddress());
+        client.tryConnect();
+        accepted = server.accept();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        client.shutdown();
+        accepted.close();
+        server.close();
+    }
+
+    @Test
+    void request_responsesMatchedById() throws IOException {
+        List<CompletableFuture<ByteBuffer>> responses = new ArrayList<>();
+        for (long version = 1; version <= 3; version++) {
+            responses.add(client.requestHeader(version));
+        }
+
+        List<Request> requests = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            requests.add(readRequest());
+        }
+        for (Request request : requests) {
+            assertEquals(Apikey.FETCH_HEADER, request.apikey());
+        }
+
+        // replied in reverse order, each body is the version of its request
+        for (Request request : requests.reversed()) {
+            write(Frames.response(request.requestId(), ByteBuffer.allocate(8).putLong(request.payload().getLong(0))
+                    .flip()), Integer.MAX_VALUE);
+        }
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i + 1, CobraClient.await(responses.get(i)).getLong());
+        }
+    }
+
+    @Test
+    void request_responseSplitAcrossReads() throws IOException {
+        CompletableFuture<ByteBuffer> response = client.requestBlob(1, 2);
+        Request request = readRequest();
+        assertEquals(Apikey.FETCH_BLOB, request.apikey());
+        assertEquals(1, request.payload().getLong());
+        assertEquals(2, request.payload().getLong());
+
+        byte[] body = new byte[10_000];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) i;
+        }
+        write(Frames.response(request.requestId(), ByteBuffer.wrap(body)), 7);
+
+        assertEquals(ByteBuffer.wrap(body), CobraClient.await(response));
+    }
+
+    @Test
+    void request_notFoundAndError() throws IOException {
+        CompletableFuture<ByteBuffer> notFound = client.requestHeader(1);
+        CompletableFuture<ByteBuffer> error = client.requestHeader(2);
+
+        write(Frames.response(readRequest().requestId(), Frames.Status.NOT_FOUND), Integer.MAX_VALUE);
+        write(Frames.response(readRequest().requestId(), Frames.Status.ERROR), Integer.MAX_VALUE);
+
+        assertNull(CobraClient.await(notFound));
+        assertThrows(CobraException.class, () -> CobraClient.await(error));
+    }
+
+    @Test
+    void request_failsWhenConnectionIsLost() throws IOException {
+        CompletableFuture<ByteBuffer> response = client.requestHeader(1);
+        readRequest();
+        accepted.close();
+
+        assertThrows(IOException.class, () -> CobraClient.await(response));
+        assertFalse(client.isReady());
+        assertTrue(client.request(Apikey.FETCH_VERSION, ByteBuffer.allocate(0)).isCompletedExceptionally());
+    }
+
+    @Test
+    void subscribeVersions_pushesDeliveredBesideResponses() throws Exception {
+        BlockingQueue<Long> versions = new LinkedBlockingQueue<>();
+        client.subscribeVersions(versions::add);
+        Request subscribe = readRequest();
+        assertEquals(Apikey.SUBSCRIBE_VERSION, subscribe.apikey());
+
+        CompletableFuture<ByteBuffer> response = client.requestHeader(7);
+        Request request = readRequest();
+
+        write(Frames.response(subscribe.requestId(), ByteBuffer.allocate(8).putLong(1).flip()), Integer.MAX_VALUE);
+        write(Frames.response(request.requestId(), ByteBuffer.allocate(8).putLong(7).flip()), Integer.MAX_VALUE);
+        write(Frames.response(subscribe.requestId(), ByteBuffer.allocate(8).putLong(2).flip()), 3);
+
+        assertEquals(7, CobraClient.await(response).getLong());
+        assertEquals(Long.valueOf(1), versions.poll(5, TimeUnit.SECONDS));
+        assertEquals(Long.valueOf(2), versions.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void subscribeVersions_renewedOnReconnect() throws Exception {
+        BlockingQueue<Long> versions = new LinkedBlockingQueue<>();
+        client.subscribeVersions(versions::add);
+        assertEquals(Apikey.SUBSCRIBE_VERSION, readRequest().apikey());
+
+        accepted.close();
+        while (client.isReady()) {
+            Thread.sleep(10);
+        }
+        client.tryConnect();
+        accepted = server.accept();
+
+        Request renewed = readRequest();
+        assertEquals(Apikey.SUBSCRIBE_VERSION, renewed.apikey());
+        write(Frames.response(renewed.requestId(), ByteBuffer.allocate(8).putLong(3).flip()), Integer.MAX_VALUE);
+        assertEquals(Long.valueOf(3), versions.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void requestStream_partsWrittenFromOffset() throws Exception {
+        byte[] blob = bytes(3 * CobraClient.TRANSFER_BUFFER_BYTES / 2);
+        Path path = Files.createTempDirectory("cobra-client").resolve("delta-1-2");
+        try (FileChannel target = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            CompletableFuture<Long> response = client.requestStream(BlobType.DELTA_BLOB, 1, 2, 10, target);
+            Request request = readRequest();
+            assertEquals(Apikey.STREAM_BLOB, request.apikey());
+            assertEquals(BlobType.DELTA_BLOB.ordinal(), request.payload().get());
+            assertEquals(1, request.payload().getLong());
+            assertEquals(2, request.payload().getLong());
+            assertEquals(10, request.payload().getLong());
+            assertEquals(Long.MAX_VALUE, request.payload().getLong());
+
+            writeStream(request.requestId(), blob, 10, blob.length);
+            write(Frames.response(request.requestId(), Frames.Status.OK), Integer.MAX_VALUE);
+
+            assertEquals(Long.valueOf(blob.length), CobraClient.await(response));
+        }
+
+        byte[] written = Files.readAllBytes(path);
+        assertEquals(blob.length, written.length);
+        assertArrayEquals(Arrays.copyOfRange(blob, 10, blob.length), Arrays.copyOfRange(written, 10, blob.length));
+    }
+
+    @Test
+    void download_resumesWhenConnectionIsLost() throws Exception {
+        byte[] blob = bytes(100_000);
+        Path path = Files.createTempDirectory("cobra-client").resolve("snapshot-3");
+        CompletableFuture<Boolean> downloaded = CompletableFuture.supplyAsync(() -> {
+            try {
+                return client.download(BlobType.SNAPSHOT, -1, 3, path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        Request request = readRequest();
+        assertEquals(0, request.payload().getLong(Byte.BYTES + 2 * Long.BYTES));
+        writeStream(request.requestId(), blob, 0, 40_000);
+        accepted.close();
+
+        accepted = server.accept();
+        request = readRequest();
+        assertEquals(Apikey.STREAM_BLOB, request.apikey());
+        assertEquals(40_000, request.payload().getLong(Byte.BYTES + 2 * Long.BYTES));
+        writeStream(request.requestId(), blob, 40_000, blob.length);
+        write(Frames.response(request.requestId(), Frames.Status.OK), Integer.MAX_VALUE);
+
+        assertTrue(downloaded.get(10, TimeUnit.SECONDS));
+        assertArrayEquals(blob, Files.readAllBytes(path));
+    }
+
+    @Test
+    void download_notFound() throws Exception {
+        Path path = Files.createTempDirectory("cobra-client").resolve("snapshot-3");
+        CompletableFuture<Boolean> downloaded = CompletableFuture.supplyAsync(() -> {
+            try {
+                return client.download(BlobType.SNAPSHOT, -1, 3, path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        write(Frames.response(readRequest().requestId(), Frames.Status.NOT_FOUND), Integer.MAX_VALUE);
+        assertFalse(downloaded.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void requestPlan_partsCutIntoFilesOfManifest() throws Exception {
+        Path dir = Files.createTempDirectory("cobra-client");
+        byte[] header5 = bytes(100);
+        byte[] delta5 = bytes(70_000);
+        byte[] header6 = bytes(50);
+        CompletableFuture<List<PlanEntry>> response = client.requestPlan(4, 9, dir::resolve);
+
+        Request request = readRequest();
+        assertEquals(Apikey.FETCH_PLAN, request.apikey());
+        assertEquals(4, request.payload().getLong());
+        assertEquals(9, request.payload().getLong());
+
+        ByteBuffer manifest = ByteBuffer.allocate(4 + 2 * 24)
+                .putInt(2)
+                .putLong(5).putLong(header5.length).putLong(delta5.length)
+                .putLong(6).putLong(header6.length).putLong(0)
+                .flip();
+        write(Frames.response(request.requestId(), Frames.Status.PARTIAL, manifest), Integer.MAX_VALUE);
+        // a part may be cut anywhere, files are cut by their sizes in manifest
+        ByteBuffer parts = ByteBuffer.allocate(header5.length + delta5.length + header6.length)
+                .put(header5).put(delta5).put(header6)
+                .flip();
+        while (parts.hasRemaining()) {
+            ByteBuffer part = parts.slice(parts.position(), Math.min(30_000, parts.remaining()));
+            parts.position(parts.position() + part.remaining());
+            write(Frames.response(request.requestId(), Frames.Status.PARTIAL, part), Integer.MAX_VALUE);
+        }
+        write(Frames.response(request.requestId(), Frames.Status.OK), Integer.MAX_VALUE);
+
+        assertEquals(List.of(new PlanEntry(5, header5.length, delta5.length), new PlanEntry(6, header6.length, 0)),
+                CobraClient.await(response));
+        assertArrayEquals(header5, Files.readAllBytes(dir.resolve("header-5")));
+        assertArrayEquals(delta5, Files.readAllBytes(dir.resolve("delta-4-5")));
+        assertArrayEquals(header6, Files.readAllBytes(dir.resolve("header-6")));
+        assertEquals(0, Files.size(dir.resolve("delta-5-6")));
+    }
+
+    @Test
+    void requestPlan_failsWhenPartsEndShortOfManifest() throws Exception {
+        Path dir = Files.createTempDirectory("cobra-client");
+        CompletableFuture<List<PlanEntry>> response = client.requestPlan(4, 9, dir::resolve);
+        int requestId = readRequest().requestId();
+
+        ByteBuffer manifest = ByteBuffer.allocate(4 + 24)
+                .putInt(1)
+                .putLong(5).putLong(10).putLong(10)
+                .flip();
+        write(Frames.response(requestId, Frames.Status.PARTIAL, manifest), Integer.MAX_VALUE);
+        write(Frames.response(requestId, Frames.Status.PARTIAL, ByteBuffer.wrap(bytes(15))), Integer.MAX_VALUE);
+        write(Frames.response(requestId, Frames.Status.OK), Integer.MAX_VALUE);
+
+        assertThrows(IOException.class, () -> CobraClient.await(response));
+        // connection is still usable
+        CompletableFuture<ByteBuffer> next = client.requestHeader(1);
+        write(Frames.response(readRequest().requestId(), Frames.Status.NOT_FOUND), Integer.MAX_VALUE);
+        assertNull(CobraClient.await(next));
+    }
+
+    /* size of blob, then parts of [from, to) of it as producer streams them */
+    void writeStream(int requestId, byte[] blob, int from, int to) throws IOException {
+        write(Frames.response(requestId, Frames.Status.PARTIAL, ByteBuffer.allocate(8).putLong(blob.length).flip()),
+                Integer.MAX_VALUE);
+        for (int position = from; position < to; position += 30_000) {
+            ByteBuffer part = ByteBuffer.wrap(blob, position, Math.min(30_000, to - position));
+            write(Frames.response(requestId, Frames.Status.PARTIAL, part), 4096);
+        }
+    }
+
+    static byte[] bytes(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+
+        return bytes;
+    }
+
+    Request readRequest() throws IOException {
+        ByteBuffer length = readFully(Frames.LENGTH_FIELD_BYTES);
+        ByteBuffer frame = readFully(length.getInt());
+        assertEquals(Frames.PROTOCOL_VERSION, frame.get());
+        Apikey apikey = Apikey.of(frame.get());
+        int requestId = frame.getInt();
+
+        return new Request(apikey, requestId, frame.slice());
+    }
+
+    ByteBuffer readFully(int len) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(len);
+        while (buffer.hasRemaining()) {
+            if (accepted.read(buffer) < 0)
+                throw new IOException("end of stream");
+        }
+
+        return buffer.flip();
+    }
+
+    /* writes in chunks of at most chunkSize bytes, flushed one by one */
+    void write(ByteBuffer frame, int chunkSize) throws IOException {
+        while (frame.hasRemaining()) {
+            ByteBuffer chunk = frame.slice(frame.position(), Math.min(chunkSize, frame.remaining()));
+            while (chunk.hasRemaining()) {
+                frame.position(frame.position() + accepted.write(chunk));
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.cobra.networks;
+
+import org.cobra.core.objects.BlobType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RangedDownloaderTest {
+
+    static final byte[] BLOB = CobraClientTest.bytes(1_000_003);
+
+    ServerSocketChannel server;
+    CobraClient client;
+    final AtomicInteger connections = new AtomicInteger();
+    final Set<Long> offsets = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        Thread.ofVirtual().start(this::accept);
+
+        client = new CobraClient((InetSocketAddress) server.getLocalAddress());
+        client.tryConnect();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        client.shutdown();
+        server.close();
+    }
+
+    @Test
+    void download_rangesOverConnections() throws IOException {
+        RangedDownloader downloader = new RangedDownloader(client, 4, 100_000);
+        Path path = Files.createTempDirectory("ranged-downloader").resolve("snapshot-1");
+
+        assertTrue(downloader.download(BlobType.SNAPSHOT, -1, 1, path));
+        assertArrayEquals(BLOB, Files.readAllBytes(path));
+        assertEquals(4, connections.get());
+        assertEquals(Set.of(0L, 250_001L, 500_002L, 750_003L), offsets);
+
+        downloader.shutdown();
+    }
+
+    @Test
+    void download_smallBlobOnOneConnection() throws IOException {
+        RangedDownloader downloader = new RangedDownloader(client, 4, BLOB.length);
+        Path path = Files.createTempDirectory("ranged-downloader").resolve("snapshot-1");
+
+        assertTrue(downloader.download(BlobType.SNAPSHOT, -1, 1, path));
+        assertArrayEquals(BLOB, Files.readAllBytes(path));
+        assertEquals(1, connections.get());
+    }
+
+    @Test
+    void download_notFound() throws IOException {
+        RangedDownloader downloader = new RangedDownloader(client, 4, 100_000);
+        Path path = Files.createTempDirectory("ranged-downloader").resolve("snapshot-1");
+
+        assertFalse(downloader.download(BlobType.SNAPSHOT, -1, 2, path));
+    }
+
+    void accept() {
+        try {
+            while (true) {
+                SocketChannel accepted = server.accept();
+                connections.incrementAndGet();
+                Thread.ofVirtual().start(() -> serve(accepted));
+            }
+        } catch (IOException e) {
+            // server closed
+        }
+    }
+
+    /* serves snapshot-1 as producer streams ranges of it */
+    void serve(SocketChannel channel) {
+        try (channel) {
+            while (true) {
+                ByteBuffer length = readFully(channel, Frames.LENGTH_FIELD_BYTES);
+                ByteBuffer frame = readFully(channel, length.getInt());
+                frame.get();
+                assertEquals(Apikey.STREAM_BLOB, Apikey.of(frame.get()));
+                int requestId = frame.getInt();
+                frame.get();
+                frame.getLong();
+                long toVersion = frame.getLong();
+                long offset = frame.getLong();
+                long end = offset + Math.min(frame.getLong(), BLOB.length - offset);
+
+                if (toVersion != 1) {
+                    write(channel, Frames.response(requestId, Frames.Status.NOT_FOUND));
+                    continue;
+                }
+                if (end > offset)
+                    offsets.add(offset);
+
+                write(channel, Frames.response(requestId, Frames.Status.PARTIAL,
+                        ByteBuffer.allocate(8).putLong(BLOB.length).flip()));
+                for (long position = offset; position < end; position += 64 * 1024) {
+                    write(channel, Frames.response(requestId, Frames.Status.PARTIAL,
+                            ByteBuffer.wrap(BLOB, (int) position, (int) Math.min(64 * 1024, end - position))));
+                }
+                write(channel, Frames.response(requestId, Frames.Status.OK));
+            }
+        } catch (IOException e) {
+            // connection closed
+        }
+    }
+
+    static ByteBuffer readFully(SocketChannel channel, int len) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(len);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0)
+                throw new EOFException();
+        }
+
+        return buffer.flip();
+    }
+
+    static void write(SocketChannel channel, ByteBuffer frame) throws IOException {
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+}
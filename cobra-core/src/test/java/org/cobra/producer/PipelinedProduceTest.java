@@ -0,0 +1,132 @@
+package org.cobra.producer;
+
+import org.cobra.commons.Clock;
+import org.cobra.commons.Jvm;
+import org.cobra.commons.errors.CobraException;
+import org.cobra.core.objects.BlobType;
+import org.cobra.producer.fs.FilesystemBlobStagger;
+import org.cobra.producer.fs.FilesystemPublisher;
+import org.cobra.producer.internal.Blob;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PipelinedProduceTest {
+
+    Path publishDir;
+    List<Long> announced;
+    volatile boolean failDeltas;
+    AbstractProducer producer;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        publishDir = Files.createTempDirectory("cobra-pipelined");
+        announced = new CopyOnWriteArrayList<>();
+        failDeltas = false;
+
+        final FilesystemPublisher publisher = new FilesystemPublisher(publishDir);
+        producer = (AbstractProducer) CobraProducer.fromBuilder()
+                .withBlobPublisher(publishable -> {
+                    if (failDeltas && publishable instanceof Blob)
+                        throw new CobraException("blob store is down");
+
+                    publisher.publish(publishable);
+                })
+                .withBlobStagger(new FilesystemBlobStagger())
+                .withAnnouncer(new CobraProducer.Announcer() {
+                    @Override
+                    public void announce(long version) {
+                        announced.add(version);
+                    }
+
+                    @Override
+                    public long retrieve() {
+                        return announced.isEmpty() ? 0 : announced.getLast();
+                    }
+                })
+                .withClock(Clock.system())
+                .withPipelinedCycles(true)
+                .buildSimple();
+
+        producer.registerModel(TypeA.class);
+        producer.isBootstrap = true; // no server needed to publish
+    }
+
+    @Test
+    void produce_announcesInOrder() {
+        long lastVersion = 0;
+        for (int i = 0; i < 5; i++) {
+            final int id = i;
+            lastVersion = producer.produce(task -> task.addObject("k" + id, typeA(id)));
+        }
+
+        assertEquals(lastVersion, producer.awaitPublished());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), announced);
+    }
+
+    @Test
+    void failedCycle_shippedByNextCycle() throws IOException {
+        producer.produce(task -> task.addObject("k1", typeA(1)));
+        producer.produce(task -> task.addObject("k2", typeA(2)));
+        producer.awaitPublished();
+
+        failDeltas = true;
+        final long failedVersion = producer.produce(task -> task.addObject("k3", typeA(3)));
+        assertThrows(CobraException.class, producer::awaitPublished);
+
+        failDeltas = false;
+        final long nextVersion = producer.produce(task -> task.addObject("k4", typeA(4)));
+        assertEquals(nextVersion, producer.awaitPublished());
+
+        assertEquals(List.of(1L, 2L, nextVersion), announced);
+        assertEquals(4, producer.lookupTable(TypeA.class).size());
+        // delta from the last announced version carries mutations of the failed cycle too
+        assertEquals(2, mutationCount(BlobType.DELTA_BLOB.filename(2, nextVersion)));
+        assertEquals(3, failedVersion);
+    }
+
+    @Test
+    void failedCycle_surfacesWhileNextOneIsProduced() {
+        producer.produce(task -> task.addObject("k1", typeA(1)));
+        producer.awaitPublished();
+
+        failDeltas = true;
+        producer.produce(task -> task.addObject("k2", typeA(2)));
+        producer.produce(task -> task.addObject("k3", typeA(3)));
+        assertThrows(CobraException.class, producer::awaitPublished);
+
+        failDeltas = false;
+        producer.produce(task -> task.addObject("k4", typeA(4)));
+        producer.awaitPublished();
+
+        assertEquals(4, producer.lookupTable(TypeA.class).size());
+        assertEquals(2, announced.size());
+    }
+
+    /* delta: [tags][num_schemas][section lengths] then section [schema name][varint mutation_count]... */
+    private int mutationCount(String filename) throws IOException {
+        try (DataInputStream dis = new DataInputStream(Files.newInputStream(publishDir.resolve(filename)))) {
+            dis.readLong();
+            dis.readLong();
+            final int numSchemas = dis.readInt();
+            for (int i = 0; i < numSchemas; i++)
+                dis.readLong();
+
+            dis.readUTF();
+            return Jvm.varint().readVarInt(dis);
+        }
+    }
+
+    private static TypeA typeA(int id) {
+        return new TypeA(id, "name-" + id, false, new TypeB(id, id));
+    }
+}
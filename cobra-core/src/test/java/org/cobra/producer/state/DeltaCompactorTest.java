@@ -0,0 +1,159 @@
+package org.cobra.producer.state;
+
+import org.cobra.commons.CobraConstants;
+import org.cobra.commons.Jvm;
+import org.cobra.commons.pools.BytesPool;
+import org.cobra.consumer.read.BlobReaderImpl;
+import org.cobra.consumer.read.ConsumerStateContext;
+import org.cobra.consumer.read.StateReadEngine;
+import org.cobra.core.memory.MemoryMode;
+import org.cobra.core.objects.BlobInput;
+import org.cobra.producer.TypeA;
+import org.cobra.producer.TypeB;
+import org.cobra.producer.fs.DeflateBlobCompressor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeltaCompactorTest {
+
+    static final String TYPE_A = TypeA.class.getTypeName();
+    static final String TYPE_B = TypeB.class.getTypeName();
+
+    Path blobStorePath;
+
+    DeltaCompactor compactor;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        blobStorePath = Files.createTempDirectory("cobra-compactor");
+        blobStorePath.toFile().deleteOnExit();
+        compactor = new DeltaCompactor(blobStorePath);
+
+        publish(1, List.of(TYPE_A), List.of(
+                section(TYPE_A, List.of("k1", "k2"), List.of("a1", "a2"), List.of())));
+        publish(2, List.of(), List.of(
+                section(TYPE_A, List.of("k3"), List.of("a3"), List.of("k1"))));
+        publish(3, List.of(TYPE_B), List.of(
+                section(TYPE_A, List.of("k1"), List.of("a1'"), List.of("k2")),
+                section(TYPE_B, List.of("k1"), List.of("b1"), List.of())));
+    }
+
+    @Test
+    void compact_keepsLastMutationOfKey() throws IOException {
+        assertCompacted(compactor);
+    }
+
+    @Test
+    void compact_compressedBlobs() throws IOException {
+        DeflateBlobCompressor compressor = new DeflateBlobCompressor();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(blobStorePath)) {
+            for (Path path : paths) {
+                byte[] raw = Files.readAllBytes(path);
+                try (OutputStream os = compressor.compress(Files.newOutputStream(path))) {
+                    os.write(raw);
+                }
+            }
+        }
+
+        assertCompacted(new DeltaCompactor(blobStorePath, compressor));
+    }
+
+    void assertCompacted(DeltaCompactor compactor) throws IOException {
+        File skipDelta = Files.createTempFile("skipdelta-0-3", ".blob").toFile();
+        skipDelta.deleteOnExit();
+        try (OutputStream os = Files.newOutputStream(skipDelta.toPath())) {
+            compactor.compact(0, 3, os);
+        }
+
+        StateReadEngine stateReadEngine = new StateReadEngine(new ConsumerStateContext(), BytesPool.NONE);
+        try (BlobInput input = BlobInput.randomAccessFile(skipDelta)) {
+            new BlobReaderImpl(MemoryMode.VIRTUAL_MAPPED, stateReadEngine).applySnapshot(input);
+            assertEquals(skipDelta.length(), input.getCursor());
+        }
+
+        // schemas of every header in range are registered by merged header
+        assertArrayEquals("a1'".getBytes(), stateReadEngine.consumerContext().localData(TYPE_A).getData("k1"));
+        assertNull(stateReadEngine.consumerContext().localData(TYPE_A).getData("k2"));
+        assertArrayEquals("a3".getBytes(), stateReadEngine.consumerContext().localData(TYPE_A).getData("k3"));
+        assertArrayEquals("b1".getBytes(), stateReadEngine.consumerContext().localData(TYPE_B).getData("k1"));
+        assertEquals(11L, stateReadEngine.getOriginRandomizedTag());
+        assertEquals(32L, stateReadEngine.getNextRandomizedTag());
+    }
+
+    @Test
+    void compact_missingDelta() throws IOException {
+        assertTrue(compactor.isCompactable(1, 3));
+        assertFalse(compactor.isCompactable(0, 4));
+        assertFalse(compactor.isCompactable(3, 3));
+
+        Files.delete(blobStorePath.resolve("delta-1-2"));
+        assertFalse(compactor.isCompactable(0, 3));
+        assertThrows(RuntimeException.class, () -> compactor.compact(0, 3, OutputStream.nullOutputStream()));
+    }
+
+    void publish(long version, List<String> schemas, List<byte[]> sections) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(header);
+        dos.writeInt(CobraConstants.BLOB_HEADER_VERSION_ID);
+        dos.writeLong(version * 10 + 1);
+        dos.writeLong(version * 10 + 2);
+        dos.writeInt(schemas.size());
+        for (String schema : schemas)
+            dos.writeUTF(schema);
+        dos.writeInt(0);
+        Jvm.varint().writeVarInt(dos, 0);
+        Files.write(blobStorePath.resolve("header-%d".formatted(version)), header.toByteArray());
+
+        ByteArrayOutputStream delta = new ByteArrayOutputStream();
+        dos = new DataOutputStream(delta);
+        dos.writeLong(version * 10 + 1);
+        dos.writeLong(version * 10 + 2);
+        dos.writeInt(sections.size());
+        for (byte[] section : sections)
+            dos.writeLong(section.length);
+        for (byte[] section : sections)
+            dos.write(section);
+        Files.write(blobStorePath.resolve("delta-%d-%d".formatted(version - 1, version)), delta.toByteArray());
+    }
+
+    static byte[] section(String typeName, List<String> keys, List<String> values, List<String> removals)
+            throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(baos);
+        dos.writeUTF(typeName);
+        Jvm.varint().writeVarInt(dos, keys.size() + removals.size());
+        writeBlocks(dos, keys);
+        writeBlocks(dos, values);
+        writeBlocks(dos, removals);
+
+        return baos.toByteArray();
+    }
+
+    static void writeBlocks(DataOutputStream dos, List<String> blocks) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        for (String block : blocks) {
+            Jvm.varint().writeVarInt(baos, block.getBytes().length);
+            baos.write(block.getBytes());
+        }
+
+        Jvm.varint().writeVarInt(dos, baos.size());
+        dos.write(baos.toByteArray());
+    }
+}
@@ -0,0 +1,436 @@
+package org.cobra.producer.state;
+
+import org.cobra.commons.Jvm;
+import org.cobra.commons.threads.CobraThreadExecutor;
+import org.cobra.core.ModelSchema;
+import org.cobra.core.encoding.Varint;
+import org.cobra.core.serialization.RecordSerde;
+import org.cobra.core.serialization.SerdeContext;
+import org.cobra.producer.TypeA;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SchemaStateWriteImplTest {
+
+    static final Varint varint = Jvm.varint();
+    static final int RECORDS = 5 * SchemaStateWriteImpl.MIN_MUTATIONS_PER_PARTITION + 17;
+
+    SchemaStateWriteImpl stateWrite;
+
+    @BeforeEach
+    void setUp() {
+        stateWrite = new SchemaStateWriteImpl(new ModelSchema(TypeA.class), new StringSerde(),
+                new ProducerStateContext());
+    }
+
+    @Test
+    void numPartitions() {
+        assertEquals(1, SchemaStateWriteImpl.numPartitions(0, 8));
+        assertEquals(1, SchemaStateWriteImpl.numPartitions(SchemaStateWriteImpl.MIN_MUTATIONS_PER_PARTITION * 2 - 1, 8));
+        assertEquals(2, SchemaStateWriteImpl.numPartitions(SchemaStateWriteImpl.MIN_MUTATIONS_PER_PARTITION * 2, 8));
+        assertEquals(8, SchemaStateWriteImpl.numPartitions(Integer.MAX_VALUE, 8));
+    }
+
+    @Test
+    void prepareBeforeWriting_partitionsLaidAsOneSection() throws IOException {
+        for (int i = 0; i < RECORDS; i++) {
+            stateWrite.addRecord("k" + i, "value-" + i);
+        }
+        stateWrite.sealMutations();
+        stateWrite.prepareBeforeWriting(4);
+
+        Section delta = readSection(stateWrite, false);
+        assertEquals(RECORDS, delta.additions.size());
+        assertTrue(delta.removals.isEmpty());
+        for (int i = 0; i < RECORDS; i++) {
+            byte[] data = delta.additions.get("k" + i);
+            assertNotNull(data);
+            assertArrayEquals(("value-" + i).getBytes(), data);
+        }
+
+        stateWrite.moveToNextCycle();
+        for (int i = 0; i < RECORDS; i += 3) {
+            stateWrite.removeRecord("k" + i);
+        }
+        stateWrite.addRecord("new", "value-new");
+        stateWrite.sealMutations();
+        stateWrite.prepareBeforeWriting(4);
+
+        delta = readSection(stateWrite, false);
+        assertEquals(1, delta.additions.size());
+        assertEquals((RECORDS + 2) / 3, delta.removals.size());
+
+        Section reversed = readSection(stateWrite, true);
+        assertEquals((RECORDS + 2) / 3, reversed.additions.size());
+        assertArrayEquals("value-3".getBytes(), reversed.additions.get("k3"));
+        assertEquals(Set.of("new"), reversed.removals.keySet());
+    }
+
+    @Test
+    void prepareBeforeWriting_sameContentOfSerialAndPartitioned() throws IOException {
+        for (int i = 0; i < RECORDS; i++) {
+            stateWrite.addRecord("k" + i, "value-" + i);
+        }
+        stateWrite.sealMutations();
+        stateWrite.prepareBeforeWriting(1);
+        Section serial = readSection(stateWrite, false);
+
+        stateWrite = new SchemaStateWriteImpl(new ModelSchema(TypeA.class), new StringSerde(),
+                new ProducerStateContext());
+        for (int i = 0; i < RECORDS; i++) {
+            stateWrite.addRecord("k" + i, "value-" + i);
+        }
+        stateWrite.sealMutations();
+        stateWrite.prepareBeforeWriting(8);
+        Section partitioned = readSection(stateWrite, false);
+
+        assertEquals(serial.additions.keySet(), partitioned.additions.keySet());
+        for (String key : serial.additions.keySet()) {
+            assertArrayEquals(serial.additions.get(key), partitioned.additions.get(key));
+        }
+    }
+
+    @Test
+    void writeDelta_streamsRecordsLargerThanTransferBuffer() throws IOException {
+        String large = "x".repeat(SchemaStateWriteImpl.TRANSFER_BUFFER_BYTES * 3 / 2);
+        for (int i = 0; i < 20; i++) {
+            stateWrite.addRecord("large" + i, i + large);
+        }
+        stateWrite.addRecord("small", "value");
+        stateWrite.sealMutations();
+        stateWrite.prepareBeforeWriting();
+
+        Section delta = readSection(stateWrite, false);
+        assertEquals(21, delta.additions.size());
+        assertArrayEquals((7 + large).getBytes(), delta.additions.get("large7"));
+        assertArrayEquals("value".getBytes(), delta.additions.get("small"));
+
+        // removed records of a cycle span several off-heap segments
+        stateWrite.moveToNextCycle();
+        for (int i = 0; i < 20; i++) {
+            stateWrite.removeRecord("large" + i);
+        }
+        stateWrite.sealMutations();
+        stateWrite.prepareBeforeWriting();
+
+        Section reversed = readSection(stateWrite, true);
+        assertEquals(20, reversed.additions.size());
+        for (int i = 0; i < 20; i++) {
+            assertArrayEquals((i + large).getBytes(), reversed.additions.get("large" + i));
+        }
+    }
+
+    @Test
+    void sealMutations_laterMutationsBelongToNextCycle() throws IOException {
+        stateWrite.addRecord("k1", "v1");
+        stateWrite.sealMutations();
+        stateWrite.addRecord("k2", "v2");
+
+        assertEquals(1, stateWrite.mutationCount());
+        stateWrite.prepareBeforeWriting();
+        assertEquals(Set.of("k1"), readSection(stateWrite, false).additions.keySet());
+
+        stateWrite.moveToNextCycle();
+        assertFalse(stateWrite.isModified());
+        stateWrite.sealMutations();
+        stateWrite.prepareBeforeWriting();
+        assertEquals(Set.of("k2"), readSection(stateWrite, false).additions.keySet());
+
+        // a sealed cycle that has not been written keeps its mutations
+        stateWrite.moveToNextCycle();
+        stateWrite.addRecord("k3", "v3");
+        stateWrite.sealMutations();
+        stateWrite.addRecord("k3", "v3'");
+        stateWrite.addRecord("k4", "v4");
+        stateWrite.sealMutations();
+        stateWrite.prepareBeforeWriting();
+
+        Section section = readSection(stateWrite, false);
+        assertArrayEquals("v3'".getBytes(), section.additions.get("k3"));
+        assertEquals(Set.of("k3", "k4"), section.additions.keySet());
+    }
+
+    @Test
+    void revertToLastState_restoresLocalDataAndKeepsMutations() throws IOException {
+        for (int i = 0; i < RECORDS; i++) {
+            stateWrite.addRecord("k" + i, "value-" + i);
+        }
+        stateWrite.sealMutations();
+        stateWrite.prepareBeforeWriting(4);
+        readSection(stateWrite, false);
+
+        stateWrite.moveToNextCycle();
+        for (int i = 0; i < RECORDS; i += 2) {
+            stateWrite.removeRecord("k" + i);
+        }
+        stateWrite.addRecord("k1", "value-1'");
+        stateWrite.addRecord("new", "value-new");
+        stateWrite.sealMutations();
+        stateWrite.prepareBeforeWriting(4);
+        assertNull(stateWrite.localData().getData("k0"));
+
+        // publishing the cycle failed
+        stateWrite.revertToLastState();
+        assertArrayEquals("value-0".getBytes(), stateWrite.localData().getData("k0"));
+        assertArrayEquals("value-1".getBytes(), stateWrite.localData().getData("k1"));
+        assertNull(stateWrite.localData().getData("new"));
+        assertEquals(RECORDS, stateWrite.localData().lookupTable().size());
+
+        // the next cycle ships mutations of the failed one, a later mutation of the same key wins
+        stateWrite.moveToNextCycle();
+        stateWrite.addRecord("new", "value-new'");
+        stateWrite.sealMutations();
+        stateWrite.prepareBeforeWriting(4);
+
+        Section delta = readSection(stateWrite, false);
+        assertEquals(Set.of("k1", "new"), delta.additions.keySet());
+        assertArrayEquals("value-new'".getBytes(), delta.additions.get("new"));
+        assertEquals((RECORDS + 1) / 2, delta.removals.size());
+        assertArrayEquals("value-0".getBytes(), readSection(stateWrite, true).additions.get("k0"));
+    }
+
+    @Test
+    void prepareBeforeWriting_skipsUnchangedRecords() throws IOException {
+        for (int i = 0; i < RECORDS; i++) {
+            stateWrite.addRecord("k" + i, "value-" + i);
+        }
+        stateWrite.sealMutations();
+        stateWrite.prepareBeforeWriting(4);
+        readSection(stateWrite, false);
+
+        stateWrite.moveToNextCycle();
+        for (int i = 0; i < RECORDS; i++) {
+            stateWrite.addRecord("k" + i, i == 7 ? "value-7'" : "value-" + i);
+        }
+        stateWrite.sealMutations();
+        assertEquals(RECORDS, stateWrite.mutationCount());
+        stateWrite.prepareBeforeWriting(4);
+
+        assertTrue(stateWrite.isModified());
+        assertEquals(1, stateWrite.mutationCount());
+        Section delta = readSection(stateWrite, false);
+        assertEquals(Set.of("k7"), delta.additions.keySet());
+        assertArrayEquals("value-7'".getBytes(), delta.additions.get("k7"));
+
+        stateWrite.moveToNextCycle();
+        stateWrite.addRecord("k1", "value-1");
+        stateWrite.sealMutations();
+        stateWrite.prepareBeforeWriting();
+        assertFalse(stateWrite.isModified());
+    }
+
+    @Test
+    void sealFullState_removesRecordsNotPopulated() throws IOException {
+        for (int i = 0; i < RECORDS; i++) {
+            stateWrite.addRecord("k" + i, "value-" + i);
+        }
+        stateWrite.sealFullState();
+        stateWrite.prepareBeforeWriting();
+        assertEquals(RECORDS, readSection(stateWrite, false).additions.size());
+
+        stateWrite.moveToNextCycle();
+        for (int i = 0; i < RECORDS; i++) {
+            if (i % 2 == 0)
+                stateWrite.addRecord("k" + i, "value-" + i);
+        }
+        stateWrite.addRecord("new", "value-new");
+        stateWrite.sealFullState();
+        stateWrite.prepareBeforeWriting(4);
+
+        Section delta = readSection(stateWrite, false);
+        assertEquals(Set.of("new"), delta.additions.keySet());
+        assertEquals(RECORDS / 2, delta.removals.size());
+        assertTrue(delta.removals.containsKey("k1"));
+        assertFalse(delta.removals.containsKey("k2"));
+
+        Section reversed = readSection(stateWrite, true);
+        assertArrayEquals("value-1".getBytes(), reversed.additions.get("k1"));
+
+        // mutations sealed before of a cycle that has not been written are dropped
+        stateWrite.moveToNextCycle();
+        stateWrite.addRecord("stale", "value-stale");
+        stateWrite.sealMutations();
+        stateWrite.addRecord("new", "value-new");
+        stateWrite.sealFullState();
+        stateWrite.prepareBeforeWriting();
+
+        delta = readSection(stateWrite, false);
+        assertTrue(delta.additions.isEmpty());
+        assertEquals((RECORDS + 1) / 2, delta.removals.size());
+        assertFalse(delta.removals.containsKey("new"));
+    }
+
+    @Test
+    void prepareBeforeWriting_schemasSharePartitionPool() throws Exception {
+        SchemaStateWriteImpl other = new SchemaStateWriteImpl(new ModelSchema(TypeA.class), new StringSerde(),
+                new ProducerStateContext());
+        for (int i = 0; i < RECORDS; i++) {
+            stateWrite.addRecord("k" + i, "value-" + i);
+            other.addRecord("k" + i, "other-" + i);
+        }
+        stateWrite.sealMutations();
+        other.sealMutations();
+
+        try (
+                CobraThreadExecutor partitionExecutor = CobraThreadExecutor.of(2, getClass());
+                CobraThreadExecutor executor = CobraThreadExecutor.of(2, getClass())
+        ) {
+            executor.execute(() -> stateWrite.prepareBeforeWriting(partitionExecutor, 2));
+            executor.execute(() -> other.prepareBeforeWriting(partitionExecutor, 2));
+            executor.waitAll();
+
+            assertTrue(partitionExecutor.getLargestPoolSize() <= 2);
+        }
+
+        Section delta = readSection(stateWrite, false);
+        assertEquals(RECORDS, delta.additions.size());
+        assertArrayEquals("value-7".getBytes(), delta.additions.get("k7"));
+        assertArrayEquals("other-7".getBytes(), readSection(other, false).additions.get("k7"));
+    }
+
+    @Test
+    void sealFullState_removesOnlyRecordsOfItsSchema() throws IOException {
+        SchemaStateWriteImpl other = new SchemaStateWriteImpl(new ModelSchema(TypeA.class), new StringSerde(),
+                new ProducerStateContext());
+        other.addRecord("k1", "other-1");
+        other.sealMutations();
+        other.prepareBeforeWriting();
+
+        stateWrite.addRecord("k1", "value-1");
+        stateWrite.addRecord("k2", "value-2");
+        stateWrite.sealFullState();
+        stateWrite.prepareBeforeWriting();
+
+        stateWrite.moveToNextCycle();
+        stateWrite.addRecord("k2", "value-2");
+        stateWrite.sealFullState();
+        stateWrite.prepareBeforeWriting();
+
+        assertEquals(Set.of("k1"), readSection(stateWrite, false).removals.keySet());
+        assertArrayEquals("other-1".getBytes(), other.localData().getData("k1"));
+    }
+
+    @Test
+    void writeSnapshot_writesEveryLiveRecord() throws IOException {
+        for (int i = 0; i < RECORDS; i++) {
+            stateWrite.addRecord("k" + i, "value-" + i);
+        }
+        stateWrite.sealMutations();
+        stateWrite.prepareBeforeWriting(4);
+
+        stateWrite.moveToNextCycle();
+        stateWrite.removeRecord("k0");
+        stateWrite.addRecord("k1", "value-1'");
+        stateWrite.sealMutations();
+        stateWrite.prepareBeforeWriting();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        stateWrite.writeSnapshot(new DataOutputStream(out));
+        assertEquals(stateWrite.sizeOfSnapshot(), out.size());
+
+        Section snapshot = readSection(out.toByteArray());
+        assertEquals(RECORDS - 1, snapshot.additions.size());
+        assertFalse(snapshot.additions.containsKey("k0"));
+        assertArrayEquals("value-1'".getBytes(), snapshot.additions.get("k1"));
+        assertArrayEquals("value-2".getBytes(), snapshot.additions.get("k2"));
+        assertTrue(snapshot.removals.isEmpty());
+    }
+
+    static Section readSection(SchemaStateWrite stateWrite, boolean reversed) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(out);
+        if (reversed)
+            stateWrite.writeReversedDelta(dos);
+        else
+            stateWrite.writeDelta(dos);
+
+        assertEquals(reversed ? stateWrite.sizeOfReversedDelta() : stateWrite.sizeOfDelta(), out.size());
+
+        return readSection(out.toByteArray());
+    }
+
+    static Section readSection(byte[] bytes) throws IOException {
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bytes));
+        assertEquals(TypeA.class.getTypeName(), dis.readUTF());
+        varint.readVarInt(dis); // number of mutations
+
+        DataInputStream keys = block(dis);
+        DataInputStream values = block(dis);
+        DataInputStream removals = block(dis);
+        assertEquals(0, dis.available());
+
+        Section section = new Section();
+        while (keys.available() > 0) {
+            section.additions.put(new String(bytes(keys)), bytes(values));
+        }
+        assertEquals(0, values.available());
+        while (removals.available() > 0) {
+            section.removals.put(new String(bytes(removals)), new byte[0]);
+        }
+
+        return section;
+    }
+
+    static DataInputStream block(DataInputStream dis) throws IOException {
+        return new DataInputStream(new ByteArrayInputStream(bytes(dis)));
+    }
+
+    static byte[] bytes(DataInputStream dis) throws IOException {
+        byte[] bytes = new byte[varint.readVarInt(dis)];
+        dis.readFully(bytes);
+        return bytes;
+    }
+
+    /* records of test are strings, serialized as their bytes */
+    static class StringSerde implements RecordSerde {
+
+        @Override
+        public void register(ModelSchema modelSchema) {
+        }
+
+        @Override
+        public void register(Class<?> clazz, int id) {
+        }
+
+        @Override
+        public byte[] serialize(Object object) {
+            return ((String) object).getBytes();
+        }
+
+        @Override
+        public <T> T deserialize(byte[] bytes) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T> T deserialize(long address, int length) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SerdeContext serdeContext() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    static class Section {
+        final Map<String, byte[]> additions = new HashMap<>();
+        final Map<String, byte[]> removals = new HashMap<>();
+    }
+}
@@ -4,7 +4,6 @@ import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.cobra.sample.models.Movie;
 import org.cobra.sample.producer.form.RollbackVersion;
-import org.cobra.sample.producer.service.MutationObject;
 import org.cobra.sample.producer.service.ProducerService;
 import org.cobra.sample.producer.service.WorkbookHelp;
 import org.springframework.stereotype.Controller;
@@ -17,9 +16,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 @Controller
 public class MovieController {
@@ -44,27 +41,16 @@ public class MovieController {
     @PostMapping(value = "/movie-submit")
     public String submitMovie(Model model, @ModelAttribute Movie movie) {
         model.addAttribute("movie", movie);
-        producerService.addMutation(movie.getId(), movie);
+        producerService.putMovie(movie);
 
         return "movie-submit-success";
     }
 
     @GetMapping("/mutations")
     public String showProducerCycle(Model model) {
-        List<Movie> addMutations = new ArrayList<>();
-        List<Integer> deletedIds = new ArrayList<>();
-
-        for (Map.Entry<Integer, Object> entry : producerService.getMutations().entrySet()) {
-            if (entry.getValue() instanceof Movie) {
-                addMutations.add((Movie) entry.getValue());
-            } else if (entry.getValue() == MutationObject.DELETED) {
-                deletedIds.add(entry.getKey());
-            }
-        }
-
         model.addAttribute("version", producerService.getCurrentVersion());
-        model.addAttribute("addMutations", addMutations);
-        model.addAttribute("deleteIds", deletedIds);
+        model.addAttribute("movieCount", producerService.countInMemoryMovies());
+        model.addAttribute("movieList", producerService.getInMemoryMovies(0, 100));
 
         return "mutations";
     }
@@ -94,7 +80,7 @@ public class MovieController {
 
                 workbook.close();
                 for (Movie movie : movies) {
-                    producerService.addMutation(movie.getId(), movie);
+                    producerService.putMovie(movie);
                 }
             }
 
@@ -105,7 +91,7 @@ public class MovieController {
                 workbook.close();
 
                 for (Integer id : ids) {
-                    producerService.addMutation(id, MutationObject.DELETED);
+                    producerService.removeMovie(id);
                 }
             }
 
@@ -1,5 +0,0 @@
-package org.cobra.sample.producer.service;
-
-public class MutationObject {
-    public static final Object DELETED = new Object();
-}
@@ -16,7 +16,6 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
@@ -27,9 +26,6 @@ public class ProducerService {
 
     private final CobraProducer producer;
 
-    @Getter
-    private final ConcurrentHashMap<Integer, Object> mutations = new ConcurrentHashMap<>();
-
     @Getter
     private final ConcurrentHashMap<Integer, Movie> inMemoryMovies = new ConcurrentHashMap<>();
 
@@ -72,41 +68,40 @@ public class ProducerService {
                 .collect(Collectors.toList());
     }
 
-    public void addMutation(Integer id, Object movie) {
-        this.mutations.put(id, movie);
+    public int countInMemoryMovies() {
+        return inMemoryMovies.size();
+    }
+
+    /* edits go straight to the in-memory state, the next produce ships whatever differs from the last version */
+    public void putMovie(Movie movie) {
+        inMemoryMovies.put(movie.getId(), movie);
+    }
+
+    public void removeMovie(Integer id) {
+        inMemoryMovies.remove(id);
     }
 
     public void produce() {
-        producer.produce(task -> {
-            for (Map.Entry<Integer, Object> entry : mutations.entrySet()) {
-                if (entry.getValue() == MutationObject.DELETED) {
-                    task.removeObject(String.valueOf(entry.getKey()), Movie.class);
-                } else {
-                    task.addObject(String.valueOf(entry.getKey()), entry.getValue());
-                }
-            }
-        });
-
-        for (Map.Entry<Integer, Object> entry : mutations.entrySet()) {
-            if (entry.getValue() == MutationObject.DELETED) {
-                continue;
-            }
-            inMemoryMovies.put(entry.getKey(), (Movie) entry.getValue());
-        }
-        mutations.clear();
+        produceInMemoryMovies();
     }
 
     /* this method use to random */
     public void shuffle(int count) {
-        producer.produce(task -> {
-            for (Movie movie : generateMoviesWithBound(count)) {
-                task.addObject(String.valueOf(movie.getId()), movie);
-            }
-
-            for (String s : generateRandomDelete()) {
-                task.removeObject(s, Movie.class);
-            }
-        });
+        for (Movie movie : generateMoviesWithBound(count)) {
+            inMemoryMovies.put(movie.getId(), movie);
+        }
+
+        for (String s : generateRandomDelete()) {
+            inMemoryMovies.remove(Integer.valueOf(s));
+        }
+
+        produceInMemoryMovies();
+    }
+
+    /* every movie is populated, producer ships the changed ones and removes the ones that are gone */
+    private void produceInMemoryMovies() {
+        producer.produceFullState(task -> inMemoryMovies.forEach(
+                (id, movie) -> task.addObject(String.valueOf(id), movie)));
     }
 
     public void revert(long version) {